@@ -16,13 +16,15 @@
 
 package org.modeshape.common.collection.ring;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A {@link WaitStrategy} that blocks the current thread until an entry is available for consumption. This implementation uses
- * Java locks and {@link Condition conditions}.
+ * Java locks and {@link Condition conditions}, although producers only take the lock to signal when there are consumers actually
+ * waiting.
  * 
  * @author Randall Hauch (rhauch@redhat.com)
  */
@@ -30,6 +32,7 @@ public class BlockingWaitStrategy implements WaitStrategy {
 
     private final Lock lock = new ReentrantLock();
     private final Condition waitCondition = lock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
 
     @Override
     public long waitFor( long position,
@@ -42,8 +45,14 @@ public class BlockingWaitStrategy implements WaitStrategy {
             // The caller wants a position that is farther along than what is available, so we have to block ...
             lock.lock();
             try {
-                while (!barrier.isComplete() && (availablePosition = pointer.get()) < position) {
-                    waitCondition.await();
+                // Register as a waiter before re-checking the pointer, so that a producer advancing it will signal us ...
+                waiters.incrementAndGet();
+                try {
+                    while (!barrier.isComplete() && (availablePosition = pointer.get()) < position) {
+                        waitCondition.await();
+                    }
+                } finally {
+                    waiters.decrementAndGet();
                 }
             } finally {
                 lock.unlock();
@@ -54,6 +63,7 @@ public class BlockingWaitStrategy implements WaitStrategy {
 
     @Override
     public void signalAllWhenBlocking() {
+        if (waiters.get() == 0) return;
         lock.lock();
         try {
             waitCondition.signalAll();
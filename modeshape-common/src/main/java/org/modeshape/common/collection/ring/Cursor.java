@@ -69,6 +69,18 @@ public interface Cursor extends DependentOnPointers {
      */
     boolean publish( long position );
 
+    /**
+     * Publish all of the positions in the supplied range, making them available for consumers. This is used when a batch of
+     * positions was {@link #claim(int) claimed} at once.
+     * 
+     * @param lowPosition the lowest position in the batch that is now available for consumers
+     * @param highPosition the highest position in the batch that is now available for consumers; must be equal to or greater
+     *        than {@code lowPosition}
+     * @return true if the positions were published, or false if not
+     */
+    boolean publish( long lowPosition,
+                     long highPosition );
+
     /**
      * Get the highest published position that is equal to or between the supplied lower and upper positions.
      * 
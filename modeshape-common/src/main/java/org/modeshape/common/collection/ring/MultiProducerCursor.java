@@ -0,0 +1,129 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.common.collection.ring;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free cursor for a ring buffer that allows multiple threads to concurrently claim and publish positions. Producers claim
+ * positions by atomically advancing a shared claim pointer, and publish them by setting a per-slot availability flag. The cursor's
+ * {@link #current current} pointer (which consumers wait on) is then advanced over all contiguous positions that have been
+ * published, so consumers never see a position before every lower position has also been published.
+ * <p>
+ * Like the {@link SingleProducerCursor}, this cursor never passes the slowest {@link Pointer} that is consuming entries. It also
+ * never claims a slot whose previous position has not yet been published, so a slow producer cannot be lapped by faster ones.
+ * </p>
+ */
+public class MultiProducerCursor extends SingleProducerCursor {
+
+    private final int mask;
+    private final int indexShift;
+    private final AtomicIntegerArray published;
+    private final Pointer claimed = new Pointer(Pointer.INITIAL_VALUE);
+    private final Pointer slowestConsumerPosition = new Pointer(Pointer.INITIAL_VALUE);
+
+    public MultiProducerCursor( int bufferSize,
+                                WaitStrategy waitStrategy ) {
+        super(bufferSize, waitStrategy);
+        this.mask = bufferSize - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+        this.published = new AtomicIntegerArray(bufferSize);
+        for (int i = 0; i != bufferSize; ++i) {
+            this.published.set(i, -1);
+        }
+    }
+
+    @Override
+    public long getCurrent() {
+        return claimed.get();
+    }
+
+    @Override
+    protected long claimUpTo( int number ) {
+        assert number > 0;
+        int bufferSize = getBufferSize();
+        while (true) {
+            long claimedPosition = claimed.get();
+            long maxPosition = claimedPosition + number;
+            long wrapPoint = maxPosition - bufferSize;
+            long cachedSlowestConsumerPosition = slowestConsumerPosition.get();
+
+            if (wrapPoint > cachedSlowestConsumerPosition || cachedSlowestConsumerPosition > claimedPosition) {
+                // Neither pass the slowest consumer nor reuse a slot whose position has not yet been published ...
+                long minPosition = positionOfSlowestPointer(Math.min(claimedPosition, current.get()));
+                if (wrapPoint > minPosition) {
+                    // This takes on the order of tens of nanoseconds, so it's a useful activity to pause a bit.
+                    LockSupport.parkNanos(1L);
+                    waitStrategy.signalAllWhenBlocking();
+                    continue;
+                }
+                slowestConsumerPosition.set(minPosition);
+            } else if (claimed.compareAndSet(claimedPosition, maxPosition)) {
+                return maxPosition;
+            }
+        }
+    }
+
+    @Override
+    public boolean publish( long position ) {
+        return publish(position, position);
+    }
+
+    @Override
+    public boolean publish( long lowPosition,
+                            long highPosition ) {
+        // Positions claimed before completion are still published, so consumers can reach the final position ...
+        if (highPosition > finalPosition) return false;
+        for (long position = lowPosition; position <= highPosition; ++position) {
+            published.set((int)(position & mask), roundOf(position));
+        }
+        advanceCurrent();
+        waitStrategy.signalAllWhenBlocking();
+        return true;
+    }
+
+    /**
+     * Advance the {@link #current current} pointer over all contiguous positions that have been published. Any producer can
+     * advance the pointer, including on behalf of other producers that published higher positions first.
+     */
+    protected void advanceCurrent() {
+        long position = current.get();
+        while (true) {
+            long highest = position;
+            while (isPublished(highest + 1L)) {
+                ++highest;
+            }
+            if (highest == position) return;
+            // Another producer may have advanced it already; either way re-check the next position ...
+            position = current.compareAndSet(position, highest) ? highest : current.get();
+        }
+    }
+
+    protected boolean isPublished( long position ) {
+        return published.get((int)(position & mask)) == roundOf(position);
+    }
+
+    private int roundOf( long position ) {
+        return (int)(position >>> indexShift);
+    }
+
+    @Override
+    public void complete() {
+        finalPosition = claimed.get();
+        waitStrategy.signalAllWhenBlocking();
+    }
+}
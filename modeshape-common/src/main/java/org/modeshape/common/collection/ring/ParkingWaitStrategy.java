@@ -0,0 +1,80 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.common.collection.ring;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.modeshape.common.util.CheckArg;
+
+/**
+ * A {@link WaitStrategy} that spins, then yields, and then {@link LockSupport#parkNanos(long) parks} the thread for increasingly
+ * longer periods (up to a maximum) until an entry is available for consumption. Producers never have to take a lock or signal
+ * waiting consumers, at the cost of up to the maximum park time in additional latency for consumers that have been idle.
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+
+    protected static final int SPIN_TRIES = 100;
+    protected static final int YIELD_TRIES = 100;
+    protected static final long MIN_PARK_NANOS = 1000L; // 1 microsecond
+    protected static final long DEFAULT_MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final long maxParkNanos;
+
+    public ParkingWaitStrategy() {
+        this.maxParkNanos = DEFAULT_MAX_PARK_NANOS;
+    }
+
+    /**
+     * @param maxParkTime the maximum amount of time that a waiting thread will be parked before checking for new entries; must be
+     *        positive
+     * @param unit the unit of the time; may not be null
+     */
+    public ParkingWaitStrategy( long maxParkTime,
+                                TimeUnit unit ) {
+        CheckArg.isPositive(maxParkTime, "maxParkTime");
+        CheckArg.isNotNull(unit, "unit");
+        this.maxParkNanos = Math.max(MIN_PARK_NANOS, unit.toNanos(maxParkTime));
+    }
+
+    @Override
+    public long waitFor( long position,
+                         Pointer pointer,
+                         Pointer dependentPointer,
+                         PointerBarrier barrier ) throws InterruptedException {
+        int counter = SPIN_TRIES + YIELD_TRIES;
+        long parkNanos = MIN_PARK_NANOS;
+        long availablePosition;
+        while ((availablePosition = pointer.get()) < position && !barrier.isComplete()) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            if (counter > YIELD_TRIES) {
+                --counter;
+            } else if (counter > 0) {
+                --counter;
+                Thread.yield();
+            } else {
+                // Back off exponentially, so that idle consumers use almost no CPU ...
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+            }
+        }
+        return availablePosition;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        // Waiting threads wake up on their own, so there is nothing to signal ...
+    }
+}
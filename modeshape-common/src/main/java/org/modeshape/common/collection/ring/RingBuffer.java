@@ -16,17 +16,16 @@
 
 package org.modeshape.common.collection.ring;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import org.modeshape.common.CommonI18n;
 import org.modeshape.common.collection.ring.GarbageCollectingConsumer.Collectable;
 import org.modeshape.common.logging.Logger;
@@ -36,7 +35,9 @@ import org.modeshape.common.util.CheckArg;
  * A circular or "ring" buffer that allows entries supplied by a producer to be easily, quickly, and independently consumed by
  * multiple {@link Consumer consumers}. The design of this ring buffer attempts to eliminate or minimize contention between the
  * different consumers. The ring buffer can be completely lock-free, although by default the consumers of the ring buffer use a
- * {@link WaitStrategy} that blocks if they have processed all available entries and are waiting for more to be added. <h2>
+ * {@link WaitStrategy} that blocks if they have processed all available entries and are waiting for more to be added. When
+ * entries are added from multiple threads, the producers claim and publish positions using a lock-free
+ * {@link MultiProducerCursor}. <h2>
  * Concepts</h2>
  * <p>
  * Conceptually, this buffer consists of a fixed-sized ring of elements; entries are added at the ring's "cursor" while multiple
@@ -58,6 +59,12 @@ import org.modeshape.common.util.CheckArg;
  * the consumer has been attached to the buffer. Additionally, the ring buffer guarantees that the consumers will be called from a
  * single thread, so consumers do <em>not</em> need to be concurrent or thread-safe.
  * </p>
+ * <p>
+ * By default each consumer runs in its own thread. Ring buffers with many lightweight consumers can instead be built with a fixed
+ * number of shared consumer threads, where each thread (or "lane") dispatches the entries to a group of consumers in turn. Each
+ * consumer still has its own position in the buffer and sees every entry in order, but a slow consumer will delay the other
+ * consumers in the same lane; such consumers can be {@link #addIsolatedConsumer(Object) isolated} onto their own thread.
+ * </p>
  * <h2>Batching</h2>
  * <p>
  * Even though there is almost no locking within the ring buffer, the ring buffer uses another technique to make it as fast as
@@ -96,8 +103,9 @@ public final class RingBuffer<T, C> {
     protected final AtomicBoolean addEntries = new AtomicBoolean(true);
     protected final ConsumerAdapter<T, C> consumerAdapter;
     private final Set<ConsumerRunner> consumers = new CopyOnWriteArraySet<>();
+    private final Set<LaneConsumer> laneConsumers = new CopyOnWriteArraySet<>();
+    private final List<ConsumerLane> lanes;
     private final GarbageCollectingConsumer gcConsumer;
-    private final Lock producerLock;
     protected final Logger logger = Logger.getLogger(getClass());
 
     RingBuffer( String name,
@@ -105,7 +113,7 @@ public final class RingBuffer<T, C> {
                 Executor executor,
                 ConsumerAdapter<T, C> consumerAdapter,
                 boolean gcEntries,
-                boolean singleProducer ) {
+                int sharedConsumerThreads ) {
         this.cursor = cursor;
         this.bufferSize = cursor.getBufferSize();
         CheckArg.isPositive(bufferSize, "cursor.getBufferSize()");
@@ -127,13 +135,9 @@ public final class RingBuffer<T, C> {
         } else {
             this.gcConsumer = null;
         }
-
-        if (singleProducer) {
-            // There is but one thread calling 'add', so no need for alock. Create an impl that does nothing ...
-            producerLock = new NoOpLock();
-        } else {
-            // Multiple threads can call 'add', so use a real lock ...
-            producerLock = new ReentrantLock();
+        this.lanes = new ArrayList<>(sharedConsumerThreads);
+        for (int i = 0; i != sharedConsumerThreads; ++i) {
+            this.lanes.add(new ConsumerLane());
         }
     }
 
@@ -149,15 +153,11 @@ public final class RingBuffer<T, C> {
     public boolean add( T entry ) {
         assert entry != null;
         if (!addEntries.get()) return false;
-        try {
-            producerLock.lock();
-            long position = cursor.claim(); // blocks; if this fails, we will not have successfully claimed and nothing to do ...
-            int index = (int)(position & mask);
-            buffer[index] = entry;
-            return cursor.publish(position);
-        } finally {
-            producerLock.unlock();
-        }
+        // The cursor ensures that each producer thread claims a different position ...
+        long position = cursor.claim(); // blocks; if this fails, we will not have successfully claimed and nothing to do ...
+        int index = (int)(position & mask);
+        buffer[index] = entry;
+        return cursor.publish(position);
     }
 
     /**
@@ -170,17 +170,13 @@ public final class RingBuffer<T, C> {
     public boolean add( T[] entries ) {
         assert entries != null;
         if (entries.length == 0 || !addEntries.get()) return false;
-        try {
-            producerLock.lock();
-            long position = cursor.claim(entries.length); // blocks
-            for (int i = 0; i != entries.length; ++i) {
-                int index = (int)(position & mask);
-                buffer[index] = entries[i];
-            }
-            return cursor.publish(position);
-        } finally {
-            producerLock.unlock();
+        long maxPosition = cursor.claim(entries.length); // blocks
+        long firstPosition = maxPosition - entries.length + 1L;
+        for (int i = 0; i != entries.length; ++i) {
+            int index = (int)((firstPosition + i) & mask);
+            buffer[index] = entries[i];
         }
+        return cursor.publish(firstPosition, maxPosition);
     }
 
     @SuppressWarnings( "unchecked" )
@@ -203,7 +199,8 @@ public final class RingBuffer<T, C> {
     }
 
     /**
-     * Add the supplied consumer, and have it start processing entries in a separate thread.
+     * Add the supplied consumer, and have it start processing entries in a separate thread (or in one of the shared consumer
+     * threads, if this buffer was built with them).
      * <p>
      * Note that the thread will block when there are no more entries to be consumed. If the thread gets a timeout when waiting
      * for an entry, this method will retry the wait only one time before stopping.
@@ -221,7 +218,8 @@ public final class RingBuffer<T, C> {
     }
 
     /**
-     * Add the supplied consumer, and have it start processing entries in a separate thread.
+     * Add the supplied consumer, and have it start processing entries in a separate thread (or in one of the shared consumer
+     * threads, if this buffer was built with them).
      * <p>
      * The consumer is automatically removed from the ring buffer when it returns {@code false} from its
      * {@link Consumer#consume(Object, long, long)} method.
@@ -235,9 +233,47 @@ public final class RingBuffer<T, C> {
      */
     public boolean addConsumer( final C consumer,
                                 final int timesToRetryUponTimeout ) {
+        if (lanes.isEmpty()) return addIsolatedConsumer(consumer, timesToRetryUponTimeout);
         if (!addEntries.get()) {
             throw new IllegalStateException();
         }
+        if (isRegistered(consumer)) return false;
+
+        // Find the lane with the fewest consumers ...
+        ConsumerLane lane = lanes.get(0);
+        for (ConsumerLane candidate : lanes) {
+            if (candidate.size() < lane.size()) lane = candidate;
+        }
+        LaneConsumer laneConsumer = new LaneConsumer(consumer, lane);
+        if (!laneConsumers.add(laneConsumer)) {
+            cursor.ignore(laneConsumer.getPointer());
+            return false;
+        }
+        if (gcConsumer != null) gcConsumer.stayBehind(laneConsumer.getPointer());
+        lane.add(laneConsumer);
+        return true;
+    }
+
+    /**
+     * Add the supplied consumer, and have it start processing entries in its own thread, even if this buffer was built with
+     * shared consumer threads. This should be used for consumers that are known to be slow, so that they don't delay other
+     * consumers.
+     * 
+     * @param consumer the component that will process the entries; may not be null
+     * @return true if the consumer was added, or false if the consumer was already registered with this buffer
+     * @throws IllegalStateException if the ring buffer has already been {@link #shutdown()}
+     * @see #addConsumer(Object, int)
+     */
+    public boolean addIsolatedConsumer( final C consumer ) {
+        return addIsolatedConsumer(consumer, 1);
+    }
+
+    protected boolean addIsolatedConsumer( final C consumer,
+                                           final int timesToRetryUponTimeout ) {
+        if (!addEntries.get()) {
+            throw new IllegalStateException();
+        }
+        if (!lanes.isEmpty() && isRegistered(consumer)) return false;
         ConsumerRunner runner = new ConsumerRunner(consumer, timesToRetryUponTimeout);
         if (gcConsumer != null) gcConsumer.stayBehind(runner.getPointer());
 
@@ -251,7 +287,9 @@ public final class RingBuffer<T, C> {
 
     /**
      * Remove the supplied consumer, and block until it stops running and is closed and removed from this buffer. The consumer is
-     * removed at the earliest conevenient point, and will stop seeing entries as soon as it is removed.
+     * removed at the earliest conevenient point, and will stop seeing entries as soon as it is removed. A consumer that runs in a
+     * {@link RingBufferBuilder#sharedConsumerThreads(int) shared consumer thread} is only marked as removed, so this method does
+     * not block; the consumer sees no further entries and is closed by its shared thread at the end of the current batch.
      * 
      * @param consumer the consumer component to be removed entry; retries will not be attempted if the value is less than 1
      * @return true if the consumer was removed, stopped, and closed, or false if the supplied consumer was not actually
@@ -260,6 +298,13 @@ public final class RingBuffer<T, C> {
      */
     public boolean remove( C consumer ) {
         if (consumer != null) {
+            for (LaneConsumer laneConsumer : laneConsumers) {
+                if (laneConsumer.getConsumer().equals(consumer)) {
+                    // Mark the consumer as removed; the lane will close it at the end of its current batch ...
+                    laneConsumer.getLane().remove(laneConsumer);
+                    return true;
+                }
+            }
             // Iterate through the map to find the runner that owns this consumer ...
             ConsumerRunner match = null;
             for (ConsumerRunner runner : consumers) {
@@ -290,13 +335,33 @@ public final class RingBuffer<T, C> {
         if (gcConsumer != null) gcConsumer.ignore(runner.getPointer());
     }
 
+    /**
+     * Method called when a consumer that runs in a shared consumer thread has been closed.
+     * 
+     * @param laneConsumer the consumer that has been closed
+     */
+    protected void disconnect( LaneConsumer laneConsumer ) {
+        this.laneConsumers.remove(laneConsumer);
+        if (gcConsumer != null) gcConsumer.ignore(laneConsumer.getPointer());
+    }
+
+    protected boolean isRegistered( C consumer ) {
+        for (ConsumerRunner runner : consumers) {
+            if (runner.getConsumer().equals(consumer)) return true;
+        }
+        for (LaneConsumer laneConsumer : laneConsumers) {
+            if (laneConsumer.getConsumer().equals(consumer)) return true;
+        }
+        return false;
+    }
+
     /**
      * Checks if there are any consumers registered.
      * 
      * @return {@code true} if this buffer has any consumers, {@code false} otherwise.
      */
     public boolean hasConsumers() {
-        return !this.consumers.isEmpty();
+        return !this.consumers.isEmpty() || !this.laneConsumers.isEmpty();
     }
 
     /**
@@ -319,7 +384,11 @@ public final class RingBuffer<T, C> {
         for (ConsumerRunner runner : new HashSet<>(consumers)) { // use a copy of the runners; they're removed when they close
             runner.waitForCompletion();
         }
+        for (ConsumerLane lane : lanes) {
+            lane.waitForCompletion();
+        }
         assert consumers.isEmpty();
+        assert laneConsumers.isEmpty();
     }
 
     /**
@@ -512,33 +581,204 @@ public final class RingBuffer<T, C> {
         }
     }
 
-    protected static final class NoOpLock implements Lock {
-        @Override
-        public void lock() {
+    /**
+     * A consumer that runs in one of the {@link ConsumerLane shared consumer threads}. Each such consumer has its own pointer, so
+     * that the cursor stays behind it and so that it only sees the entries added after it was registered.
+     */
+    protected class LaneConsumer {
+        private final C consumer;
+        private final Pointer pointer;
+        private final ConsumerLane lane;
+        private final AtomicBoolean removed = new AtomicBoolean(false);
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        protected LaneConsumer( C consumer,
+                                ConsumerLane lane ) {
+            this.consumer = consumer;
+            this.lane = lane;
+            this.pointer = cursor.newPointer(); // the cursor will not wrap beyond this pointer
         }
 
-        @Override
-        public void unlock() {
+        protected Pointer getPointer() {
+            return pointer;
         }
 
-        @Override
-        public void lockInterruptibly() {
+        protected C getConsumer() {
+            return consumer;
+        }
+
+        protected ConsumerLane getLane() {
+            return lane;
+        }
+
+        protected boolean isRemoved() {
+            return removed.get();
+        }
+
+        protected boolean isClosed() {
+            return closed.get();
+        }
+
+        /**
+         * Mark this consumer as removed, so that it is no longer given entries and no longer holds back the cursor. This can be
+         * called from any thread, and never blocks.
+         */
+        protected void markRemoved() {
+            if (this.removed.compareAndSet(false, true)) {
+                try {
+                    // Tell the cursor to ignore our pointer ...
+                    cursor.ignore(pointer);
+                } finally {
+                    disconnect(this);
+                }
+            }
+        }
+
+        /**
+         * Remove and close this consumer. This should only be called by the lane's thread (or after that thread has completed),
+         * so that the consumer is never closed while it is being given an entry.
+         */
+        protected void close() {
+            markRemoved();
+            if (this.closed.compareAndSet(false, true)) {
+                try {
+                    consumerAdapter.close(consumer);
+                } catch (Throwable t) {
+                    logger.error(t, CommonI18n.errorWhileClosingRingBufferConsumer, consumer, t.getMessage());
+                }
+            }
         }
 
         @Override
-        public boolean tryLock() {
-            return false;
+        public int hashCode() {
+            return consumer.hashCode();
         }
 
         @Override
-        public boolean tryLock( long time,
-                                TimeUnit unit ) {
+        public boolean equals( Object obj ) {
+            if (this == obj) return true;
+            if (obj instanceof RingBuffer.LaneConsumer) {
+                @SuppressWarnings( "unchecked" )
+                LaneConsumer that = (LaneConsumer)obj;
+                return this.consumer.equals(that.consumer);
+            }
             return false;
         }
+    }
+
+    /**
+     * One of a fixed number of shared consumer threads, which waits for entries and then dispatches them in order to each of its
+     * consumers. The thread is only started when the first consumer is added to the lane.
+     */
+    protected class ConsumerLane implements Runnable {
+        private final List<LaneConsumer> members = new CopyOnWriteArrayList<>();
+        private final PointerBarrier barrier = cursor.newBarrier();
+        private final AtomicBoolean started = new AtomicBoolean(false);
+        private final CountDownLatch stopLatch = new CountDownLatch(1);
+        private long lanePosition = Pointer.INITIAL_VALUE;
+
+        protected int size() {
+            return members.size();
+        }
+
+        protected void add( LaneConsumer laneConsumer ) {
+            members.add(laneConsumer);
+            if (started.compareAndSet(false, true)) {
+                // Start at the first consumer's position; any consumer added later will be at or beyond it ...
+                lanePosition = laneConsumer.getPointer().get();
+                executor.execute(this);
+            }
+        }
+
+        protected void remove( LaneConsumer laneConsumer ) {
+            // Don't wait for the lane's current batch; the lane's thread drops and closes the consumer at the end of the batch ...
+            laneConsumer.markRemoved();
+        }
+
+        /**
+         * Close and drop all of the members that were removed since the last batch. This is only called by the lane's thread.
+         */
+        private void closeRemovedMembers() {
+            for (LaneConsumer laneConsumer : members) {
+                if (laneConsumer.isRemoved()) {
+                    members.remove(laneConsumer);
+                    laneConsumer.close();
+                }
+            }
+        }
+
+        protected void waitForCompletion() {
+            if (!started.get()) return;
+            try {
+                stopLatch.await();
+            } catch (InterruptedException e) {
+                // The thread was interrupted ...
+                Thread.interrupted();
+                // do nothing ...
+            }
+        }
 
         @Override
-        public Condition newCondition() {
-            return null;
+        public void run() {
+            try {
+                while (true) {
+                    closeRemovedMembers();
+                    long next = lanePosition + 1L;
+                    long maxPosition;
+                    try {
+                        // Try to find the next position we can read to ...
+                        maxPosition = barrier.waitFor(next);
+                    } catch (TimeoutException e) {
+                        // It took too long to wait, but just continue ...
+                        continue;
+                    }
+                    if (maxPosition < 0) {
+                        // The buffer has been shutdown and there are no more positions, so we're done ...
+                        return;
+                    }
+                    if (maxPosition < next) continue;
+                    dispatch(next, maxPosition);
+                    lanePosition = maxPosition;
+                }
+            } catch (InterruptedException e) {
+                // The thread was interrupted ...
+                Thread.interrupted();
+            } finally {
+                try {
+                    for (LaneConsumer laneConsumer : members) {
+                        members.remove(laneConsumer);
+                        laneConsumer.close();
+                    }
+                } finally {
+                    stopLatch.countDown();
+                }
+            }
+        }
+
+        private void dispatch( long next,
+                               long maxPosition ) {
+            for (long position = next; position <= maxPosition; ++position) {
+                T entry = null;
+                for (LaneConsumer laneConsumer : members) {
+                    Pointer pointer = laneConsumer.getPointer();
+                    // Skip the consumer if it was removed, or if it was added after this entry ...
+                    if (laneConsumer.isRemoved() || pointer.get() >= position) continue;
+                    if (entry == null) entry = getEntry(position);
+                    C consumer = laneConsumer.getConsumer();
+                    boolean consume = true;
+                    try {
+                        consume = consumerAdapter.consume(consumer, entry, position, maxPosition);
+                    } catch (Throwable t) {
+                        consumerAdapter.handleException(consumer, t, entry, position, maxPosition);
+                    }
+                    pointer.set(position);
+                    if (!consume) {
+                        // The consumer is done, so remove and close it ...
+                        members.remove(laneConsumer);
+                        laneConsumer.close();
+                    }
+                }
+            }
         }
     }
 
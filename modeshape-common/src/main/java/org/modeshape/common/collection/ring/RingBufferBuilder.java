@@ -21,6 +21,14 @@ import org.modeshape.common.collection.ring.RingBuffer.ConsumerAdapter;
 import org.modeshape.common.util.CheckArg;
 
 /**
+ * A builder for {@link RingBuffer} instances. Ring buffers that allow {@link #withMultipleProducers multiple producers} use a
+ * lock-free {@link MultiProducerCursor}, while those with a {@link #withSingleProducer single producer} use a
+ * {@link SingleProducerCursor}. By default, consumers waiting for entries block using a {@link BlockingWaitStrategy}; other
+ * strategies trade CPU usage for lower latency and can be selected with {@link #waitUsing(WaitStrategy)} or with one of the
+ * {@link #waitByBlocking()}, {@link #waitByParking()}, {@link #waitByYielding()} or {@link #waitBySpinning()} methods. Each
+ * consumer runs in its own thread unless the ring buffer is built with a number of
+ * {@link #sharedConsumerThreads(int) shared consumer threads}.
+ * 
  * @param <T> the type of entries stored in the buffer
  * @param <C> the type of consumer
  * @author Randall Hauch (rhauch@redhat.com)
@@ -84,6 +92,7 @@ public class RingBufferBuilder<T, C> {
     public static final int DEFAULT_BUFFER_SIZE = 1 << 10; // 1024
     public static final boolean DEFAULT_GARBAGE_COLLECT_ENTITIES = false;
     public static final String DEFAULT_NAME = "ringbuffer";
+    public static final int DEFAULT_SHARED_CONSUMER_THREADS = 0;
 
     private final Executor executor;
     private final ConsumerAdapter<T, C> adapter;
@@ -91,6 +100,7 @@ public class RingBufferBuilder<T, C> {
     private boolean garbageCollect = DEFAULT_GARBAGE_COLLECT_ENTITIES;
     private boolean singleProducer = true;
     private String name = DEFAULT_NAME;
+    private int sharedConsumerThreads = DEFAULT_SHARED_CONSUMER_THREADS;
     private WaitStrategy waitStrategy;
 
     /**
@@ -122,6 +132,61 @@ public class RingBufferBuilder<T, C> {
         return this;
     }
 
+    /**
+     * Have all consumers share the supplied number of threads, rather than each consumer running in its own thread. Each shared
+     * thread dispatches entries to a group of consumers, so the number of threads stays the same regardless of the number of
+     * consumers. Consumers can still be given their own thread with {@link RingBuffer#addIsolatedConsumer(Object)}.
+     * 
+     * @param threadCount the number of shared consumer threads, or 0 if each consumer is to run in its own thread; may not be
+     *        negative
+     * @return this builder; never null
+     */
+    public RingBufferBuilder<T, C> sharedConsumerThreads( int threadCount ) {
+        CheckArg.isNonNegative(threadCount, "threadCount");
+        this.sharedConsumerThreads = threadCount;
+        return this;
+    }
+
+    /**
+     * Have consumers block on a lock until entries are available. This is the default.
+     * 
+     * @return this builder; never null
+     * @see BlockingWaitStrategy
+     */
+    public RingBufferBuilder<T, C> waitByBlocking() {
+        return waitUsing(new BlockingWaitStrategy());
+    }
+
+    /**
+     * Have consumers spin, yield and then park for increasingly longer periods until entries are available.
+     * 
+     * @return this builder; never null
+     * @see ParkingWaitStrategy
+     */
+    public RingBufferBuilder<T, C> waitByParking() {
+        return waitUsing(new ParkingWaitStrategy());
+    }
+
+    /**
+     * Have consumers spin briefly and then yield their thread until entries are available.
+     * 
+     * @return this builder; never null
+     * @see YieldingWaitStrategy
+     */
+    public RingBufferBuilder<T, C> waitByYielding() {
+        return waitUsing(new YieldingWaitStrategy());
+    }
+
+    /**
+     * Have consumers continuously spin until entries are available. Each consumer will keep a CPU core busy.
+     * 
+     * @return this builder; never null
+     * @see BusySpinWaitStrategy
+     */
+    public RingBufferBuilder<T, C> waitBySpinning() {
+        return waitUsing(new BusySpinWaitStrategy());
+    }
+
     protected RingBufferBuilder<T, C> singleProducer() {
         this.singleProducer = true;
         return this;
@@ -141,7 +206,7 @@ public class RingBufferBuilder<T, C> {
         WaitStrategy waitStrategy = this.waitStrategy;
         if (waitStrategy == null) waitStrategy = defaultWaitStrategy();
         Cursor cursor = defaultCursor(bufferSize, waitStrategy);
-        return new RingBuffer<T, C>(name, cursor, executor, adapter, garbageCollect, singleProducer);
+        return new RingBuffer<T, C>(name, cursor, executor, adapter, garbageCollect, sharedConsumerThreads);
     }
 
     protected WaitStrategy defaultWaitStrategy() {
@@ -150,6 +215,7 @@ public class RingBufferBuilder<T, C> {
 
     protected Cursor defaultCursor( int bufferSize,
                                     WaitStrategy waitStrategy ) {
-        return new SingleProducerCursor(bufferSize, waitStrategy);
+        if (singleProducer) return new SingleProducerCursor(bufferSize, waitStrategy);
+        return new MultiProducerCursor(bufferSize, waitStrategy);
     }
 }
@@ -112,6 +112,13 @@ public class SingleProducerCursor implements Cursor {
         return true;
     }
 
+    @Override
+    public boolean publish( long lowPosition,
+                            long highPosition ) {
+        // Publishing the highest position implicitly publishes all of the lower ones ...
+        return publish(highPosition);
+    }
+
     @Override
     public long getHighestPublishedPosition( long lowerPosition,
                                              long upperPosition ) {
@@ -0,0 +1,61 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.common.collection.ring;
+
+/**
+ * A {@link WaitStrategy} that spins for a short while and then {@link Thread#yield() yields} the thread until an entry is available
+ * for consumption. This is a good compromise between latency and CPU usage when there are about as many consumers as cores.
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+
+    protected static final int DEFAULT_SPIN_TRIES = 100;
+
+    private final int spinTries;
+
+    public YieldingWaitStrategy() {
+        this(DEFAULT_SPIN_TRIES);
+    }
+
+    /**
+     * @param spinTries the number of times to spin before yielding; may not be negative
+     */
+    public YieldingWaitStrategy( int spinTries ) {
+        this.spinTries = Math.max(0, spinTries);
+    }
+
+    @Override
+    public long waitFor( long position,
+                         Pointer pointer,
+                         Pointer dependentPointer,
+                         PointerBarrier barrier ) throws InterruptedException {
+        int counter = spinTries;
+        long availablePosition;
+        while ((availablePosition = pointer.get()) < position && !barrier.isComplete()) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            if (counter > 0) {
+                --counter;
+            } else {
+                Thread.yield();
+            }
+        }
+        return availablePosition;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        // Nothing ever blocks, so there is nothing to signal ...
+    }
+}
@@ -21,8 +21,12 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Test;
 import org.modeshape.common.statistic.Stopwatch;
@@ -288,6 +292,204 @@ public class RingBufferTest {
         print("Time to add " + count + " entries: " + sw.getAverageDuration());
     }
 
+    @Test
+    public void multiProducerCursorShouldOnlyAdvanceOverContiguousPublishedPositions() {
+        MultiProducerCursor cursor = new MultiProducerCursor(8, new BlockingWaitStrategy());
+        long first = cursor.claim();
+        long second = cursor.claim();
+        long third = cursor.claim(2);
+        assertThat(first, is(0L));
+        assertThat(second, is(1L));
+        assertThat(third, is(3L));
+        assertThat(cursor.getCurrent(), is(3L));
+
+        // Publishing out of order should not make the later positions visible ...
+        assertTrue(cursor.publish(second));
+        assertThat(cursor.current.get(), is(-1L));
+        assertTrue(cursor.publish(2L, third));
+        assertThat(cursor.current.get(), is(-1L));
+
+        // Filling the gap should make all of them visible ...
+        assertTrue(cursor.publish(first));
+        assertThat(cursor.current.get(), is(3L));
+
+        // Complete and check that no more positions are published ...
+        cursor.complete();
+        assertTrue(cursor.isComplete());
+        assertThat(cursor.publish(cursor.claim()), is(false));
+        assertThat(cursor.current.get(), is(3L));
+    }
+
+    @Test
+    public void shouldConsumeEntriesFromMultipleProducersUsingBlockingWaitStrategy() throws Exception {
+        consumeEntriesFromMultipleProducers("blocking", new BlockingWaitStrategy(), 8, 2000, false);
+    }
+
+    @Test
+    public void shouldConsumeEntriesFromMultipleProducersUsingParkingWaitStrategy() throws Exception {
+        consumeEntriesFromMultipleProducers("parking", new ParkingWaitStrategy(), 8, 2000, false);
+    }
+
+    @Test
+    public void shouldConsumeEntriesFromMultipleProducersUsingYieldingWaitStrategy() throws Exception {
+        consumeEntriesFromMultipleProducers("yielding", new YieldingWaitStrategy(), 8, 2000, false);
+    }
+
+    @Test
+    public void shouldConsumeEntriesFromMultipleProducersUsingBusySpinWaitStrategy() throws Exception {
+        consumeEntriesFromMultipleProducers("spinning", new BusySpinWaitStrategy(), 4, 2000, false);
+    }
+
+    @Test
+    public void shouldConsumeBatchesFromMultipleProducers() throws Exception {
+        consumeEntriesFromMultipleProducers("blocking (batches)", new BlockingWaitStrategy(), 8, 2000, true);
+    }
+
+    @Test
+    public void shouldDispatchToManyConsumersUsingSharedThreads() throws Exception {
+        CountingExecutor executor = new CountingExecutor();
+        RingBuffer<Long, Consumer<Long>> ringBuffer = RingBufferBuilder.withSingleProducer(executor, Long.class).ofSize(8)
+                                                                       .garbageCollect(true).sharedConsumerThreads(2).build();
+        // Add 10 entries with no consumers ...
+        long value = 0L;
+        for (int i = 0; i != 10; ++i) {
+            ringBuffer.add(value++);
+        }
+
+        // Add lots of consumers that should start seeing items 10 and up ...
+        MonotonicallyIncreasingConsumer[] consumers = new MonotonicallyIncreasingConsumer[50];
+        for (int i = 0; i != consumers.length; ++i) {
+            consumers[i] = new MonotonicallyIncreasingConsumer("consumer" + i, 10L, 10L, 0);
+            assertTrue(ringBuffer.addConsumer(consumers[i]));
+        }
+        assertThat(ringBuffer.addConsumer(consumers[0]), is(false));
+
+        // Add a consumer that should start seeing items 1010 and up ...
+        for (int i = 0; i != 1000; ++i) {
+            ringBuffer.add(value++);
+        }
+        MonotonicallyIncreasingConsumer late = new MonotonicallyIncreasingConsumer("late", 1010L, 1010L, 0);
+        assertTrue(ringBuffer.addConsumer(late));
+        for (int i = 0; i != 1000; ++i) {
+            ringBuffer.add(value++);
+        }
+
+        ringBuffer.shutdown();
+        assertThat(ringBuffer.hasConsumers(), is(false));
+        --value;
+        for (MonotonicallyIncreasingConsumer consumer : consumers) {
+            assertTrue(consumer.isClosed());
+            assertThat(consumer.getLastValue(), is(value));
+        }
+        assertTrue(late.isClosed());
+        assertThat(late.getLastValue(), is(value));
+
+        // Only the garbage collector and the two shared threads should have been started ...
+        assertThat(executor.getCount(), is(3));
+    }
+
+    @Test
+    public void shouldRemoveAndIsolateConsumersWhenUsingSharedThreads() throws Exception {
+        CountingExecutor executor = new CountingExecutor();
+        RingBuffer<Long, Consumer<Long>> ringBuffer = RingBufferBuilder.withMultipleProducers(executor, Long.class).ofSize(8)
+                                                                       .sharedConsumerThreads(1).build();
+        MonotonicallyIncreasingConsumer consumer1 = new MonotonicallyIncreasingConsumer("first", 0L, 0L, 0);
+        MonotonicallyIncreasingConsumer consumer2 = new MonotonicallyIncreasingConsumer("second", 0L, 0L, 0);
+        MonotonicallyIncreasingConsumer isolated = new MonotonicallyIncreasingConsumer("isolated", 0L, 0L, 0);
+        assertTrue(ringBuffer.addConsumer(consumer1));
+        assertTrue(ringBuffer.addConsumer(consumer2));
+        assertTrue(ringBuffer.addIsolatedConsumer(isolated));
+        assertThat(ringBuffer.addIsolatedConsumer(consumer1), is(false));
+        assertThat(ringBuffer.addConsumer(isolated), is(false));
+
+        long value = 0L;
+        for (int i = 0; i != 100; ++i) {
+            ringBuffer.add(value++);
+        }
+        // Removing a consumer from a shared thread does not wait for the thread's current batch ...
+        assertTrue(ringBuffer.remove(consumer2));
+        long lastValueBeforeRemoval = value - 1;
+        for (int i = 0; i != 100; ++i) {
+            ringBuffer.add(value++);
+        }
+
+        ringBuffer.shutdown();
+        --value;
+        assertThat(consumer1.getLastValue(), is(value));
+        assertThat(isolated.getLastValue(), is(value));
+        // The removed consumer must not have seen any of the entries added after it was removed ...
+        assertTrue(consumer2.getLastValue() <= lastValueBeforeRemoval);
+        assertTrue(consumer2.isClosed());
+        assertTrue(consumer1.isClosed());
+        assertTrue(isolated.isClosed());
+
+        // Only the shared thread and the isolated consumer's thread should have been started ...
+        assertThat(executor.getCount(), is(2));
+    }
+
+    protected void consumeEntriesFromMultipleProducers( String strategyName,
+                                                        WaitStrategy waitStrategy,
+                                                        int numProducers,
+                                                        final int entriesPerProducer,
+                                                        final boolean batches ) throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            final RingBuffer<Long, Consumer<Long>> ringBuffer = RingBufferBuilder.withMultipleProducers(executor, Long.class)
+                                                                                 .ofSize(64).garbageCollect(true)
+                                                                                 .waitUsing(waitStrategy).build();
+            CountingConsumer consumer1 = new CountingConsumer();
+            CountingConsumer consumer2 = new CountingConsumer();
+            ringBuffer.addConsumer(consumer1);
+            ringBuffer.addConsumer(consumer2);
+
+            // Have each producer add a distinct range of values ...
+            final CountDownLatch startLatch = new CountDownLatch(1);
+            final CountDownLatch stopLatch = new CountDownLatch(numProducers);
+            for (int p = 0; p != numProducers; ++p) {
+                final long firstValue = p * entriesPerProducer;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            startLatch.await();
+                            long value = firstValue;
+                            while (value != firstValue + entriesPerProducer) {
+                                if (batches) {
+                                    ringBuffer.add(new Long[] {value++, value++});
+                                } else {
+                                    ringBuffer.add(value++);
+                                }
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.interrupted();
+                        } finally {
+                            stopLatch.countDown();
+                        }
+                    }
+                });
+            }
+
+            Stopwatch sw = new Stopwatch();
+            sw.start();
+            startLatch.countDown();
+            assertTrue(stopLatch.await(30, TimeUnit.SECONDS));
+            sw.stop();
+            ringBuffer.shutdown();
+
+            long count = numProducers * entriesPerProducer;
+            long sum = count * (count - 1) / 2;
+            for (CountingConsumer consumer : new CountingConsumer[] {consumer1, consumer2}) {
+                assertTrue(consumer.isClosed());
+                assertThat(consumer.getCount(), is(count));
+                assertThat(consumer.getSum(), is(sum));
+            }
+            print("Time for " + numProducers + " producers to add " + count + " entries while consumers are " + strategyName
+                  + ": " + sw.getTotalDuration());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     protected void print( String message ) {
         if (print) System.out.println(message);
     }
@@ -363,6 +565,59 @@ public class RingBufferTest {
         }
     }
 
+    protected class CountingConsumer extends Consumer<Long> {
+        private long count = 0L;
+        private long sum = 0L;
+        private long lastPosition = -1L;
+        private volatile boolean closed = false;
+
+        @Override
+        public boolean consume( Long entry,
+                                long position,
+                                long max ) {
+            assertTrue(!closed);
+            // Every position should be seen exactly once and in order, regardless of which producer added it ...
+            assertTrue(lastPosition == -1L || position == (lastPosition + 1));
+            lastPosition = position;
+            ++count;
+            sum += entry.longValue();
+            return true;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            closed = true;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+
+    protected static class CountingExecutor implements Executor {
+        private final Executor delegate = Executors.newCachedThreadPool();
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void execute( Runnable command ) {
+            count.incrementAndGet();
+            delegate.execute(command);
+        }
+
+        public int getCount() {
+            return count.get();
+        }
+    }
+
     private static class LongConsumerAdapter implements RingBuffer.ConsumerAdapter<Long, MonotonicallyIncreasingConsumer> {
         protected static final LongConsumerAdapter INSTANCE = new LongConsumerAdapter();
 
@@ -78,6 +78,25 @@ public interface RepositoryManager {
      */
     Problems backupRepository( File backupDirectory ) throws RepositoryException;
 
+    /**
+     * Begin an incremental backup operation, writing to the specified directory on the local file system the files containing
+     * only the content that changed since a previous (full or incremental) backup. Incremental backups require that the
+     * repository's journal be enabled and that it still contain the changes made since the previous backup.
+     * <p>
+     * As with {@link #backupRepository(File) full backups}, the repository can continue to be used during the backup.
+     * </p>
+     * 
+     * @param backupDirectory the directory on the local file system into which all backup files will be written; this directory
+     *        need not exist, but the process must have write privilege for this directory
+     * @param previousBackupDirectory the directory on the local file system containing the previous backup upon which the
+     *        incremental backup is based; may not be null
+     * @return the problems that occurred during the backup operation
+     * @throws AccessDeniedException if the current session does not have sufficient privileges to perform the backup
+     * @throws RepositoryException if the backup cannot be run
+     */
+    Problems backupRepository( File backupDirectory,
+                               File previousBackupDirectory ) throws RepositoryException;
+
     /**
      * Begin a restore operation of the entire repository, reading the backup files in the specified directory on the local file
      * system. Upon completion of the restore operation, the repository will be restarted automatically.
@@ -99,4 +118,20 @@ public interface RepositoryManager {
      */
     Problems restoreRepository( File backupDirectory ) throws RepositoryException;
 
+    /**
+     * Begin a restore operation of the entire repository, reading the files of a full backup and then the files of each of the
+     * incremental backups based upon it. Upon completion of the restore operation, the repository will be restarted automatically.
+     * The same restrictions apply as for {@link #restoreRepository(File)}.
+     * 
+     * @param backupDirectory the directory on the local file system in which all files of a full backup exist
+     * @param incrementalBackupDirectories the directories on the local file system containing the incremental backups made after
+     *        the full backup, in the order in which they were made; each must have been made by
+     *        {@link #backupRepository(File, File)} with the preceding backup
+     * @return the problems that occurred during the restore operation
+     * @throws AccessDeniedException if the current session does not have sufficient privileges to perform the restore
+     * @throws RepositoryException if the restoration cannot be run
+     */
+    Problems restoreRepository( File backupDirectory,
+                                File... incrementalBackupDirectories ) throws RepositoryException;
+
 }
@@ -15,9 +15,20 @@
  */
 package org.modeshape.jcr.api;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.Future;
 import javax.jcr.AccessDeniedException;
+import javax.jcr.ImportUUIDBehavior;
+import javax.jcr.InvalidSerializedDataException;
+import javax.jcr.ItemExistsException;
+import javax.jcr.NoSuchWorkspaceException;
+import javax.jcr.PathNotFoundException;
 import javax.jcr.RepositoryException;
+import javax.jcr.UnsupportedRepositoryOperationException;
+import javax.jcr.lock.LockException;
+import javax.jcr.nodetype.ConstraintViolationException;
+import javax.jcr.version.VersionException;
 import org.modeshape.jcr.api.federation.FederationManager;
 import org.modeshape.jcr.api.nodetype.NodeTypeManager;
 import org.modeshape.jcr.api.query.QueryManager;
@@ -107,5 +118,101 @@ public interface Workspace extends javax.jcr.Workspace {
      */
     Future<Boolean> reindexAsync( String path ) throws RepositoryException;
 
+    /**
+     * Import a large amount of system view or document view XML content under the existing node at the supplied path, writing
+     * the new nodes directly to the workspace in batches rather than accumulating them in a session. This uses far less memory
+     * than {@link #importXML(String, InputStream, int)}, but it is only meant for loading large amounts of new content:
+     * <ul>
+     * <li>only the {@link ImportUUIDBehavior#IMPORT_UUID_CREATE_NEW} and {@link ImportUUIDBehavior#IMPORT_UUID_COLLISION_THROW}
+     * behaviors are supported;</li>
+     * <li>the imported nodes are not validated against their node types, so the content must already be valid;</li>
+     * <li>versionable and shared nodes cannot be imported;</li>
+     * <li>none of the new content is visible until all of it has been written, but content written before a failure is not
+     * removed; and</li>
+     * <li>the events for the new nodes are generated only after all of the content is written, in batches of the given size.</li>
+     * </ul>
+     * 
+     * @param parentAbsPath the absolute path of the existing node under which the content is to be imported; may not be null
+     * @param in the stream containing the XML content; may not be null, and is always closed by this method
+     * @param uuidBehavior either {@link ImportUUIDBehavior#IMPORT_UUID_CREATE_NEW} or
+     *        {@link ImportUUIDBehavior#IMPORT_UUID_COLLISION_THROW}
+     * @param batchSize the maximum number of documents written in each transaction; must be positive
+     * @throws IOException if there is a problem reading the stream
+     * @throws PathNotFoundException if there is no node at the supplied path
+     * @throws ItemExistsException if the {@link ImportUUIDBehavior#IMPORT_UUID_COLLISION_THROW} behavior is used and an
+     *         imported node has the same identifier as an existing node
+     * @throws ConstraintViolationException if the content contains nodes that cannot be bulk imported
+     * @throws VersionException if the parent node is checked in
+     * @throws InvalidSerializedDataException if the content is not valid XML
+     * @throws UnsupportedRepositoryOperationException if the UUID behavior is not supported by bulk imports
+     * @throws AccessDeniedException if the session does not have the privileges to add nodes under the parent
+     * @throws RepositoryException if there is a problem with this session or workspace
+     * @since 4.0
+     */
+    void importXMLInBulk( String parentAbsPath,
+                          InputStream in,
+                          int uuidBehavior,
+                          int batchSize ) throws IOException, RepositoryException;
+
+    /**
+     * Copy the subgraph at the supplied path in the named workspace to the supplied path in this workspace, writing the new
+     * nodes directly to this workspace in batches rather than creating them in a session. This uses far less memory than
+     * {@link #copy(String, String, String)} and does not hold locks on the new content while it is being written, but it is only
+     * meant for copying large subgraphs:
+     * <ul>
+     * <li>the subgraph cannot contain external, shared or versionable nodes;</li>
+     * <li>the new nodes are not validated against their node types, other than the new top node against its parent;</li>
+     * <li>none of the copy is visible until all of it has been written, but content written before a failure is not removed;
+     * and</li>
+     * <li>the events for the new nodes are generated only after all of the content is written, in batches of the given size.</li>
+     * </ul>
+     * 
+     * @param srcWorkspace the name of the workspace containing the subgraph; may not be null
+     * @param srcAbsPath the absolute path of the top node of the subgraph; may not be null
+     * @param destAbsPath the absolute path of the new top node, which may not have a same-name-sibling index; may not be null
+     * @param batchSize the maximum number of documents written in each transaction; must be positive
+     * @throws NoSuchWorkspaceException if there is no workspace with the supplied name
+     * @throws PathNotFoundException if there is no node at the source path or no parent for the destination path
+     * @throws ConstraintViolationException if the subgraph contains nodes that cannot be copied in bulk, or if the parent cannot
+     *         have the new top node as a child
+     * @throws VersionException if the destination parent node is checked in
+     * @throws LockException if the source node or the destination parent node is locked
+     * @throws AccessDeniedException if the session cannot read the subgraph or add nodes under the destination parent
+     * @throws RepositoryException if there is a problem with this session or workspace
+     * @since 4.0
+     */
+    void copyInBulk( String srcWorkspace,
+                     String srcAbsPath,
+                     String destAbsPath,
+                     int batchSize ) throws RepositoryException;
+
+    /**
+     * Clone the subgraph at the supplied path in another workspace to the supplied path in this workspace, writing the new nodes
+     * directly to this workspace in batches rather than creating them in a session. The new nodes have the same identifiers as
+     * the source nodes. This has the same limitations as {@link #copyInBulk(String, String, String, int)}, and in addition it
+     * never removes existing nodes: it fails if a node with the same identifier as a source node already exists in this
+     * workspace.
+     * 
+     * @param srcWorkspace the name of the workspace containing the subgraph, which may not be this workspace; may not be null
+     * @param srcAbsPath the absolute path of the top node of the subgraph; may not be null
+     * @param destAbsPath the absolute path of the new top node, which may not have a same-name-sibling index; may not be null
+     * @param batchSize the maximum number of documents written in each transaction; must be positive
+     * @throws NoSuchWorkspaceException if there is no workspace with the supplied name
+     * @throws PathNotFoundException if there is no node at the source path or no parent for the destination path
+     * @throws ItemExistsException if a node with the same identifier as one of the source nodes exists in this workspace
+     * @throws ConstraintViolationException if the subgraph contains nodes that cannot be cloned in bulk, or if the parent cannot
+     *         have the new top node as a child
+     * @throws VersionException if the destination parent node is checked in
+     * @throws LockException if the source node or the destination parent node is locked
+     * @throws UnsupportedRepositoryOperationException if the source workspace is this workspace
+     * @throws AccessDeniedException if the session cannot read the subgraph or add nodes under the destination parent
+     * @throws RepositoryException if there is a problem with this session or workspace
+     * @since 4.0
+     */
+    void cloneInBulk( String srcWorkspace,
+                      String srcAbsPath,
+                      String destAbsPath,
+                      int batchSize ) throws RepositoryException;
+
     FederationManager getFederationManager() throws RepositoryException;
 }
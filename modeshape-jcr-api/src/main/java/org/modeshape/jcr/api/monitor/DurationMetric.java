@@ -44,7 +44,64 @@ public enum DurationMetric {
      * instances are strings containing the sequencer name and the input and output paths.
      */
     SEQUENCER_EXECUTION_TIME("sequencer-execution-time", "Sequencing duration",
-                             "The metric measuring how long sequencers take to run and save the changes.");
+                             "The metric measuring how long sequencers take to run and save the changes."),
+    /**
+     * The metric that captures the duration of journal commits. Note that the payload of the {@link DurationActivity} instances
+     * contains the number of records committed in the batch.
+     */
+    JOURNAL_COMMIT_TIME("journal-commit-time", "Journal commit duration",
+                        "The metric measuring how long it takes the journal to commit a batch of records to disk."),
+    /**
+     * The metric that captures the duration of {@link Session#save() session saves}, in microseconds. Note that the payload of
+     * the {@link DurationActivity} instances are the session user IDs.
+     * 
+     * @since 4.0
+     */
+    SESSION_SAVE_TIME("session-save-time", "Save duration", "The metric measuring how long sessions take to save their changes."),
+    /**
+     * The metric that captures the duration of reading a document from the document store, in microseconds.
+     * 
+     * @since 4.0
+     */
+    DOCUMENT_STORE_READ_TIME("document-store-read-time", "Document read duration",
+                             "The metric measuring how long it takes to read a document from the document store."),
+    /**
+     * The metric that captures the duration of writing a document to the document store, in microseconds.
+     * 
+     * @since 4.0
+     */
+    DOCUMENT_STORE_WRITE_TIME("document-store-write-time", "Document write duration",
+                              "The metric measuring how long it takes to write or remove a document in the document store."),
+    /**
+     * The metric that captures the duration of opening a stream to a binary value in the binary store, in microseconds.
+     * 
+     * @since 4.0
+     */
+    BINARY_STORE_READ_TIME("binary-store-read-time", "Binary read duration",
+                           "The metric measuring how long it takes to open a binary value in the binary store."),
+    /**
+     * The metric that captures the duration of storing a binary value in the binary store, in microseconds.
+     * 
+     * @since 4.0
+     */
+    BINARY_STORE_WRITE_TIME("binary-store-write-time", "Binary write duration",
+                            "The metric measuring how long it takes to store a binary value in the binary store."),
+    /**
+     * The metric that captures the duration of updating an index with a set of changes, in microseconds. Note that the payload
+     * of the {@link DurationActivity} instances contains the name of the index provider.
+     * 
+     * @since 4.0
+     */
+    INDEX_UPDATE_TIME("index-update-time", "Index update duration",
+                      "The metric measuring how long it takes to update an index with the changes from a save."),
+    /**
+     * The metric that captures the duration of dispatching a set of changes to the change bus, in microseconds. This includes
+     * the time spent in listeners that are notified in the saving thread.
+     * 
+     * @since 4.0
+     */
+    CHANGE_BUS_DISPATCH_TIME("change-bus-dispatch-time", "Change dispatch duration",
+                             "The metric measuring how long it takes to dispatch the changes from a save to the listeners.");
 
     private static final Map<String, DurationMetric> BY_LITERAL;
     private static final Map<String, DurationMetric> BY_NAME;
@@ -18,12 +18,13 @@ package org.modeshape.jcr.api.monitor;
 
 /**
  * The immutable statistics for a sample of values. The statistics include the {@link #getMinimum() minimum},
- * {@link #getMaximum() maximum}, {@link #getMean() mean (average)}, {@link #getVariance() variance} and
- * {@link #getStandardDeviation() standard deviation}.
+ * {@link #getMaximum() maximum}, {@link #getMean() mean (average)}, {@link #getVariance() variance},
+ * {@link #getStandardDeviation() standard deviation} and {@link #getPercentile(double) percentiles}.
  * <p>
- * The median value is not included in these statistics, since the median value cannot be rolled up given a series of statistics
- * without having the original values. It is possible to compute the weighted median, but this loses effectiveness/value the more
- * times it is rolled up.
+ * Percentiles (including the median) cannot be rolled up exactly given a series of statistics without having the original
+ * values. Instead, the sampled values are counted in buckets whose width grows with the magnitude of the values, and percentiles
+ * are estimated from those counts with a relative error of a few percent. Unlike a weighted median, this estimate does not lose
+ * accuracy the more times it is rolled up.
  * </p>
  * 
  * @since 3.0
@@ -77,4 +78,15 @@ public interface Statistics {
      * @return the standard deviation; never negative
      */
     double getStandardDeviation();
+
+    /**
+     * Get the estimated value below which the given percentage of the sampled values fall. For example, {@code getPercentile(50)}
+     * returns the median and {@code getPercentile(99.9)} returns the value that only one in a thousand samples exceeds.
+     * 
+     * @param percentile the percentage, between 0 and 100
+     * @return the estimated value at the percentile, which is always between the {@link #getMinimum() minimum} and
+     *         {@link #getMaximum() maximum}, or 0 if there are no samples
+     * @since 4.0
+     */
+    long getPercentile( double percentile );
 }
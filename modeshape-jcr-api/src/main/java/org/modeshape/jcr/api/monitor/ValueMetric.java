@@ -99,7 +99,40 @@ public enum ValueMetric {
     /**
      * The metric that records the number of nodes that were sequenced.
      */
-    SEQUENCED_COUNT("sequenced-count", false, "Sequenced nodes", "The number of nodes that were sequenced during the window.");
+    SEQUENCED_COUNT("sequenced-count", false, "Sequenced nodes", "The number of nodes that were sequenced during the window."),
+    /**
+     * The metric that records the number of commits made by the local journal. Together with {@link #JOURNAL_RECORD_COUNT}, this
+     * gives the average size of the journal commit batches.
+     */
+    JOURNAL_COMMIT_COUNT("journal-commit-count", false, "Journal commits",
+                         "The number of times the journal committed records to disk during the window."),
+    /**
+     * The metric that records the number of records written by the local journal.
+     */
+    JOURNAL_RECORD_COUNT("journal-record-count", false, "Journal records",
+                         "The number of records written to the journal during the window."),
+    /**
+     * The metric that records the number of nodes that were added to the indexes while crawling existing content.
+     */
+    REINDEXED_NODE_COUNT("reindexed-node-count", false, "Reindexed nodes",
+                         "The number of existing nodes that were reindexed during the window."),
+    /**
+     * The metric that records the number of nodes that have been found while crawling existing content but that have not yet
+     * been reindexed.
+     */
+    REINDEXING_QUEUE_SIZE("reindexing-queue-size", true, "Reindexing queue size",
+                          "The number of nodes at the end of the window that have yet to be reindexed."),
+    /**
+     * The metric that records the number of queries whose parsed form or plan was found in the query caches. Together with
+     * {@link #QUERY_CACHE_MISS_COUNT}, this gives the hit rate of the query caches.
+     */
+    QUERY_CACHE_HIT_COUNT("query-cache-hit-count", false, "Query cache hits",
+                          "The number of parsed queries and query plans that were reused from the query caches during the window."),
+    /**
+     * The metric that records the number of queries that had to be parsed or planned because they were not in the query caches.
+     */
+    QUERY_CACHE_MISS_COUNT("query-cache-miss-count", false, "Query cache misses",
+                           "The number of queries that had to be parsed or planned during the window.");
 
     private static final Map<String, ValueMetric> BY_LITERAL;
     private static final Map<String, ValueMetric> BY_NAME;
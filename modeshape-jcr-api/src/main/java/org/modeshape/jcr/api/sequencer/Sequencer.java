@@ -82,6 +82,11 @@ public abstract class Sequencer {
 
     private Set<String> acceptedMimeTypesSet = null;
 
+    /**
+     * The priority of the sequencing work of this sequencer, set via reflection
+     */
+    private int priority = 0;
+
     private boolean initialized = false;
 
     /**
@@ -102,6 +107,18 @@ public abstract class Sequencer {
         return name;
     }
 
+    /**
+     * Get the priority of the sequencing work for this sequencer. Pending work for sequencers with a higher priority is processed
+     * before pending work for sequencers with a lower priority, and work with the same priority is processed in the order it was
+     * submitted.
+     * 
+     * @return the priority; 0 by default
+     * @since 4.0
+     */
+    public final int getPriority() {
+        return priority;
+    }
+
     /**
      * Get the name of the repository.
      * 
@@ -0,0 +1,358 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.jcr.security.Privilege;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.NodeCache;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.change.AbstractNodeChange;
+import org.modeshape.jcr.cache.change.Change;
+import org.modeshape.jcr.cache.change.ChangeSet;
+import org.modeshape.jcr.cache.change.ChangeSetListener;
+import org.modeshape.jcr.cache.change.NodeMoved;
+import org.modeshape.jcr.cache.change.WorkspaceRemoved;
+import org.modeshape.jcr.security.SecurityContext;
+import org.modeshape.jcr.security.SimplePrincipal;
+import org.modeshape.jcr.value.Path;
+
+/**
+ * A repository-wide cache of the access control lists that are in effect for nodes. Each node is mapped to the {@link EffectiveAcl
+ * ACL} of its nearest ancestor-or-self that has one, in which the privileges of each principal are compiled into a bitmask. This
+ * turns the permission check for a node into a few map lookups and bit tests, rather than a walk up the hierarchy and the creation
+ * of a {@link org.modeshape.jcr.security.acl.JcrAccessControlList} with its {@link Privilege} objects.
+ * <p>
+ * The cache only reflects the persisted content, so it should not be used by sessions with transient changes. It is registered
+ * (in-thread) with the change bus, and is invalidated whenever a saved change affects an ACL or moves a node (and thereby may
+ * change the nearest ACL of the nodes below it). The entries are kept per workspace, since the nodes in the system workspace
+ * inherit the ACL of the root node of each workspace.
+ * </p>
+ */
+@ThreadSafe
+final class AccessControlCache implements ChangeSetListener {
+
+    /**
+     * The maximum number of nodes for which the effective ACL is cached; when exceeded, all entries are discarded.
+     */
+    static final int MAX_CACHED_NODES = 100000;
+
+    /**
+     * The bitmask returned by {@link #privilegesFor(String...)} when an action does not correspond to a privilege.
+     */
+    static final int UNKNOWN_PRIVILEGES = -1;
+
+    private static final int ADD_CHILD_NODES = 1 << 0;
+    private static final int LIFECYCLE_MANAGEMENT = 1 << 1;
+    private static final int LOCK_MANAGEMENT = 1 << 2;
+    private static final int MODIFY_ACCESS_CONTROL = 1 << 3;
+    private static final int MODIFY_PROPERTIES = 1 << 4;
+    private static final int NODE_TYPE_MANAGEMENT = 1 << 5;
+    private static final int READ = 1 << 6;
+    private static final int READ_ACCESS_CONTROL = 1 << 7;
+    private static final int REMOVE_CHILD_NODES = 1 << 8;
+    private static final int REMOVE_NODE = 1 << 9;
+    private static final int RETENTION_MANAGEMENT = 1 << 10;
+    private static final int VERSION_MANAGEMENT = 1 << 11;
+    private static final int WRITE = 1 << 12;
+    private static final int ALL = 1 << 13;
+
+    /**
+     * The privileges granted by the default ACL (which applies when no node has an ACL) to sessions that can write.
+     */
+    static final int ALL_PRIVILEGES = (ALL << 1) - 1;
+
+    /**
+     * The privileges granted by the default ACL to read-only sessions.
+     */
+    static final int READ_ONLY_PRIVILEGES = READ | READ_ACCESS_CONTROL;
+
+    /**
+     * The privileges included in each privilege, by its local name. As in {@link org.modeshape.jcr.security.acl.PrivilegeImpl},
+     * an aggregate privilege includes itself and all of its aggregated privileges, but a set of privileges does not include the
+     * aggregate privilege that aggregates them.
+     */
+    private static final Map<String, Integer> PRIVILEGES_BY_LOCAL_NAME = new HashMap<>();
+    private static final Map<String, Integer> PRIVILEGES_BY_ACTION = new HashMap<>();
+
+    static {
+        PRIVILEGES_BY_LOCAL_NAME.put(localName(Privilege.JCR_ADD_CHILD_NODES), ADD_CHILD_NODES);
+        PRIVILEGES_BY_LOCAL_NAME.put(localName(Privilege.JCR_LIFECYCLE_MANAGEMENT), LIFECYCLE_MANAGEMENT);
+        PRIVILEGES_BY_LOCAL_NAME.put(localName(Privilege.JCR_LOCK_MANAGEMENT), LOCK_MANAGEMENT);
+        PRIVILEGES_BY_LOCAL_NAME.put(localName(Privilege.JCR_MODIFY_ACCESS_CONTROL), MODIFY_ACCESS_CONTROL);
+        PRIVILEGES_BY_LOCAL_NAME.put(localName(Privilege.JCR_MODIFY_PROPERTIES), MODIFY_PROPERTIES);
+        PRIVILEGES_BY_LOCAL_NAME.put(localName(Privilege.JCR_NODE_TYPE_MANAGEMENT), NODE_TYPE_MANAGEMENT);
+        PRIVILEGES_BY_LOCAL_NAME.put(localName(Privilege.JCR_READ), READ);
+        PRIVILEGES_BY_LOCAL_NAME.put(localName(Privilege.JCR_READ_ACCESS_CONTROL), READ_ACCESS_CONTROL);
+        PRIVILEGES_BY_LOCAL_NAME.put(localName(Privilege.JCR_REMOVE_CHILD_NODES), REMOVE_CHILD_NODES);
+        PRIVILEGES_BY_LOCAL_NAME.put(localName(Privilege.JCR_REMOVE_NODE), REMOVE_NODE);
+        PRIVILEGES_BY_LOCAL_NAME.put(localName(Privilege.JCR_RETENTION_MANAGEMENT), RETENTION_MANAGEMENT);
+        PRIVILEGES_BY_LOCAL_NAME.put(localName(Privilege.JCR_VERSION_MANAGEMENT), VERSION_MANAGEMENT);
+        PRIVILEGES_BY_LOCAL_NAME.put(localName(Privilege.JCR_WRITE), WRITE | MODIFY_PROPERTIES | ADD_CHILD_NODES | REMOVE_NODE
+                                                                     | REMOVE_CHILD_NODES);
+        PRIVILEGES_BY_LOCAL_NAME.put(localName(Privilege.JCR_ALL), ALL_PRIVILEGES);
+
+        // These are the actions that have a privilege (see Privileges) ...
+        PRIVILEGES_BY_ACTION.put(ModeShapePermissions.ADD_NODE, ADD_CHILD_NODES);
+        PRIVILEGES_BY_ACTION.put(ModeShapePermissions.MODIFY_ACCESS_CONTROL, MODIFY_ACCESS_CONTROL);
+        PRIVILEGES_BY_ACTION.put(ModeShapePermissions.SET_PROPERTY, MODIFY_PROPERTIES);
+        PRIVILEGES_BY_ACTION.put(ModeShapePermissions.REGISTER_TYPE, NODE_TYPE_MANAGEMENT);
+        PRIVILEGES_BY_ACTION.put(ModeShapePermissions.READ, READ);
+        PRIVILEGES_BY_ACTION.put(ModeShapePermissions.READ_ACCESS_CONTROL, READ_ACCESS_CONTROL);
+        PRIVILEGES_BY_ACTION.put(ModeShapePermissions.REMOVE_CHILD_NODES, REMOVE_CHILD_NODES);
+        PRIVILEGES_BY_ACTION.put(ModeShapePermissions.REMOVE, REMOVE_NODE);
+    }
+
+    private static String localName( String expandedName ) {
+        return expandedName.substring(expandedName.indexOf('}') + 1);
+    }
+
+    /**
+     * Get the bitmask of the privileges that are required to perform all of the supplied actions.
+     * 
+     * @param actions the {@link ModeShapePermissions actions}; may not be null
+     * @return the bitmask, or {@link #UNKNOWN_PRIVILEGES} if any of the actions does not correspond to a privilege
+     */
+    static int privilegesFor( String... actions ) {
+        int privileges = 0;
+        for (String action : actions) {
+            Integer privilege = PRIVILEGES_BY_ACTION.get(action);
+            if (privilege == null) return UNKNOWN_PRIVILEGES;
+            privileges |= privilege;
+        }
+        return privileges;
+    }
+
+    /**
+     * The effective ACL for nodes that have no ACL on themselves or any of their ancestors.
+     */
+    static final EffectiveAcl NO_ACL = new EffectiveAcl(new String[0], new int[0], true);
+
+    private final ConcurrentMap<String, ConcurrentMap<NodeKey, Entry>> entriesByWorkspace = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Get the ACL that is in effect for the supplied node.
+     * 
+     * @param workspaceName the name of the workspace in which the node is being accessed; may not be null
+     * @param node the node; may not be null
+     * @param cache the cache used to find the ancestors of the node; may not be null and should have no transient changes
+     * @return the effective ACL, which is {@link #NO_ACL} if neither the node nor any of its ancestors has an ACL; never null
+     */
+    EffectiveAcl effectiveAclFor( String workspaceName,
+                                  CachedNode node,
+                                  NodeCache cache ) {
+        ConcurrentMap<NodeKey, Entry> entries = entriesFor(workspaceName);
+        // Read the generation before the content, so that anything computed from content that is changed concurrently
+        // will never be used ...
+        long generation = this.generation.get();
+        Entry entry = entries.get(node.getKey());
+        if (entry != null && entry.generation == generation) return entry.acl;
+
+        // Walk up the hierarchy until we find a node that has an ACL or whose effective ACL is already known ...
+        List<NodeKey> uncachedKeys = new ArrayList<>();
+        EffectiveAcl acl = null;
+        CachedNode current = node;
+        while (acl == null) {
+            uncachedKeys.add(current.getKey());
+            Map<String, Set<String>> permissions = current.getPermissions(cache);
+            if (permissions != null) {
+                acl = compile(permissions);
+                break;
+            }
+            NodeKey parentKey = current.getParentKey(cache);
+            current = parentKey != null ? cache.getNode(parentKey) : null;
+            if (current == null) {
+                // We reached the root or a missing parent ...
+                acl = NO_ACL;
+                break;
+            }
+            entry = entries.get(current.getKey());
+            if (entry != null && entry.generation == generation) acl = entry.acl;
+        }
+
+        // Record the effective ACL for all of the nodes we've visited ...
+        entry = new Entry(generation, acl);
+        for (NodeKey key : uncachedKeys) {
+            entries.put(key, entry);
+        }
+        if (size.addAndGet(uncachedKeys.size()) > MAX_CACHED_NODES) {
+            size.set(0);
+            entriesByWorkspace.clear();
+        }
+        return acl;
+    }
+
+    private ConcurrentMap<NodeKey, Entry> entriesFor( String workspaceName ) {
+        ConcurrentMap<NodeKey, Entry> entries = entriesByWorkspace.get(workspaceName);
+        if (entries == null) {
+            entries = new ConcurrentHashMap<>();
+            ConcurrentMap<NodeKey, Entry> existing = entriesByWorkspace.putIfAbsent(workspaceName, entries);
+            if (existing != null) entries = existing;
+        }
+        return entries;
+    }
+
+    private static EffectiveAcl compile( Map<String, Set<String>> permissions ) {
+        String[] principals = new String[permissions.size()];
+        int[] privileges = new int[principals.length];
+        boolean resolved = true;
+        int i = 0;
+        for (Map.Entry<String, Set<String>> entry : permissions.entrySet()) {
+            principals[i] = entry.getKey();
+            for (String name : entry.getValue()) {
+                Integer privilege = privilegeNamed(name);
+                if (privilege == null) {
+                    resolved = false;
+                    break;
+                }
+                privileges[i] |= privilege;
+            }
+            ++i;
+        }
+        return new EffectiveAcl(principals, privileges, resolved);
+    }
+
+    /**
+     * Get the privileges for the supplied name, which is resolved as in {@link org.modeshape.jcr.security.acl.Privileges#forName}
+     * for a session in which "jcr" is the prefix of the JCR namespace.
+     * 
+     * @param name the privilege name stored in the ACL
+     * @return the privilege bitmask, or null if the name does not resolve to a privilege
+     */
+    private static Integer privilegeNamed( String name ) {
+        int index = name.indexOf('}');
+        if (index != -1) return PRIVILEGES_BY_LOCAL_NAME.get(name.substring(index + 1));
+        index = name.indexOf(':');
+        if (index != -1 && name.startsWith(JcrLexicon.Namespace.PREFIX + ":")) {
+            return PRIVILEGES_BY_LOCAL_NAME.get(name.substring(index + 1));
+        }
+        return null;
+    }
+
+    @Override
+    public void notify( ChangeSet changeSet ) {
+        for (Change change : changeSet) {
+            if (affectsAcls(change)) {
+                invalidate();
+                return;
+            }
+        }
+    }
+
+    private boolean affectsAcls( Change change ) {
+        if (change instanceof NodeMoved || change instanceof WorkspaceRemoved) {
+            return true;
+        }
+        if (change instanceof AbstractNodeChange) {
+            // Anything done to an ACL node or its permission nodes ...
+            Path path = ((AbstractNodeChange)change).getPath();
+            if (path != null) {
+                for (Path.Segment segment : path) {
+                    if (segment.getName().equals(ModeShapeLexicon.ACCESS_LIST_NODE_NAME)) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Discard all of the cached ACLs, including those being computed by other threads.
+     */
+    void invalidate() {
+        generation.incrementAndGet();
+        size.set(0);
+        entriesByWorkspace.clear();
+    }
+
+    @Immutable
+    private static final class Entry {
+        protected final long generation;
+        protected final EffectiveAcl acl;
+
+        protected Entry( long generation,
+                         EffectiveAcl acl ) {
+            this.generation = generation;
+            this.acl = acl;
+        }
+    }
+
+    /**
+     * The compiled form of the ACL in effect for a node, with the privileges of each principal as a bitmask.
+     */
+    @Immutable
+    static final class EffectiveAcl {
+        private final String[] principals;
+        private final int[] privileges;
+        private final boolean resolved;
+
+        protected EffectiveAcl( String[] principals,
+                                int[] privileges,
+                                boolean resolved ) {
+            this.principals = principals;
+            this.privileges = privileges;
+            this.resolved = resolved;
+        }
+
+        /**
+         * Determine whether all of the privilege names in this ACL are known. If not, the permissions should be checked with a
+         * {@link org.modeshape.jcr.security.acl.JcrAccessControlList}, which handles unknown names.
+         * 
+         * @return true if all the privilege names are known, or false otherwise
+         */
+        boolean isResolved() {
+            return resolved;
+        }
+
+        /**
+         * Determine whether this ACL grants the supplied privileges in the given security context. As with
+         * {@link org.modeshape.jcr.security.acl.JcrAccessControlList#hasPrivileges}, an empty ACL grants all privileges, and
+         * otherwise a single entry (for everyone, the user, or one of the user's roles) must grant all of the privileges.
+         * 
+         * @param requiredPrivileges the bitmask of the required privileges
+         * @param context the security context; may not be null
+         * @return true if the privileges are granted, or false otherwise
+         */
+        boolean grants( int requiredPrivileges,
+                        SecurityContext context ) {
+            if (principals.length == 0) return true;
+            String userName = null;
+            for (int i = 0; i != principals.length; ++i) {
+                if ((privileges[i] & requiredPrivileges) != requiredPrivileges) continue;
+                String principal = principals[i];
+                if (principal.equals(SimplePrincipal.EVERYONE.getName())) return true;
+                if (userName == null) userName = userName(context.getUserName());
+                if (principal.equals(userName) || context.hasRole(principal)) return true;
+            }
+            return false;
+        }
+
+        private static String userName( String userName ) {
+            return (userName.startsWith("<") && userName.endsWith(">")) ? userName.substring(1, userName.length() - 1) : userName;
+        }
+    }
+}
@@ -73,10 +73,18 @@ public class AccessControlManagerImpl implements AccessControlManager {
     // default access list granted all permissions to everyone.
     private final JcrAccessControlList defaultACL;
 
+    // the privileges granted to everyone by the default access list
+    private final int defaultPrivileges;
+
+    // the repository-wide cache of the compiled access lists in effect for the persisted nodes
+    private final AccessControlCache aclCache;
+
     protected AccessControlManagerImpl( JcrSession session ) {
         this.session = session;
         this.privileges = new Privileges(session);
         this.defaultACL = JcrAccessControlList.defaultAcl(this);
+        this.defaultPrivileges = session.isReadOnly() ? AccessControlCache.READ_ONLY_PRIVILEGES : AccessControlCache.ALL_PRIVILEGES;
+        this.aclCache = session.repository().runningState().accessControlCache();
     }
 
     /**
@@ -310,6 +318,24 @@ public class AccessControlManagerImpl implements AccessControlManager {
 
     protected boolean hasPermission( Path absPath,
                                      String... actions ) {
+        try {
+            // use the compiled access list if it reflects what this session sees and it can answer the question
+            int requiredPrivileges = AccessControlCache.privilegesFor(actions);
+            if (requiredPrivileges != AccessControlCache.UNKNOWN_PRIVILEGES && !session.cache().hasChanges()
+                && JcrLexicon.Namespace.PREFIX.equals(session.getNamespacePrefix(JcrLexicon.Namespace.URI))) {
+                CachedNode node = session.cachedNode(absPath, false);
+                AccessControlCache.EffectiveAcl acl = aclCache.effectiveAclFor(session.workspaceName(), node, session.cache());
+                if (acl == AccessControlCache.NO_ACL) {
+                    return (defaultPrivileges & requiredPrivileges) == requiredPrivileges;
+                }
+                if (acl.isResolved()) {
+                    return acl.grants(requiredPrivileges, securityContext());
+                }
+            }
+        } catch (Exception e) {
+            return true;
+        }
+
         // convert actions to privileges
         Privilege[] permissions = new Privilege[actions.length];
         for (int i = 0; i < actions.length; i++) {
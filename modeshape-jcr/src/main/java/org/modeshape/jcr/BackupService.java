@@ -22,16 +22,27 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.jcr.RepositoryException;
 import javax.transaction.SystemException;
 import org.infinispan.Cache;
@@ -41,19 +52,27 @@ import org.infinispan.schematic.document.Document;
 import org.infinispan.schematic.document.EditableArray;
 import org.infinispan.schematic.document.EditableDocument;
 import org.infinispan.schematic.document.Json;
+import org.joda.time.DateTime;
 import org.modeshape.common.annotation.NotThreadSafe;
 import org.modeshape.common.collection.Problems;
-import org.modeshape.common.collection.SimpleProblems;
+import org.modeshape.common.collection.ThreadSafeProblems;
 import org.modeshape.common.i18n.I18n;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.CheckArg;
 import org.modeshape.common.util.IoUtil;
 import org.modeshape.common.util.NamedThreadFactory;
+import org.modeshape.common.util.StringUtil;
 import org.modeshape.jcr.InfinispanUtil.Sequence;
 import org.modeshape.jcr.JcrRepository.RunningState;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.RepositoryCache;
+import org.modeshape.jcr.cache.change.BinaryValueUnused;
+import org.modeshape.jcr.cache.change.Change;
+import org.modeshape.jcr.cache.document.DocumentConstants;
+import org.modeshape.jcr.cache.document.DocumentTranslator;
 import org.modeshape.jcr.cache.document.LocalDocumentStore;
+import org.modeshape.jcr.journal.ChangeJournal;
+import org.modeshape.jcr.journal.JournalRecord;
 import org.modeshape.jcr.value.BinaryKey;
 import org.modeshape.jcr.value.BinaryValue;
 import org.modeshape.jcr.value.binary.BinaryStore;
@@ -70,6 +89,7 @@ public class BackupService {
     protected static final String BINARY_AREA_DIR_NAME = "binaries";
     protected static final String DOCUMENTS_FILENAME_PREFIX = "documents";
     protected static final String SUMMARY_FILE_NAME = "summary_of_changes.json";
+    protected static final String BACKUP_INFO_FILE_NAME = "backup_info.json";
     protected static final String BINARY_EXTENSION = ".bin";
     protected static final int NUM_CHARS_IN_FILENAME_SUFFIX = 6;
 
@@ -80,14 +100,49 @@ public class BackupService {
     public static final long DEFAULT_NUMBER_OF_DOCUMENTS_IN_BACKUP_FILES = 100000L;
     public static final boolean DEFAULT_COMPRESS = true;
 
+    /**
+     * By default, the documents are written into as many partitions as there are processors (but no more than 8), each by its
+     * own thread and into its own set of files.
+     */
+    public static final int DEFAULT_NUMBER_OF_PARTITIONS = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * The number of documents a thread restoring a partition reads before storing them all at once.
+     */
+    protected static final int RESTORE_BATCH_SIZE = 1000;
+
+    /**
+     * The maximum number of items that may be waiting to be processed by each of the partition's threads.
+     */
+    protected static final int PARTITION_QUEUE_SIZE = 1000;
+
+    /**
+     * The watermark of a backup made while journaling was disabled, which cannot be followed by an incremental backup.
+     */
+    protected static final long NO_WATERMARK = -1L;
+
     protected static class FieldName {
         public static final String UNUSED_BINARY_KEYS = "unusedBinaryKeys";
+        public static final String TYPE = "type";
+        public static final String WATERMARK = "watermark";
+        public static final String PREVIOUS_WATERMARK = "previousWatermark";
+        public static final String REMOVED_DOCUMENT_KEYS = "removedDocumentKeys";
+        public static final String PARTITIONS = "partitions";
+        public static final String PREFIX = "prefix";
+        public static final String DOCUMENT_COUNT = "documents";
+        public static final String FILE_COUNT = "files";
+    }
+
+    protected static class BackupType {
+        public static final String FULL = "full";
+        public static final String INCREMENTAL = "incremental";
     }
 
     private final RunningState runningState;
     private final LocalDocumentStore documentStore;
     private final BinaryStore binaryStore;
     private final RepositoryCache repositoryCache;
+    private final ChangeJournal journal;
 
     protected BackupService( RunningState runningState ) {
         this.runningState = runningState;
@@ -95,6 +150,7 @@ public class BackupService {
         documentStore = this.runningState.documentStore().localStore();
         binaryStore = this.runningState.binaryStore();
         repositoryCache = this.runningState.repositoryCache();
+        journal = this.runningState.journal();
     }
 
     /**
@@ -128,9 +184,70 @@ public class BackupService {
     public org.modeshape.jcr.api.Problems backupRepository( File backupDirectory,
                                                             long documentsPerFile,
                                                             boolean compress ) throws RepositoryException {
+        return backupRepository(backupDirectory, documentsPerFile, compress, DEFAULT_NUMBER_OF_PARTITIONS);
+    }
+
+    /**
+     * Start asynchronously backing up the repository, using the given number of threads to write the documents into separate
+     * partitions of the backup (which will then be restored concurrently).
+     * 
+     * @param backupDirectory the directory on the file system into which the backup should be placed; this directory should
+     *        typically not exist
+     * @param documentsPerFile the maximum number of documents to place within a single backup file; must be positive
+     * @param compress true if the backup files should be compressed, or false otherwise
+     * @param partitions the number of partitions into which the documents are to be written; must be positive
+     * @return the problems that occurred during the backup process
+     * @throws RepositoryException if the backup operation cannot be run
+     */
+    public org.modeshape.jcr.api.Problems backupRepository( File backupDirectory,
+                                                            long documentsPerFile,
+                                                            boolean compress,
+                                                            int partitions ) throws RepositoryException {
         // Create the activity ...
-        final BackupActivity backupActivity = createBackupActivity(backupDirectory, documentsPerFile, compress);
+        return runBackup(createBackupActivity(backupDirectory, documentsPerFile, compress, partitions));
+    }
 
+    /**
+     * Start asynchronously backing up the changes made to the repository since a previous (full or incremental) backup, using
+     * the repository's journal to find the changed documents. Restoring an incremental backup requires the full backup and all
+     * incremental backups made after it.
+     * 
+     * @param backupDirectory the directory on the file system into which the backup should be placed; this directory should
+     *        typically not exist
+     * @param previousBackupDirectory the directory on the file system containing the backup upon which the new backup is to be
+     *        based; may not be null
+     * @return the problems that occurred during the backup process
+     * @throws RepositoryException if the backup operation cannot be run
+     */
+    public org.modeshape.jcr.api.Problems backupRepository( File backupDirectory,
+                                                            File previousBackupDirectory ) throws RepositoryException {
+        return backupRepository(backupDirectory, previousBackupDirectory, DEFAULT_NUMBER_OF_DOCUMENTS_IN_BACKUP_FILES,
+                                DEFAULT_COMPRESS);
+    }
+
+    /**
+     * Start asynchronously backing up the changes made to the repository since a previous (full or incremental) backup, using
+     * the repository's journal to find the changed documents. Restoring an incremental backup requires the full backup and all
+     * incremental backups made after it.
+     * 
+     * @param backupDirectory the directory on the file system into which the backup should be placed; this directory should
+     *        typically not exist
+     * @param previousBackupDirectory the directory on the file system containing the backup upon which the new backup is to be
+     *        based; may not be null
+     * @param documentsPerFile the maximum number of documents to place within a single backup file; must be positive
+     * @param compress true if the backup files should be compressed, or false otherwise
+     * @return the problems that occurred during the backup process
+     * @throws RepositoryException if the backup operation cannot be run
+     */
+    public org.modeshape.jcr.api.Problems backupRepository( File backupDirectory,
+                                                            File previousBackupDirectory,
+                                                            long documentsPerFile,
+                                                            boolean compress ) throws RepositoryException {
+        CheckArg.isNotNull(previousBackupDirectory, "previousBackupDirectory");
+        return runBackup(createIncrementalBackupActivity(backupDirectory, previousBackupDirectory, documentsPerFile, compress));
+    }
+
+    private org.modeshape.jcr.api.Problems runBackup( BackupActivity backupActivity ) throws RepositoryException {
         //suspend any existing transactions
         try {
             if (runningState.suspendExistingUserTransaction()) {
@@ -152,19 +269,26 @@ public class BackupService {
      * 
      * @param repository the JCR repository to be backed up; may not be null
      * @param backupDirectory the directory on the file system that contains the backup; this directory obviously must exist
+     * @param incrementalBackupDirectories the directories on the file system that contain the incremental backups to be restored
+     *        after the backup in <code>backupDirectory</code>, in the order they were made; may be empty
      * @return the problems that occurred during the restore process
      * @throws RepositoryException if the restoration operation cannot be run
      */
     public org.modeshape.jcr.api.Problems restoreRepository( final JcrRepository repository,
-                                                             final File backupDirectory ) throws RepositoryException {
+                                                             final File backupDirectory,
+                                                             final File... incrementalBackupDirectories )
+        throws RepositoryException {
         final String backupLocString = backupDirectory.getAbsolutePath();
         LOGGER.debug("Beginning restore of '{0}' repository from {1}", repository.getName(), backupLocString);
+        // Create the activity, and make sure the backups can be restored before touching the repository ...
+        final RestoreActivity restoreActivity = createRestoreActivity(backupDirectory, incrementalBackupDirectories);
+        if (!restoreActivity.verifyIncrementalBackups()) {
+            return new JcrProblems(restoreActivity.problems);
+        }
+
         // Put the repository into the 'restoring' state ...
         repository.prepareToRestore();
 
-        // Create the activity ...
-        final RestoreActivity restoreActivity = createRestoreActivity(backupDirectory);
-
         org.modeshape.jcr.api.Problems problems = null;
         try {
             if (runningState.suspendExistingUserTransaction()) {
@@ -203,7 +327,46 @@ public class BackupService {
     public BackupActivity createBackupActivity( File backupDirectory,
                                                 long documentsPerFile,
                                                 boolean compress ) {
-        return new BackupActivity(backupDirectory, documentStore, binaryStore, repositoryCache, documentsPerFile, compress);
+        return createBackupActivity(backupDirectory, documentsPerFile, compress, DEFAULT_NUMBER_OF_PARTITIONS);
+    }
+
+    /**
+     * Create a new {@link BackupActivity activity} instance that can back up the content of the repository as it exists at the
+     * time the activity is executed, writing the documents into the given number of partitions.
+     * 
+     * @param backupDirectory the directory on the file system into which the backup should be placed; this directory should
+     *        typically not exist
+     * @param documentsPerFile the maximum number of documents to place within a single backup file; must be positive
+     * @param compress true if the backup files should be compressed, or false otherwise
+     * @param partitions the number of partitions into which the documents are to be written; must be positive
+     * @return the backup activity; never null
+     */
+    public BackupActivity createBackupActivity( File backupDirectory,
+                                                long documentsPerFile,
+                                                boolean compress,
+                                                int partitions ) {
+        return new BackupActivity(backupDirectory, documentStore, binaryStore, repositoryCache, journal, documentsPerFile,
+                                  compress, partitions);
+    }
+
+    /**
+     * Create a new {@link IncrementalBackupActivity activity} instance that can back up the changes made to the repository since
+     * a previous backup.
+     * 
+     * @param backupDirectory the directory on the file system into which the backup should be placed; this directory should
+     *        typically not exist
+     * @param previousBackupDirectory the directory on the file system containing the backup upon which the new backup is to be
+     *        based; may not be null
+     * @param documentsPerFile the maximum number of documents to place within a single backup file; must be positive
+     * @param compress true if the backup files should be compressed, or false otherwise
+     * @return the backup activity; never null
+     */
+    public IncrementalBackupActivity createIncrementalBackupActivity( File backupDirectory,
+                                                                      File previousBackupDirectory,
+                                                                      long documentsPerFile,
+                                                                      boolean compress ) {
+        return new IncrementalBackupActivity(backupDirectory, previousBackupDirectory, documentStore, binaryStore,
+                                             repositoryCache, journal, documentsPerFile, compress, DEFAULT_NUMBER_OF_PARTITIONS);
     }
 
     /**
@@ -211,10 +374,151 @@ public class BackupService {
      * exists in the specified backup directory.
      * 
      * @param backupDirectory the directory on the file system that contains the backup; this directory obviously must exist
+     * @param incrementalBackupDirectories the directories on the file system that contain the incremental backups to be restored
+     *        after the backup in <code>backupDirectory</code>, in the order they were made; may be empty
      * @return the restore activity; never null
      */
-    public RestoreActivity createRestoreActivity( File backupDirectory ) {
-        return new RestoreActivity(backupDirectory, documentStore, binaryStore, repositoryCache);
+    public RestoreActivity createRestoreActivity( File backupDirectory,
+                                                  File... incrementalBackupDirectories ) {
+        return new RestoreActivity(backupDirectory, Arrays.asList(incrementalBackupDirectories), documentStore, binaryStore,
+                                   repositoryCache);
+    }
+
+    /**
+     * Read the document describing the backup in the supplied directory.
+     * 
+     * @param backupDirectory the backup directory; may not be null
+     * @return the document, or null if the directory contains no such document (e.g., because the backup was made by an older
+     *         version) or it could not be read
+     */
+    protected static Document readBackupInfo( File backupDirectory ) {
+        File file = new File(backupDirectory, BACKUP_INFO_FILE_NAME);
+        if (!file.exists() || !file.canRead()) return null;
+        try {
+            InputStream stream = new FileInputStream(file);
+            try {
+                return Json.read(stream);
+            } finally {
+                stream.close();
+            }
+        } catch (Exception e) {
+            LOGGER.debug(e, "Unable to read the backup information in {0}", file.getAbsolutePath());
+            return null;
+        }
+    }
+
+    /**
+     * Get the prefix of the names of the files containing the documents in the given partition of a backup.
+     * 
+     * @param partition the zero-based number of the partition
+     * @return the filename prefix; never null
+     */
+    protected static String partitionFilenamePrefix( int partition ) {
+        return DOCUMENTS_FILENAME_PREFIX + "_part" + StringUtil.justifyRight(Integer.toString(partition), 3, '0');
+    }
+
+    /**
+     * Work that is split into a fixed number of partitions, where the items in each partition are processed in order by a single
+     * thread. Items are handed to the partitions through bounded queues, so the thread producing the items never gets too far
+     * ahead of the threads processing them.
+     * 
+     * @param <T> the type of item
+     */
+    protected static abstract class PartitionedWork<T> {
+        private static final Object END = new Object();
+
+        private final ExecutorService executor;
+        private final List<BlockingQueue<Object>> queues;
+        private final List<Future<?>> futures;
+
+        protected PartitionedWork( ExecutorService executor,
+                                   int partitions ) {
+            this.executor = executor;
+            this.queues = new ArrayList<BlockingQueue<Object>>(partitions);
+            this.futures = new ArrayList<Future<?>>(partitions);
+            for (int i = 0; i != partitions; ++i) {
+                queues.add(new ArrayBlockingQueue<Object>(PARTITION_QUEUE_SIZE));
+            }
+        }
+
+        /**
+         * Start the threads that process the items in each of the partitions.
+         */
+        public final void start() {
+            for (int i = 0; i != queues.size(); ++i) {
+                final int partition = i;
+                final BlockingQueue<Object> queue = queues.get(i);
+                futures.add(executor.submit(new Callable<Void>() {
+                    @SuppressWarnings( "unchecked" )
+                    @Override
+                    public Void call() throws Exception {
+                        RuntimeException failure = null;
+                        try {
+                            while (true) {
+                                Object item = queue.take();
+                                if (item == END) break;
+                                // After a failure, keep draining the queue so that the producer never blocks ...
+                                if (failure != null) continue;
+                                try {
+                                    process(partition, (T)item);
+                                } catch (RuntimeException e) {
+                                    failure = e;
+                                }
+                            }
+                        } finally {
+                            finished(partition);
+                        }
+                        if (failure != null) throw failure;
+                        return null;
+                    }
+                }));
+            }
+        }
+
+        /**
+         * Add the supplied item to the partition determined by the item's hash code, blocking if that partition has too many
+         * items waiting to be processed.
+         * 
+         * @param item the item; may not be null
+         * @throws InterruptedException if the thread is interrupted while waiting
+         */
+        public final void submit( T item ) throws InterruptedException {
+            queues.get((item.hashCode() & Integer.MAX_VALUE) % queues.size()).put(item);
+        }
+
+        /**
+         * Signal that no more items will be submitted, and wait for all of the partitions to be processed.
+         * 
+         * @throws InterruptedException if the thread is interrupted while waiting
+         * @throws ExecutionException if the processing of any partition failed
+         */
+        public final void finish() throws InterruptedException, ExecutionException {
+            for (BlockingQueue<Object> queue : queues) {
+                queue.put(END);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        /**
+         * Process the supplied item. Implementations should record problems rather than throw exceptions, since an exception
+         * stops the processing of the remaining items in the partition.
+         * 
+         * @param partition the zero-based number of the partition
+         * @param item the item; never null
+         */
+        protected abstract void process( int partition,
+                                         T item );
+
+        /**
+         * Called by the partition's thread after all of the items in the partition have been processed.
+         * 
+         * @param partition the zero-based number of the partition
+         */
+        protected void finished( int partition ) {
+            // do nothing by default
+        }
     }
 
     /**
@@ -228,7 +532,7 @@ public class BackupService {
         protected final File binaryDirectory;
         protected final org.modeshape.jcr.cache.document.LocalDocumentStore documentStore;
         protected final BinaryStore binaryStore;
-        protected final SimpleProblems problems;
+        protected final Problems problems;
         private final String backupLocation;
 
         protected Activity( File backupDirectory,
@@ -242,7 +546,8 @@ public class BackupService {
             this.documentStore = documentStore;
             this.binaryStore = binaryStore;
             this.repositoryCache = repositoryCache;
-            this.problems = new SimpleProblems();
+            // Problems may be recorded by multiple threads ...
+            this.problems = new ThreadSafeProblems();
         }
 
         /**
@@ -268,23 +573,33 @@ public class BackupService {
     public static class BackupActivity extends Activity {
 
         private final BackupObserver observer;
+        protected final ChangeJournal journal;
         protected final ExecutorService changedDocumentWorker;
         protected final BlockingQueue<NodeKey> changedDocumentQueue;
         private final long documentsPerFile;
         private final boolean compress;
+        private final int partitions;
+        private final List<Document> partitionInfos = new ArrayList<Document>();
+        private long partitionDocumentCount;
         private BackupDocumentWriter contentWriter;
         private BackupDocumentWriter changesWriter;
+        protected ExecutorService partitionWorkers;
 
         protected BackupActivity( File backupDirectory,
                                   org.modeshape.jcr.cache.document.LocalDocumentStore documentStore,
                                   BinaryStore binaryStore,
                                   RepositoryCache repositoryCache,
+                                  ChangeJournal journal,
                                   long documentsPerFile,
-                                  boolean compress ) {
+                                  boolean compress,
+                                  int partitions ) {
             super(backupDirectory, documentStore, binaryStore, repositoryCache);
             CheckArg.isPositive(documentsPerFile, "documentsPerFile");
+            CheckArg.isPositive(partitions, "partitions");
+            this.journal = journal;
             this.documentsPerFile = documentsPerFile;
             this.compress = compress;
+            this.partitions = partitions;
             this.changedDocumentQueue = new LinkedBlockingQueue<NodeKey>();
             ThreadFactory threadFactory = new NamedThreadFactory("modeshape-backup");
             this.changedDocumentWorker = Executors.newSingleThreadExecutor(threadFactory);
@@ -372,15 +687,186 @@ public class BackupService {
             }
         }
 
+        /**
+         * Write the document describing this backup, which is used to base an incremental backup on this backup and to check
+         * that a chain of incremental backups is restored in the correct order.
+         * 
+         * @param watermark the time of the latest journal record included in this backup, or {@link BackupService#NO_WATERMARK}
+         */
+        protected void writeBackupInfo( long watermark ) {
+            File file = new File(backupDirectory, BACKUP_INFO_FILE_NAME);
+            try {
+                EditableDocument doc = Schematic.newDocument();
+                doc.setString(FieldName.TYPE, BackupType.FULL);
+                doc.setNumber(FieldName.WATERMARK, watermark);
+                if (!partitionInfos.isEmpty()) {
+                    EditableArray partitionArray = doc.setArray(FieldName.PARTITIONS);
+                    for (Document partitionInfo : partitionInfos) {
+                        partitionArray.add(partitionInfo);
+                    }
+                }
+                addBackupInfo(doc);
+                OutputStream outputStream = new FileOutputStream(file);
+                try {
+                    Json.write(doc, outputStream);
+                    outputStream.flush();
+                } finally {
+                    outputStream.close();
+                }
+            } catch (Throwable t) {
+                problems.addError(JcrI18n.problemsWritingDocumentToBackup, file.getAbsolutePath(), t.getMessage());
+            }
+        }
+
+        /**
+         * Add to the document describing this backup any information specific to the kind of backup.
+         * 
+         * @param backupInfo the document describing the backup; never null
+         */
+        protected void addBackupInfo( EditableDocument backupInfo ) {
+            // nothing to add for a full backup
+        }
+
+        /**
+         * Determine the time of the latest record in the journal. Every change made after this time will be in the journal
+         * records newer than the returned watermark.
+         * 
+         * @return the watermark, which is 0 if the journal is empty or {@link BackupService#NO_WATERMARK} if there is no journal
+         */
+        protected long journalWatermark() {
+            if (journal == null) return NO_WATERMARK;
+            JournalRecord lastRecord = journal.lastRecord();
+            return lastRecord != null ? lastRecord.getChangeTimeMillis() : 0L;
+        }
+
+        /**
+         * Write to the content area the documents that are to be included in the backup. The keys are partitioned by their hash,
+         * and the documents in each partition are read and written (to the partition's own files) by a separate thread.
+         * 
+         * @throws Exception if there is a problem obtaining the documents
+         */
+        protected void writeDocuments() throws Exception {
+            final BackupDocumentWriter[] writers = openPartitionWriters();
+            PartitionedWork<String> work = new PartitionedWork<String>(partitionWorkers, partitions) {
+                @Override
+                protected void process( int partition,
+                                        String key ) {
+                    SchematicEntry entry = documentStore.get(key);
+                    if (entry != null) writers[partition].write(entry.asDocument());
+                }
+
+                @Override
+                protected void finished( int partition ) {
+                    writers[partition].close();
+                }
+            };
+            work.start();
+            try {
+                Sequence<String> sequence = InfinispanUtil.getAllKeys(documentStore.localCache());
+                while (true) {
+                    String key = sequence.next();
+                    if (key == null) break;
+                    work.submit(key);
+                }
+            } finally {
+                work.finish();
+            }
+
+            recordPartitions(writers);
+        }
+
+        /**
+         * Create a writer for each of the partitions of the documents in this backup.
+         * 
+         * @return the writers, one per partition; never null
+         */
+        protected final BackupDocumentWriter[] openPartitionWriters() {
+            BackupDocumentWriter[] writers = new BackupDocumentWriter[partitions];
+            for (int i = 0; i != partitions; ++i) {
+                writers[i] = new BackupDocumentWriter(backupDirectory, partitionFilenamePrefix(i), documentsPerFile, compress,
+                                                      problems);
+            }
+            return writers;
+        }
+
+        /**
+         * Record in the information about this backup the documents written by each of the (closed) partition writers, so that
+         * the partitions can be restored concurrently.
+         * 
+         * @param writers the writers, one per partition; may not be null
+         */
+        protected final void recordPartitions( BackupDocumentWriter[] writers ) {
+            long counter = 0L;
+            for (int i = 0; i != writers.length; ++i) {
+                BackupDocumentWriter writer = writers[i];
+                partitionInfos.add(Schematic.newDocument(FieldName.PREFIX, partitionFilenamePrefix(i), FieldName.DOCUMENT_COUNT,
+                                                         writer.getDocumentCount(), FieldName.FILE_COUNT, writer.getFileCount()));
+                counter += writer.getDocumentCount();
+            }
+            partitionDocumentCount += counter;
+            LOGGER.debug("Wrote {0} documents in {1} partitions to {2}", counter, writers.length,
+                         backupDirectory.getAbsolutePath());
+        }
+
+        /**
+         * Write to the content area the binary values that are to be included in the backup.
+         */
+        protected void writeBinaries() {
+            try {
+                writeBinaries(binaryStore.getAllBinaryKeys());
+            } catch (BinaryStoreException e) {
+                I18n msg = JcrI18n.problemsGettingBinaryKeysFromBinaryStore;
+                problems.addError(msg, repositoryName(), backupLocation(), e.getMessage());
+            }
+        }
+
+        protected final void writeBinaries( Iterable<BinaryKey> binaryKeys ) {
+            final AtomicLong counter = new AtomicLong();
+            PartitionedWork<BinaryKey> work = new PartitionedWork<BinaryKey>(partitionWorkers, partitions) {
+                @Override
+                protected void process( int partition,
+                                        BinaryKey binaryKey ) {
+                    try {
+                        writeToContentArea(binaryKey, binaryStore.getInputStream(binaryKey));
+                        counter.incrementAndGet();
+                    } catch (BinaryStoreException e) {
+                        problems.addError(JcrI18n.problemsWritingBinaryToBackup, binaryKey, backupLocation(), e.getMessage());
+                    }
+                }
+            };
+            work.start();
+            try {
+                try {
+                    for (BinaryKey binaryKey : binaryKeys) {
+                        work.submit(binaryKey);
+                    }
+                } finally {
+                    work.finish();
+                }
+            } catch (InterruptedException e) {
+                Thread.interrupted();
+                problems.addError(JcrI18n.interruptedWhilePerformingBackup, repositoryName(), backupLocation(), e.getMessage());
+            } catch (ExecutionException e) {
+                I18n msg = JcrI18n.problemObtainingDocumentsToBackup;
+                problems.addError(e.getCause(), msg, repositoryName(), backupLocation(), e.getCause().getMessage());
+            }
+            LOGGER.debug("Wrote {0} binary values to {1}", counter.get(), binaryDirectory.getAbsolutePath());
+        }
+
         @Override
         public Problems execute() {
             // initialize the area on disk where we'll be writing ...
             if (!initializeAreaOnDisk()) return problems;
 
+            // Every change made from now on will be in the journal records newer than this watermark ...
+            long watermark = journalWatermark();
+
             LOGGER.debug("Starting backup of '{0}' repository into {1}", repositoryName(), backupLocation());
 
             this.contentWriter = new BackupDocumentWriter(backupDirectory, DOCUMENTS_FILENAME_PREFIX, documentsPerFile, compress,
                                                           problems);
+            ThreadFactory partitionThreadFactory = new NamedThreadFactory("modeshape-backup-partition");
+            this.partitionWorkers = Executors.newFixedThreadPool(partitions, partitionThreadFactory);
             this.changesWriter = new BackupDocumentWriter(changeDirectory, DOCUMENTS_FILENAME_PREFIX, documentsPerFile, compress,
                                                           problems);
             long numBinaryValues = 0L;
@@ -431,18 +917,7 @@ public class BackupService {
                 try {
                     // PHASE 1:
                     // Perform the backup of the repository cache content ...
-                    int counter = 0;
-                    Sequence<String> sequence = InfinispanUtil.getAllKeys(documentStore.localCache());
-                    while (true) {
-                        String key = sequence.next();
-                        if (key == null) break;
-                        SchematicEntry entry = documentStore.get(key);
-                        if (entry != null) {
-                            writeToContentArea(entry);
-                            ++counter;
-                        }
-                    }
-                    LOGGER.debug("Wrote {0} documents to {1}", counter, backupDirectory.getAbsolutePath());
+                    writeDocuments();
 
                     // PHASE 2:
                     // Write out the repository metadata document (which may have not changed) ...
@@ -466,21 +941,7 @@ public class BackupService {
 
                 // PHASE 3:
                 // Perform the backup of the binary store ...
-                try {
-                    int counter = 0;
-                    for (BinaryKey binaryKey : binaryStore.getAllBinaryKeys()) {
-                        try {
-                            writeToContentArea(binaryKey, binaryStore.getInputStream(binaryKey));
-                            ++counter;
-                        } catch (BinaryStoreException e) {
-                            problems.addError(JcrI18n.problemsWritingBinaryToBackup, binaryKey, backupLocation(), e.getMessage());
-                        }
-                    }
-                    LOGGER.debug("Wrote {0} binary values to {1}", counter, binaryDirectory.getAbsolutePath());
-                } catch (BinaryStoreException e) {
-                    I18n msg = JcrI18n.problemsGettingBinaryKeysFromBinaryStore;
-                    problems.addError(msg, repositoryName(), backupLocation(), e.getMessage());
-                }
+                writeBinaries();
 
                 // PHASE 4:
                 // Write all of the binary files that were added during the changes made while we worked ...
@@ -502,9 +963,14 @@ public class BackupService {
                 // Wait for the changes to be written
                 changesLatch.await(30, TimeUnit.SECONDS);
 
+                // PHASE 6:
+                // Record the watermark, so that an incremental backup can be based on this backup ...
+                writeBackupInfo(watermark);
+
                 LOGGER.debug("Completed backup of '{0}' repository into {1} (contains {2} nodes and {3} binary values)",
                              repositoryName(), backupLocation(),
-                             contentWriter.getDocumentCount() + changesWriter.getDocumentCount(), numBinaryValues);
+                             contentWriter.getDocumentCount() + partitionDocumentCount + changesWriter.getDocumentCount(),
+                             numBinaryValues);
 
             } catch (InterruptedException e) {
                 Thread.interrupted();
@@ -513,8 +979,9 @@ public class BackupService {
             } catch (CancellationException e) {
                 this.problems.addError(JcrI18n.backupOperationWasCancelled, repositoryName(), backupLocation(), e.getMessage());
             } finally {
-                // PHASE 5:
-                // Close all open writers ...
+                // PHASE 7:
+                // Close all open writers and stop the partition workers ...
+                partitionWorkers.shutdownNow();
                 try {
                     contentWriter.close();
                 } finally {
@@ -531,30 +998,330 @@ public class BackupService {
         }
     }
 
+    /**
+     * The {@link BackupActivity} subclass that backs up only the documents and binary values that changed since a previous
+     * backup. The {@link ChangeJournal journal} is used to find the nodes that changed after the previous backup's watermark, and
+     * for each such node the backup contains the node's document, the documents holding the node's blocks of child references,
+     * and the binary values referenced by the node. The keys of the nodes that no longer exist are recorded in the backup's
+     * information document, so that they can be removed upon restore.
+     */
+    @NotThreadSafe
+    public static class IncrementalBackupActivity extends BackupActivity {
+
+        private final File previousBackupDirectory;
+        private final Set<BinaryKey> binaryKeys = new HashSet<BinaryKey>();
+        private final Set<String> removedDocumentKeys = new LinkedHashSet<String>();
+        private BackupDocumentWriter[] partitionWriters;
+        private long previousWatermark = NO_WATERMARK;
+
+        protected IncrementalBackupActivity( File backupDirectory,
+                                             File previousBackupDirectory,
+                                             LocalDocumentStore documentStore,
+                                             BinaryStore binaryStore,
+                                             RepositoryCache repositoryCache,
+                                             ChangeJournal journal,
+                                             long documentsPerFile,
+                                             boolean compress,
+                                             int partitions ) {
+            super(backupDirectory, documentStore, binaryStore, repositoryCache, journal, documentsPerFile, compress, partitions);
+            this.previousBackupDirectory = previousBackupDirectory;
+        }
+
+        @Override
+        public Problems execute() {
+            String previousLocation = previousBackupDirectory.getAbsolutePath();
+            if (journal == null) {
+                problems.addError(JcrI18n.incrementalBackupRequiresJournaling, repositoryName(), backupLocation());
+                return problems;
+            }
+            Document previousInfo = readBackupInfo(previousBackupDirectory);
+            previousWatermark = previousInfo != null ? previousInfo.getLong(FieldName.WATERMARK, NO_WATERMARK) : NO_WATERMARK;
+            if (previousWatermark == NO_WATERMARK) {
+                problems.addError(JcrI18n.previousBackupHasNoWatermark, repositoryName(), backupLocation(), previousLocation);
+                return problems;
+            }
+            if (previousWatermark > 0L) {
+                // The journal must still contain the last record included in the previous backup, or some changes were lost ...
+                Iterator<JournalRecord> records = journal.recordsNewerThan(new DateTime(previousWatermark), true, false)
+                                                        .iterator();
+                if (!records.hasNext() || records.next().getChangeTimeMillis() != previousWatermark) {
+                    problems.addError(JcrI18n.journalDoesNotCoverPreviousBackup, repositoryName(), backupLocation(),
+                                      previousLocation);
+                    return problems;
+                }
+            }
+            return super.execute();
+        }
+
+        /**
+         * Write the changed documents, partitioned by the hash of their keys like those of a full backup. Each document is
+         * written at most once, so the partitions can be restored concurrently.
+         */
+        @Override
+        protected void writeDocuments() {
+            DateTime since = previousWatermark > 0L ? new DateTime(previousWatermark) : null;
+            Set<String> writtenKeys = new HashSet<String>();
+            partitionWriters = openPartitionWriters();
+            try {
+                for (JournalRecord record : journal.recordsNewerThan(since, true, false)) {
+                    for (NodeKey nodeKey : record.changedNodes()) {
+                        String key = nodeKey.toString();
+                        if (!writtenKeys.add(key)) continue;
+                        SchematicEntry entry = documentStore.get(key);
+                        if (entry == null) {
+                            removedDocumentKeys.add(key);
+                            continue;
+                        }
+                        removedDocumentKeys.remove(key);
+                        writeNodeDocuments(key, entry, writtenKeys);
+                    }
+                    for (Change change : record) {
+                        if (change instanceof BinaryValueUnused) {
+                            // The reference count of the binary value changed, so include its (possibly removed) usage
+                            // document ...
+                            String sha1 = ((BinaryValueUnused)change).getKey().toString();
+                            writeDocument(DocumentTranslator.keyForBinaryReferenceDocument(sha1), writtenKeys);
+                        }
+                    }
+                }
+            } finally {
+                for (BackupDocumentWriter writer : partitionWriters) {
+                    writer.close();
+                }
+            }
+            recordPartitions(partitionWriters);
+            partitionWriters = null;
+            LOGGER.debug("Wrote {0} changed documents to {1} and recorded {2} removed documents", writtenKeys.size()
+                                                                                                  - removedDocumentKeys.size(),
+                         backupDirectory.getAbsolutePath(), removedDocumentKeys.size());
+        }
+
+        private void writeToPartition( String key,
+                                       SchematicEntry entry ) {
+            partitionWriters[(key.hashCode() & Integer.MAX_VALUE) % partitionWriters.length].write(entry.asDocument());
+        }
+
+        private void writeNodeDocuments( String key,
+                                         SchematicEntry entry,
+                                         Set<String> writtenKeys ) {
+            Document document = entry.getContentAsDocument();
+            writeToPartition(key, entry);
+            collectBinaryKeys(document, writtenKeys);
+
+            // The node's child references may be segmented into blocks that are stored in separate documents ...
+            Document childrenInfo = document.getDocument(DocumentConstants.CHILDREN_INFO);
+            if (childrenInfo == null) return;
+            writeDocument(childrenInfo.getString(DocumentConstants.BLOCK_DIRECTORY), writtenKeys);
+            String nextBlockKey = childrenInfo.getString(DocumentConstants.NEXT_BLOCK);
+            while (nextBlockKey != null && writtenKeys.add(nextBlockKey)) {
+                SchematicEntry block = documentStore.get(nextBlockKey);
+                if (block == null) break;
+                writeToPartition(nextBlockKey, block);
+                Document blockInfo = block.getContentAsDocument().getDocument(DocumentConstants.CHILDREN_INFO);
+                nextBlockKey = blockInfo != null ? blockInfo.getString(DocumentConstants.NEXT_BLOCK) : null;
+            }
+        }
+
+        private void writeDocument( String key,
+                                    Set<String> writtenKeys ) {
+            if (key == null || !writtenKeys.add(key)) return;
+            SchematicEntry entry = documentStore.get(key);
+            if (entry != null) {
+                writeToPartition(key, entry);
+            } else {
+                removedDocumentKeys.add(key);
+            }
+        }
+
+        private void collectBinaryKeys( Document document,
+                                        Set<String> writtenKeys ) {
+            for (Document.Field field : document.fields()) {
+                Object value = field.getValue();
+                if (value instanceof Document) {
+                    Document nested = (Document)value;
+                    String sha1 = nested.getString(DocumentConstants.SHA1_FIELD);
+                    if (sha1 != null) {
+                        binaryKeys.add(new BinaryKey(sha1));
+                        writeDocument(DocumentTranslator.keyForBinaryReferenceDocument(sha1), writtenKeys);
+                    } else {
+                        collectBinaryKeys(nested, writtenKeys);
+                    }
+                }
+            }
+        }
+
+        @Override
+        protected void writeBinaries() {
+            writeBinaries(binaryKeys);
+        }
+
+        @Override
+        protected void addBackupInfo( EditableDocument backupInfo ) {
+            backupInfo.setString(FieldName.TYPE, BackupType.INCREMENTAL);
+            backupInfo.setNumber(FieldName.PREVIOUS_WATERMARK, previousWatermark);
+            EditableArray removed = backupInfo.setArray(FieldName.REMOVED_DOCUMENT_KEYS);
+            for (String key : removedDocumentKeys) {
+                removed.addString(key);
+            }
+        }
+    }
+
     /**
      * The {@link Activity} subclass that performs content restore operations.
      */
     @NotThreadSafe
     public static final class RestoreActivity extends Activity {
 
+        private final List<File> incrementalBackupDirectories;
+        private ExecutorService restoreWorkers;
+
         protected RestoreActivity( File backupDirectory,
+                                   List<File> incrementalBackupDirectories,
                                    org.modeshape.jcr.cache.document.LocalDocumentStore documentStore,
                                    BinaryStore binaryStore,
                                    RepositoryCache repositoryCache ) {
             super(backupDirectory, documentStore, binaryStore, repositoryCache);
+            this.incrementalBackupDirectories = incrementalBackupDirectories;
         }
 
         @Override
         public Problems execute() {
-            removeExistingBinaryFiles();
-            restoreBinaryFiles();
+            if (!verifyIncrementalBackups()) return problems;
 
-            removeExistingDocuments();
-            restoreDocuments(backupDirectory); // first pass of documents
-            restoreDocuments(changeDirectory); // documents changed while backup was being made
+            ThreadFactory threadFactory = new NamedThreadFactory("modeshape-restore");
+            restoreWorkers = Executors.newFixedThreadPool(restoreThreadCount(), threadFactory);
+            try {
+                removeExistingBinaryFiles();
+                restoreBinaryFiles();
+                for (File incrementalDirectory : incrementalBackupDirectories) {
+                    restoreBinaryFiles(new File(incrementalDirectory, BINARY_AREA_DIR_NAME));
+                }
+
+                removeExistingDocuments();
+                restorePartitions(backupDirectory); // first pass of documents, written concurrently
+                restoreDocuments(backupDirectory); // first pass of documents not in a partition
+                restoreDocuments(changeDirectory); // documents changed while backup was being made
+                for (File incrementalDirectory : incrementalBackupDirectories) {
+                    restorePartitions(incrementalDirectory);
+                    restoreDocuments(incrementalDirectory);
+                    restoreDocuments(new File(incrementalDirectory, CHANGED_AREA_DIR_NAME));
+                    removeDocuments(readBackupInfo(incrementalDirectory).getArray(FieldName.REMOVED_DOCUMENT_KEYS));
+                }
+            } finally {
+                restoreWorkers.shutdownNow();
+                restoreWorkers = null;
+            }
             return problems;
         }
 
+        /**
+         * Determine the number of threads used to restore the backup, which is the largest number of partitions in the full
+         * backup or any of the incremental backups.
+         * 
+         * @return the number of threads; always positive
+         */
+        protected int restoreThreadCount() {
+            int count = partitionCount(backupDirectory);
+            for (File incrementalDirectory : incrementalBackupDirectories) {
+                count = Math.max(count, partitionCount(incrementalDirectory));
+            }
+            return Math.max(1, count);
+        }
+
+        private int partitionCount( File directory ) {
+            Document info = readBackupInfo(directory);
+            List<?> partitions = info != null ? info.getArray(FieldName.PARTITIONS) : null;
+            return partitions != null ? partitions.size() : 0;
+        }
+
+        /**
+         * Run all of the supplied tasks, concurrently if this activity is executing, and wait for them to complete.
+         * 
+         * @param tasks the tasks; may not be null
+         */
+        protected void runAll( List<Callable<Void>> tasks ) {
+            try {
+                if (restoreWorkers == null) {
+                    for (Callable<Void> task : tasks) {
+                        task.call();
+                    }
+                    return;
+                }
+                for (Future<Void> future : restoreWorkers.invokeAll(tasks)) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        problems.addError(e.getCause(), JcrI18n.repositoryCannotBeRestored, repositoryName(),
+                                          e.getCause().getMessage());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.interrupted();
+                problems.addError(e, JcrI18n.repositoryCannotBeRestored, repositoryName(), e.getMessage());
+            } catch (Exception e) {
+                problems.addError(e, JcrI18n.repositoryCannotBeRestored, repositoryName(), e.getMessage());
+            }
+        }
+
+        /**
+         * Restore concurrently the partitions of documents described in the backup information within the supplied directory.
+         * 
+         * @param directory the backup directory; may not be null
+         */
+        protected void restorePartitions( final File directory ) {
+            Document info = readBackupInfo(directory);
+            List<?> partitions = info != null ? info.getArray(FieldName.PARTITIONS) : null;
+            if (partitions == null) return;
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(partitions.size());
+            for (Object partition : partitions) {
+                if (!(partition instanceof Document)) continue;
+                final String prefix = ((Document)partition).getString(FieldName.PREFIX);
+                if (prefix == null) continue;
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        restoreDocuments(directory, prefix);
+                        return null;
+                    }
+                });
+            }
+            runAll(tasks);
+        }
+
+        /**
+         * Verify that each of the incremental backups directly follows the backup before it.
+         * 
+         * @return true if the incremental backups can be restored, or false otherwise
+         */
+        protected boolean verifyIncrementalBackups() {
+            if (incrementalBackupDirectories.isEmpty()) return true;
+            File previousDirectory = backupDirectory;
+            Document previousInfo = readBackupInfo(backupDirectory);
+            for (File incrementalDirectory : incrementalBackupDirectories) {
+                Document info = readBackupInfo(incrementalDirectory);
+                long previousWatermark = previousInfo != null ? previousInfo.getLong(FieldName.WATERMARK,
+                                                                                     NO_WATERMARK) : NO_WATERMARK;
+                if (info == null || !BackupType.INCREMENTAL.equals(info.getString(FieldName.TYPE))
+                    || previousWatermark == NO_WATERMARK
+                    || info.getLong(FieldName.PREVIOUS_WATERMARK, NO_WATERMARK) != previousWatermark) {
+                    problems.addError(JcrI18n.incrementalBackupDoesNotFollowPreviousBackup, repositoryName(),
+                                      incrementalDirectory.getAbsolutePath(), previousDirectory.getAbsolutePath());
+                    return false;
+                }
+                previousDirectory = incrementalDirectory;
+                previousInfo = info;
+            }
+            return true;
+        }
+
+        protected void removeDocuments( List<?> keys ) {
+            if (keys == null) return;
+            for (Object key : keys) {
+                if (key instanceof String) documentStore.remove((String)key);
+            }
+            LOGGER.debug("Removed {0} documents", keys.size());
+        }
+
         public void removeExistingBinaryFiles() {
             // simply mark all of the existing binary values as unused; if an unused binary value is restored,
             // it will simply be kept without having store it ...
@@ -596,15 +1363,29 @@ public class BackupService {
         }
 
         public void restoreBinaryFiles() {
-            for (File segment1Dir : binaryDirectory.listFiles()) {
-                for (File segment2Dir : segment1Dir.listFiles()) {
-                    for (File segment3Dir : segment2Dir.listFiles()) {
-                        for (File binaryFile : segment3Dir.listFiles()) {
-                            restoreBinaryFile(binaryFile);
+            restoreBinaryFiles(binaryDirectory);
+        }
+
+        protected void restoreBinaryFiles( File binaryDirectory ) {
+            if (!binaryDirectory.isDirectory()) return;
+            // Each of the (up to 256) top-level directories is restored by a separate task ...
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (final File segment1Dir : binaryDirectory.listFiles()) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (File segment2Dir : segment1Dir.listFiles()) {
+                            for (File segment3Dir : segment2Dir.listFiles()) {
+                                for (File binaryFile : segment3Dir.listFiles()) {
+                                    restoreBinaryFile(binaryFile);
+                                }
+                            }
                         }
+                        return null;
                     }
-                }
+                });
             }
+            runAll(tasks);
         }
 
         public void restoreBinaryFile( File binaryFile ) {
@@ -645,18 +1426,29 @@ public class BackupService {
         }
 
         protected void restoreDocuments( File directory ) {
-            BackupDocumentReader reader = new BackupDocumentReader(directory, DOCUMENTS_FILENAME_PREFIX, problems);
-            LOGGER.debug("Restoring documents from {0}", directory.getAbsolutePath());
+            restoreDocuments(directory, DOCUMENTS_FILENAME_PREFIX);
+        }
+
+        protected void restoreDocuments( File directory,
+                                         String filenamePrefix ) {
+            BackupDocumentReader reader = new BackupDocumentReader(directory, filenamePrefix, problems);
+            LOGGER.debug("Restoring documents from {0}/{1}", directory.getAbsolutePath(), filenamePrefix);
             int count = 0;
+            List<Document> batch = new ArrayList<Document>(RESTORE_BATCH_SIZE);
             while (true) {
                 Document doc = reader.read();
                 if (doc == null) break;
-                documentStore.put(doc);
+                batch.add(doc);
+                if (batch.size() == RESTORE_BATCH_SIZE) {
+                    documentStore.putAll(batch);
+                    batch.clear();
+                }
 
                 ++count;
-                LOGGER.debug("restoring {0} doc {1}", (count + 1), doc);
+                LOGGER.trace("restoring {0} doc {1}", count, doc);
             }
-            LOGGER.debug("Restored {0} documents from {1}", count, directory.getAbsolutePath());
+            if (!batch.isEmpty()) documentStore.putAll(batch);
+            LOGGER.debug("Restored {0} documents from {1}/{2}", count, directory.getAbsolutePath(), filenamePrefix);
         }
     }
 }
@@ -0,0 +1,243 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.RepositoryException;
+import javax.jcr.nodetype.ConstraintViolationException;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.ChildReference;
+import org.modeshape.jcr.cache.NodeCache;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.document.BulkNodeWriter;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.NamespaceRegistry;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.Property;
+import org.modeshape.jcr.value.PropertyFactory;
+import org.modeshape.jcr.value.Reference;
+import org.modeshape.jcr.value.ValueFactories;
+import org.modeshape.jcr.value.basic.NodeKeyReference;
+
+/**
+ * Copies or clones a subgraph of persisted nodes by reading the source documents and writing the new nodes through a
+ * {@link BulkNodeWriter}, rather than creating every new node in a session. The source is walked depth-first, reading the
+ * children of each node a block at a time, so the memory used does not depend on the size of the subgraph.
+ * <p>
+ * Because nothing is held for the whole subgraph, the key of each new node is computed from the key of its source node: a clone
+ * reuses the source identifier in the target workspace, and a copy derives a new identifier from the source identifier and an
+ * identifier that is unique to the copy. References between nodes in the subgraph are then rewritten as each node is written,
+ * without first having to copy the nodes they point to. References to nodes outside the subgraph are resolved the same way
+ * {@link org.modeshape.jcr.cache.MutableCachedNode#deepCopy deepCopy} resolves them.
+ * </p>
+ * <p>
+ * External, shared and versionable nodes need processing that requires a session, so a subgraph that contains any of them
+ * cannot be copied in bulk. Such nodes are found only as the walk reaches them; the documents written before then are left
+ * unreachable, just as they are when any other bulk load fails.
+ * </p>
+ */
+@NotThreadSafe
+class BulkSubtreeCopier {
+
+    private final NodeCache sourceCache;
+    private final NodeCache targetCache;
+    private final BulkNodeWriter writer;
+    private final boolean clone;
+    private final NodeTypes nodeTypes;
+    private final String systemWorkspaceKey;
+    private final String copyId = UUID.randomUUID().toString();
+    private final NamespaceRegistry namespaces;
+    private final PropertyFactory propertyFactory;
+    private final ValueFactories valueFactories;
+    private Path startingPathInSource;
+
+    /**
+     * Create a copier that writes the new nodes with the supplied writer.
+     * 
+     * @param context the context of the session performing the copy; may not be null
+     * @param sourceCache the workspace cache containing the subgraph to be copied; may not be null
+     * @param targetCache the workspace cache into which the subgraph is copied; may not be null
+     * @param writer the writer for the new nodes, whose parent is the parent of the copy; may not be null
+     * @param clone true if the new nodes should have the same identifiers as the source nodes, or false if they should be
+     *        given new identifiers
+     * @param nodeTypes the node types used to find the nodes that cannot be copied in bulk; may not be null
+     * @param systemWorkspaceKey the key of the system workspace; may not be null
+     */
+    BulkSubtreeCopier( ExecutionContext context,
+                       NodeCache sourceCache,
+                       NodeCache targetCache,
+                       BulkNodeWriter writer,
+                       boolean clone,
+                       NodeTypes nodeTypes,
+                       String systemWorkspaceKey ) {
+        this.sourceCache = sourceCache;
+        this.targetCache = targetCache;
+        this.writer = writer;
+        this.clone = clone;
+        this.nodeTypes = nodeTypes;
+        this.systemWorkspaceKey = systemWorkspaceKey;
+        this.namespaces = context.getNamespaceRegistry();
+        this.propertyFactory = context.getPropertyFactory();
+        this.valueFactories = context.getValueFactories();
+    }
+
+    /**
+     * Copy the subgraph at the supplied node to a new child of the writer's parent. The writer still has to be
+     * {@link BulkNodeWriter#finish() finished} to make the copy visible.
+     * 
+     * @param sourceKey the key of the top node of the subgraph to be copied; may not be null
+     * @param name the name of the new top node; may not be null
+     * @return the key of the new top node; never null
+     * @throws ItemNotFoundException if the source node does not exist
+     * @throws ConstraintViolationException if the subgraph contains a node that cannot be copied in bulk
+     * @throws RepositoryException if the subgraph contains a reference that cannot be copied
+     */
+    public NodeKey copy( NodeKey sourceKey,
+                         Name name ) throws RepositoryException {
+        CachedNode source = sourceCache.getNode(sourceKey);
+        if (source == null) {
+            throw new ItemNotFoundException(sourceKey.toString());
+        }
+        startingPathInSource = source.getPath(sourceCache);
+        return copy(source, writer.getParentKey(), name);
+    }
+
+    private NodeKey copy( CachedNode source,
+                          NodeKey targetParentKey,
+                          Name name ) throws RepositoryException {
+        NodeKey sourceKey = source.getKey();
+        Name primaryType = source.getPrimaryType(sourceCache);
+        Set<Name> mixinTypes = source.getMixinTypes(sourceCache);
+        if (nodeTypes.isVersionable(primaryType, mixinTypes)) {
+            throw new ConstraintViolationException(JcrI18n.bulkCopyDoesNotSupportVersionableNodes.text(pathOf(source)));
+        }
+        if (nodeTypes.isShareable(primaryType, mixinTypes)) {
+            throw new ConstraintViolationException(JcrI18n.bulkCopyDoesNotSupportSharedNodes.text(pathOf(source)));
+        }
+
+        NodeKey targetKey = targetKeyFor(sourceKey);
+        writer.addNode(targetParentKey, targetKey, name, propertiesFor(source, targetKey));
+
+        String localSourceKey = sourceCache.getRootKey().getSourceKey();
+        for (ChildReference childReference : source.getChildReferences(sourceCache)) {
+            NodeKey childKey = childReference.getKey();
+            if (systemWorkspaceKey.equals(childKey.getWorkspaceKey())) {
+                // The system content is never copied ...
+                continue;
+            }
+            CachedNode child = sourceCache.getNode(childKey);
+            if (child == null) continue;
+            if (!localSourceKey.equals(childKey.getSourceKey())) {
+                throw new ConstraintViolationException(JcrI18n.bulkCopyDoesNotSupportExternalNodes.text(pathOf(child)));
+            }
+            if (!sourceKey.equals(child.getParentKeyInAnyWorkspace(sourceCache))) {
+                // The child is a share of a node whose primary parent is elsewhere ...
+                throw new ConstraintViolationException(JcrI18n.bulkCopyDoesNotSupportSharedNodes.text(pathOf(child)));
+            }
+            copy(child, targetKey, childReference.getName());
+        }
+        return targetKey;
+    }
+
+    private NodeKey targetKeyFor( NodeKey sourceKey ) {
+        String identifier = sourceKey.getIdentifier();
+        if (!clone) {
+            // Derive a new identifier that is the same for every reference to this source node ...
+            byte[] name = (copyId + identifier).getBytes(StandardCharsets.UTF_8);
+            identifier = UUID.nameUUIDFromBytes(name).toString();
+        }
+        return writer.getParentKey().withId(identifier);
+    }
+
+    private List<Property> propertiesFor( CachedNode source,
+                                          NodeKey targetKey ) throws RepositoryException {
+        List<Property> properties = new ArrayList<>();
+        for (Iterator<Property> iter = source.getProperties(sourceCache); iter.hasNext();) {
+            Property property = iter.next();
+            if (!property.isEmpty() && (property.isReference() || property.isSimpleReference())) {
+                List<Reference> references = new ArrayList<>(property.size());
+                for (Object value : property) {
+                    references.add(resolveReference(source, property.getName(), (Reference)value));
+                }
+                if (property.isMultiple()) {
+                    property = propertyFactory.create(property.getName(), references);
+                } else {
+                    property = propertyFactory.create(property.getName(), references.get(0));
+                }
+            } else if (!clone && JcrLexicon.UUID.equals(property.getName())) {
+                String uuid = JcrSession.nodeIdentifier(targetKey, targetCache.getRootKey());
+                property = propertyFactory.create(property.getName(), uuid);
+            }
+            properties.add(property);
+        }
+        return properties;
+    }
+
+    private Reference resolveReference( CachedNode source,
+                                        Name propertyName,
+                                        Reference referenceInSource ) throws RepositoryException {
+        String referenceStringValue = referenceInSource.getString();
+        NodeKey referenceInSourceKey = null;
+        if (referenceInSource instanceof NodeKeyReference) {
+            referenceInSourceKey = ((NodeKeyReference)referenceInSource).getNodeKey();
+        } else if (NodeKey.isValidFormat(referenceStringValue)) {
+            referenceInSourceKey = new NodeKey(referenceStringValue);
+        } else {
+            referenceInSourceKey = source.getKey().withId(referenceStringValue);
+        }
+
+        if (referenceInSourceKey.getWorkspaceKey().equals(systemWorkspaceKey)) {
+            // in the case of the system workspace, we should preserve references as-is
+            return referenceInSource;
+        }
+
+        NodeKey referenceInTargetKey = null;
+        CachedNode referenced = sourceCache.getNode(referenceInSourceKey);
+        if (referenced != null && referenced.getPath(sourceCache).isAtOrBelow(startingPathInSource)) {
+            // The referenced node is being copied, so refer to its copy ...
+            referenceInTargetKey = targetKeyFor(referenceInSourceKey);
+        } else {
+            referenceInTargetKey = referenceInSourceKey.withWorkspaceKey(writer.getParentKey().getWorkspaceKey());
+            boolean resolvableInTargetWorkspace = targetCache.getNode(referenceInTargetKey) != null;
+            boolean resolvableInSourceWorkspace = referenced != null;
+            if (!resolvableInTargetWorkspace && resolvableInSourceWorkspace) {
+                String path = startingPathInSource.getString(namespaces);
+                throw new RepositoryException(JcrI18n.cannotCopyOrCloneReferenceOutsideGraph.text(propertyName,
+                                                                                                  referenceInSourceKey, path));
+            } else if (!resolvableInSourceWorkspace && !referenceInSource.isWeak() && !referenceInSource.isSimple()) {
+                throw new RepositoryException(JcrI18n.cannotCopyOrCloneCorruptReference.text(propertyName,
+                                                                                             referenceInSourceKey));
+            }
+        }
+        if (referenceInSource.isSimple()) {
+            return valueFactories.getSimpleReferenceFactory().create(referenceInTargetKey, referenceInSource.isForeign());
+        } else if (referenceInSource.isWeak()) {
+            return valueFactories.getWeakReferenceFactory().create(referenceInTargetKey, referenceInSource.isForeign());
+        }
+        return valueFactories.getReferenceFactory().create(referenceInTargetKey, referenceInSource.isForeign());
+    }
+
+    private String pathOf( CachedNode node ) {
+        return node.getPath(sourceCache).getString(namespaces);
+    }
+}
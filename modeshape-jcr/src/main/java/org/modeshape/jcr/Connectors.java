@@ -28,6 +28,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.jcr.NamespaceRegistry;
 import javax.jcr.PathNotFoundException;
@@ -58,10 +61,13 @@ import org.modeshape.jcr.cache.MutableCachedNode;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.SessionCache;
 import org.modeshape.jcr.cache.WorkspaceNotFoundException;
+import org.modeshape.jcr.cache.change.ChangeSet;
+import org.modeshape.jcr.cache.change.ChangeSetListener;
 import org.modeshape.jcr.cache.document.DocumentTranslator;
 import org.modeshape.jcr.cache.document.LocalDocumentStore;
 import org.modeshape.jcr.cache.document.WorkspaceCache;
 import org.modeshape.jcr.federation.ConnectorChangeSetImpl;
+import org.modeshape.jcr.federation.ConnectorDocumentCache;
 import org.modeshape.jcr.spi.federation.Connector;
 import org.modeshape.jcr.spi.federation.ConnectorChangeSet;
 import org.modeshape.jcr.spi.federation.ConnectorChangeSetFactory;
@@ -84,12 +90,20 @@ public final class Connectors {
 
     private static final Logger LOGGER = Logger.getLogger(Connectors.class);
 
+    /**
+     * The number of seconds that documents are kept in a connector's shared document cache, when neither the document cache TTL
+     * nor the workspace cache TTL are configured for the connector.
+     */
+    protected static final int DEFAULT_DOCUMENT_CACHE_TTL_SECONDS = 60;
+
     private final JcrRepository.RunningState repository;
     private final Logger logger;
 
     private boolean initialized = false;
     private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
     private volatile DocumentTranslator translator;
+    private final ConcurrentMap<String, ConnectorDocumentCache> documentCachesBySourceName = new ConcurrentHashMap<>();
+    private final DocumentCacheInvalidator documentCacheInvalidator = new DocumentCacheInvalidator();
 
     protected Connectors( JcrRepository.RunningState repository,
                           Collection<Component> components,
@@ -114,6 +128,10 @@ public final class Connectors {
         createPreconfiguredProjections();
         // load the projections, but with all pre-configured projections and validating each projection
         loadStoredProjections(true);
+        if (!documentCachesBySourceName.isEmpty()) {
+            // the document caches must also see the changes made by other processes in the cluster
+            repository.changeBus().registerInThread(documentCacheInvalidator);
+        }
         initialized = true;
     }
 
@@ -365,6 +383,58 @@ public final class Connectors {
         }
     }
 
+    /**
+     * Signals that the external documents with the given identifiers have been created, changed or removed by the external
+     * source with the given name, so that they are no longer served from that source's document cache.
+     * 
+     * @param sourceName the name of the external source; may not be null
+     * @param documentIds the connector-specific identifiers of the documents; may not be null
+     */
+    public void externalDocumentsChanged( String sourceName,
+                                          Collection<String> documentIds ) {
+        ConnectorDocumentCache cache = documentCachesBySourceName.get(sourceName);
+        if (cache != null && !documentIds.isEmpty()) cache.invalidateAll(documentIds);
+    }
+
+    /**
+     * Listener that removes the changed external nodes from their source's document cache. Unlike
+     * {@link #externalDocumentsChanged(String, Collection)}, which is only called for the changes that a connector publishes in
+     * this process, this listener also sees the change sets that were made by (or published to) other processes in the cluster.
+     */
+    protected final class DocumentCacheInvalidator implements ChangeSetListener {
+        @Override
+        public void notify( ChangeSet changeSet ) {
+            Map<String, Set<String>> documentIdsBySourceName = null;
+            for (NodeKey key : changeSet.changedNodes()) {
+                Connector connector = getConnectorForSourceKey(key.getSourceKey());
+                if (connector == null) continue; // not an external node
+                String sourceName = connector.getSourceName();
+                if (!documentCachesBySourceName.containsKey(sourceName)) continue;
+                if (documentIdsBySourceName == null) documentIdsBySourceName = new HashMap<>();
+                Set<String> documentIds = documentIdsBySourceName.get(sourceName);
+                if (documentIds == null) {
+                    documentIds = new HashSet<>();
+                    documentIdsBySourceName.put(sourceName, documentIds);
+                }
+                documentIds.add(key.getIdentifier());
+            }
+            if (documentIdsBySourceName == null) return;
+            for (Map.Entry<String, Set<String>> entry : documentIdsBySourceName.entrySet()) {
+                externalDocumentsChanged(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the cache of the documents returned by the given connector, which is shared by all sessions and workspaces.
+     * 
+     * @param connector the connector; may not be null
+     * @return the document cache, or {@code null} if the connector is not configured to use one
+     */
+    public ConnectorDocumentCache getDocumentCache( Connector connector ) {
+        return documentCachesBySourceName.get(connector.getSourceName());
+    }
+
     /**
      * Signals that an internal node with the given key has been removed.
      * 
@@ -487,6 +557,15 @@ public final class Connectors {
         // If successful, call the 'postInitialize' method reflectively (due to inability to call directly) ...
         Method postInitialize = ReflectionUtil.findMethod(Connector.class, "postInitialize");
         ReflectionUtil.invokeAccessibly(connector, postInitialize, new Object[] {});
+
+        // Create the document cache shared by all sessions, if the connector is configured to use one ...
+        int documentCacheSize = connector.getDocumentCacheSize();
+        if (documentCacheSize > 0) {
+            Integer ttlSeconds = connector.getDocumentCacheTtlSeconds();
+            if (ttlSeconds == null) ttlSeconds = DEFAULT_DOCUMENT_CACHE_TTL_SECONDS;
+            documentCachesBySourceName.put(connector.getSourceName(), new ConnectorDocumentCache(documentCacheSize, ttlSeconds,
+                                                                                                 TimeUnit.SECONDS));
+        }
     }
 
     protected RunningState repository() {
@@ -535,6 +614,8 @@ public final class Connectors {
             }
         }
         this.snapshot.set(current.withOnlyProjectionConfigurations());
+        repository.changeBus().unregister(documentCacheInvalidator);
+        documentCachesBySourceName.clear();
     }
 
     protected boolean hasReadonlyConnectors() {
@@ -0,0 +1,51 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import java.util.concurrent.TimeUnit;
+import org.modeshape.jcr.api.monitor.DurationMetric;
+
+/**
+ * A component which records how long the operations measured by a {@link DurationMetric} take. Recording a duration must be
+ * cheap, since it is done on the thread that performs the operation.
+ * 
+ * @see RepositoryStatistics
+ */
+public interface DurationRecorder {
+
+    /**
+     * An implementation which ignores all durations.
+     */
+    DurationRecorder NONE = new DurationRecorder() {
+        @Override
+        public void recordDuration( DurationMetric metric,
+                                    long duration,
+                                    TimeUnit timeUnit ) {
+            // do nothing
+        }
+    };
+
+    /**
+     * Record the duration of an operation.
+     * 
+     * @param metric the metric; may not be null
+     * @param duration the duration
+     * @param timeUnit the time unit of the duration; may not be null
+     */
+    void recordDuration( DurationMetric metric,
+                         long duration,
+                         TimeUnit timeUnit );
+}
@@ -0,0 +1,267 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+
+/**
+ * An index of event listeners by their registration criteria, used to find for each change only those listeners that might be
+ * interested in it rather than asking every listener. Listeners are indexed by the most selective of their criteria: by node
+ * identifier when they listen to specific nodes, by path (in a trie of path segments) when they listen to a subgraph, by node
+ * type when they listen to specific node types, or else they are returned for every change.
+ * <p>
+ * The index only narrows the set of listeners, and may return listeners that do not match the change (e.g., a listener indexed
+ * by path that is also restricted to certain node types). The caller must still check all of the criteria of each listener.
+ * However, the index never omits a listener whose criteria match the change.
+ * </p>
+ * 
+ * @param <L> the type of listener
+ */
+@Immutable
+final class EventListenerIndex<L> {
+
+    private static final EventListenerIndex<Object> EMPTY = new Builder<Object>().build();
+
+    /**
+     * Get an index that contains no listeners.
+     * 
+     * @return the empty index; never null
+     */
+    @SuppressWarnings( "unchecked" )
+    static <L> EventListenerIndex<L> empty() {
+        return (EventListenerIndex<L>)EMPTY;
+    }
+
+    /**
+     * Create a builder for a new index.
+     * 
+     * @return the new builder; never null
+     */
+    static <L> Builder<L> builder() {
+        return new Builder<L>();
+    }
+
+    private final PathNode<L> root;
+    private final Map<String, List<L>> byIdentifier;
+    private final Map<Name, List<L>> byNodeType;
+    private final List<L> unindexed;
+    private final boolean empty;
+
+    protected EventListenerIndex( Builder<L> builder ) {
+        this.root = builder.root;
+        this.byIdentifier = builder.byIdentifier;
+        this.byNodeType = builder.byNodeType;
+        this.unindexed = builder.unindexed;
+        this.empty = builder.count == 0;
+    }
+
+    /**
+     * Determine whether this index contains any listeners. Listeners whose criteria can never match a change need not be added
+     * to the index.
+     * 
+     * @return true if there are no listeners, or false otherwise
+     */
+    boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Determine whether any of the listeners were indexed by node type, in which case the node types must be supplied to
+     * {@link #collect(Path, String, Collection, Collection)}.
+     * 
+     * @return true if there are listeners indexed by node type, or false otherwise
+     */
+    boolean hasNodeTypeListeners() {
+        return !byNodeType.isEmpty();
+    }
+
+    /**
+     * Add to the supplied collection the listeners that might be interested in a change.
+     * 
+     * @param path the path of the node whose criteria are checked for the change; may not be null
+     * @param identifier the identifier of the changed node; may be null
+     * @param nodeTypeNames the names of the primary type and mixin types of the node at <code>path</code>; may be null if not
+     *        known, in which case no listeners indexed by node type are added
+     * @param result the collection to which the listeners are to be added; may not be null
+     */
+    void collect( Path path,
+                  String identifier,
+                  Collection<Name> nodeTypeNames,
+                  Collection<L> result ) {
+        result.addAll(unindexed);
+        if (identifier != null && !byIdentifier.isEmpty()) {
+            addAll(byIdentifier.get(identifier), result);
+        }
+        if (nodeTypeNames != null && !byNodeType.isEmpty()) {
+            for (Name nodeTypeName : nodeTypeNames) {
+                addAll(byNodeType.get(nodeTypeName), result);
+            }
+        }
+        PathNode<L> node = root;
+        addAll(node.deep, result);
+        for (Path.Segment segment : path) {
+            if (node.children == null) return;
+            node = node.children.get(segment);
+            if (node == null) return;
+            addAll(node.deep, result);
+        }
+        addAll(node.exact, result);
+    }
+
+    private static <L> void addAll( List<L> listeners,
+                                    Collection<L> result ) {
+        if (listeners != null) result.addAll(listeners);
+    }
+
+    @Override
+    public String toString() {
+        return "EventListenerIndex(" + byIdentifier.size() + " identifiers, " + byNodeType.size() + " node types, "
+               + unindexed.size() + " unindexed)";
+    }
+
+    private static final class PathNode<L> {
+        protected Map<Path.Segment, PathNode<L>> children;
+        protected List<L> exact;
+        protected List<L> deep;
+
+        protected PathNode<L> child( Path.Segment segment ) {
+            if (children == null) children = new HashMap<Path.Segment, PathNode<L>>();
+            PathNode<L> child = children.get(segment);
+            if (child == null) {
+                child = new PathNode<L>();
+                children.put(segment, child);
+            }
+            return child;
+        }
+    }
+
+    /**
+     * A builder of {@link EventListenerIndex} instances.
+     * 
+     * @param <L> the type of listener
+     */
+    @NotThreadSafe
+    static final class Builder<L> {
+        protected final PathNode<L> root = new PathNode<L>();
+        protected final Map<String, List<L>> byIdentifier = new HashMap<String, List<L>>();
+        protected final Map<Name, List<L>> byNodeType = new HashMap<Name, List<L>>();
+        protected final List<L> unindexed = new ArrayList<L>();
+        protected int count;
+
+        protected Builder() {
+        }
+
+        /**
+         * Add a listener that is only interested in changes to the nodes with the given identifiers.
+         * 
+         * @param listener the listener; may not be null
+         * @param identifiers the node identifiers; may not be null
+         * @return this builder for method chaining; never null
+         */
+        Builder<L> addByIdentifiers( L listener,
+                                     Collection<String> identifiers ) {
+            for (String identifier : identifiers) {
+                add(byIdentifier, identifier, listener);
+            }
+            ++count;
+            return this;
+        }
+
+        /**
+         * Add a listener that is only interested in changes at (or, if deep, also below) the given absolute path.
+         * 
+         * @param listener the listener; may not be null
+         * @param absolutePath the absolute path; may not be null
+         * @param isDeep true if the listener is also interested in changes below the path
+         * @return this builder for method chaining; never null
+         */
+        Builder<L> addByPath( L listener,
+                              Path absolutePath,
+                              boolean isDeep ) {
+            assert absolutePath.isAbsolute();
+            PathNode<L> node = root;
+            for (Path.Segment segment : absolutePath) {
+                node = node.child(segment);
+            }
+            if (isDeep) {
+                if (node.deep == null) node.deep = new ArrayList<L>(2);
+                node.deep.add(listener);
+            } else {
+                if (node.exact == null) node.exact = new ArrayList<L>(2);
+                node.exact.add(listener);
+            }
+            ++count;
+            return this;
+        }
+
+        /**
+         * Add a listener that is only interested in changes to nodes that have a primary type or mixin type with one of the
+         * given names.
+         * 
+         * @param listener the listener; may not be null
+         * @param nodeTypeNames the node type names; may not be null
+         * @return this builder for method chaining; never null
+         */
+        Builder<L> addByNodeTypes( L listener,
+                                   Collection<Name> nodeTypeNames ) {
+            for (Name nodeTypeName : nodeTypeNames) {
+                add(byNodeType, nodeTypeName, listener);
+            }
+            ++count;
+            return this;
+        }
+
+        /**
+         * Add a listener that is to be considered for every change.
+         * 
+         * @param listener the listener; may not be null
+         * @return this builder for method chaining; never null
+         */
+        Builder<L> add( L listener ) {
+            unindexed.add(listener);
+            ++count;
+            return this;
+        }
+
+        private static <K, L> void add( Map<K, List<L>> map,
+                                        K key,
+                                        L listener ) {
+            List<L> listeners = map.get(key);
+            if (listeners == null) {
+                listeners = new ArrayList<L>(2);
+                map.put(key, listeners);
+            }
+            if (!listeners.contains(listener)) listeners.add(listener);
+        }
+
+        /**
+         * Build the index. The builder should not be used afterwards.
+         * 
+         * @return the new index; never null
+         */
+        EventListenerIndex<L> build() {
+            return new EventListenerIndex<L>(this);
+        }
+    }
+}
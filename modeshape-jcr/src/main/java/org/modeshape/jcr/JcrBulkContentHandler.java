@@ -0,0 +1,313 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.jcr.ImportUUIDBehavior;
+import javax.jcr.InvalidItemStateException;
+import javax.jcr.ItemExistsException;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.ValueFormatException;
+import javax.jcr.nodetype.ConstraintViolationException;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.common.collection.Collections;
+import org.modeshape.common.text.TextDecoder;
+import org.modeshape.common.util.Base64;
+import org.modeshape.common.util.StringUtil;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.DocumentAlreadyExistsException;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.NodeNotFoundException;
+import org.modeshape.jcr.cache.PropertyTypeUtil;
+import org.modeshape.jcr.cache.document.BulkNodeWriter;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.NameFactory;
+import org.modeshape.jcr.value.Property;
+import org.modeshape.jcr.value.PropertyFactory;
+import org.modeshape.jcr.value.ValueFactories;
+import org.xml.sax.SAXException;
+
+/**
+ * A {@link JcrContentHandler} that writes the imported nodes directly to the workspace using a {@link BulkNodeWriter}, rather
+ * than creating them in the session and saving the session when the document has been read. Only a small number of nodes are
+ * held in memory at any time, so this handler can import far larger documents than the standard handler.
+ * <p>
+ * Because the session is bypassed, the imported nodes are not validated against their node types, and no properties are
+ * auto-created. Nodes that require repository-level processing (versionable nodes and shares) cannot be imported, and the
+ * UUID behaviors that remove or replace existing nodes are not supported. Each content handler is only intended to be used once
+ * and discarded. This class is <b>NOT</b> thread-safe.
+ * </p>
+ * 
+ * @see JcrWorkspace#importXMLInBulk(String, java.io.InputStream, int, int)
+ */
+@NotThreadSafe
+class JcrBulkContentHandler extends JcrContentHandler {
+
+    /**
+     * The properties that are never written for imported nodes. The identifier is held in the node's key, and locks are not
+     * imported.
+     */
+    private static final Set<Name> SKIPPED_PROPERTIES = Collections.unmodifiableSet(JcrLexicon.UUID,
+                                                                                    JcrLexicon.LOCK_OWNER,
+                                                                                    JcrLexicon.LOCK_IS_DEEP);
+
+    private final AbstractJcrNode parent;
+    private final BulkNodeWriter writer;
+    private final ValueFactories factories;
+    private final NameFactory names;
+    private final PropertyFactory propertyFactory;
+
+    JcrBulkContentHandler( JcrSession session,
+                           AbstractJcrNode parent,
+                           int uuidBehavior,
+                           int batchSize,
+                           int childrenPerBlock ) throws RepositoryException {
+        super(session, parent, uuidBehavior, false, false, false);
+        assert uuidBehavior == ImportUUIDBehavior.IMPORT_UUID_CREATE_NEW
+               || uuidBehavior == ImportUUIDBehavior.IMPORT_UUID_COLLISION_THROW;
+        this.parent = parent;
+        this.writer = session.repository().repositoryCache().createBulkWriter(session.context(), session.workspaceName(),
+                                                                              parent.key(), batchSize, childrenPerBlock);
+        this.factories = session.context().getValueFactories();
+        this.names = factories.getNameFactory();
+        this.propertyFactory = session.context().getPropertyFactory();
+    }
+
+    @Override
+    protected NodeHandlerFactory newNodeHandlerFactory() {
+        return new BulkNodeHandlerFactory();
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        try {
+            // The writer publishes the events for all of the new nodes, which update the indexes in every process ...
+            writer.finish();
+        } catch (RuntimeException e) {
+            throw enclose(e);
+        }
+    }
+
+    /**
+     * Convert an exception from the {@link BulkNodeWriter} that was caused by the content into the corresponding JCR exception.
+     * 
+     * @param e the exception thrown by the writer; may not be null
+     * @return the exception that encloses the JCR exception
+     * @throws RuntimeException the supplied exception, if it is not caused by the content
+     */
+    protected final EnclosingSAXException enclose( RuntimeException e ) {
+        if (e instanceof DocumentAlreadyExistsException) {
+            return new EnclosingSAXException(new ItemExistsException(e.getMessage(), e));
+        }
+        if (e instanceof NodeNotFoundException) {
+            return new EnclosingSAXException(new InvalidItemStateException(e.getMessage(), e));
+        }
+        throw e;
+    }
+
+    protected class BulkNodeHandlerFactory implements NodeHandlerFactory {
+        @Override
+        public NodeHandler createFor( Name name,
+                                      NodeHandler parentHandler,
+                                      int uuidBehavior ) throws SAXException {
+            if (parentHandler instanceof IgnoreBranchHandler || parentHandler.ignoreAllChildren()) {
+                return new IgnoreBranchHandler(parentHandler);
+            }
+            if (JcrLexicon.ROOT.equals(name)) {
+                // The children of the "jcr:root" node are added to the root node, which must be the parent of the import ...
+                try {
+                    if (!parent.isRoot()) {
+                        throw new ConstraintViolationException(JcrI18n.bulkImportOfRootRequiresRootParent.text(parent.getPath()));
+                    }
+                } catch (RepositoryException re) {
+                    throw new EnclosingSAXException(re);
+                }
+                return new JcrRootHandler(parent);
+            }
+            if (JcrLexicon.SYSTEM.equals(name)) {
+                // Always do this, regardless of where the "jcr:system" branch is located ...
+                return new JcrSystemHandler(parentHandler);
+            }
+            return new BulkNodeHandler(name, parentHandler, uuidBehavior);
+        }
+    }
+
+    protected class BulkNodeHandler extends NodeHandler {
+        private final Name nodeName;
+        private final NodeHandler parentHandler;
+        private final int uuidBehavior;
+        private final Map<Name, List<Object>> properties = new LinkedHashMap<>();
+        private final Set<Name> multiValuedPropertyNames = new HashSet<>();
+        private NodeKey key;
+
+        protected BulkNodeHandler( Name name,
+                                   NodeHandler parentHandler,
+                                   int uuidBehavior ) {
+            this.nodeName = name;
+            this.parentHandler = parentHandler;
+            this.uuidBehavior = uuidBehavior;
+        }
+
+        @Override
+        public void finish() throws SAXException {
+            if (key == null) create();
+        }
+
+        @Override
+        public NodeKey key() throws SAXException {
+            finish();
+            return key;
+        }
+
+        @Override
+        public NodeHandler parentHandler() {
+            return parentHandler;
+        }
+
+        @Override
+        protected String name() {
+            return stringFor(nodeName);
+        }
+
+        @Override
+        public void addPropertyValue( Name name,
+                                      String value,
+                                      boolean forceMultiValued,
+                                      int propertyType,
+                                      TextDecoder decoder ) throws EnclosingSAXException {
+            if (key != null) {
+                // The node has already been written, and properties always precede child nodes ...
+                throw new IllegalStateException("The property '" + stringFor(name) + "' of the node '" + this
+                                                + "' was found after its child nodes");
+            }
+            if (forceMultiValued) {
+                this.multiValuedPropertyNames.add(name);
+            }
+            List<Object> values = properties.get(name);
+            if (values == null) {
+                values = new ArrayList<>();
+                properties.put(name, values);
+            }
+            try {
+                if (propertyType == PropertyType.BINARY) {
+                    Base64.InputStream is = new Base64.InputStream(new ByteArrayInputStream(value.getBytes("UTF-8")));
+                    values.add(factories.getBinaryFactory().create(is));
+                    return;
+                }
+                if (decoder != null) value = decoder.decode(value);
+                if (value != null && propertyType == PropertyType.STRING) {
+                    // Strings and binaries can be empty -- other data types cannot
+                    values.add(value);
+                } else if (!StringUtil.isBlank(value)) {
+                    if (!isInternal(name)
+                        && (propertyType == PropertyType.REFERENCE || propertyType == PropertyType.WEAKREFERENCE
+                            || propertyType == org.modeshape.jcr.api.PropertyType.SIMPLE_REFERENCE)) {
+                        // we only have the identifier of the node, so use the parent to determine the workspace & source key
+                        value = writer.getParentKey().withId(value).toString();
+                    }
+                    values.add(factories.getValueFactory(PropertyTypeUtil.modePropertyTypeFor(propertyType)).create(value));
+                }
+            } catch (IOException e) {
+                throw new EnclosingSAXException(e);
+            } catch (org.modeshape.jcr.value.ValueFormatException e) {
+                throw new EnclosingSAXException(new ValueFormatException(e.getMessage(), e));
+            }
+        }
+
+        protected void create() throws SAXException {
+            NodeKey parentKey = parentHandler.key();
+            assert parentKey != null;
+            try {
+                // Figure out the key for the node ...
+                List<Object> rawUuid = properties.get(JcrLexicon.UUID);
+                if (rawUuid == null || rawUuid.isEmpty() || uuidBehavior == ImportUUIDBehavior.IMPORT_UUID_CREATE_NEW) {
+                    key = writer.getParentKey().withRandomId();
+                } else {
+                    key = writer.getParentKey().withId(stringFor(rawUuid.get(0)));
+                    CachedNode existing = cache().getNode(key);
+                    if (existing != null) {
+                        String path = stringFor(existing.getPath(cache()));
+                        throw new ItemExistsException(JcrI18n.itemAlreadyExistsWithUuid.text(key, session().workspaceName(),
+                                                                                            path));
+                    }
+                }
+
+                // Determine the node types, which cannot require processing by the session ...
+                List<Object> primaryTypeValues = properties.get(JcrLexicon.PRIMARY_TYPE);
+                Name primaryType = JcrNtLexicon.UNSTRUCTURED;
+                if (primaryTypeValues != null && !primaryTypeValues.isEmpty()) {
+                    primaryType = names.create(primaryTypeValues.get(0));
+                }
+                Set<Name> mixinTypes = new HashSet<>();
+                List<Object> mixinTypeValues = properties.get(JcrLexicon.MIXIN_TYPES);
+                if (mixinTypeValues != null) {
+                    for (Object value : mixinTypeValues) {
+                        mixinTypes.add(names.create(value));
+                    }
+                }
+                NodeTypes nodeTypes = session().nodeTypes();
+                if (JcrNtLexicon.SHARE.equals(primaryType) || nodeTypes.isVersionable(primaryType, mixinTypes)) {
+                    Name unsupportedType = JcrNtLexicon.SHARE.equals(primaryType) ? primaryType : JcrMixLexicon.VERSIONABLE;
+                    String msg = JcrI18n.bulkImportDoesNotSupportNodeType.text(this, stringFor(unsupportedType));
+                    throw new ConstraintViolationException(msg);
+                }
+
+                writer.addNode(parentKey, key, nodeName, propertiesFor(primaryType));
+            } catch (RepositoryException e) {
+                throw new EnclosingSAXException(e);
+            } catch (RuntimeException e) {
+                throw enclose(e);
+            }
+        }
+
+        private Collection<Property> propertiesFor( Name primaryType ) {
+            List<Property> result = new ArrayList<>(properties.size() + 1);
+            result.add(propertyFactory.create(JcrLexicon.PRIMARY_TYPE, primaryType));
+            for (Map.Entry<Name, List<Object>> entry : properties.entrySet()) {
+                Name propertyName = entry.getKey();
+                if (JcrLexicon.PRIMARY_TYPE.equals(propertyName) || SKIPPED_PROPERTIES.contains(propertyName)) {
+                    continue;
+                }
+                List<Object> values = entry.getValue();
+                boolean allowEmptyValues = !isInternal(propertyName) || JcrLexicon.DATA.equals(propertyName);
+                if (!allowEmptyValues) {
+                    for (Iterator<Object> iter = values.iterator(); iter.hasNext();) {
+                        Object value = iter.next();
+                        if (value instanceof String && StringUtil.isBlank((String)value)) iter.remove();
+                    }
+                }
+                if (values.isEmpty()) continue;
+                if (values.size() == 1 && !multiValuedPropertyNames.contains(propertyName)
+                    && !JcrLexicon.MIXIN_TYPES.equals(propertyName)) {
+                    result.add(propertyFactory.create(propertyName, values.get(0)));
+                } else {
+                    result.add(propertyFactory.create(propertyName, values));
+                }
+            }
+            return result;
+        }
+    }
+}
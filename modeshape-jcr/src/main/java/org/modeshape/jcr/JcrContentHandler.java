@@ -388,6 +388,15 @@ class JcrContentHandler extends DefaultHandler {
         delegate.startElement(uri, localName, name, atts);
     }
 
+    /**
+     * Create the factory for the handlers of the imported nodes. Subclasses can override this to change how nodes are imported.
+     * 
+     * @return the factory; never null
+     */
+    protected NodeHandlerFactory newNodeHandlerFactory() {
+        return new StandardNodeHandlerFactory();
+    }
+
     private void checkDelegate( String namespaceUri ) {
         if (delegate != null) return;
 
@@ -464,6 +473,11 @@ class JcrContentHandler extends DefaultHandler {
             return null;
         }
 
+        public NodeKey key() throws SAXException {
+            AbstractJcrNode node = node();
+            return node != null ? node.key() : null;
+        }
+
         public NodeHandler parentHandler() {
             return null;
         }
@@ -973,7 +987,7 @@ class JcrContentHandler extends DefaultHandler {
             this.svTypeName = JcrSvLexicon.TYPE.getString(namespaces());
             this.svMultipleName = JcrSvLexicon.MULTIPLE.getString(namespaces());
             this.current = new ExistingNodeHandler(parent, null);
-            this.nodeHandlerFactory = new StandardNodeHandlerFactory();
+            this.nodeHandlerFactory = newNodeHandlerFactory();
             this.currentPropertyValue = new StringBuilder();
         }
 
@@ -1065,7 +1079,7 @@ class JcrContentHandler extends DefaultHandler {
         DocumentViewContentHandler( AbstractJcrNode currentNode ) {
             super();
             this.current = new ExistingNodeHandler(currentNode, null);
-            this.nodeHandlerFactory = new StandardNodeHandlerFactory();
+            this.nodeHandlerFactory = newNodeHandlerFactory();
         }
 
         @Override
@@ -36,6 +36,7 @@ public final class JcrI18n {
     public static I18n repositoryIsCurrentlyBeingRestored;
     public static I18n repositoryIsBeingRestoredAndCannotBeStarted;
     public static I18n repositoryCannotBeStartedWithoutTransactionalSupport;
+    public static I18n optimisticSavesRequireWriteSkewCheck;
     public static I18n workspaceCacheShouldNotBeTransactional;
     public static I18n repositoryReferencesNonExistantSource;
     public static I18n indexRebuildingStarted;
@@ -94,6 +95,10 @@ public final class JcrI18n {
     public static I18n problemObtainingDocumentsToBackup;
     public static I18n backupOperationWasCancelled;
     public static I18n problemsClosingBackupFiles;
+    public static I18n incrementalBackupRequiresJournaling;
+    public static I18n previousBackupHasNoWatermark;
+    public static I18n journalDoesNotCoverPreviousBackup;
+    public static I18n incrementalBackupDoesNotFollowPreviousBackup;
     public static I18n invalidJcrUrl;
     public static I18n unableToInitializeAuthenticationProvider;
     public static I18n errorInAuthenticationProvider;
@@ -204,6 +209,16 @@ public final class JcrI18n {
     public static I18n cannotRemoveRootNode;
     public static I18n cannotRemoveParentNodeOfTarget;
     public static I18n invalidPropertyType;
+    public static I18n bulkImportDoesNotSupportUuidBehavior;
+    public static I18n bulkImportRequiresInternalParent;
+    public static I18n bulkImportDoesNotSupportNodeType;
+    public static I18n bulkImportOfRootRequiresRootParent;
+    public static I18n bulkCopyDoesNotSupportExternalNodes;
+    public static I18n bulkCopyDoesNotSupportSharedNodes;
+    public static I18n bulkCopyDoesNotSupportVersionableNodes;
+    public static I18n bulkCopyOfRootNotSupported;
+    public static I18n bulkCopyRequiresInternalParent;
+    public static I18n bulkCloneRequiresDifferentWorkspace;
 
     public static I18n rootNodeCannotBeDestinationOfMovedNode;
     public static I18n unableToMoveRootNode;
@@ -385,6 +400,7 @@ public final class JcrI18n {
     // JcrObservationManager messages
     public static I18n cannotCreateUuid;
     public static I18n cannotPerformNodeTypeCheck;
+    public static I18n errorNotifyingEventListener;
     public static I18n sessionIsNotActive;
 
     // Versioning messages
@@ -444,6 +460,7 @@ public final class JcrI18n {
     public static I18n errorWhileShuttingDownRepositoryInJndi;
     public static I18n errorWhileShuttingDownEngineInJndi;
     public static I18n nodeModifiedBySessionWasRemovedByAnotherSession;
+    public static I18n nodeModifiedBySessionWasModifiedByAnotherSession;
     public static I18n nodeCreatedBySessionUsedExistingKey;
     public static I18n errorRemovingISPNCache;
 
@@ -469,6 +486,8 @@ public final class JcrI18n {
     public static I18n unableToDeleteTemporaryFile;
     public static I18n unableToFindBinaryValue;
     public static I18n unableToFindBinaryValueInCache;
+    public static I18n unknownNamedBinaryStore;
+    public static I18n errorMovingBinaryValue;
     public static I18n tempDirectorySystemPropertyMustBeSet;
     public static I18n errorReadingBinaryValue;
     public static I18n errorStoringBinaryValue;
@@ -519,6 +538,12 @@ public final class JcrI18n {
     public static I18n reindexMissingNoIndexesExist;
     public static I18n noReindex;
     public static I18n reindexAll;
+    public static I18n resumingReindexing;
+    public static I18n errorRecordingReindexingProgress;
+    public static I18n resumingSequencingWork;
+    public static I18n errorRecordingSequencingWork;
+    public static I18n errorProcessingSequencingWork;
+    public static I18n sequencingQueueIsFull;
     public static I18n noIndexesExist;
 
     public static I18n errorCreatingDatabaseTable;
@@ -31,14 +31,13 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.jcr.AccessDeniedException;
 import javax.jcr.RangeIterator;
@@ -120,6 +119,12 @@ final class JcrObservationManager implements ObservationManager, ChangeSetListen
      */
     private final Map<EventListener, JcrListenerAdapter> listeners;
 
+    /**
+     * The index of the wrapped listeners by their registration criteria, used to dispatch each change only to the listeners
+     * that may be interested in it. The index is immutable and is replaced whenever a listener is added or removed.
+     */
+    private volatile EventListenerIndex<JcrListenerAdapter> listenerIndex = EventListenerIndex.empty();
+
     /**
      * The associated session.
      */
@@ -130,17 +135,6 @@ final class JcrObservationManager implements ObservationManager, ChangeSetListen
      */
     private final RepositoryStatistics repositoryStatistics;
 
-    /**
-     * A map of [changeSetHashCode, integer] which keep track of the events which have been received by the observation manager
-     * and dispatched to the individual listeners. This is used for statistic purposes only.
-     */
-    private final Map<Integer, AtomicInteger> changesReceivedAndDispatched;
-
-    /**
-     * A lock which guards the JcrObservationManager#changesReceivedAndDispatched map
-     */
-    private final Lock changesLock;
-
     /**
      * A lock used to provide thread-safe guarantees when working it the repository observable
      */
@@ -167,10 +161,8 @@ final class JcrObservationManager implements ObservationManager, ChangeSetListen
         this.listeners = new HashMap<>();
 
         this.repositoryStatistics = statistics;
-        this.changesLock = new ReentrantLock();
-        this.changesReceivedAndDispatched = new HashMap<>();
 
-        // this is registered as an observer just so it can count the number of events dispatched
+        // this is the only observer registered for this session, and it dispatches the changes to the JCR listeners
         this.repositoryObservable.register(this);
     }
 
@@ -185,20 +177,28 @@ final class JcrObservationManager implements ObservationManager, ChangeSetListen
         CheckArg.isNotNull(listener, "listener");
         checkSession(); // make sure session is still active
 
-        // create wrapper and register
+        // create wrapper and register (replacing any existing registration of the same listener)
         JcrListenerAdapter adapter = new JcrListenerAdapter(listener, eventTypes, absPath, isDeep, uuid, nodeTypeName, noLocal);
-        // unregister if already registered
         try {
             listenersLock.writeLock().lock();
-
-            this.repositoryObservable.unregister(adapter);
-            this.repositoryObservable.register(adapter);
             this.listeners.put(listener, adapter);
+            rebuildListenerIndex();
         } finally {
             listenersLock.writeLock().unlock();
         }
     }
 
+    /**
+     * Rebuild the index of the registered listeners. This must be called while holding the write lock.
+     */
+    private void rebuildListenerIndex() {
+        EventListenerIndex.Builder<JcrListenerAdapter> builder = EventListenerIndex.builder();
+        for (JcrListenerAdapter adapter : this.listeners.values()) {
+            adapter.changeSetConverter.addTo(builder, adapter);
+        }
+        this.listenerIndex = builder.build();
+    }
+
     /**
      * @throws RepositoryException if session is not active
      */
@@ -208,46 +208,104 @@ final class JcrObservationManager implements ObservationManager, ChangeSetListen
 
     @Override
     public void notify( ChangeSet changeSet ) {
-        incrementEventQueueStatistic(changeSet);
-    }
+        EventListenerIndex<JcrListenerAdapter> index = this.listenerIndex;
+        if (index.isEmpty()) return;
 
-    private void incrementEventQueueStatistic( ChangeSet changeSet ) {
-        // whenever a change set is received from the bus, increment the que size
+        // whenever a change set is received from the bus, increment the queue size until it has been dispatched
         if (repositoryStatistics != null) {
             repositoryStatistics.increment(ValueMetric.EVENT_QUEUE_SIZE);
         }
-
-        changesLock.lock();
         try {
-            if (!this.changesReceivedAndDispatched.containsKey(changeSet.hashCode())) {
-                // none of the adapters have processed this change set yet, register it
-                changesReceivedAndDispatched.put(changeSet.hashCode(), new AtomicInteger(listeners.size()));
-            }
+            dispatch(changeSet, index);
         } finally {
-            changesLock.unlock();
+            if (repositoryStatistics != null) {
+                repositoryStatistics.decrement(ValueMetric.EVENT_QUEUE_SIZE);
+            }
         }
     }
 
-    protected void decrementEventQueueStatistic( ChangeSet changeSet ) {
-        changesLock.lock();
-        try {
-            if (changesReceivedAndDispatched.containsKey(changeSet.hashCode())) {
-                // the change set has already been registered (and the que size incremented)
-                int timesProcessed = changesReceivedAndDispatched.get(changeSet.hashCode()).decrementAndGet();
-                if (timesProcessed == 0) {
-                    if (repositoryStatistics != null) {
-                        repositoryStatistics.decrement(ValueMetric.EVENT_QUEUE_SIZE);
+    /**
+     * Convert the changes into events for those listeners that are interested in them, and notify each such listener once with
+     * all of its events. Each change is only converted for the listeners that the index returns as candidates for the change.
+     * 
+     * @param changeSet the changes; may not be null
+     * @param index the index of the listeners; may not be null
+     */
+    private void dispatch( ChangeSet changeSet,
+                           EventListenerIndex<JcrListenerAdapter> index ) {
+        if (!acceptBasedOnOriginatingWorkspace(changeSet)) return;
+
+        Map<JcrListenerAdapter, List<Event>> eventsByListener = new LinkedHashMap<>();
+        Set<JcrListenerAdapter> rejectedListeners = new HashSet<>();
+        Set<JcrListenerAdapter> candidates = new LinkedHashSet<>();
+        JcrEventBundle bundle = null;
+        for (Change change : changeSet) {
+            if (!(change instanceof AbstractNodeChange)) continue;
+            AbstractNodeChange nodeChange = (AbstractNodeChange)change;
+
+            // find the listeners that may be interested in this change ...
+            Path path = parentNodePathOfChange(nodeChange);
+            Collection<Name> nodeTypeNames = index.hasNodeTypeListeners() ? nodeTypeNamesAt(path) : null;
+            candidates.clear();
+            index.collect(path, session.nodeIdentifier(nodeChange.getKey()), nodeTypeNames, candidates);
+
+            for (JcrListenerAdapter adapter : candidates) {
+                List<Event> events = eventsByListener.get(adapter);
+                if (events == null) {
+                    if (rejectedListeners.contains(adapter)) continue;
+                    if (adapter.changeSetConverter.shouldRejectChangeSet(changeSet)) {
+                        rejectedListeners.add(adapter);
+                        continue;
                     }
-                    changesReceivedAndDispatched.remove(changeSet.hashCode());
+                    events = new ArrayList<>();
+                    eventsByListener.put(adapter, events);
                 }
-            } else {
-                // the change got to this adapter (from the bus) before it got to the observation manager, so it'll be registered
-                // this listener already received the event, so total count of expected listeners is decremented by 1
-                changesReceivedAndDispatched.put(changeSet.hashCode(), new AtomicInteger(listeners.size() - 1));
+                if (bundle == null) {
+                    String userData = changeSet.getUserData().get(OBSERVATION_USER_DATA_KEY);
+                    bundle = new JcrEventBundle(changeSet.getTimestamp(), changeSet.getUserId(), userData);
+                }
+                adapter.changeSetConverter.processChange(events, bundle, nodeChange);
             }
-        } finally {
-            changesLock.unlock();
         }
+
+        for (Map.Entry<JcrListenerAdapter, List<Event>> entry : eventsByListener.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                entry.getKey().notify(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Get the names of the primary type and mixin types of the node at the supplied path.
+     * 
+     * @param path the path of the node
+     * @return the names; never null but empty if the node no longer exists
+     */
+    private Collection<Name> nodeTypeNamesAt( Path path ) {
+        try {
+            AbstractJcrNode node = session.node(path);
+            Set<Name> mixinNames = node.getMixinTypeNames();
+            List<Name> names = new ArrayList<>(mixinNames.size() + 1);
+            names.add(node.getPrimaryTypeName());
+            names.addAll(mixinNames);
+            return names;
+        } catch (RepositoryException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private boolean acceptBasedOnOriginatingWorkspace( ChangeSet changeSet ) {
+        boolean sameWorkspace = session.getWorkspace().getName().equalsIgnoreCase(changeSet.getWorkspaceName());
+        boolean isSystemWorkspace = session.repository().systemWorkspaceName().equalsIgnoreCase(changeSet.getWorkspaceName());
+        return sameWorkspace || isSystemWorkspace;
+    }
+
+    static Path parentNodePathOfChange( AbstractNodeChange change ) {
+        Path changePath = change.getPath();
+        if (change instanceof PropertyAdded || change instanceof PropertyRemoved || change instanceof PropertyChanged) {
+            return changePath;
+        }
+        return changePath.isRoot() ? changePath : changePath.getParent();
     }
 
     @Override
@@ -267,11 +325,8 @@ final class JcrObservationManager implements ObservationManager, ChangeSetListen
     void removeAllEventListeners() {
         try {
             listenersLock.writeLock().lock();
-            for (JcrListenerAdapter listener : this.listeners.values()) {
-                assert (listener != null);
-                this.repositoryObservable.unregister(listener);
-            }
             this.listeners.clear();
+            rebuildListenerIndex();
         } finally {
             listenersLock.writeLock().unlock();
         }
@@ -283,9 +338,8 @@ final class JcrObservationManager implements ObservationManager, ChangeSetListen
         CheckArg.isNotNull(listener, "listener");
         try {
             listenersLock.writeLock().lock();
-            JcrListenerAdapter jcrListener = this.listeners.remove(listener);
-            if (jcrListener != null) {
-                this.repositoryObservable.unregister(jcrListener);
+            if (this.listeners.remove(listener) != null) {
+                rebuildListenerIndex();
             }
         } finally {
             listenersLock.writeLock().unlock();
@@ -336,14 +390,14 @@ final class JcrObservationManager implements ObservationManager, ChangeSetListen
      * {@link org.modeshape.jcr.cache.change.Change events} into JCR {@link Event events}.
      */
     @NotThreadSafe
-    protected final class JcrListenerAdapter implements ChangeSetListener {
+    protected final class JcrListenerAdapter {
 
         /**
          * The JCR event listener.
          */
         private final EventListener delegate;
 
-        private final ChangeSetConverter changeSetConverter;
+        protected final ChangeSetConverter changeSetConverter;
 
         /**
          * @param delegate the JCR listener
@@ -367,15 +421,12 @@ final class JcrObservationManager implements ObservationManager, ChangeSetListen
             this.changeSetConverter = new ChangeSetConverter(absPath, eventTypes, isDeep, nodeTypeNames, noLocal, uuids);
         }
 
-        @Override
-        public void notify( ChangeSet changeSet ) {
-            decrementEventQueueStatistic(changeSet);
-
-            Collection<Event> events = changeSetConverter.convert(changeSet);
-
-            // notify delegate
-            if (!events.isEmpty()) {
+        protected void notify( Collection<Event> events ) {
+            try {
                 this.delegate.onEvent(new JcrEventIterator(events));
+            } catch (RuntimeException e) {
+                // don't let one listener prevent the others from being notified ...
+                LOGGER.error(e, JcrI18n.errorNotifyingEventListener, delegate, e.getMessage());
             }
         }
 
@@ -821,6 +872,11 @@ final class JcrObservationManager implements ObservationManager, ChangeSetListen
          */
         private final boolean noLocal;
 
+        /**
+         * The parsed form of the <code>absPath</code>, or <code>null</code> if it has not yet been parsed.
+         */
+        private Path matchPath;
+
         /**
          * The node UUIDs or <code>null</code>. If a node with one of these UUIDs is the source node of an event than this
          * listener wants to handle this event. If <code>null</code> or empty than this listener wants to handle nodes with any
@@ -869,13 +925,86 @@ final class JcrObservationManager implements ObservationManager, ChangeSetListen
             return events;
         }
 
-        private boolean shouldRejectChangeSet( ChangeSet changeSet ) {
+        /**
+         * Add the listener to the supplied index builder, under the most selective of this converter's criteria.
+         * 
+         * @param builder the index builder; may not be null
+         * @param listener the listener that uses this converter; may not be null
+         */
+        protected void addTo( EventListenerIndex.Builder<JcrListenerAdapter> builder,
+                              JcrListenerAdapter listener ) {
+            if (this.uuids != null) {
+                // JSR_283#12.5.3.4.2 (an empty array never matches)
+                if (!this.uuids.isEmpty()) builder.addByIdentifiers(listener, this.uuids);
+                return;
+            }
+            // JSR 283#12.5.3.4.3 (an empty array never matches)
+            if (nodeTypeNames != null && nodeTypeNames.length == 0) return;
+            if (!StringUtil.isBlank(absPath)) {
+                Path path = matchPath();
+                if (path != null && path.isAbsolute()) {
+                    builder.addByPath(listener, path, isDeep);
+                } else {
+                    builder.add(listener);
+                }
+                return;
+            }
+            Set<Name> typeNames = shouldCheckNodeType() ? indexedNodeTypeNames() : null;
+            if (typeNames != null) {
+                builder.addByNodeTypes(listener, typeNames);
+            } else {
+                builder.add(listener);
+            }
+        }
+
+        /**
+         * Get the names of the node types that a node's primary type or mixin types must have for the node to match this
+         * converter's node type names. A node matches when one of its types is one of the listener's node types or one of their
+         * supertypes.
+         * 
+         * @return the names, or null if the listener's node types cannot all be resolved
+         */
+        private Set<Name> indexedNodeTypeNames() {
+            try {
+                NodeTypes nodeTypes = session.repository().nodeTypeManager().getNodeTypes();
+                Set<Name> result = new HashSet<>();
+                for (String nodeTypeName : nodeTypeNames) {
+                    JcrNodeType nodeType = nodeTypes.getNodeType(session.nameFactory().create(nodeTypeName));
+                    if (nodeType == null) return null;
+                    for (JcrNodeType type : nodeType.getTypeAndSupertypes()) {
+                        result.add(type.getInternalName());
+                    }
+                }
+                return result;
+            } catch (RuntimeException e) {
+                // the names are not valid, so let every change be checked ...
+                return null;
+            }
+        }
+
+        /**
+         * Get the path that this converter matches, parsing it upon first use.
+         * 
+         * @return the path, or null if there is no such path or it is not valid
+         */
+        private Path matchPath() {
+            if (matchPath == null && !StringUtil.isBlank(absPath)) {
+                try {
+                    matchPath = session.pathFactory().create(this.absPath);
+                } catch (RuntimeException e) {
+                    return null;
+                }
+            }
+            return matchPath;
+        }
+
+        protected boolean shouldRejectChangeSet( ChangeSet changeSet ) {
             return !acceptBasedOnOriginatingSession(changeSet) || !acceptBasedOnOriginatingWorkspace(changeSet);
         }
 
-        private void processChange( List<Event> events,
-                                    JcrEventBundle bundle,
-                                    Change change ) {
+        protected void processChange( List<Event> events,
+                                      JcrEventBundle bundle,
+                                      Change change ) {
             if (!(change instanceof AbstractNodeChange)) {
                 return;
             }
@@ -1138,7 +1267,8 @@ final class JcrObservationManager implements ObservationManager, ChangeSetListen
          */
         private boolean acceptBasedOnPath( AbstractNodeChange change ) {
             if (!StringUtil.isBlank(absPath)) {
-                Path matchPath = session.pathFactory().create(this.absPath);
+                Path matchPath = matchPath();
+                if (matchPath == null) matchPath = session.pathFactory().create(this.absPath); // throws as before
                 Path parentPath = parentNodePathOfChange(change);
 
                 return this.isDeep ? matchPath.isAtOrAbove(parentPath) : matchPath.equals(parentPath);
@@ -1155,14 +1285,6 @@ final class JcrObservationManager implements ObservationManager, ChangeSetListen
             return this.uuids == null || (!this.uuids.isEmpty() && this.uuids.contains(nodeIdentifier(change.getKey())));
         }
 
-        private Path parentNodePathOfChange( AbstractNodeChange change ) {
-            Path changePath = change.getPath();
-            if (change instanceof PropertyAdded || change instanceof PropertyRemoved || change instanceof PropertyChanged) {
-                return changePath;
-            }
-            return changePath.isRoot() ? changePath : changePath.getParent();
-        }
-
         /**
          * @return <code>true</code> if the node type of the event locations need to be checked
          */
@@ -124,7 +124,9 @@ class JcrQueryManager implements QueryManager {
         }
         try {
             // Parsing must be done now ...
-            QueryCommand command = parser.parseQuery(expression, typeSystem);
+            Schemata schemata = session.workspace().nodeTypeManager().schemata();
+            QueryCommand command = session.repository().queryManager().parseQuery(parser, expression, typeSystem, schemata,
+                                                                                   session.context().getNamespaceRegistry());
             if (command == null) {
                 // The query is not well-formed and cannot be parsed ...
                 throw new InvalidQueryException(JcrI18n.queryCannotBeParsedUsingLanguage.text(language, expression));
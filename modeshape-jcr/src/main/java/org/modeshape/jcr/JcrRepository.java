@@ -87,6 +87,7 @@ import org.modeshape.jcr.RepositoryConfiguration.DocumentOptimization;
 import org.modeshape.jcr.RepositoryConfiguration.FieldName;
 import org.modeshape.jcr.RepositoryConfiguration.GarbageCollection;
 import org.modeshape.jcr.RepositoryConfiguration.JaasSecurity;
+import org.modeshape.jcr.RepositoryConfiguration.SaveMode;
 import org.modeshape.jcr.RepositoryConfiguration.Security;
 import org.modeshape.jcr.RepositoryConfiguration.TransactionMode;
 import org.modeshape.jcr.api.AnonymousCredentials;
@@ -975,6 +976,7 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
         private final Problems problems;
         private final ChangeJournal journal;
         private final ClusteringService clusteringService;
+        private final AccessControlCache accessControlCache;
 
         private Transaction existingUserTransaction;
         private RepositoryCache cache;
@@ -1044,6 +1046,7 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                     this.txnMgr = documentStore.transactionManager();
 
                     this.transactions = createTransactions(this.cache.getName(), config.getTransactionMode(), this.txnMgr);
+                    checkSaveMode(this.cache.getName(), config.getSaveMode());
 
                     suspendExistingUserTransaction();
 
@@ -1068,12 +1071,13 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                     // We have to register new components that depend on this instance ...
                     this.changeBus.unregister(other.nodeTypes);
                     this.changeBus.unregister(other.lockManager);
-                    this.changeBus.register(this.nodeTypes);
-                    this.changeBus.register(this.lockManager);
+                    this.changeBus.registerIsolated(this.nodeTypes);
+                    this.changeBus.registerIsolated(this.lockManager);
                     this.persistentRegistry = other.persistentRegistry;
                     this.changeDispatchingQueue = other.changeDispatchingQueue;
                     this.clusteringService = other.clusteringService;
                     this.journal = other.journal;
+                    this.accessControlCache = other.accessControlCache;
                 } else {
                     // find the Schematic database and Infinispan Cache ...
                     CacheContainer container = config.getContentCacheContainer();
@@ -1091,8 +1095,10 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                     this.clusteringService = cacheChannel != null ? ClusteringService.startForked(forkStackId, cacheChannel) : null;
 
                     this.documentStore = connectors.hasConnectors() ? new FederatedDocumentStore(connectors, database) : new LocalDocumentStore(database);
+                    this.documentStore.localStore().setDurationRecorder(statistics);
                     this.txnMgr = this.documentStore.transactionManager();
                     this.transactions = createTransactions(cacheName, config.getTransactionMode(), this.txnMgr);
+                    checkSaveMode(cacheName, config.getSaveMode());
 
                     suspendExistingUserTransaction();
 
@@ -1100,7 +1106,8 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                     BinaryStorage binaryStorageConfig = config.getBinaryStorage();
                     binaryStore = binaryStorageConfig.getBinaryStore();
                     binaryStore.start();
-                    tempContext = tempContext.with(binaryStore);
+                    // Everything else uses the binary store through the context, which records the reads and writes ...
+                    tempContext = tempContext.with(new MonitoredBinaryStore(binaryStore, statistics));
 
                     // Now create the registry implementation and the execution context that uses it ...
                     this.persistentRegistry = new SystemNamespaceRegistry(this);
@@ -1111,7 +1118,7 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
 
                     // Create clustering service and event bus
                     this.changeDispatchingQueue = this.context().getCachedTreadPool("modeshape-event-dispatcher");
-                    ChangeBus localBus = new RepositoryChangeBus(name(), changeDispatchingQueue);
+                    ChangeBus localBus = new RepositoryChangeBus(name(), changeDispatchingQueue, statistics);
                     this.changeBus = clusteringService != null ? new ClusteredChangeBus(localBus, clusteringService) : localBus;
                     this.changeBus.start();
 
@@ -1120,12 +1127,15 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                     if (journaling.isEnabled()) {
                         boolean asyncWritesEnabled = journaling.asyncWritesEnabled();
                         LocalJournal localJournal = new LocalJournal(journaling.location(), asyncWritesEnabled,
-                                                                     journaling.maxDaysToKeepRecords());
+                                                                     journaling.maxDaysToKeepRecords(),
+                                                                     journaling.maxCommitBatchSize(),
+                                                                     journaling.maxCommitLatencyMillis());
+                        localJournal.withCommitStatistics(statistics);
                         this.journal = clusteringService != null ? new ClusteredJournal(localJournal, clusteringService) : localJournal;
                         this.journal.start();
                         if (asyncWritesEnabled) {
-                            // Register the journal as a normal asynchronous listener ...
-                            this.changeBus.register(journal);
+                            // Register the journal as an asynchronous listener with its own thread, since it writes to disk ...
+                            this.changeBus.registerIsolated(journal);
                         } else {
                             // Register the journal
                             this.changeBus.registerInThread(journal);
@@ -1143,17 +1153,22 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
 
                     // Set up the node type manager ...
                     this.nodeTypes = new RepositoryNodeTypeManager(this, true, true);
-                    this.changeBus.register(this.nodeTypes);
+                    // The repository's own listeners use threads of their own, so that slow JCR listeners can't delay them ...
+                    this.changeBus.registerIsolated(this.nodeTypes);
 
                     // Set up the lock manager ...
                     this.lockManager = new RepositoryLockManager(this);
-                    this.changeBus.register(this.lockManager);
+                    this.changeBus.registerIsolated(this.lockManager);
 
                     // Set up the unused binary value listener ...
-                    this.changeBus.register(new BinaryUsageChangeSetListener(binaryStore));
+                    this.changeBus.registerIsolated(new BinaryUsageChangeSetListener(binaryStore));
 
                     // Set up the monitoring listener ...
-                    this.changeBus.register(this.statistics);
+                    this.changeBus.registerIsolated(this.statistics);
+
+                    // Set up the cache of effective ACLs, which must be invalidated before the saving session continues ...
+                    this.accessControlCache = new AccessControlCache();
+                    this.changeBus.registerInThread(this.accessControlCache);
 
                     // Refresh several of the components information from the repository cache ...
                     this.persistentRegistry.refreshFromSystem();
@@ -1199,7 +1214,7 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
 
                 if (other != null && !change.sequencingChanged) {
                     this.sequencers = other.sequencers.with(this);
-                    if (!sequencers.isEmpty()) this.changeBus.register(this.sequencers);
+                    if (!sequencers.isEmpty()) this.changeBus.registerIsolated(this.sequencers);
                     this.changeBus.unregister(other.sequencers);
                 } else {
                     this.sequencers = new Sequencers(this, config, cache.getWorkspaceNames());
@@ -1209,7 +1224,7 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                 this.queryParsers = new QueryParsers(new JcrSql2QueryParser(), new XPathQueryParser(),
                                                      new FullTextSearchParser(), new JcrSqlQueryParser(), new JcrQomQueryParser());
                 this.repositoryQueryManager = new RepositoryQueryManager(this, indexingExecutor, config);
-                this.changeBus.register(this.repositoryQueryManager);
+                this.changeBus.registerIsolated(this.repositoryQueryManager);
 
                 // Check that we have parsers for all the required languages ...
                 assert this.queryParsers.getParserFor(Query.XPATH) != null;
@@ -1287,6 +1302,25 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
             return new SynchronizedTransactions(txnMgr);
         }
 
+        /**
+         * Optimistic saves replace each changed document only if no other save has written it since it was read. A cache with
+         * pessimistic locking makes that conditional replacement atomic with respect to other transactions, but a cache with
+         * optimistic locking only detects a concurrent write (upon commit) with its write skew check.
+         * 
+         * @param cacheName the name of the repository's cache; may not be null
+         * @param mode the save mode; may not be null
+         * @throws ConfigurationException if saves are optimistic but concurrent changes to the same node would not be detected
+         */
+        protected void checkSaveMode( String cacheName,
+                                      SaveMode mode ) {
+            if (mode != SaveMode.OPTIMISTIC) return;
+            LocalDocumentStore store = documentStore.localStore();
+            if (store.updatesRequirePreparing()) return;
+            if (!store.localCache().getCacheConfiguration().locking().writeSkewCheck()) {
+                throw new ConfigurationException(JcrI18n.optimisticSavesRequireWriteSkewCheck.text(getName(), cacheName));
+            }
+        }
+
         /**
          * Performs the steps required after the running state has been created and before a repository is considered
          * "initialized"
@@ -1354,6 +1388,9 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
                 // Have the query manager tell the providers to initialize the indexes. This may cause a background reindexing ...
                 queryManager().reindexIfNeeded();
 
+                // Process the sequencing work, including the work which was still pending when the repository was shut down ...
+                sequencers().start();
+
                 // Register the background processes.
                 // Do this last since we want the repository running before these are started ...
                 GarbageCollection gcConfig = config.getGarbageCollection();
@@ -1511,6 +1548,10 @@ public class JcrRepository implements org.modeshape.jcr.api.Repository {
             return statistics;
         }
 
+        protected final AccessControlCache accessControlCache() {
+            return accessControlCache;
+        }
+
         protected final Credentials anonymousCredentials() {
             return anonymousCredentialsIfSuppliedCredentialsFail;
         }
@@ -69,9 +69,24 @@ public class JcrRepositoryManager implements RepositoryManager {
         return repository().runningState().backupService().backupRepository(backupDirectory);
     }
 
+    @Override
+    public Problems backupRepository( File backupDirectory,
+                                      File previousBackupDirectory ) throws RepositoryException {
+        session().checkPermission(Path.ROOT_PATH, ModeShapePermissions.BACKUP);
+        return repository().runningState().backupService().backupRepository(backupDirectory, previousBackupDirectory);
+    }
+
     @Override
     public Problems restoreRepository( File backupDirectory ) throws RepositoryException {
         session().checkPermission(Path.ROOT_PATH, ModeShapePermissions.RESTORE);
         return repository().runningState().backupService().restoreRepository(repository(), backupDirectory);
     }
+
+    @Override
+    public Problems restoreRepository( File backupDirectory,
+                                       File... incrementalBackupDirectories ) throws RepositoryException {
+        session().checkPermission(Path.ROOT_PATH, ModeShapePermissions.RESTORE);
+        return repository().runningState().backupService().restoreRepository(repository(), backupDirectory,
+                                                                             incrementalBackupDirectories);
+    }
 }
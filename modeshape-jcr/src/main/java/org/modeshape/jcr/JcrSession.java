@@ -83,6 +83,7 @@ import org.modeshape.jcr.cache.ChildReference;
 import org.modeshape.jcr.cache.ChildReferences;
 import org.modeshape.jcr.cache.DocumentAlreadyExistsException;
 import org.modeshape.jcr.cache.DocumentNotFoundException;
+import org.modeshape.jcr.cache.DocumentVersionConflictException;
 import org.modeshape.jcr.cache.MutableCachedNode;
 import org.modeshape.jcr.cache.NodeCache;
 import org.modeshape.jcr.cache.NodeKey;
@@ -1148,6 +1149,7 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
         checkLive();
 
         // Perform the save, using 'JcrPreSave' operations ...
+        long start = System.nanoTime();
         SessionCache systemCache = createSystemCache(false);
         SystemContent systemContent = new SystemContent(systemCache);
         Map<NodeKey, NodeKey> baseVersionKeys = this.baseVersionKeys.get();
@@ -1163,6 +1165,8 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
             throw (cause instanceof RepositoryException) ? (RepositoryException)cause : new RepositoryException(e.getCause());
         } catch (DocumentNotFoundException e) {
             throw new InvalidItemStateException(JcrI18n.nodeModifiedBySessionWasRemovedByAnotherSession.text(e.getKey()), e);
+        } catch (DocumentVersionConflictException e) {
+            throw new InvalidItemStateException(JcrI18n.nodeModifiedBySessionWasModifiedByAnotherSession.text(e.getKey()), e);
         } catch (DocumentAlreadyExistsException e) {
             // Try to figure out which node in this transient state was the problem ...
             NodeKey key = new NodeKey(e.getKey());
@@ -1175,12 +1179,7 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
             throw new RepositoryException(t);
         }
 
-        try {
-            // Record the save operation ...
-            repository().statistics().increment(ValueMetric.SESSION_SAVES);
-        } catch (IllegalStateException e) {
-            // The repository has been shutdown ...
-        }
+        recordSave(start);
     }
 
     /**
@@ -1222,6 +1221,7 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
         }
 
         // Perform the save, using 'JcrPreSave' operations ...
+        long start = System.nanoTime();
         SessionCache systemCache = createSystemCache(false);
         SystemContent systemContent = new SystemContent(systemCache);
         Map<NodeKey, NodeKey> baseVersionKeys = this.baseVersionKeys.get();
@@ -1234,6 +1234,8 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
             throw (cause instanceof RepositoryException) ? (RepositoryException)cause : new RepositoryException(e.getCause());
         } catch (DocumentNotFoundException e) {
             throw new InvalidItemStateException(JcrI18n.nodeModifiedBySessionWasRemovedByAnotherSession.text(e.getKey()), e);
+        } catch (DocumentVersionConflictException e) {
+            throw new InvalidItemStateException(JcrI18n.nodeModifiedBySessionWasModifiedByAnotherSession.text(e.getKey()), e);
         } catch (DocumentAlreadyExistsException e) {
             // Try to figure out which node in this transient state was the problem ...
             NodeKey key = new NodeKey(e.getKey());
@@ -1246,12 +1248,7 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
             throw new RepositoryException(t);
         }
 
-        try {
-            // Record the save operation ...
-            repository().statistics().increment(ValueMetric.SESSION_SAVES);
-        } catch (IllegalStateException e) {
-            // The repository has been shutdown ...
-        }
+        recordSave(start);
     }
 
     @Override
@@ -1746,6 +1743,18 @@ public class JcrSession implements org.modeshape.jcr.api.Session {
         return sessionRegistry.getURI(prefix);
     }
 
+    private void recordSave( long start ) {
+        try {
+            // Record the save operation ...
+            RepositoryStatistics statistics = repository().statistics();
+            statistics.increment(ValueMetric.SESSION_SAVES);
+            Map<String, String> payload = Collections.singletonMap("userId", getUserID());
+            statistics.recordDuration(DurationMetric.SESSION_SAVE_TIME, System.nanoTime() - start, TimeUnit.NANOSECONDS, payload);
+        } catch (IllegalStateException e) {
+            // The repository has been shutdown ...
+        }
+    }
+
     @Override
     public void setNamespacePrefix( String newPrefix,
                                     String existingUri ) throws NamespaceException, RepositoryException {
@@ -26,6 +26,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.jcr.AccessDeniedException;
+import javax.jcr.ImportUUIDBehavior;
 import javax.jcr.InvalidItemStateException;
 import javax.jcr.InvalidSerializedDataException;
 import javax.jcr.ItemExistsException;
@@ -47,10 +48,13 @@ import org.modeshape.common.util.CheckArg;
 import org.modeshape.jcr.JcrContentHandler.EnclosingSAXException;
 import org.modeshape.jcr.api.federation.FederationManager;
 import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.DocumentAlreadyExistsException;
 import org.modeshape.jcr.cache.MutableCachedNode;
 import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.NodeNotFoundException;
 import org.modeshape.jcr.cache.RepositoryCache;
 import org.modeshape.jcr.cache.SessionCache;
+import org.modeshape.jcr.cache.document.BulkNodeWriter;
 import org.modeshape.jcr.cache.document.WritableSessionCache;
 import org.modeshape.jcr.value.InvalidPathException;
 import org.modeshape.jcr.value.Name;
@@ -71,6 +75,12 @@ import org.xml.sax.helpers.XMLReaderFactory;
 @ThreadSafe
 class JcrWorkspace implements org.modeshape.jcr.api.Workspace {
 
+    /**
+     * The number of children stored in each block of children written by bulk imports, copies and clones when document
+     * optimization is not enabled.
+     */
+    protected static final int DEFAULT_BULK_CHILDREN_PER_BLOCK = 1000;
+
     private final JcrSession session;
     private final String workspaceName;
     private final Lock lock = new ReentrantLock();
@@ -496,6 +506,128 @@ class JcrWorkspace implements org.modeshape.jcr.api.Workspace {
         return filteredSet;
     }
 
+    @Override
+    public void copyInBulk( String srcWorkspace,
+                            String srcAbsPath,
+                            String destAbsPath,
+                            int batchSize ) throws RepositoryException {
+        copyInBulk(srcWorkspace, srcAbsPath, destAbsPath, batchSize, false);
+    }
+
+    @Override
+    public void cloneInBulk( String srcWorkspace,
+                             String srcAbsPath,
+                             String destAbsPath,
+                             int batchSize ) throws RepositoryException {
+        copyInBulk(srcWorkspace, srcAbsPath, destAbsPath, batchSize, true);
+    }
+
+    private void copyInBulk( String srcWorkspace,
+                             String srcAbsPath,
+                             String destAbsPath,
+                             int batchSize,
+                             boolean clone ) throws RepositoryException {
+        CheckArg.isNotEmpty(srcAbsPath, "srcAbsPath");
+        CheckArg.isNotEmpty(destAbsPath, "destAbsPath");
+        CheckArg.isPositive(batchSize, "batchSize");
+
+        validateCrossWorkspaceAction(srcWorkspace);
+        if (clone && getName().equals(srcWorkspace)) {
+            throw new UnsupportedRepositoryOperationException(JcrI18n.bulkCloneRequiresDifferentWorkspace.text(srcWorkspace));
+        }
+
+        // Create the paths ...
+        PathFactory pathFactory = session.pathFactory();
+        Path srcPath = null;
+        try {
+            srcPath = pathFactory.create(srcAbsPath);
+        } catch (ValueFormatException e) {
+            throw new PathNotFoundException(JcrI18n.invalidPathParameter.text(srcAbsPath, "srcAbsPath"), e);
+        }
+
+        Path destPath = null;
+        try {
+            destPath = pathFactory.create(destAbsPath);
+        } catch (ValueFormatException e) {
+            throw new PathNotFoundException(JcrI18n.invalidPathParameter.text(destAbsPath, "destAbsPath"), e);
+        }
+        if (srcPath.isIdentifier()) {
+            throw new PathNotFoundException(JcrI18n.invalidPathParameter.text(srcAbsPath, "srcAbsPath"));
+        }
+        if (destPath.isIdentifier()) {
+            throw new PathNotFoundException(JcrI18n.invalidPathParameter.text(destAbsPath, "destAbsPath"));
+        }
+
+        // Doing a literal test here because the path pathFactory will canonicalize "/node[1]" to "/node"
+        if (destAbsPath.endsWith("]")) {
+            throw new RepositoryException(JcrI18n.pathCannotHaveSameNameSiblingIndex.text(destAbsPath));
+        }
+        if (srcPath.isRoot()) {
+            throw new RepositoryException(JcrI18n.bulkCopyOfRootNotSupported.text(srcWorkspace));
+        }
+        if (destPath.isRoot()) {
+            String msg = null;
+            if (clone) {
+                msg = JcrI18n.cannotCloneSubgraphIntoRoot.text(srcAbsPath, srcWorkspace, getName());
+            } else {
+                msg = JcrI18n.cannotCopySubgraphIntoRoot.text(srcAbsPath, srcWorkspace, getName());
+            }
+            throw new RepositoryException(msg);
+        }
+
+        try {
+            // The inner session is used only to validate the new top node, and is never saved ...
+            JcrSession targetSession = session.spawnSession(false);
+            AbstractJcrNode parentNode = targetSession.node(destPath.getParent());
+            Name newNodeName = destPath.getLastSegment().getName();
+
+            /*
+             * Find the source node and check if it is locked
+             */
+            JcrSession sourceSession = session.spawnSession(srcWorkspace, true);
+            AbstractJcrNode sourceNode = sourceSession.node(srcPath);
+            if (session.lockManager().isLocked(sourceNode)
+                && !session.lockManager().hasLockToken(sourceNode.getLock().getLockToken())) {
+                throw new LockException(srcAbsPath);
+            }
+            if (sourceNode.isExternal()) {
+                throw new ConstraintViolationException(JcrI18n.bulkCopyDoesNotSupportExternalNodes.text(srcAbsPath));
+            }
+            if (parentNode.isExternal()) {
+                throw new ConstraintViolationException(JcrI18n.bulkCopyRequiresInternalParent.text(parentNode.getPath()));
+            }
+
+            /*
+            * Use the JCR add child here to perform the parent validations
+            */
+            parentNode.addChildNode(newNodeName, sourceNode.getPrimaryTypeName(), null, false, false);
+
+            // Write the new nodes directly to this workspace ...
+            BulkNodeWriter writer = repository().repositoryCache().createBulkWriter(session.context(), workspaceName,
+                                                                                    parentNode.key(), batchSize,
+                                                                                    bulkChildrenPerBlock());
+            BulkSubtreeCopier copier = new BulkSubtreeCopier(session.context(), sourceSession.cache().getWorkspace(),
+                                                             session.cache().getWorkspace(), writer, clone,
+                                                             session.nodeTypes(), repository().systemWorkspaceKey());
+            copier.copy(sourceNode.key(), newNodeName);
+            // The writer publishes the events for all of the new nodes, which update the indexes in every process ...
+            writer.finish();
+        } catch (DocumentAlreadyExistsException e) {
+            // A node with the same key already exists in this workspace ...
+            throw new ItemExistsException(e.getMessage(), e);
+        } catch (NodeNotFoundException e) {
+            // The parent was removed while the content was being written ...
+            throw new InvalidItemStateException(e.getMessage(), e);
+        } catch (ItemNotFoundException e) {
+            // The destination path was not found ...
+            throw new PathNotFoundException(e.getLocalizedMessage(), e);
+        } catch (AccessControlException ace) {
+            throw new AccessDeniedException(ace);
+        } catch (InvalidPathException e) {
+            throw new RepositoryException(e.getLocalizedMessage(), e);
+        }
+    }
+
     protected void validateCrossWorkspaceAction( String srcWorkspace ) throws RepositoryException {
         CheckArg.isNotEmpty(srcWorkspace, "srcWorkspace");
 
@@ -727,6 +859,79 @@ class JcrWorkspace implements org.modeshape.jcr.api.Workspace {
         }
     }
 
+    @Override
+    public void importXMLInBulk( String parentAbsPath,
+                                 InputStream in,
+                                 int uuidBehavior,
+                                 int batchSize ) throws IOException, RepositoryException {
+        CheckArg.isNotNull(parentAbsPath, "parentAbsPath");
+        CheckArg.isNotNull(in, "in");
+        CheckArg.isPositive(batchSize, "batchSize");
+        session.checkLive();
+
+        boolean error = false;
+        try {
+            XMLReader parser = XMLReaderFactory.createXMLReader();
+            parser.setContentHandler(getBulkImportContentHandler(parentAbsPath, uuidBehavior, batchSize));
+            parser.parse(new InputSource(in));
+        } catch (EnclosingSAXException ese) {
+            Exception cause = ese.getException();
+            if (cause instanceof RepositoryException) {
+                throw (RepositoryException)cause;
+            }
+            throw new RepositoryException(cause);
+        } catch (SAXParseException se) {
+            error = true;
+            throw new InvalidSerializedDataException(se);
+        } catch (SAXException se) {
+            error = true;
+            throw new RepositoryException(se);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException t) {
+                if (!error) throw t; // throw only if no error in outer try
+            } catch (RuntimeException re) {
+                if (!error) throw re; // throw only if no error in outer try
+            }
+        }
+    }
+
+    private ContentHandler getBulkImportContentHandler( String parentAbsPath,
+                                                        int uuidBehavior,
+                                                        int batchSize ) throws RepositoryException {
+        if (uuidBehavior != ImportUUIDBehavior.IMPORT_UUID_CREATE_NEW
+            && uuidBehavior != ImportUUIDBehavior.IMPORT_UUID_COLLISION_THROW) {
+            throw new UnsupportedRepositoryOperationException(JcrI18n.bulkImportDoesNotSupportUuidBehavior.text(uuidBehavior));
+        }
+
+        // Create a new session, since the handler uses the session only for namespaces and node types ...
+        JcrSession session = this.session.spawnSession(false);
+
+        // Find the parent, which must be stored in this repository ...
+        AbstractJcrNode parent = session.getNode(parentAbsPath);
+        if (parent.isExternal()) {
+            throw new ConstraintViolationException(JcrI18n.bulkImportRequiresInternalParent.text(parent.getPath()));
+        }
+        if (!parent.isCheckedOut()) {
+            throw new VersionException(JcrI18n.nodeIsCheckedIn.text(parent.getPath()));
+        }
+        parent.checkForLock();
+        session.checkPermission(workspaceName, parent.path(), ModeShapePermissions.ADD_NODE);
+        return new JcrBulkContentHandler(session, parent, uuidBehavior, batchSize, bulkChildrenPerBlock());
+    }
+
+    /**
+     * Get the number of children that bulk operations should store in each block of children, which is the size the document
+     * optimizer would use.
+     * 
+     * @return the number of children per block; always positive
+     */
+    int bulkChildrenPerBlock() {
+        RepositoryConfiguration.DocumentOptimization optimization = repository().getConfiguration().getDocumentOptimization();
+        return optimization.isEnabled() ? optimization.getChildCountTarget() : DEFAULT_BULK_CHILDREN_PER_BLOCK;
+    }
+
     @Override
     public String[] getAccessibleWorkspaceNames() throws RepositoryException {
         session.checkLive();
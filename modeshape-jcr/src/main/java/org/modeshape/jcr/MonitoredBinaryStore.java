@@ -0,0 +1,150 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import javax.jcr.RepositoryException;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.api.monitor.DurationMetric;
+import org.modeshape.jcr.mimetype.MimeTypeDetector;
+import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.BinaryValue;
+import org.modeshape.jcr.value.binary.BinaryStore;
+import org.modeshape.jcr.value.binary.BinaryStoreException;
+
+/**
+ * A {@link BinaryStore} that records the duration of the reads and writes of another store. The read duration covers obtaining the
+ * stream to the content, since the content itself is read by the caller.
+ */
+@ThreadSafe
+final class MonitoredBinaryStore implements BinaryStore {
+
+    private final BinaryStore delegate;
+    private final DurationRecorder durations;
+
+    MonitoredBinaryStore( BinaryStore delegate,
+                          DurationRecorder durations ) {
+        assert delegate != null;
+        assert durations != null;
+        this.delegate = delegate;
+        this.durations = durations;
+    }
+
+    @Override
+    public void start() {
+        delegate.start();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public long getMinimumBinarySizeInBytes() {
+        return delegate.getMinimumBinarySizeInBytes();
+    }
+
+    @Override
+    public void setMinimumBinarySizeInBytes( long minSizeInBytes ) {
+        delegate.setMinimumBinarySizeInBytes(minSizeInBytes);
+    }
+
+    @Override
+    public void setTextExtractors( TextExtractors textExtractors ) {
+        delegate.setTextExtractors(textExtractors);
+    }
+
+    @Override
+    public void setMimeTypeDetector( MimeTypeDetector mimeTypeDetector ) {
+        delegate.setMimeTypeDetector(mimeTypeDetector);
+    }
+
+    @Override
+    public BinaryValue storeValue( InputStream stream ) throws BinaryStoreException {
+        long start = System.nanoTime();
+        try {
+            return delegate.storeValue(stream);
+        } finally {
+            recordDuration(DurationMetric.BINARY_STORE_WRITE_TIME, start);
+        }
+    }
+
+    @Override
+    public BinaryValue storeValue( InputStream stream,
+                                   String hint ) throws BinaryStoreException {
+        long start = System.nanoTime();
+        try {
+            return delegate.storeValue(stream, hint);
+        } finally {
+            recordDuration(DurationMetric.BINARY_STORE_WRITE_TIME, start);
+        }
+    }
+
+    @Override
+    public InputStream getInputStream( BinaryKey key ) throws BinaryStoreException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getInputStream(key);
+        } finally {
+            recordDuration(DurationMetric.BINARY_STORE_READ_TIME, start);
+        }
+    }
+
+    @Override
+    public boolean hasBinary( BinaryKey key ) {
+        return delegate.hasBinary(key);
+    }
+
+    @Override
+    public void markAsUnused( Iterable<BinaryKey> keys ) throws BinaryStoreException {
+        delegate.markAsUnused(keys);
+    }
+
+    @Override
+    public void removeValuesUnusedLongerThan( long minimumAge,
+                                              TimeUnit unit ) throws BinaryStoreException {
+        delegate.removeValuesUnusedLongerThan(minimumAge, unit);
+    }
+
+    @Override
+    public String getText( BinaryValue binary ) throws BinaryStoreException {
+        return delegate.getText(binary);
+    }
+
+    @Override
+    public String getMimeType( BinaryValue binary,
+                               String name ) throws IOException, RepositoryException {
+        return delegate.getMimeType(binary, name);
+    }
+
+    @Override
+    public Iterable<BinaryKey> getAllBinaryKeys() throws BinaryStoreException {
+        return delegate.getAllBinaryKeys();
+    }
+
+    private void recordDuration( DurationMetric metric,
+                                 long start ) {
+        durations.recordDuration(metric, System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
@@ -0,0 +1,536 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.logging.Logger;
+import org.modeshape.common.util.FileUtil;
+import org.modeshape.common.util.NamedThreadFactory;
+import org.modeshape.common.util.SecureHash;
+import org.modeshape.jcr.api.monitor.ValueMetric;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.ChildReference;
+import org.modeshape.jcr.cache.NodeCache;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.spi.index.IndexWriter;
+import org.modeshape.jcr.value.NamespaceRegistry;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.PathFactory;
+
+/**
+ * Crawls existing content and adds each queryable node to an {@link IndexWriter}. The content below a node is split into
+ * subtrees which are crawled concurrently by a pool of threads. The path of each node is computed from the path of its parent,
+ * and each thread keeps a bounded number of nodes that are waiting to be reindexed in memory, writing any others to disk.
+ * <p>
+ * While all of the content below a node is reindexed, the reindexer records which of the subtrees have been completed in a
+ * checkpoint file, so that an interrupted reindexing of the same content for the same index providers resumes with the subtrees
+ * that have not yet been reindexed. A checkpoint is removed once its reindexing completes, and all of them are removed once all
+ * of the content has been reindexed after clearing the indexes. These files are kept in a folder named after the repository, so
+ * that repositories sharing the configured location never see each other's files. The progress is reported through the
+ * {@link ValueMetric#REINDEXED_NODE_COUNT} and {@link ValueMetric#REINDEXING_QUEUE_SIZE} metrics.
+ * </p>
+ */
+@ThreadSafe
+class Reindexer {
+
+    /**
+     * The number of subtrees per thread that the content is split into, so that threads which are done with smaller subtrees
+     * can pick up other work.
+     */
+    private static final int SUBTREES_PER_THREAD = 4;
+    private static final String CHECKPOINT_FILE_PREFIX = "checkpoint-";
+    private static final String CLEAN_REINDEXING_FILE_NAME = "clean-reindexing";
+    private static final String QUEUE_FILE_PREFIX = "queue-";
+    private static final String UTF_8 = "UTF-8";
+
+    private final Logger logger = Logger.getLogger(getClass());
+    private final String repositoryName;
+    private final RepositoryStatistics statistics;
+    private final PathFactory pathFactory;
+    private final NamespaceRegistry namespaces;
+    private final File directory;
+    private final int threadCount;
+    private final int maxQueuedNodes;
+
+    Reindexer( String repositoryName,
+               ExecutionContext context,
+               RepositoryStatistics statistics,
+               RepositoryConfiguration.Reindexing config ) {
+        this.repositoryName = repositoryName;
+        this.statistics = statistics;
+        this.pathFactory = context.getValueFactories().getPathFactory();
+        this.namespaces = context.getNamespaceRegistry();
+        this.directory = new File(config.location(), repositoryName);
+        this.threadCount = config.threadCount();
+        this.maxQueuedNodes = config.maxQueuedNodes();
+        removeQueueFiles();
+    }
+
+    /**
+     * Determine whether a reindexing of all the content, which started by clearing all of the indexes, was interrupted before it
+     * completed. In that case the indexes should not be cleared again, so that the reindexing can resume.
+     * 
+     * @return true if an interrupted reindexing of all the content can be resumed, or false otherwise
+     */
+    boolean isCleanReindexingInterrupted() {
+        return new File(directory, CLEAN_REINDEXING_FILE_NAME).exists();
+    }
+
+    /**
+     * Record that all of the indexes have been cleared and all of the content is about to be reindexed. Since the indexes are
+     * empty, the progress recorded by all other reindexing operations is discarded.
+     */
+    void cleanReindexingStarted() {
+        removeCheckpoints();
+        try {
+            if (directory.mkdirs() || directory.isDirectory()) {
+                new File(directory, CLEAN_REINDEXING_FILE_NAME).createNewFile();
+            }
+        } catch (IOException e) {
+            logger.warn(JcrI18n.errorRecordingReindexingProgress, directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Record that all of the content has been reindexed after the indexes were cleared. Any progress recorded by other
+     * reindexing operations that were interrupted is discarded, since all of the content has been reindexed since then.
+     */
+    void cleanReindexingCompleted() {
+        removeCheckpoints();
+        new File(directory, CLEAN_REINDEXING_FILE_NAME).delete();
+    }
+
+    /**
+     * Reindex the subgraphs below the supplied children of a node which has already been reindexed.
+     * 
+     * @param workspaceName the name of the workspace; may not be null
+     * @param cache the cache for the workspace; may not be null
+     * @param parentKey the key of the node whose children are to be reindexed; may not be null
+     * @param parentPath the path of the node whose children are to be reindexed; may not be null
+     * @param children the references to the children; may not be null
+     * @param depth the depth of the content to be indexed
+     * @param indexes the index writer that should be used; may not be null
+     * @param providerNames the names of the index providers whose indexes are written by {@code indexes}, which identify
+     *        (along with the workspace and node) the progress that an interrupted reindexing can resume; may not be null
+     */
+    void reindex( String workspaceName,
+                  NodeCache cache,
+                  NodeKey parentKey,
+                  Path parentPath,
+                  List<ChildReference> children,
+                  int depth,
+                  IndexWriter indexes,
+                  Set<String> providerNames ) {
+        if (children.isEmpty()) return;
+        List<PendingNode> subtrees = new ArrayList<PendingNode>(children.size());
+        for (ChildReference child : children) {
+            subtrees.add(new PendingNode(child.getKey(), parentKey, pathFactory.create(parentPath, child.getSegment())));
+        }
+        subtrees = split(workspaceName, cache, subtrees, depth, indexes);
+        if (subtrees.isEmpty()) return;
+
+        // Only a crawl of all of the content below the node can be resumed ...
+        Checkpoint checkpoint = depth == Integer.MAX_VALUE ? openCheckpoint(workspaceName, parentKey, providerNames) : null;
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(threadCount, subtrees.size()),
+                                                               new NamedThreadFactory("modeshape-reindexing-worker"));
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>(subtrees.size());
+            for (PendingNode subtree : subtrees) {
+                if (checkpoint != null && checkpoint.isCompleted(subtree.key)) continue;
+                results.add(workers.submit(new SubtreeCrawler(workspaceName, cache, subtree, depth, indexes, checkpoint)));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+            if (checkpoint != null) checkpoint.remove();
+        } catch (InterruptedException e) {
+            // The reindexing was stopped, so keep the checkpoint and let the workers stop ...
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if (cause instanceof Error) throw (Error)cause;
+            throw new RuntimeException(cause);
+        } finally {
+            workers.shutdownNow();
+            if (checkpoint != null) checkpoint.close();
+        }
+    }
+
+    /**
+     * Split the content below the supplied nodes into enough subtrees that every thread has some work to do. The nodes at the
+     * levels above the returned subtrees are reindexed by this method.
+     */
+    private List<PendingNode> split( String workspaceName,
+                                     NodeCache cache,
+                                     List<PendingNode> level,
+                                     int depth,
+                                     IndexWriter indexes ) {
+        while (!level.isEmpty() && level.size() < threadCount * SUBTREES_PER_THREAD) {
+            List<PendingNode> nextLevel = new ArrayList<PendingNode>();
+            List<CachedNode> nodes = new ArrayList<CachedNode>(level.size());
+            List<PendingNode> found = new ArrayList<PendingNode>(level.size());
+            for (PendingNode pending : level) {
+                CachedNode node = cache.getNode(pending.key);
+                if (node == null || !node.isQueryable(cache)) continue;
+                Path path = pathOf(node, pending, cache);
+                nodes.add(node);
+                found.add(new PendingNode(pending.key, pending.parentKey, path));
+                if (path.size() > depth) continue;
+                for (ChildReference childRef : node.getChildReferences(cache)) {
+                    nextLevel.add(new PendingNode(childRef.getKey(), pending.key, pathFactory.create(path, childRef.getSegment())));
+                }
+                if (nextLevel.size() > maxQueuedNodes) {
+                    // The next level is too large to keep in memory, so use the subtrees at this level ...
+                    return level;
+                }
+            }
+            for (int i = 0; i != nodes.size(); ++i) {
+                index(workspaceName, nodes.get(i), found.get(i).path, cache, indexes);
+            }
+            level = nextLevel;
+        }
+        return level;
+    }
+
+    protected final Path pathOf( CachedNode node,
+                                 PendingNode pending,
+                                 NodeCache cache ) {
+        if (pending.parentKey.equals(node.getParentKey(cache))) {
+            return pending.path;
+        }
+        // This is a shared node reached through one of its additional parents, so index it under its primary path ...
+        return node.getPath(cache);
+    }
+
+    protected final void index( String workspaceName,
+                                CachedNode node,
+                                Path path,
+                                NodeCache cache,
+                                IndexWriter indexes ) {
+        indexes.add(workspaceName, node.getKey(), path, node.getPrimaryType(cache), node.getMixinTypes(cache),
+                    node.getPropertiesByName(cache));
+        statistics.increment(ValueMetric.REINDEXED_NODE_COUNT);
+    }
+
+    private Checkpoint openCheckpoint( String workspaceName,
+                                       NodeKey parentKey,
+                                       Set<String> providerNames ) {
+        // The same content reindexed for other index providers has to be crawled separately ...
+        String crawlId = workspaceName + "/" + parentKey + "/" + new TreeSet<String>(providerNames);
+        File file = new File(directory, CHECKPOINT_FILE_PREFIX + SecureHash.sha1(crawlId));
+        Set<String> completed = new HashSet<String>();
+        try {
+            if (file.exists()) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+                try {
+                    if (crawlId.equals(reader.readLine())) {
+                        String line = null;
+                        while ((line = reader.readLine()) != null) {
+                            completed.add(line);
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+                if (!completed.isEmpty()) {
+                    logger.info(JcrI18n.resumingReindexing, workspaceName, repositoryName, completed.size());
+                }
+            }
+            if (!directory.mkdirs() && !directory.isDirectory()) {
+                throw new IOException(directory.getAbsolutePath());
+            }
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF_8);
+            writer.write(crawlId);
+            writer.write('\n');
+            for (String key : completed) {
+                writer.write(key);
+                writer.write('\n');
+            }
+            writer.flush();
+            return new Checkpoint(file, completed, writer);
+        } catch (IOException e) {
+            logger.warn(JcrI18n.errorRecordingReindexingProgress, directory, e.getMessage());
+            return null;
+        }
+    }
+
+    private void removeCheckpoints() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (file.getName().startsWith(CHECKPOINT_FILE_PREFIX)) file.delete();
+        }
+    }
+
+    private void removeQueueFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            // These are left over from a process that stopped while reindexing ...
+            if (file.getName().startsWith(QUEUE_FILE_PREFIX)) file.delete();
+        }
+    }
+
+    /**
+     * A node that is waiting to be reindexed, along with the key of the parent through which it was found and the path computed
+     * from the parent's path.
+     */
+    protected static final class PendingNode {
+        protected final NodeKey key;
+        protected final NodeKey parentKey;
+        protected final Path path;
+
+        protected PendingNode( NodeKey key,
+                               NodeKey parentKey,
+                               Path path ) {
+            this.key = key;
+            this.parentKey = parentKey;
+            this.path = path;
+        }
+    }
+
+    /**
+     * The record of the subtrees that have been completely reindexed, which is appended to as each subtree completes.
+     */
+    @ThreadSafe
+    protected final class Checkpoint {
+        private final File file;
+        private final Set<String> completed;
+        private final Writer writer;
+
+        protected Checkpoint( File file,
+                              Set<String> completed,
+                              Writer writer ) {
+            this.file = file;
+            this.completed = completed;
+            this.writer = writer;
+        }
+
+        protected synchronized boolean isCompleted( NodeKey subtreeKey ) {
+            return completed.contains(subtreeKey.toString());
+        }
+
+        protected synchronized void completed( NodeKey subtreeKey ) {
+            String key = subtreeKey.toString();
+            if (!completed.add(key)) return;
+            try {
+                writer.write(key);
+                writer.write('\n');
+                writer.flush();
+            } catch (IOException e) {
+                logger.warn(JcrI18n.errorRecordingReindexingProgress, file, e.getMessage());
+            }
+        }
+
+        protected synchronized void close() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.debug(e, "Error closing the reindexing checkpoint '{0}'", file);
+            }
+        }
+
+        protected synchronized void remove() {
+            close();
+            file.delete();
+        }
+    }
+
+    /**
+     * Reindexes one subtree, depth-first, keeping at most {@link Reindexer#maxQueuedNodes} pending nodes in memory.
+     */
+    protected final class SubtreeCrawler implements Callable<Void> {
+        private final String workspaceName;
+        private final NodeCache cache;
+        private final PendingNode subtree;
+        private final int depth;
+        private final IndexWriter indexes;
+        private final Checkpoint checkpoint;
+
+        protected SubtreeCrawler( String workspaceName,
+                                  NodeCache cache,
+                                  PendingNode subtree,
+                                  int depth,
+                                  IndexWriter indexes,
+                                  Checkpoint checkpoint ) {
+            this.workspaceName = workspaceName;
+            this.cache = cache;
+            this.subtree = subtree;
+            this.depth = depth;
+            this.indexes = indexes;
+            this.checkpoint = checkpoint;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            PendingNodes queue = new PendingNodes();
+            try {
+                queue.push(subtree);
+                PendingNode pending = null;
+                while ((pending = queue.pop()) != null) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        // The reindexing was stopped, so this subtree is not complete ...
+                        return null;
+                    }
+                    CachedNode node = cache.getNode(pending.key);
+                    if (node == null || !node.isQueryable(cache)) continue;
+                    Path path = pathOf(node, pending, cache);
+                    index(workspaceName, node, path, cache, indexes);
+                    if (path.size() > depth) continue;
+                    for (ChildReference childRef : node.getChildReferences(cache)) {
+                        queue.push(new PendingNode(childRef.getKey(), pending.key, pathFactory.create(path, childRef.getSegment())));
+                    }
+                }
+            } finally {
+                queue.clear();
+            }
+            if (checkpoint != null) checkpoint.completed(subtree.key);
+            return null;
+        }
+    }
+
+    /**
+     * A stack of nodes waiting to be reindexed. When there are too many nodes to keep in memory, the oldest half of them are
+     * written to a file, which is read back once the nodes in memory have been processed.
+     */
+    @NotThreadSafe
+    protected final class PendingNodes {
+        private final Deque<PendingNode> nodes = new ArrayDeque<PendingNode>();
+        private final Deque<File> files = new ArrayDeque<File>();
+        private boolean spillingFailed;
+
+        protected void push( PendingNode node ) {
+            if (nodes.size() >= maxQueuedNodes && !spillingFailed) {
+                try {
+                    spill();
+                } catch (IOException e) {
+                    // Keep all of the pending nodes in memory ...
+                    spillingFailed = true;
+                    logger.warn(JcrI18n.errorRecordingReindexingProgress, directory, e.getMessage());
+                }
+            }
+            nodes.push(node);
+            statistics.increment(ValueMetric.REINDEXING_QUEUE_SIZE);
+        }
+
+        protected PendingNode pop() throws IOException {
+            if (nodes.isEmpty() && !files.isEmpty()) unspill();
+            PendingNode node = nodes.poll();
+            if (node != null) statistics.decrement(ValueMetric.REINDEXING_QUEUE_SIZE);
+            return node;
+        }
+
+        protected void clear() {
+            statistics.increment(ValueMetric.REINDEXING_QUEUE_SIZE, -nodes.size());
+            nodes.clear();
+            for (File file : files) {
+                try {
+                    statistics.increment(ValueMetric.REINDEXING_QUEUE_SIZE, -countOf(file));
+                } catch (IOException e) {
+                    logger.debug(e, "Error reading the reindexing queue file '{0}'", file);
+                }
+                FileUtil.delete(file);
+            }
+            files.clear();
+        }
+
+        private void spill() throws IOException {
+            if (!directory.mkdirs() && !directory.isDirectory()) {
+                throw new IOException(directory.getAbsolutePath());
+            }
+            File file = File.createTempFile(QUEUE_FILE_PREFIX, ".dat", directory);
+            int count = nodes.size() / 2;
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                output.writeInt(count);
+                for (int i = 0; i != count; ++i) {
+                    PendingNode node = nodes.removeLast();
+                    writeString(node.key.toString(), output);
+                    writeString(node.parentKey.toString(), output);
+                    writeString(node.path.getString(namespaces), output);
+                }
+            } finally {
+                output.close();
+            }
+            files.push(file);
+        }
+
+        private void unspill() throws IOException {
+            File file = files.pop();
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                int count = input.readInt();
+                for (int i = 0; i != count; ++i) {
+                    NodeKey key = new NodeKey(readString(input));
+                    NodeKey parentKey = new NodeKey(readString(input));
+                    Path path = pathFactory.create(readString(input));
+                    nodes.addFirst(new PendingNode(key, parentKey, path));
+                }
+            } finally {
+                input.close();
+            }
+            FileUtil.delete(file);
+        }
+
+        private int countOf( File file ) throws IOException {
+            DataInputStream input = new DataInputStream(new FileInputStream(file));
+            try {
+                return input.readInt();
+            } finally {
+                input.close();
+            }
+        }
+
+        private void writeString( String value,
+                                  DataOutputStream output ) throws IOException {
+            byte[] bytes = value.getBytes(UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+
+        private String readString( DataInputStream input ) throws IOException {
+            byte[] bytes = new byte[input.readInt()];
+            input.readFully(bytes);
+            return new String(bytes, UTF_8);
+        }
+    }
+}
@@ -64,6 +64,7 @@ import org.modeshape.common.util.CheckArg;
 import org.modeshape.common.util.ObjectUtil;
 import org.modeshape.common.util.StringUtil;
 import org.modeshape.connector.filesystem.FileSystemConnector;
+import org.modeshape.jcr.index.local.LocalIndexProvider;
 import org.modeshape.jcr.security.AnonymousProvider;
 import org.modeshape.jcr.security.JaasProvider;
 import org.modeshape.jcr.value.binary.AbstractBinaryStore;
@@ -244,6 +245,16 @@ public class RepositoryConfiguration {
          */
         public static final String TRANSACTION_MODE = "transactionMode";
 
+        /**
+         * The specification of how sessions guard the nodes they change when saving. The default value of 'pessimistic' locks all
+         * of the changed nodes in the storage before any changes are written, and the last save to change a property wins. The
+         * value of 'optimistic' does not lock the nodes up front; instead each changed document is replaced only if no other save
+         * has written it since it was read, conflicting changes to properties are rejected using each node's version stamp, and
+         * saves that conflict are retried after a short, randomized pause with the child references merged again. Optimistic
+         * saves require a cache with pessimistic locking or with a write skew check.
+         */
+        public static final String SAVE_MODE = "saveMode";
+
         /**
          * The name for the field whose value is a document containing the monitoring information.
          */
@@ -365,6 +376,40 @@ public class RepositoryConfiguration {
          */
         public static final String COMPOSITE_STORE_NAMED_BINARY_STORES = "namedStores";
 
+        /**
+         * The name for the optional field under a composite "binaryStorage" whose value is a document describing how binary
+         * values are moved between a hot and a cold named store.
+         */
+        public static final String COMPOSITE_STORE_TIERING = "tiering";
+
+        /**
+         * The name for the field under "binaryStorage/tiering" specifying the name of the store holding frequently-read values.
+         */
+        public static final String TIERING_HOT_STORE = "hotStore";
+
+        /**
+         * The name for the field under "binaryStorage/tiering" specifying the name of the store holding rarely-read values.
+         */
+        public static final String TIERING_COLD_STORE = "coldStore";
+
+        /**
+         * The name for the field under "binaryStorage/tiering" specifying the number of minutes after which a value in the hot
+         * store that has not been read is moved to the cold store.
+         */
+        public static final String TIERING_DEMOTE_AFTER_IDLE_MINUTES = "demoteAfterIdleMinutes";
+
+        /**
+         * The name for the field under "binaryStorage/tiering" specifying how many times a value in the cold store must be read
+         * between two runs of the tiering policy to be moved to the hot store.
+         */
+        public static final String TIERING_PROMOTE_AFTER_READS = "promoteAfterReads";
+
+        /**
+         * The name for the field under "binaryStorage/tiering" specifying the number of minutes between two runs of the tiering
+         * policy.
+         */
+        public static final String TIERING_INTERVAL_IN_MINUTES = "intervalInMinutes";
+
         /**
          * The name for the field whose value is a document containing security information.
          */
@@ -518,6 +563,53 @@ public class RepositoryConfiguration {
          * Whether asynchronous writes into the journal should be enabled or not.
          */
         public static final String ASYNC_WRITES_ENABLED = "asyncWritesEnabled";
+
+        /**
+         * The maximum number of journal records which are committed to disk together. A value larger than 1 enables group commits.
+         */
+        public static final String MAX_COMMIT_BATCH_SIZE = "maxCommitBatchSize";
+
+        /**
+         * The maximum number of milliseconds a group commit waits for other records before committing a batch which isn't full.
+         */
+        public static final String MAX_COMMIT_LATENCY_MILLIS = "maxCommitLatencyMillis";
+
+        /**
+         * The name of the reindexing schema field.
+         */
+        public static final String REINDEXING = "reindexing";
+
+        /**
+         * The location where the reindexing progress and the overflow of the reindexing queue should be kept
+         */
+        public static final String REINDEXING_LOCATION = "location";
+
+        /**
+         * The number of threads which crawl separate subtrees of the content concurrently while reindexing.
+         */
+        public static final String REINDEXING_THREAD_COUNT = "threadCount";
+
+        /**
+         * The maximum number of nodes a reindexing thread keeps in memory before it writes pending nodes to disk.
+         */
+        public static final String REINDEXING_MAX_QUEUED_NODES = "maxQueuedNodes";
+
+        /**
+         * The location (under "sequencing") where the pending sequencing work is kept, so that it survives a restart. When this is
+         * not specified, the pending work is only kept in memory.
+         */
+        public static final String SEQUENCING_QUEUE_LOCATION = "queueLocation";
+
+        /**
+         * The maximum number of pending sequencing work items (under "sequencing") that are kept in memory. Additional work is
+         * kept on disk when a queue location is specified, or otherwise waits for room in memory.
+         */
+        public static final String SEQUENCING_MAX_QUEUE_SIZE = "maxQueueSize";
+
+        /**
+         * The number of threads (under "sequencing") which concurrently process the sequencing work of a repository.
+         */
+        public static final String SEQUENCING_THREAD_COUNT = "threadCount";
     }
 
     public static class Default {
@@ -526,6 +618,21 @@ public class RepositoryConfiguration {
          */
         public static final long MINIMUM_BINARY_SIZE_IN_BYTES = 4 * 1024L;
 
+        /**
+         * The default value of the {@link FieldName#TIERING_DEMOTE_AFTER_IDLE_MINUTES} field is '{@value} ' (1 day).
+         */
+        public static final int TIERING_DEMOTE_AFTER_IDLE_MINUTES = 24 * 60;
+
+        /**
+         * The default value of the {@link FieldName#TIERING_PROMOTE_AFTER_READS} field is '{@value} '.
+         */
+        public static final int TIERING_PROMOTE_AFTER_READS = 3;
+
+        /**
+         * The default value of the {@link FieldName#TIERING_INTERVAL_IN_MINUTES} field is '{@value} '.
+         */
+        public static final int TIERING_INTERVAL_IN_MINUTES = 60;
+
         /**
          * The default value of the {@link FieldName#ALLOW_CREATION} field is '{@value} '.
          */
@@ -541,6 +648,11 @@ public class RepositoryConfiguration {
          */
         public static final TransactionMode TRANSACTION_MODE = TransactionMode.AUTO;
 
+        /**
+         * The default value of the {@link FieldName#SAVE_MODE} field is '{@value} '.
+         */
+        public static final SaveMode SAVE_MODE = SaveMode.PESSIMISTIC;
+
         /**
          * The default value of the {@link FieldName#JAAS_POLICY_NAME} field is '{@value} '.
          */
@@ -590,6 +702,18 @@ public class RepositoryConfiguration {
         // by default journal entries are kept indefinitely
         public static final int MAX_DAYS_TO_KEEP_RECORDS = -1;
         public static final boolean ASYNC_WRITES_ENABLED = false;
+        // by default each journal record is committed on its own
+        public static final int MAX_COMMIT_BATCH_SIZE = 1;
+        public static final long MAX_COMMIT_LATENCY_MILLIS = 0L;
+
+        public static final String REINDEXING_LOCATION = "modeshape/reindexing";
+        // by default use one thread per processor, but no more than 8
+        public static final int REINDEXING_THREAD_COUNT = Math.min(Runtime.getRuntime().availableProcessors(), 8);
+        public static final int REINDEXING_MAX_QUEUED_NODES = 10000;
+
+        public static final int SEQUENCING_MAX_QUEUE_SIZE = 10000;
+        // by default use one thread per processor, but no more than 8
+        public static final int SEQUENCING_THREAD_COUNT = Math.min(Runtime.getRuntime().availableProcessors(), 8);
     }
 
     public static final class FieldValue {
@@ -680,10 +804,10 @@ public class RepositoryConfiguration {
 
         SEQUENCER_ALIASES = Collections.unmodifiableMap(aliases);
 
-        // String localIndexProvider = LocalIndexProvider.class.getName();
+        String localIndexProvider = LocalIndexProvider.class.getName();
         aliases = new HashMap<String, String>();
-        // aliases.put("local", localIndexProvider);
-        // aliases.put("files", localIndexProvider);
+        aliases.put("local", localIndexProvider);
+        aliases.put("files", localIndexProvider);
 
         INDEX_PROVIDER_ALIASES = Collections.unmodifiableMap(aliases);
 
@@ -964,6 +1088,15 @@ public class RepositoryConfiguration {
         return new Journaling(doc.getDocument(FieldName.JOURNALING));
     }
 
+    /**
+     * Returns the reindexing configuration
+     * 
+     * @return a {@link Reindexing} instance, never {@code null}
+     */
+    public Reindexing getReindexing() {
+        return new Reindexing(doc.getDocument(FieldName.REINDEXING));
+    }
+
     /**
      * Returns the initial content configuration for this repository configuration
      * 
@@ -1180,7 +1313,24 @@ public class RepositoryConfiguration {
                     throw new BinaryStoreException(JcrI18n.missingVariableValue.text("namedStores"));
                 }
 
-                store = new CompositeBinaryStore(binaryStores);
+                CompositeBinaryStore compositeStore = new CompositeBinaryStore(binaryStores);
+                Document tiering = binaryStorage.getDocument(FieldName.COMPOSITE_STORE_TIERING);
+                if (tiering != null) {
+                    String hotStore = tiering.getString(FieldName.TIERING_HOT_STORE, Default.DEFAULT);
+                    String coldStore = tiering.getString(FieldName.TIERING_COLD_STORE);
+                    if (StringUtil.isBlank(coldStore)) {
+                        throw new BinaryStoreException(JcrI18n.missingVariableValue.text(FieldName.TIERING_COLD_STORE));
+                    }
+                    int demoteAfterIdle = tiering.getInteger(FieldName.TIERING_DEMOTE_AFTER_IDLE_MINUTES,
+                                                             Default.TIERING_DEMOTE_AFTER_IDLE_MINUTES);
+                    int promoteAfterReads = tiering.getInteger(FieldName.TIERING_PROMOTE_AFTER_READS,
+                                                               Default.TIERING_PROMOTE_AFTER_READS);
+                    int interval = tiering.getInteger(FieldName.TIERING_INTERVAL_IN_MINUTES, Default.TIERING_INTERVAL_IN_MINUTES);
+                    compositeStore.setTieringPolicy(new CompositeBinaryStore.TieringPolicy(hotStore, coldStore, demoteAfterIdle,
+                                                                                           promoteAfterReads, interval,
+                                                                                           TimeUnit.MINUTES));
+                }
+                store = compositeStore;
 
             } else if (type.equalsIgnoreCase("custom")) {
                 classname = binaryStorage.getString(FieldName.CLASSNAME);
@@ -1400,6 +1550,16 @@ public class RepositoryConfiguration {
         return mode != null ? TransactionMode.valueOf(mode.trim().toUpperCase()) : Default.TRANSACTION_MODE;
     }
 
+    /**
+     * Get the mode that sessions use to guard the changed nodes when saving.
+     * 
+     * @return the save mode; never null
+     */
+    public SaveMode getSaveMode() {
+        String mode = doc.getString(FieldName.SAVE_MODE);
+        return mode != null ? SaveMode.valueOf(mode.trim().toUpperCase()) : Default.SAVE_MODE;
+    }
+
     /**
      * Get the name of the workspace that should be used for sessions where the client does not specify the name of the workspace.
      * 
@@ -1648,6 +1808,14 @@ public class RepositoryConfiguration {
         NONE
     }
 
+    /**
+     * Possible options for guarding the nodes changed by a session save.
+     */
+    public enum SaveMode {
+        PESSIMISTIC,
+        OPTIMISTIC
+    }
+
     /**
      * Get the ordered list of index providers defined in the configuration.
      * 
@@ -1948,6 +2116,38 @@ public class RepositoryConfiguration {
             return sequencing.getString(FieldName.THREAD_POOL, Default.SEQUENCING_POOL);
         }
 
+        /**
+         * The folder where the sequencing work that has not yet been processed is recorded, so that it is processed after a
+         * restart, and where the pending work is kept when there is too much to keep in memory. Each repository keeps its work
+         * in a subfolder named after the repository.
+         * 
+         * @return the folder, or null if the pending work should only be kept in memory (the default)
+         */
+        public String getQueueLocation() {
+            return sequencing.getString(FieldName.SEQUENCING_QUEUE_LOCATION);
+        }
+
+        /**
+         * The maximum number of pending sequencing work items that are kept in memory. When there is no
+         * {@link #getQueueLocation() queue location}, the threads which submit more work wait until there is room for it.
+         * 
+         * @return the maximum queue size; always positive
+         */
+        public int getMaxQueueSize() {
+            int maxQueueSize = sequencing.getInteger(FieldName.SEQUENCING_MAX_QUEUE_SIZE, Default.SEQUENCING_MAX_QUEUE_SIZE);
+            return maxQueueSize > 0 ? maxQueueSize : Default.SEQUENCING_MAX_QUEUE_SIZE;
+        }
+
+        /**
+         * The number of threads which concurrently process the sequencing work of the repository.
+         * 
+         * @return the number of threads; always positive
+         */
+        public int getThreadCount() {
+            int threadCount = sequencing.getInteger(FieldName.SEQUENCING_THREAD_COUNT, Default.SEQUENCING_THREAD_COUNT);
+            return threadCount > 0 ? threadCount : Default.SEQUENCING_THREAD_COUNT;
+        }
+
         /**
          * Get the ordered list of sequencers. All sequencers are configured with this list.
          * 
@@ -2129,6 +2329,48 @@ public class RepositoryConfiguration {
         }
     }
 
+    @Immutable
+    public class Reindexing {
+
+        private final Document reindexingDoc;
+
+        protected Reindexing( Document reindexingDoc ) {
+            this.reindexingDoc = reindexingDoc != null ? reindexingDoc : EMPTY;
+        }
+
+        /**
+         * The folder where the progress of running reindexing operations is recorded, so that an interrupted reindexing can be
+         * resumed, and where nodes which are waiting to be reindexed are stored when there are too many to keep in memory. Each
+         * repository keeps its files in a subfolder named after the repository, so several repositories can share this folder.
+         * 
+         * @return a {@code non-null} String
+         */
+        public String location() {
+            return this.reindexingDoc.getString(FieldName.REINDEXING_LOCATION, Default.REINDEXING_LOCATION);
+        }
+
+        /**
+         * The number of threads which reindex separate subtrees of the content concurrently.
+         * 
+         * @return the number of threads; always positive
+         */
+        public int threadCount() {
+            int threadCount = this.reindexingDoc.getInteger(FieldName.REINDEXING_THREAD_COUNT, Default.REINDEXING_THREAD_COUNT);
+            return threadCount > 0 ? threadCount : Default.REINDEXING_THREAD_COUNT;
+        }
+
+        /**
+         * The maximum number of nodes each reindexing thread keeps in memory while they are waiting to be reindexed.
+         * 
+         * @return the maximum number of queued nodes; always positive
+         */
+        public int maxQueuedNodes() {
+            int maxQueuedNodes = this.reindexingDoc.getInteger(FieldName.REINDEXING_MAX_QUEUED_NODES,
+                                                               Default.REINDEXING_MAX_QUEUED_NODES);
+            return maxQueuedNodes > 0 ? maxQueuedNodes : Default.REINDEXING_MAX_QUEUED_NODES;
+        }
+    }
+
     @Immutable
     public class Journaling {
 
@@ -2174,6 +2416,28 @@ public class RepositoryConfiguration {
             return this.journalingDoc.getBoolean(FieldName.ASYNC_WRITES_ENABLED, Default.ASYNC_WRITES_ENABLED);
         }
 
+        /**
+         * The maximum number of records which should be committed to disk in a single batch. A value larger than 1 means that
+         * concurrent writers are grouped together and share a single commit.
+         * 
+         * @return the maximum batch size; always positive
+         */
+        public int maxCommitBatchSize() {
+            int batchSize = this.journalingDoc.getInteger(FieldName.MAX_COMMIT_BATCH_SIZE, Default.MAX_COMMIT_BATCH_SIZE);
+            return batchSize > 0 ? batchSize : Default.MAX_COMMIT_BATCH_SIZE;
+        }
+
+        /**
+         * The maximum amount of time (in milliseconds) a group commit should wait for other records before committing a batch
+         * which isn't full.
+         * 
+         * @return the latency in milliseconds; never negative
+         */
+        public long maxCommitLatencyMillis() {
+            long latency = this.journalingDoc.getLong(FieldName.MAX_COMMIT_LATENCY_MILLIS, Default.MAX_COMMIT_LATENCY_MILLIS);
+            return latency > 0 ? latency : 0L;
+        }
+
         /**
          * Get the name of the thread pool that should be used for garbage collection journal entries.
          * 
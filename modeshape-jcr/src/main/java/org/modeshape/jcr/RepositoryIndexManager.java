@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.jcr.RepositoryException;
@@ -47,11 +48,14 @@ import org.modeshape.jcr.api.index.IndexDefinitionTemplate;
 import org.modeshape.jcr.api.index.IndexExistsException;
 import org.modeshape.jcr.api.index.InvalidIndexDefinitionException;
 import org.modeshape.jcr.api.index.NoSuchIndexException;
+import org.modeshape.jcr.api.monitor.DurationMetric;
 import org.modeshape.jcr.cache.SessionCache;
 import org.modeshape.jcr.cache.change.Change;
 import org.modeshape.jcr.cache.change.ChangeSet;
+import org.modeshape.jcr.cache.change.ChangeSetListener;
 import org.modeshape.jcr.cache.change.NodeAdded;
 import org.modeshape.jcr.cache.change.NodeRemoved;
+import org.modeshape.jcr.cache.change.Observable;
 import org.modeshape.jcr.cache.change.PropertyChanged;
 import org.modeshape.jcr.cache.change.WorkspaceAdded;
 import org.modeshape.jcr.cache.change.WorkspaceRemoved;
@@ -87,6 +91,7 @@ class RepositoryIndexManager implements IndexManager {
     private final Path indexesPath;
     private final Collection<Component> components;
     private final ConcurrentMap<String, IndexProvider> providers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ChangeSetListener, ChangeSetListener> timedListeners = new ConcurrentHashMap<>();
     private final AtomicBoolean initialized = new AtomicBoolean(false);
     private volatile IndexWriter indexWriter;
 
@@ -162,7 +167,7 @@ class RepositoryIndexManager implements IndexManager {
             }
             // Even if there are no definitions, we still want to notify each of the providers ...
             try {
-                provider.notify(changes, repository.changeBus(), repository.nodeTypeManager(), repository.repositoryCache()
+                provider.notify(changes, changesFor(providerName), repository.nodeTypeManager(), repository.repositoryCache()
                                                                                                          .getWorkspaceNames(),
                                 feedback.forProvider(providerName));
             } catch (RuntimeException e) {
@@ -332,7 +337,7 @@ class RepositoryIndexManager implements IndexManager {
         for (IndexDefinition defn : indexDefinitions) {
             String name = defn.getName();
             String providerName = defn.getProviderName();
-            if (indexes.getIndexDefinitions().containsKey(name)) {
+            if (!allowUpdate && indexes.getIndexDefinitions().containsKey(name)) {
                 throw new IndexExistsException(JcrI18n.indexAlreadyExists.text(name, repository.name()));
             }
             if (name == null) {
@@ -348,6 +353,7 @@ class RepositoryIndexManager implements IndexManager {
             // Write the definition to the system area ...
             system.store(defn, allowUpdate);
         }
+        system.save();
 
         // Refresh the immutable snapshot ...
         this.indexes = readIndexDefinitions();
@@ -364,6 +370,7 @@ class RepositoryIndexManager implements IndexManager {
         SessionCache systemCache = repository.createSystemSession(context, false);
         SystemContent system = new SystemContent(systemCache);
         system.remove(defn);
+        system.save();
 
         // Refresh the immutable snapshot ...
         this.indexes = readIndexDefinitions();
@@ -426,7 +433,7 @@ class RepositoryIndexManager implements IndexManager {
                                                                                   removedWorkspaces);
                         IndexProvider provider = providers.get(providerName);
                         if (provider == null) continue;
-                        provider.notify(changes, repository.changeBus(), repository.nodeTypeManager(),
+                        provider.notify(changes, changesFor(providerName), repository.nodeTypeManager(),
                                         repository.repositoryCache().getWorkspaceNames(), feedback.forProvider(providerName));
                     }
                 }
@@ -520,7 +527,7 @@ class RepositoryIndexManager implements IndexManager {
             }
             // Notify the provider ...
             try {
-                provider.notify(changes, repository.changeBus(), repository.nodeTypeManager(), repository.repositoryCache()
+                provider.notify(changes, changesFor(providerName), repository.nodeTypeManager(), repository.repositoryCache()
                                                                                                          .getWorkspaceNames(),
                                 feedback.forProvider(providerName));
             } catch (RuntimeException e) {
@@ -705,6 +712,53 @@ class RepositoryIndexManager implements IndexManager {
         }
     }
 
+    /**
+     * Get the {@link Observable} through which the named provider registers the listeners that update its indexes. Each of these
+     * listeners is registered with the change bus so that the {@link DurationMetric#INDEX_UPDATE_TIME duration} of each update
+     * is recorded.
+     * 
+     * @param providerName the name of the index provider; may not be null
+     * @return the observable; never null
+     */
+    protected Observable changesFor( final String providerName ) {
+        final Map<String, String> payload = java.util.Collections.singletonMap("provider", providerName);
+        return new Observable() {
+            @Override
+            public boolean register( final ChangeSetListener observer ) {
+                if (observer == null) return false;
+                ChangeSetListener timed = new ChangeSetListener() {
+                    @Override
+                    public void notify( ChangeSet changeSet ) {
+                        long start = System.nanoTime();
+                        try {
+                            observer.notify(changeSet);
+                        } finally {
+                            repository.statistics().recordDuration(DurationMetric.INDEX_UPDATE_TIME, System.nanoTime() - start,
+                                                                   TimeUnit.NANOSECONDS, payload);
+                        }
+                    }
+
+                    @Override
+                    public String toString() {
+                        return observer.toString();
+                    }
+                };
+                if (timedListeners.putIfAbsent(observer, timed) != null) return false;
+                // Index writers may be slow, so don't let them delay the other listeners ...
+                if (repository.changeBus().registerIsolated(timed)) return true;
+                timedListeners.remove(observer, timed);
+                return false;
+            }
+
+            @Override
+            public boolean unregister( ChangeSetListener observer ) {
+                if (observer == null) return false;
+                ChangeSetListener timed = timedListeners.remove(observer);
+                return timed != null && repository.changeBus().unregister(timed);
+            }
+        };
+    }
+
     /**
      * An immutable set of provider names and non-overlapping workspace-path pairs.
      * 
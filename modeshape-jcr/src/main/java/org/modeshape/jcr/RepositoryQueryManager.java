@@ -15,9 +15,11 @@
  */
 package org.modeshape.jcr;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -28,7 +30,9 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.jcr.RepositoryException;
 import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.logging.Logger;
+import org.modeshape.common.util.HashCode;
 import org.modeshape.common.util.CheckArg;
 import org.modeshape.jcr.JcrRepository.RunningState;
 import org.modeshape.jcr.RepositoryIndexManager.ScanningRequest;
@@ -40,42 +44,54 @@ import org.modeshape.jcr.cache.ChildReference;
 import org.modeshape.jcr.cache.ChildReferences;
 import org.modeshape.jcr.cache.NodeCache;
 import org.modeshape.jcr.cache.NodeKey;
-import org.modeshape.jcr.cache.PathCache;
 import org.modeshape.jcr.cache.RepositoryCache;
 import org.modeshape.jcr.cache.change.ChangeSet;
 import org.modeshape.jcr.cache.change.ChangeSetListener;
 import org.modeshape.jcr.query.BufferManager;
 import org.modeshape.jcr.query.CancellableQuery;
+import org.modeshape.jcr.query.QueryCache;
 import org.modeshape.jcr.query.QueryContext;
 import org.modeshape.jcr.query.QueryEngine;
 import org.modeshape.jcr.query.QueryEngineBuilder;
 import org.modeshape.jcr.query.QueryResults;
 import org.modeshape.jcr.query.engine.IndexQueryEngine;
 import org.modeshape.jcr.query.engine.ScanningQueryEngine;
+import org.modeshape.jcr.query.model.TypeSystem;
+import org.modeshape.jcr.query.parse.QueryParser;
 import org.modeshape.jcr.query.plan.PlanHints;
 import org.modeshape.jcr.query.validate.Schemata;
 import org.modeshape.jcr.spi.index.IndexManager;
 import org.modeshape.jcr.spi.index.IndexWriter;
+import org.modeshape.jcr.value.NamespaceRegistry;
+import org.modeshape.jcr.value.NamespaceRegistry.Namespace;
 import org.modeshape.jcr.value.Path;
 import org.modeshape.jcr.value.Path.Segment;
 import org.modeshape.jcr.value.WorkspaceAndPath;
+import org.modeshape.jcr.value.basic.LocalNamespaceRegistry;
 
 /**
  * The query manager a the repository. Each instance lazily starts up the {@link QueryEngine}, which can be expensive.
  */
 class RepositoryQueryManager implements ChangeSetListener {
 
+    /**
+     * The maximum number of parsed query statements that are kept for reuse by all sessions.
+     */
+    static final int PARSED_QUERY_CACHE_SIZE = 1000;
+
     private final Logger logger = Logger.getLogger(getClass());
     private final RunningState runningState;
     private final ExecutorService indexingExecutorService;
     private final RepositoryConfiguration repoConfig;
     private final RepositoryIndexManager indexManager;
+    private final Reindexer reindexer;
     private final Lock engineInitLock = new ReentrantLock();
     @GuardedBy( "engineInitLock" )
     private volatile QueryEngine queryEngine;
     private volatile Future<Void> asyncReindexingResult;
     private volatile ScanningTasks toBeScanned = new ScanningTasks();
     private final AtomicBoolean initialized = new AtomicBoolean(false);
+    private final QueryCache<ParsedQueryKey, org.modeshape.jcr.query.model.QueryCommand> parsedQueries;
 
     RepositoryQueryManager( RunningState runningState,
                             ExecutorService indexingExecutorService,
@@ -84,6 +100,9 @@ class RepositoryQueryManager implements ChangeSetListener {
         this.indexingExecutorService = indexingExecutorService;
         this.repoConfig = config;
         this.indexManager = new RepositoryIndexManager(runningState, config);
+        this.reindexer = new Reindexer(runningState.name(), runningState.context(), runningState.statistics(),
+                                       config.getReindexing());
+        this.parsedQueries = new QueryCache<>(PARSED_QUERY_CACHE_SIZE, runningState.statistics());
     }
 
     synchronized void initialize() {
@@ -142,6 +161,59 @@ class RepositoryQueryManager implements ChangeSetListener {
         }
     }
 
+    /**
+     * Parse the supplied query statement, reusing the result of an earlier parse of the same statement in the same language
+     * against the same schemata and with the same session-local namespace mappings. Statements that cannot be parsed are not
+     * cached.
+     * 
+     * @param parser the parser for the statement's language; may not be null
+     * @param statement the query statement; may not be null
+     * @param typeSystem the type system used to create the literal values in the query; may not be null
+     * @param schemata the schemata of the session, which changes whenever the node types or the session's namespaces change; may
+     *        not be null
+     * @param namespaces the session's namespace registry, whose local mappings determine how the prefixes in the statement are
+     *        resolved; may not be null
+     * @return the parsed query, or null if the statement could not be parsed
+     * @throws org.modeshape.common.text.ParsingException if the statement is not well-formed
+     * @throws org.modeshape.jcr.query.parse.InvalidQueryException if the statement is not a valid query
+     */
+    org.modeshape.jcr.query.model.QueryCommand parseQuery( QueryParser parser,
+                                                           String statement,
+                                                           TypeSystem typeSystem,
+                                                           Schemata schemata,
+                                                           NamespaceRegistry namespaces ) {
+        Map<String, String> localMappings = localNamespaceMappings(namespaces);
+        if (localMappings == null) {
+            // We can't tell which mappings the session has changed, so don't share the parsed query ...
+            return parser.parseQuery(statement, typeSystem);
+        }
+        ParsedQueryKey key = new ParsedQueryKey(parser.getLanguage(), statement, schemata, localMappings);
+        org.modeshape.jcr.query.model.QueryCommand command = parsedQueries.get(key);
+        if (command == null) {
+            command = parser.parseQuery(statement, typeSystem);
+            if (command != null) parsedQueries.put(key, command);
+        }
+        return command;
+    }
+
+    /**
+     * Obtain the namespace mappings that the session has registered locally, which can change how a statement's prefixes are
+     * resolved even when the session shares the repository's schemata.
+     * 
+     * @param namespaces the session's namespace registry; may not be null
+     * @return the local mappings keyed by prefix; empty if there are none, or null if the local mappings can't be determined
+     */
+    private static Map<String, String> localNamespaceMappings( NamespaceRegistry namespaces ) {
+        if (!(namespaces instanceof LocalNamespaceRegistry)) return null;
+        Set<Namespace> localNamespaces = ((LocalNamespaceRegistry)namespaces).getLocalNamespaces();
+        if (localNamespaces.isEmpty()) return Collections.emptyMap();
+        Map<String, String> mappings = new HashMap<>();
+        for (Namespace namespace : localNamespaces) {
+            mappings.put(namespace.getPrefix(), namespace.getNamespaceUri());
+        }
+        return mappings;
+    }
+
     public CancellableQuery query( ExecutionContext context,
                                    RepositoryCache repositoryCache,
                                    Set<String> workspaceNames,
@@ -231,7 +303,9 @@ class RepositoryQueryManager implements ChangeSetListener {
                         logger.debug("Queries with no indexes are enabled for the '{0}' repository. Executing queries will always scan the repository contents.",
                                      repoConfig.getName());
                     }
-                    queryEngine = builder.using(repoConfig, indexManager, runningState.context()).build();
+                    queryEngine = builder.using(repoConfig, indexManager, runningState.context())
+                                         .using(runningState.statistics())
+                                         .build();
                 }
             } finally {
                 engineInitLock.unlock();
@@ -246,7 +320,8 @@ class RepositoryQueryManager implements ChangeSetListener {
     protected void reindexIfNeeded() {
         final ScanningRequest request = toBeScanned.drain();
         if (!request.isEmpty()) {
-            final IndexWriter writer = indexManager.getIndexWriterForProviders(request.providerNames());
+            final Set<String> providerNames = request.providerNames();
+            final IndexWriter writer = indexManager.getIndexWriterForProviders(providerNames);
             final RepositoryCache repoCache = runningState.repositoryCache();
             scan(true, writer, new Callable<Void>() {
                 @Override
@@ -274,7 +349,8 @@ class RepositoryQueryManager implements ChangeSetListener {
                             if (node != null) {
                                 // If we find a node to start at, then scan the content ...
                                 boolean scanSystemContent = repoCache.getSystemWorkspaceName().equals(workspaceName);
-                                reindexContent(workspaceName, workspaceCache, node, Integer.MAX_VALUE, scanSystemContent, writer);
+                                reindexContent(workspaceName, workspaceCache, node, Integer.MAX_VALUE, scanSystemContent, writer,
+                                               providerNames);
                             }
                         }
                     }
@@ -291,12 +367,20 @@ class RepositoryQueryManager implements ChangeSetListener {
      */
     protected void cleanAndReindex( boolean async ) {
         final IndexWriter writer = getIndexWriter();
+        final Set<String> providerNames = indexManager.getProviderNames();
         scan(async, getIndexWriter(), new Callable<Void>() {
             @SuppressWarnings( "synthetic-access" )
             @Override
             public Void call() throws Exception {
-                writer.clearAllIndexes();
-                reindexContent(true, writer);
+                if (reindexer.isCleanReindexingInterrupted()) {
+                    // The indexes were already cleared by the reindexing that was interrupted, so resume it ...
+                    logger.debug("Resuming the reindexing of all content in '{0}' repository.", runningState.name());
+                } else {
+                    writer.clearAllIndexes();
+                    reindexer.cleanReindexingStarted();
+                }
+                reindexContent(true, writer, providerNames);
+                if (!Thread.currentThread().isInterrupted()) reindexer.cleanReindexingCompleted();
                 return null;
             }
         });
@@ -325,9 +409,11 @@ class RepositoryQueryManager implements ChangeSetListener {
      * 
      * @param includeSystemContent true if the system content should also be indexed
      * @param indexes the index writer that should be use; may not be null
+     * @param providerNames the names of the providers whose indexes are written by {@code indexes}; may not be null
      */
     private void reindexContent( boolean includeSystemContent,
-                                 IndexWriter indexes ) {
+                                 IndexWriter indexes,
+                                 Set<String> providerNames ) {
         if (indexes.canBeSkipped()) return;
         // The node type schemata changes every time a node type is (un)registered, so get the snapshot that we'll use throughout
         RepositoryCache repoCache = runningState.repositoryCache();
@@ -339,7 +425,7 @@ class RepositoryQueryManager implements ChangeSetListener {
             CachedNode rootNode = systemWorkspaceCache.getNode(repoCache.getSystemKey());
             // Index the system content ...
             logger.debug("Starting reindex of system content in '{0}' repository.", runningState.name());
-            reindexSystemContent(rootNode, Integer.MAX_VALUE, indexes);
+            reindexSystemContent(rootNode, Integer.MAX_VALUE, indexes, providerNames);
             logger.debug("Completed reindex of system content in '{0}' repository.", runningState.name());
         }
 
@@ -348,7 +434,7 @@ class RepositoryQueryManager implements ChangeSetListener {
             NodeCache workspaceCache = repoCache.getWorkspaceCache(workspaceName);
             CachedNode rootNode = workspaceCache.getNode(workspaceCache.getRootKey());
             logger.debug("Starting reindex of workspace '{0}' content in '{1}' repository.", runningState.name(), workspaceName);
-            reindexContent(workspaceName, workspaceCache, rootNode, Integer.MAX_VALUE, false, indexes);
+            reindexContent(workspaceName, workspaceCache, rootNode, Integer.MAX_VALUE, false, indexes, providerNames);
             logger.debug("Completed reindex of workspace '{0}' content in '{1}' repository.", runningState.name(), workspaceName);
         }
     }
@@ -395,10 +481,10 @@ class RepositoryQueryManager implements ChangeSetListener {
         // If the node is in the system workspace ...
         String systemWorkspaceKey = runningState.repositoryCache().getSystemWorkspaceKey();
         if (node.getKey().getWorkspaceKey().equals(systemWorkspaceKey)) {
-            reindexSystemContent(node, depth, getIndexWriter());
+            reindexSystemContent(node, depth, getIndexWriter(), indexManager.getProviderNames());
         } else {
             // It's just a regular node in the workspace ...
-            reindexContent(workspaceName, cache, node, depth, path.isRoot(), getIndexWriter());
+            reindexContent(workspaceName, cache, node, depth, path.isRoot(), getIndexWriter(), indexManager.getProviderNames());
         }
     }
 
@@ -407,16 +493,15 @@ class RepositoryQueryManager implements ChangeSetListener {
                                    CachedNode node,
                                    int depth,
                                    boolean reindexSystemContent,
-                                   final IndexWriter indexes ) {
+                                   final IndexWriter indexes,
+                                   Set<String> providerNames ) {
         assert indexes != null;
         if (indexes.canBeSkipped()) return;
         if (!node.isQueryable(cache)) {
             return;
         }
 
-        // Get the path for the first node (we already have it, but we need to populate the cache) ...
-        final PathCache paths = new PathCache(cache);
-        Path nodePath = paths.getPath(node);
+        Path nodePath = node.getPath(cache);
 
         // Index the first node ...
         indexes.add(workspaceName, node.getKey(), nodePath, node.getPrimaryType(cache), node.getMixinTypes(cache),
@@ -424,8 +509,8 @@ class RepositoryQueryManager implements ChangeSetListener {
 
         if (depth == 1) return;
 
-        // Create a queue for processing the subgraph
-        final Queue<NodeKey> queue = new LinkedList<NodeKey>();
+        // Find the children whose subgraphs are to be reindexed ...
+        final List<ChildReference> children = new ArrayList<ChildReference>();
 
         if (reindexSystemContent) {
             // We need to look for the system node, and index it differently ...
@@ -436,56 +521,34 @@ class RepositoryQueryManager implements ChangeSetListener {
                 NodeKey childKey = childRef.getKey();
                 if (childKey.equals(systemKey)) {
                     // This is the "/jcr:system" node ...
-                    node = cache.getNode(childKey);
-                    reindexSystemContent(node, depth - 1, indexes);
+                    reindexSystemContent(cache.getNode(childKey), depth - 1, indexes, providerNames);
                 } else {
-                    queue.add(childKey);
+                    children.add(childRef);
                 }
             }
         } else {
-            // Add all children to the queue ...
+            // Add all children ...
             for (ChildReference childRef : node.getChildReferences(cache)) {
                 NodeKey childKey = childRef.getKey();
                 // we should not reindex anything which is in the system area
                 if (!childKey.getWorkspaceKey().equals(runningState.systemWorkspaceKey())) {
-                    queue.add(childKey);
+                    children.add(childRef);
                 }
             }
         }
 
-        // Now, process the queue until empty ...
-        while (true) {
-            NodeKey key = queue.poll();
-            if (key == null) break;
-
-            // Look up the node and find the path ...
-            node = cache.getNode(key);
-            if (node == null || !node.isQueryable(cache)) {
-                continue;
-            }
-            nodePath = paths.getPath(node);
-
-            // Index the node ...
-            indexes.add(workspaceName, node.getKey(), nodePath, node.getPrimaryType(cache), node.getMixinTypes(cache),
-                        node.getPropertiesByName(cache));
-
-            // Check the depth ...
-            if (nodePath.size() <= depth) {
-                // Add the children to the queue ...
-                for (ChildReference childRef : node.getChildReferences(cache)) {
-                    queue.add(childRef.getKey());
-                }
-            }
-        }
+        // Now, reindex the subgraphs below the children ...
+        reindexer.reindex(workspaceName, cache, node.getKey(), nodePath, children, depth, indexes, providerNames);
     }
 
     protected void reindexSystemContent( CachedNode nodeInSystemBranch,
                                          int depth,
-                                         IndexWriter indexes ) {
+                                         IndexWriter indexes,
+                                         Set<String> providerNames ) {
         RepositoryCache repoCache = runningState.repositoryCache();
         String workspaceName = repoCache.getSystemWorkspaceName();
         NodeCache systemWorkspaceCache = repoCache.getWorkspaceCache(workspaceName);
-        reindexContent(workspaceName, systemWorkspaceCache, nodeInSystemBranch, depth, true, indexes);
+        reindexContent(workspaceName, systemWorkspaceCache, nodeInSystemBranch, depth, true, indexes, providerNames);
     }
 
     /**
@@ -526,4 +589,42 @@ class RepositoryQueryManager implements ChangeSetListener {
         });
     }
 
+
+    @Immutable
+    private static final class ParsedQueryKey {
+        private final String language;
+        private final String statement;
+        private final Schemata schemata;
+        private final Map<String, String> localNamespaceMappings;
+        private final int hc;
+
+        protected ParsedQueryKey( String language,
+                                  String statement,
+                                  Schemata schemata,
+                                  Map<String, String> localNamespaceMappings ) {
+            this.language = language;
+            this.statement = statement;
+            this.schemata = schemata;
+            this.localNamespaceMappings = localNamespaceMappings;
+            this.hc = HashCode.compute(language, statement, System.identityHashCode(schemata), localNamespaceMappings);
+        }
+
+        @Override
+        public int hashCode() {
+            return hc;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if (obj == this) return true;
+            if (obj instanceof ParsedQueryKey) {
+                ParsedQueryKey that = (ParsedQueryKey)obj;
+                // The schemata are replaced whenever the node types or namespaces change, but sessions that remap prefixes
+                // not used by the node types still share the same schemata ...
+                return this.schemata == that.schemata && this.statement.equals(that.statement)
+                       && this.language.equals(that.language) && this.localNamespaceMappings.equals(that.localNamespaceMappings);
+            }
+            return false;
+        }
+    }
 }
@@ -16,6 +16,7 @@
 package org.modeshape.jcr;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +30,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -50,6 +52,7 @@ import org.modeshape.jcr.cache.change.ChangeSet;
 import org.modeshape.jcr.cache.change.ChangeSetListener;
 import org.modeshape.jcr.cache.change.WorkspaceAdded;
 import org.modeshape.jcr.cache.change.WorkspaceRemoved;
+import org.modeshape.jcr.journal.LocalJournal;
 import org.modeshape.jcr.value.DateTimeFactory;
 
 /**
@@ -67,6 +70,13 @@ import org.modeshape.jcr.value.DateTimeFactory;
  * <li><b>{@link ValueMetric#SESSION_SAVES save operations}</b> - the number of Session save operations performed the window;</li>
  * <li><b>{@link ValueMetric#NODE_CHANGES changed nodes}</b> - the number of nodes that were created, updated, or deleted during
  * the window;</li>
+ * <li><b>{@link ValueMetric#JOURNAL_COMMIT_COUNT journal commits}</b> - the number of commits made by the journal during the
+ * window;</li>
+ * <li><b>{@link ValueMetric#JOURNAL_RECORD_COUNT journal records}</b> - the number of records written to the journal during the
+ * window;</li>
+ * <li><b>{@link ValueMetric#QUERY_CACHE_HIT_COUNT query cache hits}</b> and <b>{@link ValueMetric#QUERY_CACHE_MISS_COUNT query
+ * cache misses}</b> - the number of lookups in the parsed query and query plan caches that did and did not find an entry during
+ * the window;</li>
  * </ol>
  * and the metrics that record durations include:
  * <ol>
@@ -75,10 +85,24 @@ import org.modeshape.jcr.value.DateTimeFactory;
  * window;</li>
  * <li><b>{@link DurationMetric#SEQUENCER_EXECUTION_TIME sequencer execution time}</b> - the duration of sequencing operations
  * completed during the window;</li>
+ * <li><b>{@link DurationMetric#JOURNAL_COMMIT_TIME journal commit time}</b> - the duration of the journal's disk commits completed
+ * during the window;</li>
+ * <li><b>{@link DurationMetric#SESSION_SAVE_TIME save time}</b> - the duration of the session saves completed during the window;
+ * </li>
+ * <li><b>{@link DurationMetric#DOCUMENT_STORE_READ_TIME document read time}</b> and
+ * <b>{@link DurationMetric#DOCUMENT_STORE_WRITE_TIME document write time}</b> - the duration of the document store operations
+ * completed during the window;</li>
+ * <li><b>{@link DurationMetric#BINARY_STORE_READ_TIME binary read time}</b> and
+ * <b>{@link DurationMetric#BINARY_STORE_WRITE_TIME binary write time}</b> - the duration of the binary store operations completed
+ * during the window;</li>
+ * <li><b>{@link DurationMetric#INDEX_UPDATE_TIME index update time}</b> - the duration of the index updates completed during the
+ * window;</li>
+ * <li><b>{@link DurationMetric#CHANGE_BUS_DISPATCH_TIME change dispatch time}</b> - the duration of dispatching saved changes to
+ * the change bus during the window;</li>
  * </ol>
  * This class provides a way to obtain the {@link History history} for a particular metric during a specified window, where the
  * window is comprised of the {@link Statistics statistics} (the average value, minimum value, maximum value, variance, standard
- * deviation, number of samples, and time interval of the statistics) for:
+ * deviation, percentiles, number of samples, and time interval of the statistics) for:
  * <ol>
  * <li>each ten 5-second intervals during the last minute (60 seconds); or</li>
  * <li>each minute during the last hour (60 minutes); or</li>
@@ -92,9 +116,14 @@ import org.modeshape.jcr.value.DateTimeFactory;
  * measured metrics into the various statistic windows. When completed, simply call {@link #stop()} to have the object clean up
  * after itself.
  * </p>
+ * <p>
+ * Durations are recorded without locks or allocations (unless they are among the longest-running), into per-thread stripes of
+ * log-linear buckets that are drained every time the statistics are rolled up.
+ * </p>
  */
 @ThreadSafe
-public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListener {
+public class RepositoryStatistics
+    implements RepositoryMonitor, ChangeSetListener, LocalJournal.CommitStatistics, DurationRecorder {
 
     /**
      * The maximum number of longest-running queries to retain.
@@ -112,6 +141,16 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
      */
     public static final int MAXIMUM_LONG_RUNNING_SESSION_COUNT = 15;
 
+    /**
+     * The maximum number of longest-running journal commits to retain.
+     */
+    public static final int MAXIMUM_LONG_RUNNING_JOURNAL_COMMIT_COUNT = 15;
+
+    /**
+     * The maximum number of longest-running saves, document store, binary store, index and change bus operations to retain.
+     */
+    public static final int MAXIMUM_LONG_RUNNING_OPERATION_COUNT = 15;
+
     /**
      * The frequency at which the metric values are rolled into statistics.
      */
@@ -164,6 +203,15 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
                                                                                    MAXIMUM_LONG_RUNNING_SEQUENCING_COUNT));
         durations.put(DurationMetric.SESSION_LIFETIME, new DurationHistory(TimeUnit.MILLISECONDS,
                                                                            MAXIMUM_LONG_RUNNING_SESSION_COUNT));
+        durations.put(DurationMetric.JOURNAL_COMMIT_TIME, new DurationHistory(TimeUnit.MILLISECONDS,
+                                                                              MAXIMUM_LONG_RUNNING_JOURNAL_COMMIT_COUNT));
+        // These operations usually take less than a millisecond, so they are recorded in microseconds ...
+        for (DurationMetric metric : EnumSet.of(DurationMetric.SESSION_SAVE_TIME, DurationMetric.DOCUMENT_STORE_READ_TIME,
+                                                DurationMetric.DOCUMENT_STORE_WRITE_TIME, DurationMetric.BINARY_STORE_READ_TIME,
+                                                DurationMetric.BINARY_STORE_WRITE_TIME, DurationMetric.INDEX_UPDATE_TIME,
+                                                DurationMetric.CHANGE_BUS_DISPATCH_TIME)) {
+            durations.put(metric, new DurationHistory(TimeUnit.MICROSECONDS, MAXIMUM_LONG_RUNNING_OPERATION_COUNT));
+        }
 
         for (ValueMetric metric : EnumSet.allOf(ValueMetric.class)) {
             boolean resetUponRollup = !metric.isContinuous();
@@ -336,7 +384,7 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
               long value ) {
         assert metric != null;
         ValueHistory history = values.get(metric);
-        if (history != null) history.recordNewValue(1L);
+        if (history != null) history.recordNewValue(value);
     }
 
     /**
@@ -373,6 +421,13 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
         if (history != null) history.recordDuration(duration, timeUnit, payload);
     }
 
+    @Override
+    public void recordDuration( DurationMetric metric,
+                                long duration,
+                                TimeUnit timeUnit ) {
+        recordDuration(metric, duration, timeUnit, null);
+    }
+
     @Override
     public void notify( ChangeSet changeSet ) {
         // Track all changes, even those that originate in remote processes ...
@@ -391,6 +446,15 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
         // ValueMetric.SESSION_SAVES are tracked in JcrSession.save() ...
     }
 
+    @Override
+    public void recordCommit( int batchSize,
+                              long durationInNanos ) {
+        increment(ValueMetric.JOURNAL_COMMIT_COUNT);
+        increment(ValueMetric.JOURNAL_RECORD_COUNT, batchSize);
+        recordDuration(DurationMetric.JOURNAL_COMMIT_TIME, durationInNanos, TimeUnit.NANOSECONDS,
+                       Collections.singletonMap("batchSize", Integer.toString(batchSize)));
+    }
+
     /**
      * Abstract base class for the {@link ValueHistory} and {@link DurationHistory} classes. This class tracks the statistics for
      * various periods of time, and to roll up the statistics. The design takes advantage of the fact that we know up front how
@@ -606,17 +670,20 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
 
     @ThreadSafe
     protected static final class DurationHistory extends MetricHistory {
-        private final Queue<DurationActivity> duration1 = new ConcurrentLinkedQueue<DurationActivity>();
-        private final Queue<DurationActivity> duration2 = new ConcurrentLinkedQueue<DurationActivity>();
-        private final AtomicReference<Queue<DurationActivity>> durations = new AtomicReference<Queue<DurationActivity>>();
+        private final StripedHistogram histogram = new StripedHistogram();
+        private final Queue<DurationActivity> longRunningCandidates = new ConcurrentLinkedQueue<DurationActivity>();
         private final TimeUnit timeUnit;
         private final int retentionSize;
         private final PriorityBlockingQueue<DurationActivity> largestDurations;
+        /**
+         * The shortest of the retained longest-running durations, or -1 if fewer than {@link #retentionSize} are retained. Only
+         * durations longer than this can be among the longest-running, so only those durations are kept with their payloads.
+         */
+        private volatile long longRunningThreshold = -1L;
 
         protected DurationHistory( TimeUnit timeUnit,
                                    int retentionSize ) {
             assert retentionSize > 0;
-            this.durations.set(duration1);
             this.timeUnit = timeUnit;
             this.retentionSize = retentionSize;
             this.largestDurations = new PriorityBlockingQueue<DurationActivity>(this.retentionSize + 5);
@@ -633,36 +700,30 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
                              TimeUnit timeUnit,
                              Map<String, String> payload ) {
             value = this.timeUnit.convert(value, timeUnit);
-            this.durations.get().add(new DurationActivityImpl(value, this.timeUnit, payload));
+            histogram.record(value);
+            if (value > longRunningThreshold) {
+                if (payload == null) payload = Collections.emptyMap();
+                longRunningCandidates.add(new DurationActivityImpl(value, this.timeUnit, payload));
+            }
         }
 
         @Override
         Window rollup() {
-            // Swap the queue (which should work, since we should be the only concurrent thread doing this) ...
-            Queue<DurationActivity> durations = null;
-            if (this.durations.weakCompareAndSet(duration1, duration2)) {
-                durations = duration1;
-            } else {
-                this.durations.weakCompareAndSet(duration2, duration1);
-                durations = duration2;
-            }
-            // Make a copy to minimize the time spent using the durations ...
-            List<DurationActivity> records = new ArrayList<DurationActivity>(durations);
-            durations.clear();
+            // Drain the durations recorded since the last rollup ...
+            Statistics stats = histogram.drain();
 
-            // Now add to the largest durations and compute the statistics ...
-            int numRecords = records.size();
-            long[] values = new long[numRecords];
-            int i = 0;
-            for (DurationActivity record : records) {
-                values[i++] = record != null ? record.getDuration(TimeUnit.MILLISECONDS) : 0L;
+            // Now add to the largest durations ...
+            DurationActivity record = null;
+            while ((record = longRunningCandidates.poll()) != null) {
                 this.largestDurations.add(record);
                 while (this.largestDurations.size() > this.retentionSize) {
                     this.largestDurations.poll(); // remove the smallest duration from the front of the queue
                 }
             }
-
-            Statistics stats = statisticsFor(values);
+            if (this.largestDurations.size() >= this.retentionSize) {
+                DurationActivity shortest = this.largestDurations.peek();
+                if (shortest != null) longRunningThreshold = shortest.getDuration(timeUnit);
+            }
             return recordStatisticsForLastSecond(stats);
         }
 
@@ -672,6 +733,125 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
         }
     }
 
+    /**
+     * A lock-free recorder of values that counts each value in a log-linear bucket: values smaller than
+     * {@link #SUB_BUCKET_COUNT} each have their own bucket, and every larger power of two is split into {@link #SUB_BUCKET_COUNT}
+     * buckets of equal width. Any value is therefore known to within 1/16th (6.25%) of its magnitude, which is enough to estimate
+     * percentiles, and the buckets of different samples can simply be added together when rolling up statistics.
+     * <p>
+     * To avoid contention between threads, each thread records into one of several stripes (chosen by thread ID), and the stripes
+     * are combined only when the histogram is {@link #drain() drained}.
+     * </p>
+     */
+    @ThreadSafe
+    protected static final class StripedHistogram {
+        protected static final int SUB_BUCKET_BITS = 4;
+        protected static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+        /**
+         * Values of 2^40 or more (about 12 days in microseconds) are all counted in an extra, last bucket.
+         */
+        protected static final int MAX_EXPONENT = 40;
+        protected static final int BUCKET_COUNT = ((MAX_EXPONENT - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + 1;
+
+        private static final int STRIPES = 4;
+        /**
+         * The number of longs between the totals of two stripes, so that the totals of each stripe are on their own cache line.
+         */
+        private static final int TOTALS_STRIDE = 8;
+        private static final int SUM = 0;
+        private static final int SUM_OF_SQUARES = 1;
+        private static final int MINIMUM = 2;
+        private static final int MAXIMUM = 3;
+
+        private final AtomicLongArray[] counts = new AtomicLongArray[STRIPES];
+        private final AtomicLongArray totals = new AtomicLongArray(STRIPES * TOTALS_STRIDE);
+
+        protected StripedHistogram() {
+            for (int i = 0; i != STRIPES; ++i) {
+                counts[i] = new AtomicLongArray(BUCKET_COUNT);
+                totals.set(i * TOTALS_STRIDE + MINIMUM, Long.MAX_VALUE);
+                totals.set(i * TOTALS_STRIDE + MAXIMUM, Long.MIN_VALUE);
+            }
+        }
+
+        /**
+         * Get the index of the bucket in which the supplied value is counted.
+         * 
+         * @param value the value
+         * @return the bucket index; never negative and always less than {@link #BUCKET_COUNT}
+         */
+        protected static int bucketFor( long value ) {
+            if (value < SUB_BUCKET_COUNT) return value < 0L ? 0 : (int)value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            if (exponent >= MAX_EXPONENT) return BUCKET_COUNT - 1;
+            int shift = exponent - SUB_BUCKET_BITS;
+            return ((shift + 1) << SUB_BUCKET_BITS) + (int)((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+        }
+
+        /**
+         * Get the largest value that is counted in the supplied bucket.
+         * 
+         * @param bucket the bucket index
+         * @return the largest value in the bucket
+         */
+        protected static long highestValueIn( int bucket ) {
+            if (bucket < SUB_BUCKET_COUNT) return bucket;
+            if (bucket == BUCKET_COUNT - 1) return Long.MAX_VALUE;
+            int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+            long lowest = ((long)SUB_BUCKET_COUNT + (bucket & (SUB_BUCKET_COUNT - 1))) << shift;
+            return lowest + (1L << shift) - 1L;
+        }
+
+        void record( long value ) {
+            int stripe = (int)(Thread.currentThread().getId() & (STRIPES - 1));
+            counts[stripe].incrementAndGet(bucketFor(value));
+            int offset = stripe * TOTALS_STRIDE;
+            totals.addAndGet(offset + SUM, value);
+            totals.addAndGet(offset + SUM_OF_SQUARES, value * value);
+            long min = totals.get(offset + MINIMUM);
+            while (value < min && !totals.compareAndSet(offset + MINIMUM, min, value)) {
+                min = totals.get(offset + MINIMUM);
+            }
+            long max = totals.get(offset + MAXIMUM);
+            while (value > max && !totals.compareAndSet(offset + MAXIMUM, max, value)) {
+                max = totals.get(offset + MAXIMUM);
+            }
+        }
+
+        /**
+         * Compute the statistics for all of the values recorded since the last call, and reset this histogram. Values that are
+         * recorded while this method runs are counted in this or in the next call.
+         * 
+         * @return the statistics; never null
+         */
+        Statistics drain() {
+            long[] bucketCounts = new long[BUCKET_COUNT];
+            long count = 0L;
+            long sum = 0L;
+            long sumOfSquares = 0L;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int stripe = 0; stripe != STRIPES; ++stripe) {
+                AtomicLongArray stripeCounts = counts[stripe];
+                for (int bucket = 0; bucket != BUCKET_COUNT; ++bucket) {
+                    if (stripeCounts.get(bucket) == 0L) continue;
+                    long bucketCount = stripeCounts.getAndSet(bucket, 0L);
+                    bucketCounts[bucket] += bucketCount;
+                    count += bucketCount;
+                }
+                int offset = stripe * TOTALS_STRIDE;
+                sum += totals.getAndSet(offset + SUM, 0L);
+                sumOfSquares += totals.getAndSet(offset + SUM_OF_SQUARES, 0L);
+                min = Math.min(min, totals.getAndSet(offset + MINIMUM, Long.MAX_VALUE));
+                max = Math.max(max, totals.getAndSet(offset + MAXIMUM, Long.MIN_VALUE));
+            }
+            if (count == 0L) return EMPTY_STATISTICS;
+            double mean = ((double)sum) / count;
+            double variance = Math.max(0.0d, ((double)sumOfSquares) / count - mean * mean);
+            return new StatisticsImpl((int)count, min, max, mean, variance, bucketCounts);
+        }
+    }
+
     /**
      * Utility method to construct the statistics for a series of values.
      * 
@@ -679,7 +859,7 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
      * @return the core statistics; never null
      */
     public static Statistics statisticsFor( long value ) {
-        return new StatisticsImpl(1, value, value, value, 0.0d);
+        return new StatisticsImpl(1, value, value, value, 0.0d, new int[] {StripedHistogram.bucketFor(value)}, new long[] {1L});
     }
 
     /**
@@ -695,10 +875,12 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
         long total = 0L;
         long max = Long.MIN_VALUE;
         long min = Long.MAX_VALUE;
+        long[] bucketCounts = new long[StripedHistogram.BUCKET_COUNT];
         for (long value : values) {
             total += value;
             max = Math.max(max, value);
             min = Math.min(min, value);
+            ++bucketCounts[StripedHistogram.bucketFor(value)];
         }
         double mean = ((double)total) / length;
         double varianceSquared = 0.0d;
@@ -707,7 +889,7 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
             distance = mean - value;
             varianceSquared = varianceSquared + (distance * distance);
         }
-        return new StatisticsImpl(length, min, max, mean, Math.sqrt(varianceSquared));
+        return new StatisticsImpl(length, min, max, mean, Math.sqrt(varianceSquared), bucketCounts);
     }
 
     /**
@@ -726,13 +908,15 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
         long min = Long.MAX_VALUE;
         double mean = 0.0d;
         double variance = 0.0d;
-        // Compute the min, max, and mean ...
+        long[] bucketCounts = new long[StripedHistogram.BUCKET_COUNT];
+        // Compute the min, max, mean and the combined buckets ...
         for (Statistics stat : statistics) {
             if (stat == null) continue;
             count += stat.getCount();
             max = Math.max(max, stat.getMaximum());
             min = Math.min(min, stat.getMinimum());
             mean = mean + (stat.getMean() * stat.getCount());
+            if (stat instanceof StatisticsImpl) ((StatisticsImpl)stat).addBucketCountsTo(bucketCounts);
         }
         mean = mean / count;
 
@@ -743,19 +927,21 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
             meanDelta = stat.getMean() - mean;
             variance = variance + (stat.getCount() * (stat.getVariance() + (meanDelta * meanDelta)));
         }
-        return new StatisticsImpl(count, min, max, mean, variance);
+        return new StatisticsImpl(count, min, max, mean, variance, bucketCounts);
     }
 
-    private static final Statistics EMPTY_STATISTICS = new StatisticsImpl(0, 0L, 0L, 0.0d, 0.0d);
+    private static final int[] NO_BUCKETS = new int[0];
+    private static final long[] NO_BUCKET_COUNTS = new long[0];
+    private static final Statistics EMPTY_STATISTICS = new StatisticsImpl(0, 0L, 0L, 0.0d, 0.0d, NO_BUCKETS, NO_BUCKET_COUNTS);
 
     /**
      * The statistics for a sample of values. The statistics include the {@link #getMinimum() minimum}, {@link #getMaximum()
-     * maximum}, {@link #getMean() mean (average)}, {@link #getVariance() variance} and {@link #getStandardDeviation() standard
-     * deviation}.
+     * maximum}, {@link #getMean() mean (average)}, {@link #getVariance() variance}, {@link #getStandardDeviation() standard
+     * deviation} and {@link #getPercentile(double) percentiles}.
      * <p>
-     * The median value is not included in these statistics, since the median value cannot be rolled up given a series of
-     * statistics without having the original values. It is possible to compute the weighted median, but this loses
-     * effectiveness/value the more times it is rolled up.
+     * The percentiles are estimated from the number of values in each of the {@link StripedHistogram log-linear buckets}, which
+     * are kept sparsely since most samples only fill a few buckets. Unlike a weighted median, the buckets can be rolled up
+     * without losing accuracy.
      * </p>
      */
     @Immutable
@@ -766,17 +952,54 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
         private final long minimum;
         private final double mean;
         private final double variance; // just the square of the standard deviation
+        private final int[] buckets; // the indexes of the non-empty buckets, in increasing order
+        private final long[] bucketCounts; // the number of values in each of the non-empty buckets
 
         protected StatisticsImpl( int count,
                                   long min,
                                   long max,
                                   double mean,
-                                  double variance ) {
+                                  double variance,
+                                  int[] buckets,
+                                  long[] bucketCounts ) {
+            assert buckets.length == bucketCounts.length;
             this.count = count;
             this.maximum = max;
             this.minimum = min;
             this.mean = mean;
             this.variance = variance;
+            this.buckets = buckets;
+            this.bucketCounts = bucketCounts;
+        }
+
+        protected StatisticsImpl( int count,
+                                  long min,
+                                  long max,
+                                  double mean,
+                                  double variance,
+                                  long[] allBucketCounts ) {
+            this.count = count;
+            this.maximum = max;
+            this.minimum = min;
+            this.mean = mean;
+            this.variance = variance;
+            int nonEmpty = 0;
+            for (long bucketCount : allBucketCounts) {
+                if (bucketCount != 0L) ++nonEmpty;
+            }
+            this.buckets = new int[nonEmpty];
+            this.bucketCounts = new long[nonEmpty];
+            for (int bucket = 0, i = 0; i != nonEmpty; ++bucket) {
+                if (allBucketCounts[bucket] == 0L) continue;
+                this.buckets[i] = bucket;
+                this.bucketCounts[i++] = allBucketCounts[bucket];
+            }
+        }
+
+        protected void addBucketCountsTo( long[] allBucketCounts ) {
+            for (int i = 0; i != buckets.length; ++i) {
+                allBucketCounts[buckets[i]] += bucketCounts[i];
+            }
         }
 
         @Override
@@ -809,12 +1032,32 @@ public class RepositoryStatistics implements RepositoryMonitor, ChangeSetListene
             return variance <= 0.0d ? 0.0d : Math.sqrt(variance);
         }
 
+        @Override
+        public long getPercentile( double percentile ) {
+            long total = 0L;
+            for (long bucketCount : bucketCounts) {
+                total += bucketCount;
+            }
+            if (total == 0L) return 0L;
+            // Find the bucket that contains the value with the requested rank ...
+            long rank = Math.max(1L, Math.min(total, (long)Math.ceil(percentile / 100.0d * total)));
+            long seen = 0L;
+            for (int i = 0; i != buckets.length; ++i) {
+                seen += bucketCounts[i];
+                if (seen >= rank) {
+                    return Math.max(minimum, Math.min(maximum, StripedHistogram.highestValueIn(buckets[i])));
+                }
+            }
+            return maximum;
+        }
+
         @Override
         public String toString() {
             long count = this.getCount();
             String samples = Inflector.getInstance().pluralize("sample", count > 1L ? 2 : 1);
-            return StringUtil.createString("{0} {1}: min={2}; avg={3}; max={4}; dev={5}", count, samples, this.minimum,
-                                           this.mean, this.maximum, this.getStandardDeviation());
+            return StringUtil.createString("{0} {1}: min={2}; avg={3}; max={4}; dev={5}; p50={6}; p99={7}", count, samples,
+                                           this.minimum, this.mean, this.maximum, this.getStandardDeviation(),
+                                           this.getPercentile(50.0d), this.getPercentile(99.0d));
         }
     }
 
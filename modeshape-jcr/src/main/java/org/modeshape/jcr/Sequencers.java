@@ -24,13 +24,11 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.jcr.NamespaceRegistry;
@@ -43,7 +41,6 @@ import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.HashCode;
 import org.modeshape.jcr.RepositoryConfiguration.Component;
-import org.modeshape.jcr.api.monitor.ValueMetric;
 import org.modeshape.jcr.api.sequencer.Sequencer;
 import org.modeshape.jcr.api.value.DateTime;
 import org.modeshape.jcr.cache.NodeKey;
@@ -55,6 +52,7 @@ import org.modeshape.jcr.cache.change.PropertyChanged;
 import org.modeshape.jcr.cache.change.WorkspaceAdded;
 import org.modeshape.jcr.cache.change.WorkspaceRemoved;
 import org.modeshape.jcr.sequencer.InvalidSequencerPathExpression;
+import org.modeshape.jcr.sequencer.PathExpressionIndex;
 import org.modeshape.jcr.sequencer.SequencerPathExpression;
 import org.modeshape.jcr.sequencer.SequencerPathExpression.Matcher;
 import org.modeshape.jcr.value.Name;
@@ -84,11 +82,11 @@ public class Sequencers implements ChangeSetListener {
     private final Collection<Component> components;
     private final Lock configChangeLock = new ReentrantLock();
     private final Map<UUID, Collection<SequencerPathExpression>> pathExpressionsBySequencerId;
-    private volatile Map<String, Collection<SequencingConfiguration>> configByWorkspaceName;
+    private volatile Map<String, PathExpressionIndex<SequencingConfiguration>> configByWorkspaceName;
     private final String systemWorkspaceKey;
     private final String processId;
     private final ValueFactory<String> stringFactory;
-    private final WorkQueue workQueue;
+    private final SequencingQueue workQueue;
     protected final ExecutorService sequencingExecutor;
     private boolean initialized;
     private volatile boolean shutdown = false;
@@ -112,13 +110,14 @@ public class Sequencers implements ChangeSetListener {
         } else {
             String threadPoolName = config.getSequencing().getThreadPoolName();
             this.sequencingExecutor = repository.context().getCachedTreadPool(threadPoolName);
-            this.workQueue = new SequencingWorkQueue();
+            this.workQueue = new SequencingQueue(repository.name(), this, repository.statistics(), sequencingExecutor,
+                                                 config.getSequencing());
             this.processId = repository.context().getProcessId();
             ExecutionContext context = this.repository.context();
             this.stringFactory = context.getValueFactories().getStringFactory();
             this.sequencersById = new HashMap<UUID, Sequencer>();
             this.sequencersByName = new HashMap<String, Sequencer>();
-            this.configByWorkspaceName = new HashMap<String, Collection<SequencingConfiguration>>();
+            this.configByWorkspaceName = new HashMap<String, PathExpressionIndex<SequencingConfiguration>>();
             this.pathExpressionsBySequencerId = new HashMap<UUID, Collection<SequencerPathExpression>>();
 
             String repoName = repository.name();
@@ -164,7 +163,7 @@ public class Sequencers implements ChangeSetListener {
             for (String workspaceName : workspaceNames) {
                 workspaceAdded(workspaceName);
             }
-            repository.changeBus().register(this);
+            repository.changeBus().registerIsolated(this);
             this.initialized = false;
         }
     }
@@ -245,6 +244,16 @@ public class Sequencers implements ChangeSetListener {
         assert allSequencersInitialized(initialized);
     }
 
+    /**
+     * Start processing the sequencing work, including any work that was still pending when the repository was last shut down.
+     * This should be called once the repository is running.
+     */
+    protected void start() {
+        if (workQueue != null) {
+            workQueue.start();
+        }
+    }
+
     private boolean allSequencersInitialized( Collection<Sequencer> initialized ) {
         assert initialized.size() == sequencersByName.size();
         for (Sequencer sequencer : sequencersByName.values()) {
@@ -273,14 +282,14 @@ public class Sequencers implements ChangeSetListener {
             // No sequencers for the system workspace!
             return;
         }
-        Collection<SequencingConfiguration> configs = new LinkedList<SequencingConfiguration>();
+        PathExpressionIndex<SequencingConfiguration> configs = new PathExpressionIndex<SequencingConfiguration>(stringFactory);
         // Go through the sequencers to see which apply to this workspace ...
         for (Sequencer sequencer : sequencersById.values()) {
             boolean updated = false;
             for (SequencerPathExpression expression : pathExpressionsBySequencerId.get(sequencer.getUniqueId())) {
                 if (expression.appliesToWorkspace(workspaceName)) {
                     updated = true;
-                    configs.add(new SequencingConfiguration(expression, sequencer));
+                    configs.add(expression, new SequencingConfiguration(expression, sequencer));
                 }
             }
             if (DEBUG && updated) {
@@ -293,8 +302,8 @@ public class Sequencers implements ChangeSetListener {
         try {
             configChangeLock.lock();
             // Make a copy of the existing map ...
-            Map<String, Collection<SequencingConfiguration>> configByWorkspaceName = new HashMap<String, Collection<SequencingConfiguration>>(
-                                                                                                                                              this.configByWorkspaceName);
+            Map<String, PathExpressionIndex<SequencingConfiguration>> configByWorkspaceName = new HashMap<String, PathExpressionIndex<SequencingConfiguration>>(
+                                                                                                                                                                this.configByWorkspaceName);
             // Insert the new information ...
             configByWorkspaceName.put(workspaceName, configs);
             // Replace the exisiting map (which is used without a lock) ...
@@ -314,8 +323,8 @@ public class Sequencers implements ChangeSetListener {
         try {
             configChangeLock.lock();
             // Make a copy of the existing map ...
-            Map<String, Collection<SequencingConfiguration>> configByWorkspaceName = new HashMap<String, Collection<SequencingConfiguration>>(
-                                                                                                                                              this.configByWorkspaceName);
+            Map<String, PathExpressionIndex<SequencingConfiguration>> configByWorkspaceName = new HashMap<String, PathExpressionIndex<SequencingConfiguration>>(
+                                                                                                                                                                this.configByWorkspaceName);
             // Insert the new information ...
             if (configByWorkspaceName.remove(workspaceName) != null) {
                 // Replace the exisiting map (which is used without a lock) ...
@@ -356,10 +365,18 @@ public class Sequencers implements ChangeSetListener {
                                                              inputWorkspaceName, matcher.getSelectedPath(),
                                                              matcher.getJcrInputPath(), matcher.getOutputPath(),
                                                              matcher.getOutputWorkspaceName(), propertyName);
-        statistics().increment(ValueMetric.SEQUENCER_QUEUE_SIZE);
         workQueue.submit(workItem);
     }
 
+    /**
+     * Sequence the input of the supplied work item. This method is called by the threads of the work queue.
+     * 
+     * @param workItem the work item; may not be null
+     */
+    protected void process( SequencingWorkItem workItem ) {
+        new SequencingRunner(repository, workItem).run();
+    }
+
     protected Sequencer getSequencer( UUID id ) {
         return sequencersById.get(id);
     }
@@ -428,7 +445,7 @@ public class Sequencers implements ChangeSetListener {
         }
 
         final String workspaceName = changeSet.getWorkspaceName();
-        final Collection<SequencingConfiguration> configs = this.configByWorkspaceName.get(workspaceName);
+        final PathExpressionIndex<SequencingConfiguration> configs = this.configByWorkspaceName.get(workspaceName);
         if (configs == null) {
             // No sequencers apply to this workspace ...
             return;
@@ -441,10 +458,11 @@ public class Sequencers implements ChangeSetListener {
                 if (change instanceof PropertyAdded) {
                     PropertyAdded added = (PropertyAdded)change;
                     Path nodePath = added.getPathToNode();
-                    String strPath = stringFactory.create(nodePath);
+                    String strPath = null;
                     Name propName = added.getProperty().getName();
-                    // Check if the property is sequencable ...
-                    for (SequencingConfiguration config : configs) {
+                    // Check if the property is sequencable, considering only the configurations which can match it ...
+                    for (SequencingConfiguration config : configs.candidatesFor(nodePath, propName)) {
+                        if (strPath == null) strPath = stringFactory.create(nodePath);
                         Matcher matcher = config.matches(strPath, propName);
                         if (!matcher.matches()) {
                             if (TRACE) {
@@ -465,10 +483,11 @@ public class Sequencers implements ChangeSetListener {
                 } else if (change instanceof PropertyChanged) {
                     PropertyChanged changed = (PropertyChanged)change;
                     Path nodePath = changed.getPathToNode();
-                    String strPath = stringFactory.create(nodePath);
+                    String strPath = null;
                     Name propName = changed.getNewProperty().getName();
-                    // Check if the property is sequencable ...
-                    for (SequencingConfiguration config : configs) {
+                    // Check if the property is sequencable, considering only the configurations which can match it ...
+                    for (SequencingConfiguration config : configs.candidatesFor(nodePath, propName)) {
+                        if (strPath == null) strPath = stringFactory.create(nodePath);
                         Matcher matcher = config.matches(strPath, propName);
                         if (!matcher.matches()) {
                             if (TRACE) {
@@ -510,23 +529,6 @@ public class Sequencers implements ChangeSetListener {
         void shutdown();
     }
 
-    protected final class SequencingWorkQueue implements WorkQueue {
-        private final List<Future<?>> results = new ArrayList<Future<?>>();
-
-        @Override
-        public void submit( SequencingWorkItem work ) {
-            results.add(sequencingExecutor.submit(new SequencingRunner(repository, work)));
-        }
-
-        @Override
-        public void shutdown() {
-            for (Future<?> workItem : results) {
-                workItem.cancel(true);
-            }
-            results.clear();
-        }
-    }
-
     /**
      * This class represents a single {@link SequencerPathExpression} and the corresponding {@link Sequencer} implementation that
      * should be used if the path expression matches.
@@ -695,7 +697,9 @@ public class Sequencers implements ChangeSetListener {
                 if (!this.sequencerId.equals(that.sequencerId)) return false;
                 if (!this.inputWorkspaceName.equals(that.inputWorkspaceName)) return false;
                 if (!this.inputPath.equals(that.inputPath)) return false;
-                if (!this.outputPath.equals(that.outputWorkspaceName)) return false;
+                if (!this.changedPropertyName.equals(that.changedPropertyName)) return false;
+                if (!this.outputPath.equals(that.outputPath)) return false;
+                if (this.outputWorkspaceName == null) return that.outputWorkspaceName == null;
                 if (!this.outputWorkspaceName.equals(that.outputWorkspaceName)) return false;
                 return true;
             }
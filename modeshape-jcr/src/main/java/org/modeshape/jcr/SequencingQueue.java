@@ -0,0 +1,523 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.common.logging.Logger;
+import org.modeshape.common.util.SecureHash;
+import org.modeshape.jcr.Sequencers.SequencingWorkItem;
+import org.modeshape.jcr.api.monitor.ValueMetric;
+import org.modeshape.jcr.api.sequencer.Sequencer;
+
+/**
+ * The queue of the sequencing work of a repository, which is processed by a fixed number of worker threads.
+ * <p>
+ * Pending work is processed in the order of the {@link Sequencer#getPriority() priority} of the sequencers, and in the order it
+ * was submitted for sequencers with the same priority. Work for the same sequencer, input node and property that is submitted
+ * while an earlier work item is still pending is coalesced with the pending item, and work for an input that is being sequenced
+ * is deferred until the sequencing of that input completes, so that the same input is never sequenced concurrently.
+ * </p>
+ * <p>
+ * When a {@link RepositoryConfiguration.Sequencing#getQueueLocation() queue location} is configured, each pending work item is
+ * recorded in a file until it has been processed, so that the work which was still pending when the repository was shut down (or
+ * crashed) is processed after a restart. The queue then keeps a bounded number of items in memory; any additional work is only
+ * kept on disk (in the order it was submitted) and is read back as the queue drains, without holding the lock that submitters
+ * need, so the submitting thread is never blocked by the workers. Without a queue location, the same number of items is kept in
+ * memory, and a thread that submits more work waits until the workers make room for it. Since the sequencing sessions themselves
+ * publish the changes that feed this queue, a submitter waits at most {@value #MAX_SUBMIT_WAIT_SECONDS} seconds, after which the
+ * work is dropped with a warning. The number of pending and running work items is reported through the
+ * {@link ValueMetric#SEQUENCER_QUEUE_SIZE} metric.
+ * </p>
+ */
+@ThreadSafe
+class SequencingQueue implements Sequencers.WorkQueue {
+
+    private static final String RUNNING_FILE_SUFFIX = ".running";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    /** The maximum time a submitter waits for room in the queue when the work cannot be kept on disk */
+    static final long MAX_SUBMIT_WAIT_SECONDS = 30L;
+
+    private static final Comparator<Pending> ORDER = new Comparator<Pending>() {
+        @Override
+        public int compare( Pending first,
+                            Pending second ) {
+            if (first.priority != second.priority) return first.priority > second.priority ? -1 : 1;
+            return first.sequence < second.sequence ? -1 : (first.sequence == second.sequence ? 0 : 1);
+        }
+    };
+
+    private final Logger logger = Logger.getLogger(getClass());
+    private final String repositoryName;
+    private final Sequencers sequencers;
+    private final RepositoryStatistics statistics;
+    private final ExecutorService executor;
+    private final File directory;
+    private final int maxQueueSize;
+    private final int threadCount;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final PriorityQueue<Pending> queue = new PriorityQueue<>(16, ORDER);
+    private final Map<String, Pending> pendingByKey = new HashMap<>();
+    private final Map<String, Pending> deferredByKey = new HashMap<>();
+    private final Set<String> runningKeys = new HashSet<>();
+    /** The keys of the work items that are only kept on disk, in the order they are to be read back */
+    private final LinkedHashSet<String> spilledKeys = new LinkedHashSet<>();
+    /** The number of spilled work items, including those that are being read back */
+    private int spilled;
+    private boolean reloading;
+    private long sequence;
+    private boolean persistent;
+    private boolean started;
+    private boolean shutdown;
+
+    SequencingQueue( String repositoryName,
+                     Sequencers sequencers,
+                     RepositoryStatistics statistics,
+                     ExecutorService executor,
+                     RepositoryConfiguration.Sequencing config ) {
+        this.repositoryName = repositoryName;
+        this.sequencers = sequencers;
+        this.statistics = statistics;
+        this.executor = executor;
+        String location = config.getQueueLocation();
+        this.directory = location != null ? new File(location, repositoryName) : null;
+        this.persistent = this.directory != null;
+        this.maxQueueSize = config.getMaxQueueSize();
+        this.threadCount = config.getThreadCount();
+    }
+
+    /**
+     * Recover the work that was still pending when the repository was last shut down, and start the worker threads. This method
+     * should only be called once the sequencers have been initialized, and does nothing if the queue has already been started.
+     */
+    void start() {
+        lock.lock();
+        try {
+            if (started || shutdown) return;
+            started = true;
+            recover();
+            updateQueueSize();
+        } finally {
+            lock.unlock();
+        }
+        for (int i = 0; i != threadCount; ++i) {
+            executor.execute(new Worker());
+        }
+    }
+
+    @Override
+    public void submit( SequencingWorkItem work ) {
+        Sequencer sequencer = sequencers.getSequencer(work.getSequencerId());
+        String key = keyFor(work, sequencer);
+        lock.lock();
+        try {
+            if (!persistent && !awaitRoom(key, work)) {
+                return;
+            }
+            if (shutdown || pendingByKey.containsKey(key)) {
+                // The same input is already waiting to be sequenced ...
+                return;
+            }
+            if (!persist(key, work, sequencer)) {
+                // A spilled work item for the same input is already waiting to be sequenced ...
+                return;
+            }
+            Pending pending = new Pending(key, work, sequencer != null ? sequencer.getPriority() : 0, sequence++);
+            if (runningKeys.contains(key)) {
+                // Sequence the input again once the running work is done ...
+                pendingByKey.put(key, pending);
+                deferredByKey.put(key, pending);
+            } else if (queue.size() < maxQueueSize || !persistent) {
+                pendingByKey.put(key, pending);
+                queue.add(pending);
+                available.signal();
+            } else {
+                // The work is only kept on disk until there is room in memory ...
+                spilledKeys.add(key);
+                ++spilled;
+            }
+            updateQueueSize();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop the worker threads once they have finished their current work. Any pending work remains recorded on disk, and is
+     * processed when the repository is started again.
+     */
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            available.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of work items that are waiting to be processed or are being processed.
+     * 
+     * @return the number of work items; never negative
+     */
+    int size() {
+        lock.lock();
+        try {
+            return queue.size() + deferredByKey.size() + spilled + runningKeys.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected Pending take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!shutdown) {
+                if (!spilledKeys.isEmpty() && !reloading && queue.size() <= maxQueueSize / 2) {
+                    reload();
+                    continue;
+                }
+                Pending pending = queue.poll();
+                if (pending != null) {
+                    pendingByKey.remove(pending.key);
+                    runningKeys.add(pending.key);
+                    notFull.signal();
+                    rename(fileFor(pending.key), fileFor(pending.key + RUNNING_FILE_SUFFIX));
+                    updateQueueSize();
+                    return pending;
+                }
+                available.await();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected void completed( Pending pending ) {
+        lock.lock();
+        try {
+            runningKeys.remove(pending.key);
+            if (persistent) fileFor(pending.key + RUNNING_FILE_SUFFIX).delete();
+            Pending deferred = deferredByKey.remove(pending.key);
+            if (deferred != null) {
+                queue.add(deferred);
+                available.signal();
+            }
+            updateQueueSize();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until there is room in memory for another work item, which is only necessary when the work cannot be kept on disk.
+     * The lock must be held by the calling thread.
+     * 
+     * @param key the key of the work item; may not be null
+     * @param work the work item; may not be null
+     * @return true if the work item can be added, or false if there is still no room after waiting
+     */
+    private boolean awaitRoom( String key,
+                               SequencingWorkItem work ) {
+        long remaining = TimeUnit.SECONDS.toNanos(MAX_SUBMIT_WAIT_SECONDS);
+        try {
+            // Work for an input that is already pending will be coalesced, and so needs no room ...
+            while (!shutdown && !persistent && !pendingByKey.containsKey(key) && queue.size() >= maxQueueSize) {
+                if (remaining <= 0L) {
+                    logger.warn(JcrI18n.sequencingQueueIsFull, work, repositoryName, maxQueueSize);
+                    return false;
+                }
+                remaining = notFull.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn(JcrI18n.sequencingQueueIsFull, work, repositoryName, maxQueueSize);
+            return false;
+        }
+    }
+
+    private void updateQueueSize() {
+        statistics.set(ValueMetric.SEQUENCER_QUEUE_SIZE, queue.size() + deferredByKey.size() + spilled + runningKeys.size());
+    }
+
+    private String keyFor( SequencingWorkItem work,
+                           Sequencer sequencer ) {
+        String sequencerName = sequencer != null && sequencer.getName() != null ? sequencer.getName() : work.getSequencerId()
+                                                                                                              .toString();
+        return SecureHash.sha1(sequencerName + '\n' + work.getInputWorkspaceName() + '\n' + work.getInputPath() + '\n'
+                               + work.getChangedPropertyName());
+    }
+
+    private File fileFor( String name ) {
+        return new File(directory, name);
+    }
+
+    /**
+     * Record the supplied work item on disk.
+     * 
+     * @param key the key of the work item; may not be null
+     * @param work the work item; may not be null
+     * @param sequencer the sequencer of the work item; may be null if the sequencer no longer exists
+     * @return false if a work item with the same key was already recorded, or true otherwise
+     */
+    private boolean persist( String key,
+                             SequencingWorkItem work,
+                             Sequencer sequencer ) {
+        if (!persistent || sequencer == null) return true;
+        File file = fileFor(key);
+        if (file.exists()) return false;
+        File temp = fileFor(key + TEMP_FILE_SUFFIX);
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create the folder " + directory.getAbsolutePath());
+            }
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                output.writeUTF(sequencer.getName());
+                output.writeUTF(work.getUserId());
+                output.writeUTF(work.getInputWorkspaceName());
+                output.writeUTF(work.getSelectedPath());
+                output.writeUTF(work.getInputPath());
+                output.writeUTF(work.getOutputPath());
+                output.writeBoolean(work.getOutputWorkspaceName() != null);
+                if (work.getOutputWorkspaceName() != null) output.writeUTF(work.getOutputWorkspaceName());
+                output.writeUTF(work.getChangedPropertyName());
+            } finally {
+                output.close();
+            }
+            rename(temp, file);
+        } catch (IOException e) {
+            // Keep all of the pending work in memory from now on ...
+            logger.warn(JcrI18n.errorRecordingSequencingWork, directory, e.getMessage());
+            temp.delete();
+            persistent = false;
+            reloadAll();
+        }
+        return true;
+    }
+
+    private SequencingWorkItem read( File file ) {
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                Sequencer sequencer = sequencers.getSequencer(input.readUTF());
+                String userId = input.readUTF();
+                String inputWorkspaceName = input.readUTF();
+                String selectedPath = input.readUTF();
+                String inputPath = input.readUTF();
+                String outputPath = input.readUTF();
+                String outputWorkspaceName = input.readBoolean() ? input.readUTF() : null;
+                String changedPropertyName = input.readUTF();
+                if (sequencer == null || sequencers.getSequencer(sequencer.getUniqueId()) == null) {
+                    // The sequencer no longer exists or is not used for automatic sequencing ...
+                    return null;
+                }
+                return new SequencingWorkItem(sequencer.getUniqueId(), userId, inputWorkspaceName, selectedPath, inputPath,
+                                              outputPath, outputWorkspaceName, changedPropertyName);
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            logger.warn(JcrI18n.errorRecordingSequencingWork, file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void rename( File from,
+                         File to ) {
+        if (!persistent || !from.exists()) return;
+        if (!from.renameTo(to)) {
+            // Some platforms don't replace an existing file ...
+            to.delete();
+            from.renameTo(to);
+        }
+    }
+
+    private File[] pendingFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) return new File[0];
+        List<File> pending = new ArrayList<>(files.length);
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.endsWith(RUNNING_FILE_SUFFIX) && !name.endsWith(TEMP_FILE_SUFFIX)) pending.add(file);
+        }
+        File[] result = pending.toArray(new File[pending.size()]);
+        // Process the oldest work first ...
+        Arrays.sort(result, new Comparator<File>() {
+            @Override
+            public int compare( File first,
+                                File second ) {
+                long firstModified = first.lastModified();
+                long secondModified = second.lastModified();
+                return firstModified < secondModified ? -1 : (firstModified == secondModified ? 0 : 1);
+            }
+        });
+        return result;
+    }
+
+    private void recover() {
+        if (!persistent) return;
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_FILE_SUFFIX)) {
+                file.delete();
+            } else if (name.endsWith(RUNNING_FILE_SUFFIX)) {
+                // The sequencing of this input was interrupted, so it has to be done again ...
+                File pending = fileFor(name.substring(0, name.length() - RUNNING_FILE_SUFFIX.length()));
+                if (pending.exists()) file.delete();
+                else rename(file, pending);
+            }
+        }
+        int recovered = 0;
+        for (File file : pendingFiles()) {
+            if (spilledKeys.add(file.getName())) ++recovered;
+        }
+        spilled += recovered;
+        if (recovered > 0) {
+            logger.info(JcrI18n.resumingSequencingWork, recovered, repositoryName);
+        }
+    }
+
+    /**
+     * Read the oldest spilled work items from disk, until the in-memory queue is full. The lock is released while the files are
+     * read, so that work can still be submitted and completed in the meantime.
+     */
+    private void reload() {
+        List<String> keys = new ArrayList<>();
+        for (Iterator<String> iter = spilledKeys.iterator(); iter.hasNext() && queue.size() + keys.size() < maxQueueSize;) {
+            keys.add(iter.next());
+            iter.remove();
+        }
+        List<SequencingWorkItem> works = new ArrayList<>(keys.size());
+        reloading = true;
+        lock.unlock();
+        try {
+            for (String key : keys) {
+                File file = fileFor(key);
+                SequencingWorkItem work = read(file);
+                if (work == null) file.delete();
+                works.add(work);
+            }
+        } finally {
+            lock.lock();
+            reloading = false;
+        }
+        for (int i = 0; i != keys.size(); ++i) {
+            SequencingWorkItem work = works.get(i);
+            if (work != null) enqueue(keys.get(i), work);
+        }
+        spilled -= keys.size();
+        available.signalAll();
+        updateQueueSize();
+    }
+
+    /**
+     * Read all of the spilled work items from disk, once the work can no longer be recorded on disk.
+     */
+    private void reloadAll() {
+        for (String key : spilledKeys) {
+            SequencingWorkItem work = read(fileFor(key));
+            if (work != null) enqueue(key, work);
+        }
+        spilled -= spilledKeys.size();
+        spilledKeys.clear();
+        available.signalAll();
+    }
+
+    private void enqueue( String key,
+                          SequencingWorkItem work ) {
+        // The sequencer may have been removed since the work was read ...
+        Sequencer sequencer = sequencers.getSequencer(work.getSequencerId());
+        Pending pending = new Pending(key, work, sequencer != null ? sequencer.getPriority() : 0, sequence++);
+        pendingByKey.put(key, pending);
+        queue.add(pending);
+    }
+
+    protected static final class Pending {
+        protected final String key;
+        protected final SequencingWorkItem work;
+        protected final int priority;
+        protected final long sequence;
+
+        protected Pending( String key,
+                           SequencingWorkItem work,
+                           int priority,
+                           long sequence ) {
+            this.key = key;
+            this.work = work;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public String toString() {
+            return work + " (priority " + priority + ")";
+        }
+    }
+
+    protected final class Worker implements Runnable {
+        @Override
+        public void run() {
+            try {
+                Pending pending = null;
+                while ((pending = take()) != null) {
+                    try {
+                        sequencers.process(pending.work);
+                    } catch (RuntimeException e) {
+                        logger.error(e, JcrI18n.errorProcessingSequencingWork, pending, repositoryName, e.getMessage());
+                    } finally {
+                        completed(pending);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -26,6 +26,7 @@ import org.modeshape.common.i18n.I18n;
 @Immutable
 public final class BusI18n {
     public static I18n errorSerializingChanges;
+    public static I18n errorSendingChanges;
     public static I18n errorDeserializingChanges;
     public static I18n errorProcessingEvent;
 
@@ -53,4 +53,16 @@ public interface ChangeBus extends ChangeSetListener, Observable {
      *         the observer could not be added
      */
     boolean registerInThread( ChangeSetListener observer);
+
+    /**
+     * Register the supplied observer which will be notified asynchronously in a thread of its own, rather than in one of the
+     * threads shared by the other asynchronous observers. This should be used for observers that may be slow (e.g., those that
+     * write to indexes or to disk), so that they don't delay the other observers. This method does nothing if the observer
+     * reference is null.
+     *
+     * @param observer the observer to be added; may be null
+     * @return true if the observer was added, or false if the observer was null, if the observer was already registered, or if
+     *         the observer could not be added
+     */
+    boolean registerIsolated( ChangeSetListener observer );
 }
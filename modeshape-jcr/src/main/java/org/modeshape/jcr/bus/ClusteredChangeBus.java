@@ -15,10 +15,20 @@
  */
 package org.modeshape.jcr.bus;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.modeshape.common.annotation.ThreadSafe;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.CheckArg;
+import org.modeshape.common.util.NamedThreadFactory;
 import org.modeshape.jcr.cache.change.ChangeSet;
+import org.modeshape.jcr.cache.change.ChangeSetCodec;
 import org.modeshape.jcr.cache.change.ChangeSetListener;
 import org.modeshape.jcr.clustering.ClusteringService;
 import org.modeshape.jcr.clustering.MessageConsumer;
@@ -31,6 +41,12 @@ import org.modeshape.jcr.clustering.MessageConsumer;
  * cluster, and JGroups will do this for us as long as we push all local changes into the channel and receive all local/remote
  * changes from the channel.
  * </p>
+ * <p>
+ * Change sets are written with the compact {@link ChangeSetCodec} and are sent by a single background thread, which packs all the
+ * change sets that were queued while it was sending the previous message into the next message (up to
+ * {@link #MAX_BATCH_SIZE}). Optionally, the thread can wait for up to a "batch window" for more change sets before sending a
+ * message.
+ * </p>
  * 
  * @author Horia Chiorean
  */
@@ -39,6 +55,13 @@ public final class ClusteredChangeBus extends MessageConsumer<ChangeSet> impleme
 
     private static final Logger LOGGER = Logger.getLogger(ClusteredChangeBus.class);
 
+    /**
+     * The maximum number of change sets sent in a single cluster message.
+     */
+    protected static final int MAX_BATCH_SIZE = 100;
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
     /**
      * The wrapped standalone bus to which standard bus operations are delegated
      */
@@ -49,6 +72,24 @@ public final class ClusteredChangeBus extends MessageConsumer<ChangeSet> impleme
      */
     private final ClusteringService clusteringService;
 
+    /**
+     * The number of milliseconds the sender waits for more change sets before sending a message, or 0 if it shouldn't wait
+     */
+    private final long batchWindowMillis;
+
+    /**
+     * The change sets which have to be sent to the cluster
+     */
+    private final BlockingQueue<ChangeSet> outgoing = new LinkedBlockingQueue<>();
+
+    /**
+     * The number of change sets which have been queued but not yet sent (or consumed locally)
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private volatile boolean running;
+    private ExecutorService sender;
+
     /**
      * Creates a new clustered repository bus
      * 
@@ -57,12 +98,33 @@ public final class ClusteredChangeBus extends MessageConsumer<ChangeSet> impleme
      */
     public ClusteredChangeBus( ChangeBus delegate,
                                ClusteringService clusteringService ) {
-        super(ChangeSet.class);
+        this(delegate, clusteringService, 0L);
+    }
+
+    /**
+     * Creates a new clustered repository bus
+     * 
+     * @param delegate the local bus to which changes will be delegated
+     * @param clusteringService the object which will handle sending/receiving information in the cluster.
+     * @param batchWindowMillis the number of milliseconds to wait for more change sets before sending a message to the cluster,
+     *        or 0 if only the change sets which are already queued should be sent together
+     */
+    public ClusteredChangeBus( ChangeBus delegate,
+                               ClusteringService clusteringService,
+                               long batchWindowMillis ) {
+        super(ChangeSet.class, ChangeSetCodec.INSTANCE);
 
         CheckArg.isNotNull(delegate, "delegate");
         CheckArg.isNotNull(clusteringService, "clusteringService");
+        CheckArg.isNonNegative(batchWindowMillis, "batchWindowMillis");
         this.delegate = delegate;
         this.clusteringService = clusteringService;
+        this.batchWindowMillis = batchWindowMillis;
+    }
+
+    @Override
+    public boolean isConsuming() {
+        return hasObservers();
     }
 
     @Override
@@ -85,6 +147,16 @@ public final class ClusteredChangeBus extends MessageConsumer<ChangeSet> impleme
 
         // register with the clustering service
         clusteringService.addConsumer(this);
+
+        // and start sending the changes
+        running = true;
+        sender = Executors.newSingleThreadExecutor(new NamedThreadFactory("modeshape-cluster-bus-sender"));
+        sender.execute(new Runnable() {
+            @Override
+            public void run() {
+                sendQueuedChanges();
+            }
+        });
     }
 
     @Override
@@ -94,6 +166,20 @@ public final class ClusteredChangeBus extends MessageConsumer<ChangeSet> impleme
 
     @Override
     public synchronized void shutdown() {
+        if (sender != null) {
+            // let the sender send everything that has already been queued ...
+            running = false;
+            sender.shutdown();
+            try {
+                if (!sender.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    sender.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                sender.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            sender = null;
+        }
         delegate.shutdown();
     }
 
@@ -102,9 +188,9 @@ public final class ClusteredChangeBus extends MessageConsumer<ChangeSet> impleme
         if (changeSet == null) {
             return; // do nothing
         }
-        if (!clusteringService.multipleMembersInCluster()) {
-            // We are in clustered mode, but there is only one participant in the cluster (us).
-            // So short-circuit the cluster and just notify the local observers ...
+        if (!clusteringService.multipleMembersInCluster() && pending.get() == 0) {
+            // We are in clustered mode, but there is only one participant in the cluster (us) and no changes are waiting
+            // to be sent. So short-circuit the cluster and just notify the local observers ...
             consume(changeSet);
             return;
         }
@@ -112,7 +198,56 @@ public final class ClusteredChangeBus extends MessageConsumer<ChangeSet> impleme
         // There are multiple participants in the cluster, so send all changes out to JGroups,
         // letting JGroups do the ordering of messages...
         logSendOperation(changeSet);
-        clusteringService.sendMessage(changeSet);
+        pending.incrementAndGet();
+        outgoing.add(changeSet);
+    }
+
+    /**
+     * Send the queued change sets to the cluster in batches, until this bus is shut down and all the queued change sets were sent.
+     */
+    protected void sendQueuedChanges() {
+        List<ChangeSet> batch = new ArrayList<>();
+        while (running || !outgoing.isEmpty()) {
+            try {
+                ChangeSet first = outgoing.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                if (batchWindowMillis > 0) {
+                    long deadline = System.currentTimeMillis() + batchWindowMillis;
+                    long remaining = batchWindowMillis;
+                    while (batch.size() < MAX_BATCH_SIZE && remaining > 0) {
+                        ChangeSet next = outgoing.poll(remaining, TimeUnit.MILLISECONDS);
+                        if (next == null) break;
+                        batch.add(next);
+                        remaining = deadline - System.currentTimeMillis();
+                    }
+                }
+                outgoing.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                outgoing.drainTo(batch);
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                send(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void send( List<ChangeSet> batch ) {
+        try {
+            if (!clusteringService.sendMessages(batch)) {
+                // the other members have left the cluster, so just notify the local observers ...
+                for (ChangeSet changeSet : batch) {
+                    consume(changeSet);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error(e, BusI18n.errorSendingChanges, clusteringService.clusterName(), batch.size(), e.getMessage());
+        } finally {
+            pending.addAndGet(-batch.size());
+        }
     }
 
     protected final void logSendOperation( ChangeSet changeSet ) {
@@ -150,6 +285,11 @@ public final class ClusteredChangeBus extends MessageConsumer<ChangeSet> impleme
         return delegate.registerInThread(listener);
     }
 
+    @Override
+    public boolean registerIsolated( ChangeSetListener listener ) {
+        return delegate.registerIsolated(listener);
+    }
+
     @Override
     public boolean unregister( ChangeSetListener listener ) {
         return delegate.unregister(listener);
@@ -19,12 +19,15 @@ package org.modeshape.jcr.bus;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import org.modeshape.common.collection.ring.RingBuffer;
 import org.modeshape.common.collection.ring.RingBufferBuilder;
 import org.modeshape.common.logging.Logger;
+import org.modeshape.jcr.DurationRecorder;
+import org.modeshape.jcr.api.monitor.DurationMetric;
 import org.modeshape.jcr.cache.change.ChangeSet;
 import org.modeshape.jcr.cache.change.ChangeSetListener;
 
@@ -39,6 +42,13 @@ public final class RepositoryChangeBus implements ChangeBus {
     protected static final Logger LOGGER = Logger.getLogger(RepositoryChangeBus.class);
 
     private static final int DEFAULT_SIZE = 1 << 10; // 1024
+    /**
+     * The number of threads that all of the asynchronous listeners share, so that the number of threads does not grow with the
+     * number of listeners (e.g., one per session with an observation manager). The repository's own listeners, and those that
+     * may be slow, are {@link #registerIsolated(ChangeSetListener) registered} with threads of their own instead, so that a slow
+     * JCR listener in a shared thread cannot delay them.
+     */
+    private static final int DEFAULT_DISPATCHER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
 
     private final AtomicBoolean shutdown = new AtomicBoolean(true);
     /**
@@ -51,6 +61,7 @@ public final class RepositoryChangeBus implements ChangeBus {
     private final Lock registrationLock = new ReentrantLock();
     private final Set<ChangeSetListener> inThreadListeners = new CopyOnWriteArraySet<>();
     private final RingBuffer<ChangeSet, ChangeSetListener> ringBuffer;
+    private final DurationRecorder durations;
 
     /**
      * Creates new change bus
@@ -61,8 +72,25 @@ public final class RepositoryChangeBus implements ChangeBus {
      */
     public RepositoryChangeBus( String repositoryName,
                                 ExecutorService executor ) {
+        this(repositoryName, executor, DurationRecorder.NONE);
+    }
+
+    /**
+     * Creates new change bus that records how long it takes to {@link #notify(ChangeSet) dispatch} each change set.
+     * 
+     * @param repositoryName the repository name; may not be null
+     * @param executor the {@link java.util.concurrent.ExecutorService} which will be used internally to submit workers to
+     *        dispatching events to listeners.
+     * @param durations the recorder of the {@link DurationMetric#CHANGE_BUS_DISPATCH_TIME dispatch durations}; may not be null
+     */
+    public RepositoryChangeBus( String repositoryName,
+                                ExecutorService executor,
+                                DurationRecorder durations ) {
+        assert durations != null;
+        this.durations = durations;
         this.ringBuffer = RingBufferBuilder.withMultipleProducers(executor, new ChangeSetListenerConsumerAdapter())
-                                           .ofSize(DEFAULT_SIZE).named(repositoryName).garbageCollect(true).build();
+                                           .ofSize(DEFAULT_SIZE).named(repositoryName).garbageCollect(true)
+                                           .sharedConsumerThreads(DEFAULT_DISPATCHER_THREADS).build();
     }
 
     @Override
@@ -93,6 +121,17 @@ public final class RepositoryChangeBus implements ChangeBus {
         }
     }
 
+    @Override
+    public boolean registerIsolated( ChangeSetListener observer ) {
+        if (observer == null || shutdown.get()) return false;
+        try {
+            registrationLock.lock();
+            return ringBuffer.addIsolatedConsumer(observer);
+        } finally {
+            registrationLock.unlock();
+        }
+    }
+
     @Override
     public boolean unregister( ChangeSetListener observer ) {
         if (observer == null || shutdown.get()) return false;
@@ -135,12 +174,17 @@ public final class RepositoryChangeBus implements ChangeBus {
             throw new IllegalStateException("Change bus has been already shut down, should not have any more observers");
         }
 
-        // Add the change set into the buffer so it can be processed by the asynchronous listeners ...
-        ringBuffer.add(changeSet);
+        long start = System.nanoTime();
+        try {
+            // Add the change set into the buffer so it can be processed by the asynchronous listeners ...
+            ringBuffer.add(changeSet);
 
-        // And process all of the in-thread listeners ...
-        for (ChangeSetListener listener : inThreadListeners) {
-            listener.notify(changeSet);
+            // And process all of the in-thread listeners ...
+            for (ChangeSetListener listener : inThreadListeners) {
+                listener.notify(changeSet);
+            }
+        } finally {
+            durations.recordDuration(DurationMetric.CHANGE_BUS_DISPATCH_TIME, System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
 
@@ -0,0 +1,59 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache;
+
+/**
+ * An exception signalling that a session attempted to save changes to the properties of a node whose properties were changed and
+ * persisted by another session after this session read the node.
+ */
+public class DocumentVersionConflictException extends DocumentStoreException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long expectedVersion;
+    private final long actualVersion;
+
+    /**
+     * @param key the key for the node that was concurrently modified
+     * @param expectedVersion the version of the node that was read by the session
+     * @param actualVersion the version of the node that is persisted
+     */
+    public DocumentVersionConflictException( String key,
+                                             long expectedVersion,
+                                             long actualVersion ) {
+        super(key, "Expected version " + expectedVersion + " of '" + key + "' but found version " + actualVersion);
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    /**
+     * Get the version of the node that was read by the session.
+     * 
+     * @return the expected version
+     */
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    /**
+     * Get the version of the node that was persisted when the session attempted to save.
+     * 
+     * @return the actual version
+     */
+    public long getActualVersion() {
+        return actualVersion;
+    }
+}
@@ -15,9 +15,17 @@
  */
 package org.modeshape.jcr.cache;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.Comparator;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.infinispan.schematic.SchematicDb;
 import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.util.ObjectUtil;
@@ -36,7 +44,13 @@ import org.modeshape.jcr.JcrRepository;
  * </ol>
  * </p>
  * <p>
- * This class contains methods for
+ * Node keys are kept in a compact form: the source and workspace keys are shared by all keys with the same values, and an
+ * identifier that is a UUID (in its canonical, lower-case form) is kept as two {@code long} values rather than as a string. This
+ * makes {@link #hashCode()}, {@link #equals(Object)} and {@link #compareTo(NodeKey)} cheap and allocation-free, and keeps the
+ * keys that are held in the caches small. The string form of a key (see {@link #toString()}) is the same as before, and is
+ * created the first time it is needed and then kept, since keys whose string form is used once tend to be used again (e.g., when
+ * the node's document is read and written).
+ * </p>
  */
 @Immutable
 public final class NodeKey implements Serializable, Comparable<NodeKey> {
@@ -52,6 +66,11 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
     private static final int UUID_LENGTH = UUID.randomUUID().toString().length();
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The key is serialized in its string form, which is compatible with the serialized form of older versions.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {new ObjectStreamField("key", String.class)};
+
     protected static final int SOURCE_LENGTH = 7;
     protected static final int WORKSPACE_LENGTH = 7;
     private static final int SOURCE_START_INDEX = 0;
@@ -60,6 +79,12 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
     private static final int WORKSPACE_END_INDEX = WORKSPACE_START_INDEX + WORKSPACE_LENGTH;
     private static final int IDENTIFIER_START_INDEX = WORKSPACE_END_INDEX;
 
+    /**
+     * The maximum number of distinct source and workspace keys that are shared by the node keys. There are usually only a handful.
+     */
+    private static final int MAX_SHARED_KEYS = 1024;
+    private static final ConcurrentMap<String, String> SHARED_KEYS = new ConcurrentHashMap<>();
+
     /**
      * Determine if the supplied string may be a valid identifier. This method returns 'false' only if the identifier is known to
      * be invalid (e.g., it is not of the correct format). This method may return true even if the identifier itself does not
@@ -93,10 +118,21 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
         return false;
     }
 
-    private final String key;
     private transient String sourceKey;
     private transient String workspaceKey;
+    /**
+     * The identifier, or null if the identifier is a UUID that is kept in {@link #mostSignificantBits} and
+     * {@link #leastSignificantBits}.
+     */
     private transient String identifier;
+    private transient long mostSignificantBits;
+    private transient long leastSignificantBits;
+    /**
+     * The lazily-created string form of a UUID identifier. This and {@link #string} are not volatile, since the strings are
+     * immutable and at worst are created more than once by concurrent threads.
+     */
+    private transient String uuidString;
+    private transient String string;
 
     /**
      * Reconstitute a node key from the supplied string.
@@ -106,7 +142,7 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
     public NodeKey( String key ) {
         assert key != null;
         assert key.length() > IDENTIFIER_START_INDEX;
-        this.key = key;
+        initialize(key);
     }
 
     /**
@@ -125,7 +161,76 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
         assert sourceKey.length() == SOURCE_LENGTH;
         assert workspaceKey.length() == WORKSPACE_LENGTH;
         assert workspaceKey.length() > 0;
-        this.key = sourceKey + workspaceKey + identifier;
+        if (sourceKey.length() != SOURCE_LENGTH || workspaceKey.length() != WORKSPACE_LENGTH) {
+            // The parts are always determined from the string form ...
+            initialize(sourceKey + workspaceKey + identifier);
+            return;
+        }
+        this.sourceKey = shared(sourceKey);
+        this.workspaceKey = shared(workspaceKey);
+        initializeIdentifier(identifier, 0);
+    }
+
+    private NodeKey( String sourceKey,
+                     String workspaceKey,
+                     long mostSignificantBits,
+                     long leastSignificantBits ) {
+        this.sourceKey = sourceKey;
+        this.workspaceKey = workspaceKey;
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
+    }
+
+    private void initialize( String key ) {
+        if (key.length() < IDENTIFIER_START_INDEX) {
+            // Not a valid key, but keep all of it ...
+            this.sourceKey = key;
+            this.workspaceKey = "";
+            this.identifier = "";
+            return;
+        }
+        this.sourceKey = shared(key.substring(SOURCE_START_INDEX, SOURCE_END_INDEX));
+        this.workspaceKey = shared(key.substring(WORKSPACE_START_INDEX, WORKSPACE_END_INDEX));
+        initializeIdentifier(key, IDENTIFIER_START_INDEX);
+    }
+
+    private void initializeIdentifier( String str,
+                                       int start ) {
+        if (str.length() - start == UUID_LENGTH) {
+            // Parse the canonical (lower-case) form of a UUID, which is the only form that produces the same string again ...
+            long most = 0L;
+            long least = 0L;
+            boolean uuid = true;
+            for (int i = 0; i != UUID_LENGTH; ++i) {
+                char c = str.charAt(start + i);
+                if (i == 8 || i == 13 || i == 18 || i == 23) {
+                    if (c == '-') continue;
+                    uuid = false;
+                    break;
+                }
+                int digit = c >= '0' && c <= '9' ? c - '0' : (c >= 'a' && c <= 'f' ? c - 'a' + 10 : -1);
+                if (digit < 0) {
+                    uuid = false;
+                    break;
+                }
+                if (i < 18) most = most << 4 | digit;
+                else least = least << 4 | digit;
+            }
+            if (uuid) {
+                this.mostSignificantBits = most;
+                this.leastSignificantBits = least;
+                return;
+            }
+        }
+        this.identifier = start == 0 ? str : str.substring(start);
+    }
+
+    private static String shared( String key ) {
+        String existing = SHARED_KEYS.get(key);
+        if (existing != null) return existing;
+        if (SHARED_KEYS.size() >= MAX_SHARED_KEYS) return key;
+        existing = SHARED_KEYS.putIfAbsent(key, key);
+        return existing != null ? existing : key;
     }
 
     /**
@@ -134,10 +239,6 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
      * @return the source key; never null and always contains at least one character
      */
     public String getSourceKey() {
-        if (sourceKey == null) {
-            // Value is idempotent, so it's okay to do this without synchronizing ...
-            sourceKey = key.substring(SOURCE_START_INDEX, SOURCE_END_INDEX);
-        }
         return sourceKey;
     }
 
@@ -147,10 +248,6 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
      * @return the workspace key; never null and always contains at least one character
      */
     public String getWorkspaceKey() {
-        if (workspaceKey == null) {
-            // Value is idempotent, so it's okay to do this without synchronizing ...
-            workspaceKey = key.substring(WORKSPACE_START_INDEX, WORKSPACE_END_INDEX);
-        }
         return workspaceKey;
     }
 
@@ -160,11 +257,13 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
      * @return the JCR identifier for the node; never null and always contains at least one character
      */
     public String getIdentifier() {
-        if (identifier == null) {
-            // Value is idempotent, so it's okay to do this without synchronizing ...
-            identifier = key.substring(IDENTIFIER_START_INDEX);
+        if (identifier != null) return identifier;
+        String result = uuidString;
+        if (result == null) {
+            result = new UUID(mostSignificantBits, leastSignificantBits).toString();
+            uuidString = result;
         }
-        return identifier;
+        return result;
     }
 
     /**
@@ -179,12 +278,36 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
     @Override
     public int compareTo( NodeKey that ) {
         if (that == this) return 0;
-        return this.key.compareTo(that.key);
+        if (this.sourceKey.length() != SOURCE_LENGTH || that.sourceKey.length() != SOURCE_LENGTH) {
+            // At least one of the keys is not valid ...
+            return this.toString().compareTo(that.toString());
+        }
+        // The result is the same as comparing the string forms of the keys ...
+        int diff = this.sourceKey.compareTo(that.sourceKey);
+        if (diff != 0) return diff;
+        diff = this.workspaceKey.compareTo(that.workspaceKey);
+        if (diff != 0) return diff;
+        if (this.identifier == null && that.identifier == null) {
+            // The canonical forms of UUIDs are ordered like their unsigned values ...
+            diff = compareUnsigned(this.mostSignificantBits, that.mostSignificantBits);
+            return diff != 0 ? diff : compareUnsigned(this.leastSignificantBits, that.leastSignificantBits);
+        }
+        return this.getIdentifier().compareTo(that.getIdentifier());
+    }
+
+    private static int compareUnsigned( long value1,
+                                        long value2 ) {
+        value1 += Long.MIN_VALUE;
+        value2 += Long.MIN_VALUE;
+        return value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
     }
 
     @Override
     public int hashCode() {
-        return key.hashCode();
+        int hash = 31 * sourceKey.hashCode() + workspaceKey.hashCode();
+        if (identifier != null) return 31 * hash + identifier.hashCode();
+        long bits = mostSignificantBits ^ leastSignificantBits;
+        return 31 * hash + (int)(bits ^ (bits >>> 32));
     }
 
     @Override
@@ -192,22 +315,80 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
         if (obj == this) return true;
         if (obj instanceof NodeKey) {
             NodeKey that = (NodeKey)obj;
-            return this.key.equals(that.key);
+            return this.mostSignificantBits == that.mostSignificantBits && this.leastSignificantBits == that.leastSignificantBits
+                   && ObjectUtil.isEqualWithNulls(this.identifier, that.identifier) && this.workspaceKey.equals(that.workspaceKey)
+                   && this.sourceKey.equals(that.sourceKey);
         }
         return false;
     }
 
     @Override
     public String toString() {
-        return key;
+        String result = string;
+        if (result == null) {
+            String identifier = getIdentifier();
+            StringBuilder sb = new StringBuilder(sourceKey.length() + workspaceKey.length() + identifier.length());
+            result = sb.append(sourceKey).append(workspaceKey).append(identifier).toString();
+            string = result;
+        }
+        return result;
+    }
+
+    /**
+     * Write this key to the supplied output in a compact binary form, which can be read with {@link #read(DataInput)}. Note that
+     * this form is meant for temporary storage; keys that are persisted in the repository use the {@link #toString() string form}.
+     * 
+     * @param output the output; may not be null
+     * @throws IOException if there is a problem writing to the output
+     */
+    public void write( DataOutput output ) throws IOException {
+        output.writeUTF(sourceKey);
+        output.writeUTF(workspaceKey);
+        output.writeBoolean(identifier == null);
+        if (identifier == null) {
+            output.writeLong(mostSignificantBits);
+            output.writeLong(leastSignificantBits);
+        } else {
+            output.writeUTF(identifier);
+        }
+    }
+
+    /**
+     * Read a key that was {@link #write(DataOutput) written} in the compact binary form.
+     * 
+     * @param input the input; may not be null
+     * @return the key; never null
+     * @throws IOException if there is a problem reading from the input
+     */
+    public static NodeKey read( DataInput input ) throws IOException {
+        String sourceKey = shared(input.readUTF());
+        String workspaceKey = shared(input.readUTF());
+        if (input.readBoolean()) {
+            return new NodeKey(sourceKey, workspaceKey, input.readLong(), input.readLong());
+        }
+        return new NodeKey(sourceKey, workspaceKey, input.readUTF());
+    }
+
+    private void writeObject( ObjectOutputStream out ) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("key", toString());
+        out.writeFields();
+    }
+
+    private void readObject( ObjectInputStream in ) throws IOException, ClassNotFoundException {
+        initialize((String)in.readFields().get("key", null));
     }
 
     public NodeKey withRandomId() {
-        return new NodeKey(getSourceKey(), getWorkspaceKey(), UUID.randomUUID().toString());
+        return withRandomIdAndWorkspace(getWorkspaceKey());
     }
 
     public NodeKey withRandomIdAndWorkspace( String workspaceKey ) {
-        return new NodeKey(getSourceKey(), workspaceKey, UUID.randomUUID().toString());
+        UUID uuid = UUID.randomUUID();
+        if (sourceKey.length() != SOURCE_LENGTH || workspaceKey.length() != WORKSPACE_LENGTH) {
+            return new NodeKey(getSourceKey(), workspaceKey, uuid.toString());
+        }
+        return new NodeKey(sourceKey, shared(workspaceKey), uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
     }
 
     public NodeKey withId( String identifier ) {
@@ -215,6 +396,10 @@ public final class NodeKey implements Serializable, Comparable<NodeKey> {
     }
 
     public NodeKey withWorkspaceKey( String workspaceKey ) {
+        if (identifier == null && workspaceKey.length() == WORKSPACE_LENGTH) {
+            // Reuse the identifier without converting it to a string ...
+            return new NodeKey(sourceKey, shared(workspaceKey), mostSignificantBits, leastSignificantBits);
+        }
         return new NodeKey(getSourceKey(), workspaceKey, getIdentifier());
     }
 
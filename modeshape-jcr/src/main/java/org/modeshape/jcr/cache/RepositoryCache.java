@@ -59,6 +59,7 @@ import org.modeshape.jcr.cache.change.RecordingChanges;
 import org.modeshape.jcr.cache.change.RepositoryMetadataChanged;
 import org.modeshape.jcr.cache.change.WorkspaceAdded;
 import org.modeshape.jcr.cache.change.WorkspaceRemoved;
+import org.modeshape.jcr.cache.document.BulkNodeWriter;
 import org.modeshape.jcr.cache.document.DocumentOptimizer;
 import org.modeshape.jcr.cache.document.DocumentStore;
 import org.modeshape.jcr.cache.document.DocumentTranslator;
@@ -1050,7 +1051,28 @@ public class RepositoryCache {
         if (readOnly) {
             return new ReadOnlySessionCache(context, workspace(workspaceName), sessionContext);
         }
-        return new WritableSessionCache(context, workspace(workspaceName), sessionContext);
+        boolean optimisticSaves = configuration.getSaveMode() == RepositoryConfiguration.SaveMode.OPTIMISTIC;
+        return new WritableSessionCache(context, workspace(workspaceName), sessionContext, optimisticSaves);
+    }
+
+    /**
+     * Create a writer that adds a tree of new nodes under an existing node by writing their documents directly to the store in
+     * batches, without building the nodes in a session.
+     * 
+     * @param context the context for the writer; may not be null
+     * @param workspaceName the name of the workspace; may not be null
+     * @param parentKey the key of the existing node under which the new nodes are to be added; may not be null
+     * @param batchSize the maximum number of documents written in each transaction; must be positive
+     * @param childrenPerBlock the maximum number of child references stored in each block of children; must be positive
+     * @return the new writer; never null
+     * @throws WorkspaceNotFoundException if no such workspace exists
+     */
+    public BulkNodeWriter createBulkWriter( ExecutionContext context,
+                                            String workspaceName,
+                                            NodeKey parentKey,
+                                            int batchSize,
+                                            int childrenPerBlock ) {
+        return new BulkNodeWriter(context, workspace(workspaceName), sessionContext, parentKey, batchSize, childrenPerBlock);
     }
 
     /**
@@ -71,7 +71,7 @@ public abstract class ChangeSetAdapter implements ChangeSetListener {
                                            removed.getPrimaryType(), removed.getMixinTypes(), removed.isQueryable());
                             } else if (change instanceof AbstractPropertyChange) {
                                 AbstractPropertyChange propChange = (AbstractPropertyChange)change;
-                                if (propChange.getKey().equals(lastKey)) firePropertyChanges(lastKey, propChanges);
+                                if (!propChange.getKey().equals(lastKey)) firePropertyChanges(lastKey, propChanges);
                                 propChanges.put(propChange.getProperty().getName(), propChange);
                             } else if (change instanceof NodeChanged) {
                                 firePropertyChanges(lastKey, propChanges);
@@ -111,6 +111,7 @@ public abstract class ChangeSetAdapter implements ChangeSetListener {
                             lastKey = ((AbstractNodeChange)change).getKey();
                         }
                     }
+                    firePropertyChanges(lastKey, propChanges);
                 } finally {
                     completeWorkspaceChanges();
                 }
@@ -151,7 +152,7 @@ public abstract class ChangeSetAdapter implements ChangeSetListener {
 
     private void firePropertyChanges( NodeKey key,
                                       Map<Name, AbstractPropertyChange> propChanges ) {
-        if (propChanges.isEmpty()) {
+        if (!propChanges.isEmpty()) {
             modifyProperties(key, propChanges);
             propChanges.clear();
         }
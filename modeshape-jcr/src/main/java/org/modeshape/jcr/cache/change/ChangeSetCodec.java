@@ -0,0 +1,768 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.change;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.jcr.api.value.DateTime;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.clustering.PayloadCodec;
+import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.Path.Segment;
+import org.modeshape.jcr.value.Property;
+import org.modeshape.jcr.value.basic.BasicEmptyProperty;
+import org.modeshape.jcr.value.basic.BasicMultiValueProperty;
+import org.modeshape.jcr.value.basic.BasicName;
+import org.modeshape.jcr.value.basic.BasicPath;
+import org.modeshape.jcr.value.basic.BasicPathSegment;
+import org.modeshape.jcr.value.basic.BasicSingleValueProperty;
+import org.modeshape.jcr.value.basic.JodaDateTime;
+import org.modeshape.jcr.value.basic.RootPath;
+
+/**
+ * A compact binary codec for {@link ChangeSet} instances, used instead of Java serialization when changes are sent to the other
+ * members of a cluster.
+ * <p>
+ * Each {@link Change} is written as a one-byte type followed by its fields, without any class descriptors. Strings, names and
+ * the source and workspace parts of node keys are dictionary-encoded: each distinct value is written in full only the first
+ * time it appears in a stream, and is afterwards written as the index of that first occurrence. The property values of the
+ * common types are written natively, while values of other types (and unknown {@link Change} subclasses) are written using
+ * Java serialization. Change sets which are not {@link RecordingChanges} instances are also written using Java serialization, so
+ * that they are read back as instances of the same class.
+ * </p>
+ * <p>
+ * Several change sets can be written with the same {@link Encoder} (and read with the same {@link Decoder}), in which case the
+ * dictionaries are shared by all of them.
+ * </p>
+ */
+@Immutable
+public final class ChangeSetCodec implements PayloadCodec<ChangeSet> {
+
+    public static final ChangeSetCodec INSTANCE = new ChangeSetCodec();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte SERIALIZED_CHANGE_SET = 0;
+    private static final byte RECORDED_CHANGE_SET = 1;
+
+    private static final byte SERIALIZED_CHANGE = 0;
+    private static final byte WORKSPACE_ADDED = 1;
+    private static final byte WORKSPACE_REMOVED = 2;
+    private static final byte REPOSITORY_METADATA_CHANGED = 3;
+    private static final byte NODE_ADDED = 4;
+    private static final byte NODE_REMOVED = 5;
+    private static final byte NODE_RENAMED = 6;
+    private static final byte NODE_MOVED = 7;
+    private static final byte NODE_REORDERED = 8;
+    private static final byte NODE_CHANGED = 9;
+    private static final byte NODE_SEQUENCED = 10;
+    private static final byte NODE_SEQUENCING_FAILURE = 11;
+    private static final byte PROPERTY_ADDED = 12;
+    private static final byte PROPERTY_REMOVED = 13;
+    private static final byte PROPERTY_CHANGED = 14;
+    private static final byte BINARY_VALUE_UNUSED = 15;
+
+    private static final byte NULL_PATH = 0;
+    private static final byte ROOT_PATH = 1;
+    private static final byte ABSOLUTE_PATH = 2;
+    private static final byte SERIALIZED_PATH = 3;
+
+    private static final byte EMPTY_PROPERTY = 0;
+    private static final byte SINGLE_VALUE_PROPERTY = 1;
+    private static final byte MULTI_VALUE_PROPERTY = 2;
+
+    private static final byte SERIALIZED_VALUE = 0;
+    private static final byte STRING_VALUE = 1;
+    private static final byte LONG_VALUE = 2;
+    private static final byte DOUBLE_VALUE = 3;
+    private static final byte BOOLEAN_VALUE = 4;
+    private static final byte NAME_VALUE = 5;
+    private static final byte PATH_VALUE = 6;
+    private static final byte DATE_VALUE = 7;
+    private static final byte DECIMAL_VALUE = 8;
+    private static final byte URI_VALUE = 9;
+
+    /**
+     * The dictionary reference written for a null value.
+     */
+    private static final int NULL_REFERENCE = 0;
+
+    /**
+     * The dictionary reference written before a value that is not yet in the dictionary; references to values in the dictionary
+     * are the value's index plus 2.
+     */
+    private static final int NEW_REFERENCE = 1;
+
+    private ChangeSetCodec() {
+    }
+
+    @Override
+    public void write( ChangeSet changeSet,
+                       DataOutput output ) throws IOException {
+        encoder(output).write(changeSet);
+    }
+
+    @Override
+    public ChangeSet read( DataInput input ) throws IOException {
+        return decoder(input).read();
+    }
+
+    /**
+     * Create an encoder that writes change sets to the supplied output.
+     * 
+     * @param output the output; may not be null
+     * @return the encoder; never null
+     */
+    public static Encoder encoder( DataOutput output ) {
+        return new Encoder(output);
+    }
+
+    /**
+     * Create a decoder that reads change sets from the supplied input.
+     * 
+     * @param input the input; may not be null
+     * @return the decoder; never null
+     */
+    public static Decoder decoder( DataInput input ) {
+        return new Decoder(input);
+    }
+
+    protected static void writeVarInt( DataOutput output,
+                                       int value ) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    protected static int readVarInt( DataInput input ) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = input.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /**
+     * Writes {@link ChangeSet}s to an output.
+     */
+    @NotThreadSafe
+    public static final class Encoder {
+        private final DataOutput output;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<Name, Integer> names = new HashMap<>();
+
+        protected Encoder( DataOutput output ) {
+            this.output = output;
+        }
+
+        /**
+         * Write the supplied change set.
+         * 
+         * @param changeSet the change set; may not be null
+         * @throws IOException if there is a problem writing to the output
+         */
+        public void write( ChangeSet changeSet ) throws IOException {
+            if (!(changeSet instanceof RecordingChanges)) {
+                output.writeByte(SERIALIZED_CHANGE_SET);
+                writeSerialized(changeSet);
+                return;
+            }
+            output.writeByte(RECORDED_CHANGE_SET);
+            writeString(changeSet.getUUID());
+            writeString(changeSet.getSessionId());
+            writeString(changeSet.getProcessKey());
+            writeString(changeSet.getRepositoryKey());
+            writeString(changeSet.getWorkspaceName());
+            writeString(changeSet.getJournalId());
+            writeString(changeSet.getUserId());
+            Map<String, String> userData = changeSet.getUserData();
+            writeVarInt(output, userData.size());
+            for (Map.Entry<String, String> entry : userData.entrySet()) {
+                writeString(entry.getKey());
+                writeString(entry.getValue());
+            }
+            writeDate(changeSet.getTimestamp());
+
+            Set<NodeKey> changedNodes = changeSet.changedNodes();
+            writeVarInt(output, changedNodes.size());
+            for (NodeKey key : changedNodes) {
+                writeNodeKey(key);
+            }
+
+            List<Change> changes = new ArrayList<>(changeSet.size());
+            for (Change change : changeSet) {
+                changes.add(change);
+            }
+            writeVarInt(output, changes.size());
+            for (Change change : changes) {
+                writeChange(change);
+            }
+        }
+
+        private void writeChange( Change change ) throws IOException {
+            if (change instanceof AbstractPropertyChange) {
+                AbstractPropertyChange propertyChange = (AbstractPropertyChange)change;
+                if (change instanceof PropertyAdded) {
+                    output.writeByte(PROPERTY_ADDED);
+                } else if (change instanceof PropertyRemoved) {
+                    output.writeByte(PROPERTY_REMOVED);
+                } else if (change instanceof PropertyChanged) {
+                    output.writeByte(PROPERTY_CHANGED);
+                } else {
+                    writeSerializedChange(change);
+                    return;
+                }
+                writeNodeChange(propertyChange);
+                writeProperty(propertyChange.getProperty());
+                if (change instanceof PropertyChanged) {
+                    writeProperty(((PropertyChanged)change).getOldProperty());
+                }
+            } else if (change instanceof NodeAdded) {
+                NodeAdded added = (NodeAdded)change;
+                output.writeByte(NODE_ADDED);
+                writeNodeChange(added);
+                writeNodeKey(added.getParentKey());
+                Map<Name, Property> properties = added.getProperties();
+                writeVarInt(output, properties.size());
+                for (Property property : properties.values()) {
+                    writeProperty(property);
+                }
+            } else if (change instanceof NodeRemoved) {
+                output.writeByte(NODE_REMOVED);
+                writeNodeChange((AbstractNodeChange)change);
+                writeNodeKey(((NodeRemoved)change).getParentKey());
+            } else if (change instanceof NodeRenamed) {
+                output.writeByte(NODE_RENAMED);
+                writeNodeChange((AbstractNodeChange)change);
+                writeSegment(((NodeRenamed)change).getOldSegment());
+            } else if (change instanceof NodeMoved) {
+                NodeMoved moved = (NodeMoved)change;
+                output.writeByte(NODE_MOVED);
+                writeNodeChange(moved);
+                writeNodeKey(moved.getNewParent());
+                writeNodeKey(moved.getOldParent());
+                writePath(moved.getOldPath());
+            } else if (change instanceof NodeReordered) {
+                NodeReordered reordered = (NodeReordered)change;
+                output.writeByte(NODE_REORDERED);
+                writeNodeChange(reordered);
+                writeNodeKey(reordered.getParent());
+                writePath(reordered.getOldPath());
+                writePath(reordered.getReorderedBeforePath());
+            } else if (change instanceof NodeChanged) {
+                output.writeByte(NODE_CHANGED);
+                writeNodeChange((AbstractNodeChange)change);
+            } else if (change instanceof NodeSequenced) {
+                NodeSequenced sequenced = (NodeSequenced)change;
+                output.writeByte(NODE_SEQUENCED);
+                writeSequencingChange(sequenced);
+                writeNodeKey(sequenced.getOutputNodeKey());
+                writePath(sequenced.getOutputNodePath());
+            } else if (change instanceof NodeSequencingFailure) {
+                output.writeByte(NODE_SEQUENCING_FAILURE);
+                writeSequencingChange((AbstractSequencingChange)change);
+                writeSerialized(((NodeSequencingFailure)change).getCause());
+            } else if (change instanceof BinaryValueUnused) {
+                output.writeByte(BINARY_VALUE_UNUSED);
+                writeString(((BinaryValueUnused)change).getKey().toString());
+            } else if (change instanceof WorkspaceAdded) {
+                output.writeByte(WORKSPACE_ADDED);
+                writeString(((WorkspaceAdded)change).getWorkspaceName());
+            } else if (change instanceof WorkspaceRemoved) {
+                output.writeByte(WORKSPACE_REMOVED);
+                writeString(((WorkspaceRemoved)change).getWorkspaceName());
+            } else if (change instanceof RepositoryMetadataChanged) {
+                output.writeByte(REPOSITORY_METADATA_CHANGED);
+            } else {
+                writeSerializedChange(change);
+            }
+        }
+
+        private void writeSerializedChange( Change change ) throws IOException {
+            output.writeByte(SERIALIZED_CHANGE);
+            writeSerialized(change);
+        }
+
+        private void writeNodeChange( AbstractNodeChange change ) throws IOException {
+            writeNodeKey(change.getKey());
+            writePath(change.getPath());
+            writeName(change.getPrimaryType());
+            Set<Name> mixinTypes = change.getMixinTypes();
+            writeVarInt(output, mixinTypes.size());
+            for (Name mixinType : mixinTypes) {
+                writeName(mixinType);
+            }
+            output.writeBoolean(change.isQueryable());
+        }
+
+        private void writeSequencingChange( AbstractSequencingChange change ) throws IOException {
+            writeNodeChange(change);
+            writeString(change.getOutputPath());
+            writeString(change.getUserId());
+            writeString(change.getSelectedPath());
+            writeString(change.getSequencerName());
+        }
+
+        private void writeProperty( Property property ) throws IOException {
+            writeName(property.getName());
+            if (property.isEmpty()) {
+                output.writeByte(EMPTY_PROPERTY);
+            } else if (property.isSingle()) {
+                output.writeByte(SINGLE_VALUE_PROPERTY);
+                writeValue(property.getFirstValue());
+            } else {
+                output.writeByte(MULTI_VALUE_PROPERTY);
+                writeVarInt(output, property.size());
+                for (Object value : property) {
+                    writeValue(value);
+                }
+            }
+        }
+
+        private void writeValue( Object value ) throws IOException {
+            if (value instanceof String) {
+                output.writeByte(STRING_VALUE);
+                writeString((String)value);
+            } else if (value instanceof Long) {
+                output.writeByte(LONG_VALUE);
+                output.writeLong((Long)value);
+            } else if (value instanceof Double) {
+                output.writeByte(DOUBLE_VALUE);
+                output.writeDouble((Double)value);
+            } else if (value instanceof Boolean) {
+                output.writeByte(BOOLEAN_VALUE);
+                output.writeBoolean((Boolean)value);
+            } else if (value instanceof Name) {
+                output.writeByte(NAME_VALUE);
+                writeName((Name)value);
+            } else if (value instanceof Path) {
+                output.writeByte(PATH_VALUE);
+                writePath((Path)value);
+            } else if (value instanceof DateTime) {
+                output.writeByte(DATE_VALUE);
+                writeDate((DateTime)value);
+            } else if (value instanceof BigDecimal) {
+                output.writeByte(DECIMAL_VALUE);
+                writeString(value.toString());
+            } else if (value instanceof URI) {
+                output.writeByte(URI_VALUE);
+                writeString(value.toString());
+            } else {
+                output.writeByte(SERIALIZED_VALUE);
+                writeSerialized(value);
+            }
+        }
+
+        private void writeDate( DateTime date ) throws IOException {
+            output.writeBoolean(date != null);
+            if (date != null) {
+                output.writeLong(date.getMilliseconds());
+                writeString(date.getTimeZoneId());
+            }
+        }
+
+        private void writePath( Path path ) throws IOException {
+            if (path == null) {
+                output.writeByte(NULL_PATH);
+            } else if (path.isRoot()) {
+                output.writeByte(ROOT_PATH);
+            } else if (path.isAbsolute() && !path.isIdentifier()) {
+                output.writeByte(ABSOLUTE_PATH);
+                writeVarInt(output, path.size());
+                for (Segment segment : path) {
+                    writeSegment(segment);
+                }
+            } else {
+                output.writeByte(SERIALIZED_PATH);
+                writeSerialized(path);
+            }
+        }
+
+        private void writeSegment( Segment segment ) throws IOException {
+            writeName(segment.getName());
+            writeVarInt(output, segment.getIndex());
+        }
+
+        private void writeNodeKey( NodeKey key ) throws IOException {
+            if (key == null) {
+                writeString(null);
+                return;
+            }
+            // the source and workspace parts are shared by most keys, so they go into the dictionary ...
+            String identifier = key.getIdentifier();
+            String keyString = key.toString();
+            writeString(keyString.substring(0, keyString.length() - identifier.length()));
+            writeUniqueString(identifier);
+        }
+
+        private void writeName( Name name ) throws IOException {
+            if (name == null) {
+                writeVarInt(output, NULL_REFERENCE);
+                return;
+            }
+            Integer index = names.get(name);
+            if (index != null) {
+                writeVarInt(output, index + 2);
+                return;
+            }
+            names.put(name, names.size());
+            writeVarInt(output, NEW_REFERENCE);
+            writeString(name.getNamespaceUri());
+            writeString(name.getLocalName());
+        }
+
+        private void writeString( String value ) throws IOException {
+            if (value == null) {
+                writeVarInt(output, NULL_REFERENCE);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarInt(output, index + 2);
+                return;
+            }
+            strings.put(value, strings.size());
+            writeVarInt(output, NEW_REFERENCE);
+            writeUniqueString(value);
+        }
+
+        private void writeUniqueString( String value ) throws IOException {
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarInt(output, bytes.length);
+            output.write(bytes);
+        }
+
+        private void writeSerialized( Object value ) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream stream = new ObjectOutputStream(bytes)) {
+                stream.writeObject(value);
+            }
+            writeVarInt(output, bytes.size());
+            output.write(bytes.toByteArray());
+        }
+    }
+
+    /**
+     * Reads {@link ChangeSet}s from an input.
+     */
+    @NotThreadSafe
+    public static final class Decoder {
+        private final DataInput input;
+        private final List<String> strings = new ArrayList<>();
+        private final List<Name> names = new ArrayList<>();
+
+        protected Decoder( DataInput input ) {
+            this.input = input;
+        }
+
+        /**
+         * Read the next change set.
+         * 
+         * @return the change set; never null
+         * @throws IOException if there is a problem reading from the input
+         */
+        public ChangeSet read() throws IOException {
+            byte kind = input.readByte();
+            if (kind == SERIALIZED_CHANGE_SET) {
+                return (ChangeSet)readSerialized();
+            }
+            if (kind != RECORDED_CHANGE_SET) {
+                throw new IOException("Unknown change set kind: " + kind);
+            }
+            String uuid = readString();
+            String sessionId = readString();
+            String processKey = readString();
+            String repositoryKey = readString();
+            String workspaceName = readString();
+            String journalId = readString();
+            RecordingChanges changes = new RecordingChanges(uuid, sessionId, processKey, repositoryKey, workspaceName, journalId);
+
+            String userId = readString();
+            int userDataSize = readVarInt(input);
+            Map<String, String> userData = new LinkedHashMap<>();
+            for (int i = 0; i != userDataSize; ++i) {
+                userData.put(readString(), readString());
+            }
+            DateTime timestamp = readDate();
+
+            int changedNodesCount = readVarInt(input);
+            Set<NodeKey> changedNodes = new HashSet<>();
+            for (int i = 0; i != changedNodesCount; ++i) {
+                changedNodes.add(readNodeKey());
+            }
+
+            int changesCount = readVarInt(input);
+            for (int i = 0; i != changesCount; ++i) {
+                readChange(changes);
+            }
+
+            changes.setChangedNodes(changedNodes);
+            changes.freeze(userId, userData, timestamp);
+            return changes;
+        }
+
+        private void readChange( RecordingChanges changes ) throws IOException {
+            byte type = input.readByte();
+            switch (type) {
+                case WORKSPACE_ADDED:
+                    changes.workspaceAdded(readString());
+                    return;
+                case WORKSPACE_REMOVED:
+                    changes.workspaceRemoved(readString());
+                    return;
+                case REPOSITORY_METADATA_CHANGED:
+                    changes.repositoryMetadataChanged();
+                    return;
+                case BINARY_VALUE_UNUSED:
+                    changes.binaryValueNoLongerUsed(new BinaryKey(readString()));
+                    return;
+                case SERIALIZED_CHANGE:
+                    changes.addChange((Change)readSerialized());
+                    return;
+                default:
+                    break;
+            }
+
+            NodeKey key = readNodeKey();
+            Path path = readPath();
+            Name primaryType = readName();
+            int mixinCount = readVarInt(input);
+            Set<Name> mixinTypes = mixinCount == 0 ? Collections.<Name>emptySet() : new HashSet<Name>(mixinCount);
+            for (int i = 0; i != mixinCount; ++i) {
+                mixinTypes.add(readName());
+            }
+            boolean queryable = input.readBoolean();
+
+            switch (type) {
+                case NODE_ADDED: {
+                    NodeKey parentKey = readNodeKey();
+                    int propertyCount = readVarInt(input);
+                    Map<Name, Property> properties = new LinkedHashMap<>();
+                    for (int i = 0; i != propertyCount; ++i) {
+                        Property property = readProperty();
+                        properties.put(property.getName(), property);
+                    }
+                    changes.nodeCreated(key, parentKey, path, primaryType, mixinTypes, properties, queryable);
+                    return;
+                }
+                case NODE_REMOVED:
+                    changes.nodeRemoved(key, readNodeKey(), path, primaryType, mixinTypes, queryable);
+                    return;
+                case NODE_RENAMED:
+                    changes.nodeRenamed(key, path, readSegment(), primaryType, mixinTypes, queryable);
+                    return;
+                case NODE_MOVED: {
+                    NodeKey newParent = readNodeKey();
+                    NodeKey oldParent = readNodeKey();
+                    Path oldPath = readPath();
+                    changes.nodeMoved(key, primaryType, mixinTypes, newParent, oldParent, path, oldPath, queryable);
+                    return;
+                }
+                case NODE_REORDERED: {
+                    NodeKey parent = readNodeKey();
+                    Path oldPath = readPath();
+                    Path reorderedBeforePath = readPath();
+                    changes.nodeReordered(key, primaryType, mixinTypes, parent, path, oldPath, reorderedBeforePath, queryable);
+                    return;
+                }
+                case NODE_CHANGED:
+                    changes.nodeChanged(key, path, primaryType, mixinTypes, queryable);
+                    return;
+                case NODE_SEQUENCED: {
+                    String outputPath = readString();
+                    String userId = readString();
+                    String selectedPath = readString();
+                    String sequencerName = readString();
+                    NodeKey outputNodeKey = readNodeKey();
+                    Path outputNodePath = readPath();
+                    changes.nodeSequenced(key, path, primaryType, mixinTypes, outputNodeKey, outputNodePath, outputPath, userId,
+                                          selectedPath, sequencerName, queryable);
+                    return;
+                }
+                case NODE_SEQUENCING_FAILURE: {
+                    String outputPath = readString();
+                    String userId = readString();
+                    String selectedPath = readString();
+                    String sequencerName = readString();
+                    Throwable cause = (Throwable)readSerialized();
+                    changes.nodeSequencingFailure(key, path, primaryType, mixinTypes, outputPath, userId, selectedPath,
+                                                  sequencerName, queryable, cause);
+                    return;
+                }
+                case PROPERTY_ADDED:
+                    changes.propertyAdded(key, primaryType, mixinTypes, path, readProperty(), queryable);
+                    return;
+                case PROPERTY_REMOVED:
+                    changes.propertyRemoved(key, primaryType, mixinTypes, path, readProperty(), queryable);
+                    return;
+                case PROPERTY_CHANGED: {
+                    Property newProperty = readProperty();
+                    Property oldProperty = readProperty();
+                    changes.propertyChanged(key, primaryType, mixinTypes, path, newProperty, oldProperty, queryable);
+                    return;
+                }
+                default:
+                    throw new IOException("Unknown change type: " + type);
+            }
+        }
+
+        private Property readProperty() throws IOException {
+            Name name = readName();
+            byte kind = input.readByte();
+            switch (kind) {
+                case EMPTY_PROPERTY:
+                    return new BasicEmptyProperty(name);
+                case SINGLE_VALUE_PROPERTY:
+                    return new BasicSingleValueProperty(name, readValue());
+                case MULTI_VALUE_PROPERTY: {
+                    int size = readVarInt(input);
+                    List<Object> values = new ArrayList<>(size);
+                    for (int i = 0; i != size; ++i) {
+                        values.add(readValue());
+                    }
+                    return new BasicMultiValueProperty(name, values);
+                }
+                default:
+                    throw new IOException("Unknown property kind: " + kind);
+            }
+        }
+
+        private Object readValue() throws IOException {
+            byte type = input.readByte();
+            switch (type) {
+                case STRING_VALUE:
+                    return readString();
+                case LONG_VALUE:
+                    return input.readLong();
+                case DOUBLE_VALUE:
+                    return input.readDouble();
+                case BOOLEAN_VALUE:
+                    return input.readBoolean();
+                case NAME_VALUE:
+                    return readName();
+                case PATH_VALUE:
+                    return readPath();
+                case DATE_VALUE:
+                    return readDate();
+                case DECIMAL_VALUE:
+                    return new BigDecimal(readString());
+                case URI_VALUE:
+                    return URI.create(readString());
+                case SERIALIZED_VALUE:
+                    return readSerialized();
+                default:
+                    throw new IOException("Unknown value type: " + type);
+            }
+        }
+
+        private DateTime readDate() throws IOException {
+            if (!input.readBoolean()) return null;
+            long millis = input.readLong();
+            return new JodaDateTime(millis, readString());
+        }
+
+        private Path readPath() throws IOException {
+            byte kind = input.readByte();
+            switch (kind) {
+                case NULL_PATH:
+                    return null;
+                case ROOT_PATH:
+                    return RootPath.INSTANCE;
+                case ABSOLUTE_PATH: {
+                    int size = readVarInt(input);
+                    List<Segment> segments = new ArrayList<>(size);
+                    for (int i = 0; i != size; ++i) {
+                        segments.add(readSegment());
+                    }
+                    return new BasicPath(segments, true);
+                }
+                case SERIALIZED_PATH:
+                    return (Path)readSerialized();
+                default:
+                    throw new IOException("Unknown path kind: " + kind);
+            }
+        }
+
+        private Segment readSegment() throws IOException {
+            Name name = readName();
+            return new BasicPathSegment(name, readVarInt(input));
+        }
+
+        private NodeKey readNodeKey() throws IOException {
+            String prefix = readString();
+            if (prefix == null) return null;
+            return new NodeKey(prefix + readUniqueString());
+        }
+
+        private Name readName() throws IOException {
+            int reference = readVarInt(input);
+            if (reference == NULL_REFERENCE) return null;
+            if (reference != NEW_REFERENCE) return names.get(reference - 2);
+            Name name = new BasicName(readString(), readString());
+            names.add(name);
+            return name;
+        }
+
+        private String readString() throws IOException {
+            int reference = readVarInt(input);
+            if (reference == NULL_REFERENCE) return null;
+            if (reference != NEW_REFERENCE) return strings.get(reference - 2);
+            String value = readUniqueString();
+            strings.add(value);
+            return value;
+        }
+
+        private String readUniqueString() throws IOException {
+            byte[] bytes = new byte[readVarInt(input)];
+            input.readFully(bytes);
+            return new String(bytes, UTF_8);
+        }
+
+        private Object readSerialized() throws IOException {
+            byte[] bytes = new byte[readVarInt(input)];
+            input.readFully(bytes);
+            try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return stream.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+}
@@ -54,7 +54,7 @@ public class RecordingChanges implements Changes, ChangeSet {
     private final String journalId;
     private final String sessionId;
     private final Queue<Change> events = new ConcurrentLinkedQueue<Change>();
-    private final String uuid = UUID.randomUUID().toString();
+    private final String uuid;
     private Set<NodeKey> nodeKeys = Collections.emptySet();
     private Map<String, String> userData = Collections.emptyMap();
     private String userId;
@@ -73,6 +73,26 @@ public class RecordingChanges implements Changes, ChangeSet {
                              String repositoryKey,
                              String workspaceName,
                              String journalId ) {
+        this(UUID.randomUUID().toString(), sessionId, processKey, repositoryKey, workspaceName, journalId);
+    }
+
+    /**
+     * Re-creates a change set that was created elsewhere (e.g., by another process in the cluster).
+     * 
+     * @param uuid the UUID of the original change set; may not be null
+     * @param sessionId the ID of the session in which the change set was created; may not be null;
+     * @param processKey the UUID of the process which created the change set; may not be null
+     * @param repositoryKey the key of the repository for which the changes set is created; may not be null.
+     * @param workspaceName the name of the workspace in which the changes occurred; may be null.
+     * @param journalId the ID of the journal where this change set will be saved; may be null
+     */
+    protected RecordingChanges( String uuid,
+                                String sessionId,
+                                String processKey,
+                                String repositoryKey,
+                                String workspaceName,
+                                String journalId ) {
+        this.uuid = uuid;
         this.sessionId = sessionId;
         this.processKey = processKey;
         this.repositoryKey = repositoryKey;
@@ -82,6 +102,16 @@ public class RecordingChanges implements Changes, ChangeSet {
         assert this.sessionId != null;
         assert this.processKey != null;
         assert this.repositoryKey != null;
+        assert this.uuid != null;
+    }
+
+    /**
+     * Record a change which was created elsewhere.
+     * 
+     * @param change the change; may not be null
+     */
+    void addChange( Change change ) {
+        events.add(change);
     }
 
     @Override
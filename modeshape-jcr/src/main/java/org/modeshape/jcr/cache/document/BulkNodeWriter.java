@@ -0,0 +1,551 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.document;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.transaction.HeuristicMixedException;
+import javax.transaction.HeuristicRollbackException;
+import javax.transaction.NotSupportedException;
+import javax.transaction.RollbackException;
+import javax.transaction.SystemException;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.SchematicEntry;
+import org.infinispan.schematic.document.EditableArray;
+import org.infinispan.schematic.document.EditableDocument;
+import org.modeshape.common.SystemFailureException;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.common.logging.Logger;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.JcrLexicon;
+import org.modeshape.jcr.api.value.DateTime;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.ChildReference;
+import org.modeshape.jcr.cache.ChildReferences;
+import org.modeshape.jcr.cache.DocumentAlreadyExistsException;
+import org.modeshape.jcr.cache.DocumentNotFoundException;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.NodeNotFoundException;
+import org.modeshape.jcr.cache.SessionEnvironment;
+import org.modeshape.jcr.cache.change.ChangeSet;
+import org.modeshape.jcr.cache.change.RecordingChanges;
+import org.modeshape.jcr.cache.document.SessionNode.ReferrerChanges;
+import org.modeshape.jcr.txn.Transactions;
+import org.modeshape.jcr.txn.Transactions.Transaction;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.NameFactory;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.Property;
+import org.modeshape.jcr.value.Reference;
+import org.modeshape.jcr.value.basic.NodeKeyReference;
+
+/**
+ * A component that writes a tree of new nodes directly to the {@link DocumentStore}, without first building the nodes in a
+ * session. It is meant for loading large amounts of content, where holding all of the new nodes in a session and saving them in
+ * a single transaction would require far too much memory.
+ * <p>
+ * The nodes must be {@link #addNode(NodeKey, NodeKey, Name, Collection) added} in depth-first order: each node is added after its
+ * parent and before any of its parent's later siblings. A node's document is written once all of its children have been added,
+ * and the documents are written in transactions of at most the configured number of documents. The memory used is therefore
+ * proportional to the batch size and the depth of the tree, rather than to the number of nodes.
+ * </p>
+ * <p>
+ * The children of each new node are split into blocks as they are added, using the same layout (and
+ * {@link ChildBlockDirectory directory}) that the {@link DocumentOptimizer} produces. The new top-level nodes are linked to
+ * their existing parent only when the writer is {@link #finish() finished}, so none of the new content is reachable until all
+ * of it has been written. A load that fails part way leaves the documents that were already written unreachable.
+ * </p>
+ * <p>
+ * The nodes are not validated against their node types. The {@link ChangeSet} returned when the writer is finished describes
+ * only the new top-level nodes, but once they are linked the events for all of the nodes below them are also published, in
+ * change sets of at most the batch size, so that the indexes of this and every other process in the cluster are updated.
+ * </p>
+ */
+@NotThreadSafe
+public class BulkNodeWriter implements DocumentConstants {
+
+    private static final Logger LOGGER = Logger.getLogger(BulkNodeWriter.class);
+
+    private final ExecutionContext context;
+    private final WorkspaceCache workspaceCache;
+    private final DocumentStore documentStore;
+    private final DocumentTranslator translator;
+    private final Transactions txns;
+    private final String journalId;
+    private final NodeKey parentKey;
+    private final int batchSize;
+    private final int childrenPerBlock;
+    private final LinkedList<PendingNode> openNodes = new LinkedList<>();
+    private final List<PendingNode> topLevelNodes = new ArrayList<>();
+    private final Map<String, PendingDocument> batch = new LinkedHashMap<>();
+    private final Map<NodeKey, ReferrerChanges> pendingReferrers = new HashMap<>();
+    private final Set<NodeKey> changedExistingNodes = new HashSet<>();
+    private long nodeCount;
+    private long documentCount;
+    private boolean finished;
+
+    public BulkNodeWriter( ExecutionContext context,
+                           WorkspaceCache workspaceCache,
+                           SessionEnvironment sessionContext,
+                           NodeKey parentKey,
+                           int batchSize,
+                           int childrenPerBlock ) {
+        assert context != null;
+        assert workspaceCache != null;
+        assert sessionContext != null;
+        assert parentKey != null;
+        assert batchSize > 0;
+        assert childrenPerBlock > 0;
+        this.context = context;
+        this.workspaceCache = workspaceCache;
+        this.documentStore = workspaceCache.documentStore();
+        this.translator = workspaceCache.translator();
+        this.txns = sessionContext.getTransactions();
+        this.journalId = sessionContext.journalId();
+        this.parentKey = parentKey;
+        this.batchSize = batchSize;
+        this.childrenPerBlock = childrenPerBlock;
+    }
+
+    /**
+     * Get the key of the existing node under which the new nodes are written.
+     * 
+     * @return the parent key; never null
+     */
+    public NodeKey getParentKey() {
+        return parentKey;
+    }
+
+    /**
+     * Get the number of nodes that have been added to this writer.
+     * 
+     * @return the number of nodes
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Get the number of documents that have been written to the store, including the blocks of children.
+     * 
+     * @return the number of documents
+     */
+    public long getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Add a new node. The parent must be either the {@link #getParentKey() existing parent} or the most-recently added node that
+     * is an ancestor of the new node; any nodes added since that parent are complete and will be written.
+     * 
+     * @param parentKey the key of the new node's parent; may not be null
+     * @param key the key of the new node; may not be null
+     * @param name the name of the new node; may not be null
+     * @param properties the properties of the new node, including the primary type and mixin types; may not be null
+     * @throws IllegalArgumentException if the parent is neither the existing parent nor one of the nodes still being added
+     * @throws DocumentAlreadyExistsException if a document with the key of one of the written nodes already exists
+     */
+    public void addNode( NodeKey parentKey,
+                         NodeKey key,
+                         Name name,
+                         Collection<Property> properties ) {
+        assert !finished;
+        assert key != null;
+        assert name != null;
+        assert properties != null;
+        if (!this.parentKey.equals(parentKey) && !isOpen(parentKey)) {
+            throw new IllegalArgumentException("The parent " + parentKey + " of the node " + key
+                                               + " is not the parent of the bulk load or one of the nodes being loaded");
+        }
+        // All of the nodes added after the parent have no more children, so they can be written ...
+        while (!openNodes.isEmpty() && !openNodes.getLast().key.equals(parentKey)) {
+            close(openNodes.removeLast());
+        }
+        PendingNode node = new PendingNode(key, parentKey, name, properties);
+        if (openNodes.isEmpty()) {
+            topLevelNodes.add(node);
+        } else {
+            addChild(openNodes.getLast(), node);
+        }
+        recordReferrers(node);
+        openNodes.addLast(node);
+        ++nodeCount;
+    }
+
+    /**
+     * Write all remaining nodes, and then link the new top-level nodes to the existing parent and publish the changes. After
+     * this method is called, no more nodes can be added.
+     * 
+     * @return the published changes for the new top-level nodes; never null
+     * @throws NodeNotFoundException if the existing parent node no longer exists
+     * @throws DocumentAlreadyExistsException if a document with the key of one of the written nodes already exists
+     */
+    public ChangeSet finish() {
+        assert !finished;
+        finished = true;
+        while (!openNodes.isEmpty()) {
+            close(openNodes.removeLast());
+        }
+        flush();
+
+        CachedNode parent = workspaceCache.getNode(parentKey);
+        if (parent == null) {
+            throw new NodeNotFoundException(parentKey);
+        }
+        Path parentPath = parent.getPath(workspaceCache);
+        ChildReferences existingChildren = parent.getChildReferences(workspaceCache);
+        final MutableChildReferences appended = new MutableChildReferences();
+        NameFactory names = context.getValueFactories().getNameFactory();
+        RecordingChanges changes = newChanges();
+        Set<NodeKey> changedNodes = new HashSet<>(changedExistingNodes);
+        changedNodes.add(parentKey);
+        for (PendingNode node : topLevelNodes) {
+            appended.append(node.key, node.name);
+            int snsIndex = existingChildren.getChildCount(node.name) + appended.getChildCount(node.name);
+            Path path = context.getValueFactories().getPathFactory().create(parentPath, node.name, snsIndex);
+            Map<Name, Property> properties = new HashMap<>();
+            Set<Name> mixinTypes = new HashSet<>();
+            Name primaryType = null;
+            for (Property property : node.properties) {
+                properties.put(property.getName(), property);
+                if (JcrLexicon.PRIMARY_TYPE.equals(property.getName())) {
+                    primaryType = names.create(property.getFirstValue());
+                } else if (JcrLexicon.MIXIN_TYPES.equals(property.getName())) {
+                    for (Object value : property) {
+                        mixinTypes.add(names.create(value));
+                    }
+                }
+            }
+            changes.nodeCreated(node.key, parentKey, path, primaryType, mixinTypes, properties, true);
+            changedNodes.add(node.key);
+        }
+
+        // Link the new top-level nodes to the parent, which makes all of the new content visible ...
+        Transaction txn = runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                String key = parentKey.toString();
+                lockDocuments(Collections.singleton(key));
+                SchematicEntry entry = documentStore.get(key);
+                if (entry == null) {
+                    throw new DocumentNotFoundException(key);
+                }
+                translator.changeChildren(entry.editDocumentContent(), null, appended);
+            }
+        });
+        publish(changes, changedNodes, txn);
+        publishDescendants(txn);
+        LOGGER.debug("Bulk loaded {0} node(s) in {1} document(s) under {2} in workspace '{3}'", nodeCount, documentCount,
+                     parentPath, workspaceCache.getWorkspaceName());
+        return changes;
+    }
+
+    /**
+     * Publish the events for all of the nodes below the new top-level nodes, in change sets of at most the batch size. This is
+     * done only after the new content is linked to the parent, so that the events (which the other processes in the cluster use
+     * to update their indexes) never describe nodes that are not reachable.
+     * 
+     * @param txn the transaction that linked the new content; may not be null
+     */
+    private void publishDescendants( Transaction txn ) {
+        RecordingChanges changes = null;
+        Set<NodeKey> changedNodes = new HashSet<>();
+        LinkedList<Iterator<ChildReference>> children = new LinkedList<>();
+        for (PendingNode topLevelNode : topLevelNodes) {
+            CachedNode topNode = workspaceCache.getNode(topLevelNode.key);
+            if (topNode == null) continue;
+            children.addLast(topNode.getChildReferences(workspaceCache).iterator());
+            while (!children.isEmpty()) {
+                Iterator<ChildReference> iter = children.getLast();
+                if (!iter.hasNext()) {
+                    children.removeLast();
+                    continue;
+                }
+                CachedNode node = workspaceCache.getNode(iter.next());
+                if (node == null) continue;
+                Map<Name, Property> properties = new HashMap<>();
+                for (Iterator<Property> propertyIter = node.getProperties(workspaceCache); propertyIter.hasNext();) {
+                    Property property = propertyIter.next();
+                    properties.put(property.getName(), property);
+                }
+                if (changes == null) changes = newChanges();
+                changes.nodeCreated(node.getKey(), node.getParentKey(workspaceCache), node.getPath(workspaceCache),
+                                    node.getPrimaryType(workspaceCache), node.getMixinTypes(workspaceCache), properties,
+                                    node.isQueryable(workspaceCache));
+                changedNodes.add(node.getKey());
+                if (changedNodes.size() >= batchSize) {
+                    publish(changes, changedNodes, txn);
+                    changes = null;
+                    changedNodes = new HashSet<>();
+                }
+                children.addLast(node.getChildReferences(workspaceCache).iterator());
+            }
+        }
+        if (changes != null) publish(changes, changedNodes, txn);
+    }
+
+    private RecordingChanges newChanges() {
+        return new RecordingChanges(context.getId(), context.getProcessId(), workspaceCache.getRepositoryKey(),
+                                    workspaceCache.getWorkspaceName(), journalId);
+    }
+
+    private void publish( RecordingChanges changes,
+                          Set<NodeKey> changedNodes,
+                          Transaction txn ) {
+        changes.setChangedNodes(changedNodes);
+        String userId = context.getSecurityContext().getUserName();
+        Map<String, String> userData = context.getData();
+        DateTime timestamp = context.getValueFactories().getDateFactory().create();
+        changes.freeze(userId, userData, timestamp);
+        txns.updateCache(workspaceCache, changes, txn);
+    }
+
+    private boolean isOpen( NodeKey key ) {
+        for (PendingNode node : openNodes) {
+            if (node.key.equals(key)) return true;
+        }
+        return false;
+    }
+
+    private void addChild( PendingNode parent,
+                           PendingNode child ) {
+        if (parent.block.size() >= childrenPerBlock) {
+            // The current block is full, so start another ...
+            String newBlockKey = parent.key.withRandomId().toString();
+            if (parent.blockKey == null) {
+                // The full block is the first block, which is written with the parent's document ...
+                parent.nextBlockKey = newBlockKey;
+            } else {
+                writeBlock(parent, newBlockKey);
+            }
+            parent.block = Schematic.newArray();
+            parent.blockKey = newBlockKey;
+        }
+        parent.block.add(translator.fromChildReference(new ChildReference(child.key, child.name, 1)));
+        ++parent.childCount;
+    }
+
+    private void writeBlock( PendingNode parent,
+                             String nextBlockKey ) {
+        EditableDocument block = Schematic.newDocument();
+        EditableDocument info = block.setDocument(CHILDREN_INFO);
+        info.setNumber(BLOCK_SIZE, parent.block.size());
+        if (nextBlockKey != null) {
+            info.setString(NEXT_BLOCK, nextBlockKey);
+        }
+        block.setArray(CHILDREN, parent.block);
+        parent.blockKeys.add(parent.blockKey);
+        parent.blockFilters.add(ChildBlockFilter.forChildren(parent.block));
+        write(parent.blockKey, block, null);
+    }
+
+    private void close( PendingNode node ) {
+        EditableDocument doc = Schematic.newDocument();
+        translator.setKey(doc, node.key);
+        translator.setParents(doc, node.parentKey, null, null);
+        if (node.childCount != 0) {
+            doc.setArray(CHILDREN, node.firstBlock);
+            EditableDocument info = doc.setDocument(CHILDREN_INFO);
+            info.setNumber(COUNT, node.childCount);
+            if (node.blockKey != null) {
+                // The children were split into blocks, so write the last block and the directory of blocks ...
+                writeBlock(node, null);
+                EditableDocument directory = ChildBlockDirectory.newDirectory(node.childCount);
+                for (int i = 0; i != node.blockKeys.size(); ++i) {
+                    ChildBlockDirectory.addBlock(directory, node.blockKeys.get(i), node.blockFilters.get(i));
+                }
+                String directoryKey = node.key.withRandomId().toString();
+                write(directoryKey, directory, null);
+                info.setNumber(BLOCK_SIZE, node.firstBlock.size());
+                info.setString(NEXT_BLOCK, node.nextBlockKey);
+                info.setString(LAST_BLOCK, node.blockKey);
+                info.setString(BLOCK_DIRECTORY, directoryKey);
+            }
+        }
+        node.release();
+        write(node.key.toString(), doc, node.properties);
+    }
+
+    private void recordReferrers( PendingNode node ) {
+        for (Property property : node.properties) {
+            if (!property.isReference()) continue;
+            for (Object value : property) {
+                if (!(value instanceof NodeKeyReference)) continue;
+                Reference reference = (Reference)value;
+                NodeKey referredKey = ((NodeKeyReference)value).getNodeKey();
+                ReferrerChanges changes = pendingReferrers.get(referredKey);
+                if (changes == null) {
+                    changes = new ReferrerChanges();
+                    pendingReferrers.put(referredKey, changes);
+                }
+                if (reference.isWeak()) {
+                    changes.addWeakReferrer(property, node.key);
+                } else {
+                    changes.addStrongReferrer(property, node.key);
+                }
+            }
+        }
+    }
+
+    private void write( String key,
+                        EditableDocument document,
+                        Collection<Property> properties ) {
+        if (batch.containsKey(key)) {
+            // Two of the written nodes have the same key (e.g., the same UUID), and the batch would silently keep only one ...
+            throw new DocumentAlreadyExistsException(key);
+        }
+        batch.put(key, new PendingDocument(document, properties));
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Write in a single transaction all of the documents that have been completed but not yet written.
+     */
+    protected void flush() {
+        if (batch.isEmpty()) return;
+        runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                writeBatch();
+            }
+        });
+        documentCount += batch.size();
+        batch.clear();
+    }
+
+    protected void writeBatch() {
+        if (!pendingReferrers.isEmpty()) {
+            // Record the referrers on the referenced nodes that are in this batch or that were already written. References to
+            // nodes that are not yet written are kept until those nodes are written; if they never are, the references
+            // will be dangling just as they were in the source content ...
+            Set<String> keysToLock = new HashSet<>();
+            for (NodeKey referredKey : pendingReferrers.keySet()) {
+                String key = referredKey.toString();
+                if (!batch.containsKey(key)) keysToLock.add(key);
+            }
+            lockDocuments(keysToLock);
+            for (Iterator<Map.Entry<NodeKey, ReferrerChanges>> iter = pendingReferrers.entrySet().iterator(); iter.hasNext();) {
+                Map.Entry<NodeKey, ReferrerChanges> entry = iter.next();
+                String key = entry.getKey().toString();
+                PendingDocument pending = batch.get(key);
+                EditableDocument referred = null;
+                if (pending != null) {
+                    referred = pending.document;
+                } else {
+                    SchematicEntry existing = documentStore.get(key);
+                    if (existing == null) continue;
+                    referred = existing.editDocumentContent();
+                    changedExistingNodes.add(entry.getKey());
+                }
+                translator.changeReferrers(referred, entry.getValue());
+                iter.remove();
+            }
+        }
+        for (Map.Entry<String, PendingDocument> entry : batch.entrySet()) {
+            String key = entry.getKey();
+            PendingDocument pending = entry.getValue();
+            if (pending.properties == null) {
+                // This is a block of children or a directory of blocks ...
+                documentStore.localStore().put(key, pending.document);
+                continue;
+            }
+            for (Property property : pending.properties) {
+                translator.setProperty(pending.document, property, null);
+            }
+            if (documentStore.storeDocument(key, pending.document) != null) {
+                throw new DocumentAlreadyExistsException(key);
+            }
+        }
+    }
+
+    private void lockDocuments( Set<String> keys ) {
+        if (keys.isEmpty() || !documentStore.updatesRequirePreparing()) return;
+        if (!documentStore.prepareDocumentsForUpdate(keys) && !documentStore.prepareDocumentsForUpdate(keys)) {
+            throw new org.infinispan.util.concurrent.TimeoutException("Unable to acquire storage locks: " + keys);
+        }
+    }
+
+    private Transaction runInTransaction( Runnable operation ) {
+        try {
+            Transaction txn = txns.begin();
+            try {
+                operation.run();
+                txn.commit();
+                return txn;
+            } catch (RuntimeException e) {
+                txn.rollback();
+                throw e;
+            }
+        } catch (NotSupportedException | SystemException | RollbackException | HeuristicMixedException
+                 | HeuristicRollbackException e) {
+            throw new SystemFailureException(e);
+        }
+    }
+
+    private static final class PendingNode {
+        protected final NodeKey key;
+        protected final NodeKey parentKey;
+        protected final Name name;
+        protected final Collection<Property> properties;
+        protected EditableArray firstBlock = Schematic.newArray();
+        protected EditableArray block = firstBlock;
+        protected String blockKey;
+        protected String nextBlockKey;
+        protected long childCount;
+        protected List<String> blockKeys = new ArrayList<>();
+        protected List<ChildBlockFilter> blockFilters = new ArrayList<>();
+
+        protected PendingNode( NodeKey key,
+                               NodeKey parentKey,
+                               Name name,
+                               Collection<Property> properties ) {
+            this.key = key;
+            this.parentKey = parentKey;
+            this.name = name;
+            this.properties = properties;
+        }
+
+        protected void release() {
+            // Only the top-level nodes are kept after they're written, and those only need their names and properties ...
+            firstBlock = null;
+            block = null;
+            blockKeys = null;
+            blockFilters = null;
+        }
+    }
+
+    private static final class PendingDocument {
+        protected final EditableDocument document;
+        protected final Collection<Property> properties;
+
+        protected PendingDocument( EditableDocument document,
+                                   Collection<Property> properties ) {
+            this.document = document;
+            this.properties = properties;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.document;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.document.Binary;
+import org.infinispan.schematic.document.Bson;
+import org.infinispan.schematic.document.Document;
+import org.infinispan.schematic.document.EditableArray;
+import org.infinispan.schematic.document.EditableDocument;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.jcr.cache.document.DocumentTranslator.ChildReferencesInfo;
+
+/**
+ * The directory of the blocks of child references for a node whose children are segmented into multiple blocks. The directory
+ * is persisted as a separate document (referenced from the {@link DocumentConstants#BLOCK_DIRECTORY blockDirectory} field of the
+ * node's {@link DocumentConstants#CHILDREN_INFO childrenInfo}) and contains, for each block after the first in chain order,
+ * the block's key and a {@link ChildBlockFilter filter} over the keys and names of the children in that block.
+ * <p>
+ * The directory lets a lookup of a single child by name or key read only those blocks that may contain the child, rather than
+ * walking the whole chain of blocks. The filters are kept outside of the blocks themselves (since a block would have to be
+ * read to consult its filter) and outside of the node's document (since the filters for a node with hundreds of thousands of
+ * children would make every read of that node considerably more expensive).
+ * </p>
+ * <p>
+ * The directory records the total number of children it describes, so readers can detect a directory that is out of date
+ * with respect to the chain of blocks and fall back to walking the chain.
+ * </p>
+ */
+@Immutable
+public final class ChildBlockDirectory implements DocumentConstants {
+
+    protected static final String BLOCKS = "blocks";
+    protected static final String FILTER = "filter";
+
+    /**
+     * Create a new, empty directory document.
+     *
+     * @param totalSize the total number of children described by the directory
+     * @return the new directory document; never null
+     */
+    public static EditableDocument newDirectory( long totalSize ) {
+        EditableDocument directory = Schematic.newDocument();
+        directory.setNumber(COUNT, totalSize);
+        directory.setArray(BLOCKS);
+        return directory;
+    }
+
+    /**
+     * Add to the end of the supplied directory document an entry for the given block.
+     *
+     * @param directory the directory document; may not be null
+     * @param blockKey the key of the block; may not be null
+     * @param children the array of child reference documents in the block; may be null
+     */
+    public static void addBlock( EditableDocument directory,
+                                 String blockKey,
+                                 List<?> children ) {
+        addBlock(directory, blockKey, ChildBlockFilter.forChildren(children));
+    }
+
+    /**
+     * Add to the end of the supplied directory document an entry for the given block.
+     *
+     * @param directory the directory document; may not be null
+     * @param blockKey the key of the block; may not be null
+     * @param filter the filter for the children in the block; may not be null
+     */
+    public static void addBlock( EditableDocument directory,
+                                 String blockKey,
+                                 ChildBlockFilter filter ) {
+        EditableDocument entry = Schematic.newDocument();
+        entry.setString(KEY, blockKey);
+        entry.setBinary(FILTER, Bson.BinaryType.GENERAL, filter.toBytes());
+        directory.getOrCreateArray(BLOCKS).add(entry);
+    }
+
+    /**
+     * Replace the filter of the last block in the supplied directory document, which is what is needed when children are
+     * appended to the last block.
+     *
+     * @param directory the directory document; may not be null
+     * @param blockKey the key of the last block; may not be null
+     * @param children the array of child reference documents now in the last block; may be null
+     * @param totalSize the new total number of children described by the directory
+     * @return true if the directory was updated, or false if the directory's last entry is not for the given block (in which case
+     *         the directory is out of date and should be rebuilt or discarded)
+     */
+    public static boolean replaceLastBlock( EditableDocument directory,
+                                            String blockKey,
+                                            List<?> children,
+                                            long totalSize ) {
+        EditableArray blocks = directory.getArray(BLOCKS);
+        if (blocks == null || blocks.isEmpty()) return false;
+        int lastIndex = blocks.size() - 1;
+        Object last = blocks.get(lastIndex);
+        if (!(last instanceof Document) || !blockKey.equals(((Document)last).getString(KEY))) return false;
+        blocks.remove(lastIndex);
+        addBlock(directory, blockKey, children);
+        directory.setNumber(COUNT, totalSize);
+        return true;
+    }
+
+    /**
+     * Read the supplied directory document.
+     *
+     * @param directory the directory document; may be null
+     * @return the directory, or null if the document is null or is not a valid directory
+     */
+    public static ChildBlockDirectory read( Document directory ) {
+        if (directory == null) return null;
+        List<?> blocks = directory.getArray(BLOCKS);
+        if (blocks == null || blocks.isEmpty()) return null;
+        List<String> keys = new ArrayList<>(blocks.size());
+        List<ChildBlockFilter> filters = new ArrayList<>(blocks.size());
+        for (Object block : blocks) {
+            if (!(block instanceof Document)) return null;
+            Document entry = (Document)block;
+            String key = entry.getString(KEY);
+            Binary binary = entry.getBinary(FILTER);
+            ChildBlockFilter filter = binary != null ? ChildBlockFilter.fromBytes(binary.getBytes()) : null;
+            if (key == null || filter == null) return null;
+            keys.add(key);
+            filters.add(filter);
+        }
+        return new ChildBlockDirectory(directory.getLong(COUNT, -1L), keys, filters);
+    }
+
+    private final long totalSize;
+    private final List<String> blockKeys;
+    private final List<ChildBlockFilter> filters;
+
+    private ChildBlockDirectory( long totalSize,
+                                 List<String> blockKeys,
+                                 List<ChildBlockFilter> filters ) {
+        this.totalSize = totalSize;
+        this.blockKeys = blockKeys;
+        this.filters = filters;
+    }
+
+    /**
+     * Determine whether this directory describes the chain of blocks with the supplied information, obtained from the node's
+     * document.
+     *
+     * @param info the information about the node's blocks; may be null
+     * @return true if the directory can be used to find the blocks, or false otherwise
+     */
+    public boolean isConsistentWith( ChildReferencesInfo info ) {
+        if (info == null || info.totalSize != totalSize) return false;
+        return blockKeys.get(0).equals(info.nextKey) && blockKeys.get(blockKeys.size() - 1).equals(info.lastKey);
+    }
+
+    /**
+     * Get the number of blocks in this directory.
+     *
+     * @return the number of blocks after the first
+     */
+    public int size() {
+        return blockKeys.size();
+    }
+
+    /**
+     * Get the keys of the blocks (in chain order) that may contain a child with the supplied node key string or local name.
+     *
+     * @param value the node key string or local name
+     * @return the keys of the candidate blocks; never null but possibly empty
+     */
+    public List<String> blocksThatMightContain( String value ) {
+        List<String> result = new ArrayList<>(2);
+        for (int i = 0, len = blockKeys.size(); i != len; ++i) {
+            if (filters.get(i).mightContain(value)) result.add(blockKeys.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ChildBlockDirectory(totalSize: " + totalSize + "; blocks: " + blockKeys + ")";
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.document;
+
+import java.util.List;
+import org.infinispan.schematic.document.Document;
+import org.modeshape.common.annotation.NotThreadSafe;
+
+/**
+ * A Bloom filter over the keys and local names of the children stored in a single block of child references. A filter never
+ * produces false negatives, so a block whose filter does not {@link #mightContain(String) contain} a key or name can be skipped
+ * without loading it.
+ * <p>
+ * Names are recorded by their local part only, since the namespace prefix used in the persisted form of a name depends upon
+ * the namespace registry. Two children with the same local name in different namespaces simply produce a false positive.
+ * </p>
+ */
+@NotThreadSafe
+public final class ChildBlockFilter {
+
+    /**
+     * The number of bits used for each entry. Each child contributes two entries (its key and its name), and with 16 bits per
+     * entry and 11 hash functions the false positive rate is below 0.05%, so that even a chain of several thousand blocks
+     * rarely results in more than one unnecessary block being read.
+     */
+    protected static final int BITS_PER_ENTRY = 16;
+    protected static final int HASH_COUNT = 11;
+
+    /**
+     * Create a filter for the children in the supplied array of child reference documents.
+     *
+     * @param children the array of child reference documents, each with a {@link DocumentConstants#KEY key} and
+     *        {@link DocumentConstants#NAME name}; may be null
+     * @return the filter; never null
+     */
+    public static ChildBlockFilter forChildren( List<?> children ) {
+        int count = children != null ? children.size() : 0;
+        ChildBlockFilter filter = new ChildBlockFilter(count * 2);
+        if (children != null) {
+            for (Object child : children) {
+                if (!(child instanceof Document)) continue;
+                Document childDoc = (Document)child;
+                filter.add(childDoc.getString(DocumentConstants.KEY));
+                filter.add(localNameOf(childDoc.getString(DocumentConstants.NAME)));
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * Read a filter from its serialized form.
+     *
+     * @param bytes the bytes produced by {@link #toBytes()}; may be null
+     * @return the filter, or null if the bytes are null or not a valid serialized filter
+     */
+    public static ChildBlockFilter fromBytes( byte[] bytes ) {
+        if (bytes == null || bytes.length == 0 || bytes.length % 8 != 0) return null;
+        long[] words = new long[bytes.length / 8];
+        for (int i = 0; i != words.length; ++i) {
+            long word = 0L;
+            for (int j = 0; j != 8; ++j) {
+                word = (word << 8) | (bytes[i * 8 + j] & 0xFFL);
+            }
+            words[i] = word;
+        }
+        return new ChildBlockFilter(words);
+    }
+
+    /**
+     * Obtain the local part of a persisted name, which is either in the "{uri}local" or "prefix:local" form.
+     *
+     * @param name the persisted string form of the name; may be null
+     * @return the local part of the name; null only if the supplied name is null
+     */
+    public static String localNameOf( String name ) {
+        if (name == null) return null;
+        int index = name.lastIndexOf('}');
+        if (index < 0) index = name.indexOf(':');
+        return index < 0 ? name : name.substring(index + 1);
+    }
+
+    private final long[] words;
+    private final long numBits;
+
+    protected ChildBlockFilter( int expectedEntries ) {
+        long bits = Math.max(64L, (long)expectedEntries * BITS_PER_ENTRY);
+        this.words = new long[(int)((bits + 63L) / 64L)];
+        this.numBits = this.words.length * 64L;
+    }
+
+    private ChildBlockFilter( long[] words ) {
+        this.words = words;
+        this.numBits = words.length * 64L;
+    }
+
+    /**
+     * Record the supplied node key string or local name.
+     *
+     * @param value the value; if null this method does nothing
+     */
+    public void add( String value ) {
+        if (value == null) return;
+        long hash = hash(value);
+        int h1 = (int)hash;
+        int h2 = (int)(hash >>> 32);
+        for (int i = 1; i <= HASH_COUNT; ++i) {
+            long bit = bitIndex(h1 + i * h2);
+            words[(int)(bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Determine whether the supplied node key string or local name may have been {@link #add(String) added} to this filter.
+     *
+     * @param value the value; may be null
+     * @return false if the value was definitely never added, or true if it might have been added
+     */
+    public boolean mightContain( String value ) {
+        if (value == null) return false;
+        long hash = hash(value);
+        int h1 = (int)hash;
+        int h2 = (int)(hash >>> 32);
+        for (int i = 1; i <= HASH_COUNT; ++i) {
+            long bit = bitIndex(h1 + i * h2);
+            if ((words[(int)(bit >>> 6)] & (1L << bit)) == 0L) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Serialize this filter so that it can be stored as a binary field.
+     *
+     * @return the bytes; never null
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[words.length * 8];
+        for (int i = 0; i != words.length; ++i) {
+            long word = words[i];
+            for (int j = 7; j >= 0; --j) {
+                bytes[i * 8 + j] = (byte)word;
+                word >>>= 8;
+            }
+        }
+        return bytes;
+    }
+
+    private long bitIndex( int combinedHash ) {
+        return (combinedHash & 0x7FFFFFFFL) % numBits;
+    }
+
+    private static long hash( String value ) {
+        // FNV-1a over the characters, followed by a 64-bit finalizer to spread the bits ...
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0, len = value.length(); i != len; ++i) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "ChildBlockFilter(" + numBits + " bits)";
+    }
+}
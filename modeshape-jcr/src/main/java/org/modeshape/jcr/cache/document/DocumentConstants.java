@@ -36,12 +36,23 @@ public interface DocumentConstants {
     public static final String BLOCK_SIZE = "blockSize";
     public static final String NEXT_BLOCK = "nextBlock";
     public static final String LAST_BLOCK = "lastBlock";
+    public static final String BLOCK_DIRECTORY = "blockDirectory";
     public static final String NAME = "name";
     public static final String KEY = "key";
     public static final String REFERRERS = "referrers";
     public static final String WEAK = "weak";
     public static final String STRONG = "strong";
     public static final String REFERENCE_COUNT = "refCount";
+    /**
+     * The name of the field that holds the version stamp of a node's properties. The stamp is incremented each time a save
+     * changes the properties of the node, and is used by optimistic saves to detect conflicting changes.
+     */
+    public static final String VERSION = "version";
+    /**
+     * The name of the field that holds the revision of a node's document. The revision is incremented each time an optimistic save
+     * writes the document, and the document is written only if its revision is still the one that the save read.
+     */
+    public static final String REVISION = "revision";
     public static final String QUERYABLE_FIELD = "$queryable";
     public static final String REFERENCE_FIELD = "$ref";
     public static final String WEAK_REFERENCE_FIELD = "$wref";
@@ -140,6 +140,9 @@ public class DocumentOptimizer implements DocumentConstants {
                 }
             }
         }
+        if (changed) {
+            updateBlockDirectory(key, document);
+        }
         return changed;
     }
 
@@ -147,6 +150,60 @@ public class DocumentOptimizer implements DocumentConstants {
         return documentStore != null ? documentStore.get(key) : store.get(key);
     }
 
+    /**
+     * Rebuild the {@link ChildBlockDirectory directory} of the blocks of children for the supplied node document, after the
+     * blocks have been split or merged. If the children are no longer segmented, any existing directory is removed.
+     * 
+     * @param key the key for the node
+     * @param document the node's document representation, which has already been optimized
+     */
+    protected void updateBlockDirectory( NodeKey key,
+                                         EditableDocument document ) {
+        EditableDocument info = document.getDocument(CHILDREN_INFO);
+        if (info == null) {
+            return;
+        }
+        String directoryKey = info.getString(BLOCK_DIRECTORY);
+        String nextKey = info.getString(NEXT_BLOCK);
+        if (nextKey == null || documentStore == null) {
+            // Either there are no blocks to describe, or we can't write the directory ...
+            if (directoryKey != null) {
+                info.remove(BLOCK_DIRECTORY);
+                if (documentStore != null) {
+                    documentStore.remove(directoryKey);
+                } else {
+                    store.remove(directoryKey);
+                }
+            }
+            return;
+        }
+        EditableDocument directory = ChildBlockDirectory.newDirectory(info.getLong(COUNT, 0L));
+        String lastKey = null;
+        while (nextKey != null) {
+            SchematicEntry blockEntry = lookup(nextKey);
+            Document block = blockEntry != null ? blockEntry.getContentAsDocument() : null;
+            if (block == null) {
+                // The chain of blocks is broken, so a directory would be of no use ...
+                if (directoryKey != null) {
+                    info.remove(BLOCK_DIRECTORY);
+                    documentStore.remove(directoryKey);
+                }
+                return;
+            }
+            ChildBlockDirectory.addBlock(directory, nextKey, block.getArray(CHILDREN));
+            lastKey = nextKey;
+            Document blockInfo = block.getDocument(CHILDREN_INFO);
+            nextKey = blockInfo != null ? blockInfo.getString(NEXT_BLOCK) : null;
+        }
+        // Splitting the last block doesn't update the node's reference to the last block, so make sure it is correct ...
+        info.setString(LAST_BLOCK, lastKey);
+        if (directoryKey == null) {
+            directoryKey = key.withRandomId().toString();
+            info.setString(BLOCK_DIRECTORY, directoryKey);
+        }
+        documentStore.localStore().put(directoryKey, directory);
+    }
+
     /**
      * Split the children in the given document (with the given key) into two or more blocks, based upon the specified number of
      * desired children per block and a tolerance. This method will create additional blocks and will modify the supplied document
@@ -17,6 +17,7 @@
 package org.modeshape.jcr.cache.document;
 
 import java.util.Collection;
+import java.util.Map;
 import javax.transaction.TransactionManager;
 import javax.transaction.xa.XAResource;
 import org.infinispan.schematic.SchematicEntry;
@@ -41,6 +42,18 @@ public interface DocumentStore {
      */
     public SchematicEntry get( String key );
 
+    /**
+     * Get the entries with the supplied keys, in as few operations as possible. Callers that know which documents they will need
+     * next (e.g., when iterating over a node's children or scanning a workspace) should use this method rather than calling
+     * {@link #get(String)} for each key, since the store may then load the documents without paying the per-key latency each
+     * time.
+     * 
+     * @param keys the keys or identifiers for the documents; may not be null
+     * @return the entries keyed by their key; never null but without an entry for any key that has no document
+     * @throws DocumentStoreException if there is a problem retrieving the documents
+     */
+    public Map<String, SchematicEntry> getAll( Collection<String> keys );
+
     /**
      * Store the supplied document at the given key.
      *
@@ -684,6 +684,50 @@ public class DocumentTranslator implements DocumentConstants {
         return document.getString(KEY);
     }
 
+    /**
+     * Get the version stamp of the properties in the supplied node document.
+     * 
+     * @param document the node document; may not be null
+     * @return the version stamp, or 0 if the properties have never been changed since the stamps were introduced
+     */
+    public long getVersion( Document document ) {
+        return document.getLong(VERSION, 0L);
+    }
+
+    /**
+     * Increment the version stamp of the properties in the supplied node document.
+     * 
+     * @param document the node document; may not be null
+     * @return the new version stamp
+     */
+    public long incrementVersion( EditableDocument document ) {
+        long version = getVersion(document) + 1L;
+        document.setNumber(VERSION, version);
+        return version;
+    }
+
+    /**
+     * Get the revision of the supplied node document.
+     * 
+     * @param document the node document; may not be null
+     * @return the revision, or 0 if the document has never been written by an optimistic save
+     */
+    public long getRevision( Document document ) {
+        return document.getLong(REVISION, 0L);
+    }
+
+    /**
+     * Increment the revision of the supplied node document.
+     * 
+     * @param document the node document; may not be null
+     * @return the new revision
+     */
+    public long incrementRevision( EditableDocument document ) {
+        long revision = getRevision(document) + 1L;
+        document.setNumber(REVISION, revision);
+        return revision;
+    }
+
     public void changeChildren( EditableDocument document,
                                 ChangedChildren changedChildren,
                                 ChildReferences appended ) {
@@ -696,8 +740,15 @@ public class DocumentTranslator implements DocumentConstants {
         EditableDocument doc = document;
         EditableDocument lastDoc = document;
         String lastDocKey = null;
+        // The keys and filters of all blocks after the first, collected only when every block is rewritten ...
+        List<String> blockKeys = null;
+        List<ChildBlockFilter> blockFilters = null;
         if (changedChildren != null && !changedChildren.isEmpty()) {
             Map<NodeKey, Insertions> insertionsByBeforeKey = changedChildren.getInsertionsByBeforeKey();
+            if (info != null && info.nextKey != null && isLocalDocument(document)) {
+                blockKeys = new ArrayList<String>();
+                blockFilters = new ArrayList<ChildBlockFilter>();
+            }
 
             // Handle removals and renames ...
             Set<NodeKey> removals = changedChildren.getRemovals();
@@ -718,6 +769,10 @@ public class DocumentTranslator implements DocumentConstants {
                 // Change the existing children ...
                 long blockCount = insertChildren(doc, insertionsByBeforeKey, removals, newNames);
                 newTotalSize += blockCount;
+                if (blockKeys != null && doc != document) {
+                    blockKeys.add(lastDocKey);
+                    blockFilters.add(ChildBlockFilter.forChildren(doc.getArray(CHILDREN)));
+                }
 
                 // Look at the 'childrenInfo' document for info about the next block of children ...
                 SchematicEntry nextEntry = null;
@@ -745,6 +800,10 @@ public class DocumentTranslator implements DocumentConstants {
                     doc = null;
                 }
             }
+            if (lastDoc != document) {
+                // The children are segmented, so record the new total on the first document ...
+                document.getDocument(CHILDREN_INFO).setNumber(COUNT, newTotalSize);
+            }
         } else {
             // We're not inserting or removing children, so we've not modified the number of children ...
             newTotalSize = info != null ? info.totalSize : 0L;
@@ -780,8 +839,75 @@ public class DocumentTranslator implements DocumentConstants {
             // And if needed the reference to the last block ...
             if (lastKey != null) {
                 childInfo.setString(LAST_BLOCK, lastKey);
+                lastDocKey = lastKey;
             }
         }
+
+        if (info != null && info.nextKey != null) {
+            updateBlockDirectory(document, info, blockKeys, blockFilters, lastDoc, lastDocKey, appended, newTotalSize);
+        }
+    }
+
+    /**
+     * Bring up-to-date the {@link ChildBlockDirectory directory} of the blocks of children for a node whose children are
+     * segmented. When all of the blocks were rewritten, the directory is (re)built from the supplied keys and filters. Otherwise
+     * children were only appended to the last block, so only the last block's filter is replaced. A directory that cannot be
+     * updated is removed, so that readers will walk the blocks until the directory is rebuilt.
+     * 
+     * @param document the node's document; may not be null
+     * @param info the information about the node's blocks prior to the changes; may not be null
+     * @param blockKeys the keys of all blocks after the first, or null if the blocks were not all rewritten
+     * @param blockFilters the filters for the blocks with the supplied keys, or null if the blocks were not all rewritten
+     * @param lastDoc the last block of children; may not be null
+     * @param lastDocKey the key of the last block of children, or null if the last block is the node's document
+     * @param appended the child references that were appended to the last block; may be null
+     * @param totalSize the total number of children after the changes
+     */
+    protected void updateBlockDirectory( EditableDocument document,
+                                         ChildReferencesInfo info,
+                                         List<String> blockKeys,
+                                         List<ChildBlockFilter> blockFilters,
+                                         EditableDocument lastDoc,
+                                         String lastDocKey,
+                                         ChildReferences appended,
+                                         long totalSize ) {
+        EditableDocument childInfo = document.getDocument(CHILDREN_INFO);
+        if (childInfo == null) return;
+        boolean wasAppended = appended != null && appended.size() != 0 && lastDocKey != null;
+        if (blockKeys != null && !blockKeys.isEmpty()) {
+            if (wasAppended && lastDocKey.equals(blockKeys.get(blockKeys.size() - 1))) {
+                blockFilters.set(blockFilters.size() - 1, ChildBlockFilter.forChildren(lastDoc.getArray(CHILDREN)));
+            }
+            EditableDocument directory = ChildBlockDirectory.newDirectory(totalSize);
+            for (int i = 0; i != blockKeys.size(); ++i) {
+                ChildBlockDirectory.addBlock(directory, blockKeys.get(i), blockFilters.get(i));
+            }
+            String directoryKey = info.directoryKey;
+            if (directoryKey == null) {
+                directoryKey = new NodeKey(getKey(document)).withRandomId().toString();
+                childInfo.setString(BLOCK_DIRECTORY, directoryKey);
+            }
+            documentStore.localStore().put(directoryKey, directory);
+            return;
+        }
+        if (info.directoryKey == null || (blockKeys == null && !wasAppended)) {
+            // There is no directory, or nothing that the directory describes was changed ...
+            return;
+        }
+        SchematicEntry directoryEntry = documentStore.get(info.directoryKey);
+        if (directoryEntry != null && wasAppended
+            && ChildBlockDirectory.replaceLastBlock(directoryEntry.editDocumentContent(), lastDocKey,
+                                                    lastDoc.getArray(CHILDREN), totalSize)) {
+            return;
+        }
+        // The directory no longer describes the blocks, so remove it ...
+        childInfo.remove(BLOCK_DIRECTORY);
+        documentStore.remove(info.directoryKey);
+    }
+
+    private boolean isLocalDocument( Document document ) {
+        String key = getKey(document);
+        return key != null && new NodeKey(key).getSourceKey().equals(documentStore.getLocalSourceKey());
     }
 
     protected long insertChildren( EditableDocument document,
@@ -903,7 +1029,8 @@ public class DocumentTranslator implements DocumentConstants {
             long blockSize = childrenInfo.getLong(BLOCK_SIZE, 0L);
             String nextBlockKey = childrenInfo.getString(NEXT_BLOCK);
             String lastBlockKey = childrenInfo.getString(LAST_BLOCK, nextBlockKey);
-            return new ChildReferencesInfo(totalSize, blockSize, nextBlockKey, lastBlockKey);
+            String directoryKey = childrenInfo.getString(BLOCK_DIRECTORY);
+            return new ChildReferencesInfo(totalSize, blockSize, nextBlockKey, lastBlockKey, directoryKey);
         }
         return null;
     }
@@ -914,20 +1041,31 @@ public class DocumentTranslator implements DocumentConstants {
         public final long blockSize;
         public final String nextKey;
         public final String lastKey;
+        public final String directoryKey;
 
         public ChildReferencesInfo( long totalSize,
                                     long blockSize,
                                     String nextKey,
                                     String lastKey ) {
+            this(totalSize, blockSize, nextKey, lastKey, null);
+        }
+
+        public ChildReferencesInfo( long totalSize,
+                                    long blockSize,
+                                    String nextKey,
+                                    String lastKey,
+                                    String directoryKey ) {
             this.totalSize = totalSize;
             this.blockSize = blockSize;
             this.nextKey = nextKey;
             this.lastKey = lastKey;
+            this.directoryKey = directoryKey;
         }
 
         @Override
         public String toString() {
-            return "totalSize: " + totalSize + "; blockSize: " + blockSize + "; nextKey: " + nextKey + "; lastKey: " + lastKey;
+            return "totalSize: " + totalSize + "; blockSize: " + blockSize + "; nextKey: " + nextKey + "; lastKey: " + lastKey
+                   + "; directoryKey: " + directoryKey;
         }
     }
 
@@ -1169,7 +1307,13 @@ public class DocumentTranslator implements DocumentConstants {
         return null;
     }
 
-    protected final String keyForBinaryReferenceDocument( String sha1 ) {
+    /**
+     * Get the key of the document that records the number of references to the stored binary value with the supplied SHA-1.
+     *
+     * @param sha1 the SHA-1 of the binary value; may not be null
+     * @return the document key; never null
+     */
+    public static String keyForBinaryReferenceDocument( String sha1 ) {
         return sha1 + "-ref";
     }
 
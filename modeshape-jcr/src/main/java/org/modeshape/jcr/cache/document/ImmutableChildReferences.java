@@ -24,6 +24,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.infinispan.schematic.document.Document;
 import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.collection.EmptyIterator;
@@ -440,13 +442,18 @@ public class ImmutableChildReferences {
 
         protected final WorkspaceCache cache;
         protected final long totalSize;
+        protected final ChildReferencesInfo info;
         private Segment firstSegment;
+        private final ConcurrentMap<String, ChildReferences> blocksByKey = new ConcurrentHashMap<>();
+        private volatile ChildBlockDirectory directory;
+        private volatile boolean directoryRead;
 
         public Segmented( WorkspaceCache cache,
                           ChildReferences firstSegment,
                           ChildReferencesInfo info ) {
             this.cache = cache;
             this.totalSize = info.totalSize;
+            this.info = info;
             this.firstSegment = new Segment(firstSegment, info.nextKey);
         }
 
@@ -460,9 +467,62 @@ public class ImmutableChildReferences {
             return size() != ChildReferences.UNKNOWN_SIZE;
         }
 
+        /**
+         * Get the directory of the blocks after the first segment, if there is one and if it is consistent with the blocks.
+         * 
+         * @return the directory, or null if the blocks have to be walked
+         */
+        protected ChildBlockDirectory directory() {
+            if (!directoryRead) {
+                ChildBlockDirectory result = null;
+                if (info.directoryKey != null) {
+                    result = ChildBlockDirectory.read(cache.blockFor(info.directoryKey));
+                    if (result != null && !result.isConsistentWith(info)) {
+                        result = null;
+                    }
+                }
+                directory = result;
+                directoryRead = true;
+            }
+            return directory;
+        }
+
+        /**
+         * Get the directory that can be used for a lookup with the supplied context. The directory only describes the persisted
+         * children, so it cannot be used when the context contains transient changes.
+         * 
+         * @param context the context for the lookup; may be null
+         * @return the directory, or null if the blocks have to be walked
+         */
+        protected ChildBlockDirectory directoryFor( Context context ) {
+            if (context != null && context.changes() != null) return null;
+            return directory();
+        }
+
+        protected ChildReferences referencesInBlock( String blockKey ) {
+            ChildReferences refs = blocksByKey.get(blockKey);
+            if (refs == null) {
+                Document blockDoc = cache.blockFor(blockKey);
+                if (blockDoc == null) {
+                    throw new DocumentNotFoundException(blockKey);
+                }
+                refs = cache.translator().getChildReferencesFromBlock(blockDoc);
+                blocksByKey.putIfAbsent(blockKey, refs);
+            }
+            return refs;
+        }
+
         @Override
         public int getChildCount( Name name ) {
             int result = 0;
+            ChildBlockDirectory directory = directory();
+            if (directory != null) {
+                result += this.firstSegment.getReferences().getChildCount(name);
+                for (String blockKey : directory.blocksThatMightContain(name.getLocalName())) {
+                    result += referencesInBlock(blockKey).getChildCount(name);
+                }
+                return result;
+            }
             Segment segment = this.firstSegment;
             while (segment != null) {
                 result += segment.getReferences().getChildCount(name);
@@ -476,6 +536,21 @@ public class ImmutableChildReferences {
                                         int snsIndex,
                                         Context context ) {
             ChildReference result = null;
+            ChildBlockDirectory directory = directoryFor(context);
+            if (directory != null) {
+                // Look in the first segment and then only in those blocks that may contain a child with the name ...
+                result = this.firstSegment.getReferences().getChild(name, snsIndex, context);
+                if (result != null) {
+                    return result;
+                }
+                for (String blockKey : directory.blocksThatMightContain(name.getLocalName())) {
+                    result = referencesInBlock(blockKey).getChild(name, snsIndex, context);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+                return null;
+            }
             Segment segment = this.firstSegment;
             while (segment != null) {
                 result = segment.getReferences().getChild(name, snsIndex, context);
@@ -489,6 +564,18 @@ public class ImmutableChildReferences {
 
         @Override
         public boolean hasChild( NodeKey key ) {
+            ChildBlockDirectory directory = directory();
+            if (directory != null) {
+                if (this.firstSegment.getReferences().hasChild(key)) {
+                    return true;
+                }
+                for (String blockKey : directory.blocksThatMightContain(key.toString())) {
+                    if (referencesInBlock(blockKey).hasChild(key)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
             Segment segment = this.firstSegment;
             while (segment != null) {
                 if (segment.getReferences().hasChild(key)) {
@@ -508,6 +595,20 @@ public class ImmutableChildReferences {
         public ChildReference getChild( NodeKey key,
                                         Context context ) {
             ChildReference result = null;
+            ChildBlockDirectory directory = directoryFor(context);
+            if (directory != null) {
+                result = this.firstSegment.getReferences().getChild(key, context);
+                if (result != null) {
+                    return result;
+                }
+                for (String blockKey : directory.blocksThatMightContain(key.toString())) {
+                    result = referencesInBlock(blockKey).getChild(key, context);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+                return null;
+            }
             Segment segment = this.firstSegment;
             while (segment != null) {
                 result = segment.getReferences().getChild(key, context);
@@ -576,7 +677,7 @@ public class ImmutableChildReferences {
             final Segment firstSegment = this.firstSegment;
             return new Iterator<ChildReference>() {
                 private Segment segment = firstSegment;
-                private Iterator<ChildReference> iter = segment != null ? segment.getReferences().iterator(context) : ImmutableChildReferences.EMPTY_ITERATOR;
+                private Iterator<ChildReference> iter = segment != null ? childrenIn(segment, context) : ImmutableChildReferences.EMPTY_ITERATOR;
                 private ChildReference next;
 
                 @Override
@@ -589,7 +690,7 @@ public class ImmutableChildReferences {
                         while (segment != null) {
                             segment = segment.next(cache);
                             if (segment != null) {
-                                iter = segment.getReferences().iterator(context);
+                                iter = childrenIn(segment, context);
                                 if (iter.hasNext()) {
                                     next = iter.next();
                                     return true;
@@ -622,6 +723,20 @@ public class ImmutableChildReferences {
             };
         }
 
+        /**
+         * Get the iterator over the references in the supplied segment. Since a caller iterating over all of the children
+         * usually materializes each of them, the child nodes in the segment are first loaded with a single bulk read.
+         * 
+         * @param segment the segment; may not be null
+         * @param context the context for the iteration; may be null
+         * @return the iterator over the segment's references; never null
+         */
+        protected Iterator<ChildReference> childrenIn( Segment segment,
+                                                       Context context ) {
+            segment.prefetch(cache);
+            return segment.getReferences().iterator(context);
+        }
+
         @Override
         public Iterator<NodeKey> getAllKeys() {
             final Segment firstSegment = this.firstSegment;
@@ -806,6 +921,22 @@ public class ImmutableChildReferences {
             return references.getAllKeys();
         }
 
+        /**
+         * Load into the supplied cache, with a single bulk read, those nodes referenced by this segment that are not yet cached.
+         * This is done every time the segment is iterated, since the nodes loaded by an earlier iteration may since have been
+         * evicted; when they are all still cached, nothing is read.
+         * 
+         * @param cache the workspace cache; may not be null
+         */
+        public void prefetch( WorkspaceCache cache ) {
+            List<NodeKey> keys = new ArrayList<>();
+            Iterator<NodeKey> iter = keys();
+            while (iter.hasNext()) {
+                keys.add(iter.next());
+            }
+            cache.loadNodes(keys);
+        }
+
         @Override
         public String toString() {
             return toString(new StringBuilder()).toString();
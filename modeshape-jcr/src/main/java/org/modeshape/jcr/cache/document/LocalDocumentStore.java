@@ -18,8 +18,11 @@ package org.modeshape.jcr.cache.document;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import javax.transaction.HeuristicMixedException;
 import javax.transaction.HeuristicRollbackException;
 import javax.transaction.NotSupportedException;
@@ -34,9 +37,11 @@ import org.infinispan.schematic.SchematicEntry;
 import org.infinispan.schematic.document.Document;
 import org.infinispan.schematic.document.EditableDocument;
 import org.modeshape.common.SystemFailureException;
+import org.modeshape.jcr.DurationRecorder;
 import org.modeshape.jcr.InfinispanUtil;
 import org.modeshape.jcr.InfinispanUtil.Combiner;
 import org.modeshape.jcr.InfinispanUtil.Location;
+import org.modeshape.jcr.api.monitor.DurationMetric;
 import org.modeshape.jcr.value.Name;
 import org.modeshape.jcr.value.binary.ExternalBinaryValue;
 
@@ -50,6 +55,7 @@ public class LocalDocumentStore implements DocumentStore {
 
     private final SchematicDb database;
     private String localSourceKey;
+    private volatile DurationRecorder durations = DurationRecorder.NONE;
 
     /**
      * Creates a new local store with the given database
@@ -67,7 +73,27 @@ public class LocalDocumentStore implements DocumentStore {
 
     @Override
     public SchematicEntry get( String key ) {
-        return database.get(key);
+        long start = System.nanoTime();
+        try {
+            return database.get(key);
+        } finally {
+            recordDuration(DurationMetric.DOCUMENT_STORE_READ_TIME, start);
+        }
+    }
+
+    @Override
+    public Map<String, SchematicEntry> getAll( Collection<String> keys ) {
+        if (keys.isEmpty()) return Collections.emptyMap();
+        long start = System.nanoTime();
+        try {
+            return database.getAll(keys);
+        } finally {
+            // Record one sample per document (as the reads of single documents do), so that the read time stays per document ...
+            long durationPerDocument = (System.nanoTime() - start) / keys.size();
+            for (int i = 0; i != keys.size(); ++i) {
+                durations.recordDuration(DurationMetric.DOCUMENT_STORE_READ_TIME, durationPerDocument, TimeUnit.NANOSECONDS);
+            }
+        }
     }
 
     @Override
@@ -102,7 +128,12 @@ public class LocalDocumentStore implements DocumentStore {
      */
     public SchematicEntry putIfAbsent( String key,
                                        Document document ) {
-        return database.putIfAbsent(key, document, null);
+        long start = System.nanoTime();
+        try {
+            return database.putIfAbsent(key, document, null);
+        } finally {
+            recordDuration(DurationMetric.DOCUMENT_STORE_WRITE_TIME, start);
+        }
     }
 
     /**
@@ -114,7 +145,12 @@ public class LocalDocumentStore implements DocumentStore {
      */
     public void put( String key,
                      Document document ) {
-        database.put(key, document, null);
+        long start = System.nanoTime();
+        try {
+            database.put(key, document, null);
+        } finally {
+            recordDuration(DurationMetric.DOCUMENT_STORE_WRITE_TIME, start);
+        }
     }
 
     /**
@@ -123,7 +159,26 @@ public class LocalDocumentStore implements DocumentStore {
      * @param entryDocument the document that contains the metadata document, content document, and key
      */
     public void put( Document entryDocument ) {
-        database.put(entryDocument);
+        long start = System.nanoTime();
+        try {
+            database.put(entryDocument);
+        } finally {
+            recordDuration(DurationMetric.DOCUMENT_STORE_WRITE_TIME, start);
+        }
+    }
+
+    /**
+     * Store all of the supplied documents in the local db, in as few operations as possible.
+     * 
+     * @param entryDocuments the documents that each contain the metadata document, content document, and key
+     */
+    public void putAll( Iterable<Document> entryDocuments ) {
+        long start = System.nanoTime();
+        try {
+            database.putAll(entryDocuments);
+        } finally {
+            recordDuration(DurationMetric.DOCUMENT_STORE_WRITE_TIME, start);
+        }
     }
 
     /**
@@ -135,12 +190,59 @@ public class LocalDocumentStore implements DocumentStore {
      */
     public void replace( String key,
                          Document document ) {
-        database.replace(key, document, null);
+        long start = System.nanoTime();
+        try {
+            database.replace(key, document, null);
+        } finally {
+            recordDuration(DurationMetric.DOCUMENT_STORE_WRITE_TIME, start);
+        }
+    }
+
+    /**
+     * Replace the existing document at the given key with the document that is supplied, but only if the existing document still
+     * has the expected version. This method does nothing if there is not an existing document at the given key.
+     * 
+     * @param key the key or identifier for the document
+     * @param versionField the name of the field in the existing document that holds its version; may not be null
+     * @param expectedVersion the version that the existing document is expected to have
+     * @param document the new document that is to replace the existing document
+     * @return true if the document was replaced, or false if there is no document at the key or it has a different version
+     * @see SchematicDb#replaceIfVersion(String, String, long, Document, Document)
+     */
+    public boolean replaceIfVersion( String key,
+                                     String versionField,
+                                     long expectedVersion,
+                                     Document document ) {
+        long start = System.nanoTime();
+        try {
+            return database.replaceIfVersion(key, versionField, expectedVersion, document, null);
+        } finally {
+            recordDuration(DurationMetric.DOCUMENT_STORE_WRITE_TIME, start);
+        }
     }
 
     @Override
     public boolean remove( String key ) {
-        return database.remove(key) != null;
+        long start = System.nanoTime();
+        try {
+            return database.remove(key) != null;
+        } finally {
+            recordDuration(DurationMetric.DOCUMENT_STORE_WRITE_TIME, start);
+        }
+    }
+
+    /**
+     * Set the recorder of the durations of the reads and writes performed by this store.
+     * 
+     * @param durations the recorder; may be null if the durations are not to be recorded
+     */
+    public void setDurationRecorder( DurationRecorder durations ) {
+        this.durations = durations != null ? durations : DurationRecorder.NONE;
+    }
+
+    private void recordDuration( DurationMetric metric,
+                                 long start ) {
+        durations.recordDuration(metric, System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
 
     @Override
@@ -15,8 +15,10 @@
  */
 package org.modeshape.jcr.cache.document;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import org.modeshape.common.util.CheckArg;
@@ -26,14 +28,26 @@ import org.modeshape.jcr.cache.NodeKey;
 
 /**
  * An iterator that returns all of the keys for the nodes in the cache that are below the specified starting node.
+ * <p>
+ * Because each node has to be materialized to find its children, the iterator reads the documents of the next
+ * {@link #PREFETCH_SIZE} queued nodes from the store with one {@link WorkspaceCache#loadNodes(java.util.Collection) bulk read}
+ * rather than one read per node.
+ * </p>
  */
 public class NodeCacheIterator implements Iterator<NodeKey> {
 
+    /**
+     * The maximum number of queued nodes that are loaded from the store at once, ahead of when they are needed.
+     */
+    public static final int PREFETCH_SIZE = 100;
+
     private final Queue<NodeKey> keys = new LinkedList<NodeKey>();
     private final NodeCache cache;
+    private final WorkspaceCache workspaceCache;
     private final NodeFilter filter;
     private final NodeKey startingNode;
     private NodeKey nextNode;
+    private int prefetched;
 
     /**
      * Create a new iterator over the nodes in the supplied node cache that are at or below the supplied starting node.
@@ -60,6 +74,7 @@ public class NodeCacheIterator implements Iterator<NodeKey> {
         CheckArg.isNotNull(cache, "cache");
         CheckArg.isNotNull(startingNode, "startingNode");
         this.cache = cache;
+        this.workspaceCache = workspaceCacheFor(cache);
         this.startingNode = startingNode;
         this.keys.add(startingNode);
         this.filter = filter;
@@ -98,6 +113,11 @@ public class NodeCacheIterator implements Iterator<NodeKey> {
                 this.nextNode = null;
                 return;
             }
+            if (prefetched > 0) {
+                --prefetched;
+            } else {
+                prefetch(nextKey);
+            }
 
             // Find the next node ...
             CachedNode node = cache.getNode(nextKey);
@@ -120,6 +140,25 @@ public class NodeCacheIterator implements Iterator<NodeKey> {
         }
     }
 
+    private void prefetch( NodeKey nextKey ) {
+        if (workspaceCache == null) return;
+        List<NodeKey> batch = new ArrayList<NodeKey>(Math.min(keys.size() + 1, PREFETCH_SIZE));
+        batch.add(nextKey);
+        Iterator<NodeKey> iter = keys.iterator();
+        while (batch.size() < PREFETCH_SIZE && iter.hasNext()) {
+            batch.add(iter.next());
+        }
+        workspaceCache.loadNodes(batch);
+        prefetched = batch.size() - 1;
+    }
+
+    private static WorkspaceCache workspaceCacheFor( NodeCache cache ) {
+        NodeCache unwrapped = cache.unwrap();
+        if (unwrapped instanceof WorkspaceCache) return (WorkspaceCache)unwrapped;
+        if (unwrapped instanceof AbstractSessionCache) return ((AbstractSessionCache)unwrapped).workspaceCache();
+        return null;
+    }
+
     @Override
     public final void remove() {
         throw new UnsupportedOperationException();
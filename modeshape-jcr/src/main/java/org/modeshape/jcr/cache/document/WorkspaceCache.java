@@ -15,7 +15,10 @@
  */
 package org.modeshape.jcr.cache.document;
 
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
@@ -99,7 +102,8 @@ public class WorkspaceCache implements DocumentCache {
             this.systemChangeNotifier = new SystemChangeNotifier(systemWorkspace.getWorkspaceName());
             this.nonSystemChangeNotifier = new NonSystemChangeNotifier(systemWorkspace.getWorkspaceName());
             this.changeBus.registerInThread(this.systemChangeNotifier);
-            this.changeBus.register(this.nonSystemChangeNotifier);
+            // Use a thread of its own, so that slow JCR listeners in the shared threads don't delay the cache invalidation ...
+            this.changeBus.registerIsolated(this.nonSystemChangeNotifier);
         } else {
             // This IS the system workspace, so we have to listen synchronously for changes ...
             this.nonSystemChangeNotifier = null;
@@ -232,29 +236,59 @@ public class WorkspaceCache implements DocumentCache {
                 if (LOGGER.isTraceEnabled()) {
                     LOGGER.trace("Materialized document '{0}' in '{1}' workspace from store: {2}", key, workspaceName, doc);
                 }
-                // Create a new node and put into this cache ...
-                CachedNode newNode = new LazyCachedNode(key, doc);
-                try {
-                    Integer cacheTtlSeconds = translator().getCacheTtlSeconds(doc);
-                    if (cacheTtlSeconds != null && nodesByKey instanceof BasicCache) {
-                        node = ((BasicCache<NodeKey, CachedNode>)nodesByKey).putIfAbsent(key, newNode,
-                                                                                         cacheTtlSeconds.longValue(),
-                                                                                         TimeUnit.SECONDS);
-                    } else {
-                        node = nodesByKey.putIfAbsent(key, newNode);
-                    }
-                } catch (TimeoutException e) {
-                    node = null;
-                }
-                if (node == null) {
-                    // Either the put timed out or there was no previous entry, so just use our new CachedNode ...
-                    node = newNode;
-                }
+                node = cacheNode(key, doc);
             }
         }
         return node;
     }
 
+    /**
+     * Load into this cache the nodes with the supplied keys that are not yet cached, reading all of their documents from the
+     * {@link DocumentStore#getAll(Collection) store in one operation}. Keys of nodes that do not exist are ignored.
+     * 
+     * @param keys the keys of the nodes that are about to be used; may not be null
+     */
+    public void loadNodes( Collection<NodeKey> keys ) {
+        checkNotClosed();
+        Map<String, NodeKey> missing = new LinkedHashMap<>();
+        for (NodeKey key : keys) {
+            if (!nodesByKey.containsKey(key)) missing.put(key.toString(), key);
+        }
+        if (missing.size() < 2) {
+            // Not worth a bulk read; the nodes will be loaded when they are used ...
+            return;
+        }
+        for (Map.Entry<String, SchematicEntry> entry : documentStore.getAll(missing.keySet()).entrySet()) {
+            NodeKey key = missing.get(entry.getKey());
+            if (key == null) continue;
+            try {
+                cacheNode(key, entry.getValue().getContentAsDocument());
+            } catch (IllegalStateException e) {
+                LOGGER.debug("The document '{0}' was concurrently removed; not caching it.", key);
+            }
+        }
+    }
+
+    private CachedNode cacheNode( NodeKey key,
+                                  Document doc ) {
+        // Create a new node and put into this cache ...
+        CachedNode newNode = new LazyCachedNode(key, doc);
+        CachedNode node = null;
+        try {
+            Integer cacheTtlSeconds = translator().getCacheTtlSeconds(doc);
+            if (cacheTtlSeconds != null && nodesByKey instanceof BasicCache) {
+                node = ((BasicCache<NodeKey, CachedNode>)nodesByKey).putIfAbsent(key, newNode, cacheTtlSeconds.longValue(),
+                                                                                 TimeUnit.SECONDS);
+            } else {
+                node = nodesByKey.putIfAbsent(key, newNode);
+            }
+        } catch (TimeoutException e) {
+            node = null;
+        }
+        // Either the put timed out or there was no previous entry, so just use our new CachedNode ...
+        return node != null ? node : newNode;
+    }
+
     @Override
     public CachedNode getNode( ChildReference reference ) {
         checkNotClosed();
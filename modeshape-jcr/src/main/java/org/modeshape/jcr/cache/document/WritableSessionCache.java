@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -58,6 +59,7 @@ import org.modeshape.jcr.cache.ChildReferences;
 import org.modeshape.jcr.cache.DocumentAlreadyExistsException;
 import org.modeshape.jcr.cache.DocumentNotFoundException;
 import org.modeshape.jcr.cache.DocumentStoreException;
+import org.modeshape.jcr.cache.DocumentVersionConflictException;
 import org.modeshape.jcr.cache.LockFailureException;
 import org.modeshape.jcr.cache.MutableCachedNode;
 import org.modeshape.jcr.cache.NodeCache;
@@ -107,6 +109,9 @@ public class WritableSessionCache extends AbstractSessionCache {
     private static final SessionNode REMOVED = new SessionNode(REMOVED_KEY, false);
     private static final int MAX_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT = 4;
     private static final long PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT = 50L;
+    private static final int MAX_REPEAT_FOR_OPTIMISTIC_SAVE_CONFLICT = 8;
+    private static final long MIN_PAUSE_TIME_BEFORE_REPEAT_FOR_OPTIMISTIC_SAVE_CONFLICT = 2L;
+    private static final long MAX_PAUSE_TIME_BEFORE_REPEAT_FOR_OPTIMISTIC_SAVE_CONFLICT = 200L;
 
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private Map<NodeKey, SessionNode> changedNodes;
@@ -114,6 +119,9 @@ public class WritableSessionCache extends AbstractSessionCache {
     private LinkedHashSet<NodeKey> changedNodesInOrder;
     private Map<NodeKey, ReferrerChanges> referrerChangesForRemovedNodes;
     private final Transactions txns;
+    private final boolean optimisticSaves;
+    /** The version stamps of the persisted nodes at the time they were first changed by this session; used by optimistic saves */
+    private final Map<NodeKey, Long> readVersions;
 
     /**
      * Create a new SessionCache that can be used for making changes to the workspace.
@@ -125,11 +133,38 @@ public class WritableSessionCache extends AbstractSessionCache {
     public WritableSessionCache( ExecutionContext context,
                                  WorkspaceCache workspaceCache,
                                  SessionEnvironment sessionContext ) {
+        this(context, workspaceCache, sessionContext, false);
+    }
+
+    /**
+     * Create a new SessionCache that can be used for making changes to the workspace.
+     * <p>
+     * When saves are optimistic, the version stamp of each node's properties is recorded when the session first changes the
+     * node, and a save fails with a {@link DocumentVersionConflictException} if another session has since changed the
+     * properties of a node whose properties this session also changed. The changed nodes are not locked in the storage: each
+     * changed document is edited as a copy and then replaced only if its {@link DocumentTranslator#getRevision(Document)
+     * revision} is still the one that was read, so no other save can have changed the node between the check and the write.
+     * When another save wrote one of the documents first (or, for storage with optimistic locking, the write skew check rejects
+     * the commit), the save is repeated after a short, randomized pause using the latest persisted documents, with which the
+     * changes to child references are merged again.
+     * </p>
+     * 
+     * @param context the execution context; may not be null
+     * @param workspaceCache the (shared) workspace cache; may not be null
+     * @param sessionContext the context for the session; may not be null
+     * @param optimisticSaves true if saves should be optimistic, or false if the changed nodes should be locked up front
+     */
+    public WritableSessionCache( ExecutionContext context,
+                                 WorkspaceCache workspaceCache,
+                                 SessionEnvironment sessionContext,
+                                 boolean optimisticSaves ) {
         super(context, workspaceCache, sessionContext);
         this.changedNodes = new HashMap<NodeKey, SessionNode>();
         this.changedNodesInOrder = new LinkedHashSet<NodeKey>();
         this.referrerChangesForRemovedNodes = new HashMap<NodeKey, ReferrerChanges>();
         this.txns = sessionContext.getTransactions();
+        this.optimisticSaves = optimisticSaves;
+        this.readVersions = new HashMap<NodeKey, Long>();
     }
 
     protected final void assertInSession( SessionNode node ) {
@@ -178,6 +213,9 @@ public class WritableSessionCache extends AbstractSessionCache {
                     sessionNode = new SessionNode(key, false);
                     changedNodes.put(key, sessionNode);
                     changedNodesInOrder.add(key);
+                    if (optimisticSaves) {
+                        recordReadVersion(key);
+                    }
                 }
             } finally {
                 lock.unlock();
@@ -204,6 +242,7 @@ public class WritableSessionCache extends AbstractSessionCache {
             lock.lock();
             changedNodes.clear();
             changedNodesInOrder.clear();
+            readVersions.clear();
         } finally {
             lock.unlock();
         }
@@ -221,6 +260,7 @@ public class WritableSessionCache extends AbstractSessionCache {
                 NodeKey key = nodeToRemove.getKey();
                 changedNodes.remove(key);
                 changedNodesInOrder.remove(key);
+                readVersions.remove(key);
             }
         } finally {
             lock.unlock();
@@ -418,7 +458,7 @@ public class WritableSessionCache extends AbstractSessionCache {
 
             final int numNodes = this.changedNodes.size();
 
-            int repeat = txns.isCurrentlyInTransaction() ? 1 : MAX_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT;
+            int repeat = txns.isCurrentlyInTransaction() ? 1 : maxRepeat();
             while (--repeat >= 0) {
                 try {
                     // Start a ModeShape transaction (which may be a part of a larger JTA transaction) ...
@@ -449,7 +489,14 @@ public class WritableSessionCache extends AbstractSessionCache {
                         throw new TimeoutException(e.getMessage(), e);
                     }
                     --repeat;
-                    Thread.sleep(PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT);
+                    pauseBeforeRepeat(repeat);
+                    continue;
+                } catch (DocumentRevisionConflict e) {
+                    txn.rollback();
+                    if (repeat <= 0) {
+                        throw e.asVersionConflict();
+                    }
+                    pauseBeforeRepeat(repeat);
                     continue;
                 } catch (NotSupportedException err) {
                     // No nested transactions are supported ...
@@ -462,6 +509,11 @@ public class WritableSessionCache extends AbstractSessionCache {
                     throw new SystemFailureException(err);
                 } catch (RollbackException err) {
                     // Couldn't be committed, but the txn is already rolled back ...
+                    if (optimisticSaves && repeat > 0) {
+                        // The storage detected a conflicting write, so repeat using the latest persisted state ...
+                        pauseBeforeRepeat(repeat);
+                        continue;
+                    }
                     return;
                 } catch (HeuristicMixedException err) {
                     // Rollback has occurred ...
@@ -496,6 +548,83 @@ public class WritableSessionCache extends AbstractSessionCache {
         txns.updateCache(workspaceCache(), events, txn);
     }
 
+    private int maxRepeat() {
+        return optimisticSaves ? MAX_REPEAT_FOR_OPTIMISTIC_SAVE_CONFLICT : MAX_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT;
+    }
+
+    private void pauseBeforeRepeat( int remainingRepeats ) throws InterruptedException {
+        if (!optimisticSaves) {
+            Thread.sleep(PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT);
+            return;
+        }
+        // Back off exponentially with a random pause, so that conflicting savers don't repeat in lockstep ...
+        int attempt = Math.max(1, MAX_REPEAT_FOR_OPTIMISTIC_SAVE_CONFLICT - remainingRepeats);
+        long ceiling = Math.min(MAX_PAUSE_TIME_BEFORE_REPEAT_FOR_OPTIMISTIC_SAVE_CONFLICT,
+                                MIN_PAUSE_TIME_BEFORE_REPEAT_FOR_OPTIMISTIC_SAVE_CONFLICT << attempt);
+        Thread.sleep(MIN_PAUSE_TIME_BEFORE_REPEAT_FOR_OPTIMISTIC_SAVE_CONFLICT + ThreadLocalRandom.current().nextLong(ceiling));
+    }
+
+    @GuardedBy( "lock" )
+    private void recordReadVersion( NodeKey key ) {
+        WorkspaceCache workspaceCache = workspaceCache();
+        CachedNode persisted = workspaceCache.getNode(key);
+        if (persisted instanceof LazyCachedNode) {
+            Document doc = ((LazyCachedNode)persisted).document(workspaceCache);
+            readVersions.put(key, workspaceCache.translator().getVersion(doc));
+        }
+    }
+
+    /**
+     * Verify that the properties of the persisted node have not been changed by another session since this session first changed
+     * the node. Changes to only the child references never conflict, since they are merged with the latest persisted children.
+     * 
+     * @param key the key of the node; may not be null
+     * @param node the session's changes to the node; may not be null
+     * @param persistedVersion the version stamp of the persisted node's properties
+     * @throws DocumentVersionConflictException if the properties were changed by both sessions
+     */
+    @GuardedBy( "lock" )
+    private void checkReadVersion( NodeKey key,
+                                   SessionNode node,
+                                   long persistedVersion ) {
+        Long readVersion = readVersions.get(key);
+        if (readVersion == null || readVersion.longValue() == persistedVersion) {
+            return;
+        }
+        MixinChanges mixinChanges = node.mixinChanges(false);
+        if (node.changedProperties().isEmpty() && node.removedProperties().isEmpty()
+            && (mixinChanges == null || mixinChanges.isEmpty())) {
+            return;
+        }
+        throw new DocumentVersionConflictException(key.toString(), readVersion.longValue(), persistedVersion);
+    }
+
+    /**
+     * Signals that an optimistic save could not write a node's document because another save wrote the document after it was
+     * read. The save is repeated using the latest persisted documents, and fails only if it cannot be repeated.
+     */
+    private static final class DocumentRevisionConflict extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+        private final long readRevision;
+        private final long currentRevision;
+
+        protected DocumentRevisionConflict( String key,
+                                            long readRevision,
+                                            long currentRevision ) {
+            super("Expected revision " + readRevision + " of '" + key + "' but found revision " + currentRevision);
+            this.key = key;
+            this.readRevision = readRevision;
+            this.currentRevision = currentRevision;
+        }
+
+        protected DocumentVersionConflictException asVersionConflict() {
+            return new DocumentVersionConflictException(key, readRevision, currentRevision);
+        }
+    }
+
     private void runPreSaveBeforeTransaction( PreSave preSaveOperation ) throws Exception {
         if (preSaveOperation != null) {
             SaveContext saveContext = new BasicSaveContext(context());
@@ -529,6 +658,7 @@ public class WritableSessionCache extends AbstractSessionCache {
         this.changedNodes = new HashMap<NodeKey, SessionNode>();
         this.referrerChangesForRemovedNodes.clear();
         this.changedNodesInOrder.clear();
+        this.readVersions.clear();
         this.replacedNodes = null;
         this.checkForTransaction();
     }
@@ -538,6 +668,7 @@ public class WritableSessionCache extends AbstractSessionCache {
         for (NodeKey savedNode : savedNodesInOrder) {
             this.changedNodes.remove(savedNode);
             this.changedNodesInOrder.remove(savedNode);
+            this.readVersions.remove(savedNode);
             if (this.replacedNodes != null) {
                 this.replacedNodes.remove(savedNode);
             }
@@ -566,7 +697,7 @@ public class WritableSessionCache extends AbstractSessionCache {
 
             final int numNodes = this.changedNodes.size() + that.changedNodes.size();
 
-            int repeat = txns.isCurrentlyInTransaction() ? 1 : MAX_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT;
+            int repeat = txns.isCurrentlyInTransaction() ? 1 : maxRepeat();
             while (--repeat >= 0) {
                 try {
                     // Start a ModeShape transaction (which may be a part of a larger JTA transaction) ...
@@ -590,7 +721,12 @@ public class WritableSessionCache extends AbstractSessionCache {
                         txn.rollback();
                         if (repeat <= 0) throw new TimeoutException(e.getMessage(), e);
                         --repeat;
-                        Thread.sleep(PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT);
+                        pauseBeforeRepeat(repeat);
+                        continue;
+                    } catch (DocumentRevisionConflict e) {
+                        txn.rollback();
+                        if (repeat <= 0) throw e.asVersionConflict();
+                        pauseBeforeRepeat(repeat);
                         continue;
                     } catch (IllegalStateException err) {
                         // Not associated with a txn??
@@ -628,6 +764,11 @@ public class WritableSessionCache extends AbstractSessionCache {
                     throw new SystemFailureException(err);
                 } catch (RollbackException err) {
                     // Couldn't be committed, but the txn is already rolled back ...
+                    if (optimisticSaves && repeat > 0) {
+                        // The storage detected a conflicting write, so repeat using the latest persisted state ...
+                        pauseBeforeRepeat(repeat);
+                        continue;
+                    }
                     return;
                 } catch (HeuristicMixedException err) {
                 } catch (HeuristicRollbackException err) {
@@ -717,7 +858,7 @@ public class WritableSessionCache extends AbstractSessionCache {
 
             final int numNodes = savedNodesInOrder.size() + that.changedNodesInOrder.size();
 
-            int repeat = txns.isCurrentlyInTransaction() ? 1 : MAX_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT;
+            int repeat = txns.isCurrentlyInTransaction() ? 1 : maxRepeat();
             while (--repeat >= 0) {
                 try {
                     // Start a ModeShape transaction (which may be a part of a larger JTA transaction) ...
@@ -749,7 +890,12 @@ public class WritableSessionCache extends AbstractSessionCache {
                         txn.rollback();
                         if (repeat <= 0) throw new TimeoutException(e.getMessage(), e);
                         --repeat;
-                        Thread.sleep(PAUSE_TIME_BEFORE_REPEAT_FOR_LOCK_ACQUISITION_TIMEOUT);
+                        pauseBeforeRepeat(repeat);
+                        continue;
+                    } catch (DocumentRevisionConflict e) {
+                        txn.rollback();
+                        if (repeat <= 0) throw e.asVersionConflict();
+                        pauseBeforeRepeat(repeat);
                         continue;
                     } catch (IllegalStateException err) {
                         // Not associated with a txn??
@@ -782,6 +928,11 @@ public class WritableSessionCache extends AbstractSessionCache {
                     throw new SystemFailureException(err);
                 } catch (RollbackException err) {
                     // Couldn't be committed, but the txn is already rolled back ...
+                    if (optimisticSaves && repeat > 0) {
+                        // The storage detected a conflicting write, so repeat using the latest persisted state ...
+                        pauseBeforeRepeat(repeat);
+                        continue;
+                    }
                     return;
                 } catch (HeuristicMixedException err) {
                 } catch (HeuristicRollbackException err) {
@@ -897,6 +1048,8 @@ public class WritableSessionCache extends AbstractSessionCache {
                 Path newPath = sessionPaths.getPath(node);
                 NodeKey newParent = node.newParent();
                 EditableDocument doc = null;
+                // The revision of the copied document when saves are optimistic, or -1 if the document is changed in place ...
+                long readRevision = -1L;
                 ChangedAdditionalParents additionalParents = node.additionalParents();
 
                 if (node.isNew()) {
@@ -916,7 +1069,18 @@ public class WritableSessionCache extends AbstractSessionCache {
                         // just moments before we got our transaction to save ...
                         throw new DocumentNotFoundException(keyStr);
                     }
-                    doc = nodeEntry.editDocumentContent();
+                    if (optimisticSaves && !isExternal) {
+                        // Change a copy of the document, which is written below only if no other save has written it since ...
+                        Document persistedDoc = nodeEntry.getContentAsDocument();
+                        checkReadVersion(key, node, translator.getVersion(persistedDoc));
+                        readRevision = translator.getRevision(persistedDoc);
+                        doc = Schematic.newDocument(persistedDoc.clone());
+                    } else {
+                        doc = nodeEntry.editDocumentContent();
+                        if (optimisticSaves) {
+                            checkReadVersion(key, node, translator.getVersion(doc));
+                        }
+                    }
                     if (newParent != null) {
                         persisted = persistedCache.getNode(key);
                         // The node has moved (either within the same parent or to another parent) ...
@@ -1027,6 +1191,14 @@ public class WritableSessionCache extends AbstractSessionCache {
                     }
                 }
 
+                if (!node.isNew()) {
+                    // Stamp the new version of the properties, which optimistic saves use to detect conflicting changes ...
+                    MixinChanges mixinChanges = node.mixinChanges(false);
+                    if (hasPropertyChanges || (mixinChanges != null && !mixinChanges.isEmpty())) {
+                        translator.incrementVersion(doc);
+                    }
+                }
+
                 // Save the change to the child references. Note that we only need to generate events for renames;
                 // moves (to the same or another parent), removes, and inserts are all recorded as changes in the
                 // child node, and events are generated handled when we process
@@ -1173,6 +1345,17 @@ public class WritableSessionCache extends AbstractSessionCache {
                     if (externalNodeChanged) {
                         // in the case of external nodes, only if there are changes should the update be called
                         documentStore.updateDocument(keyStr, doc, node);
+                    } else if (readRevision >= 0L) {
+                        translator.incrementRevision(doc);
+                        if (!documentStore.localStore().replaceIfVersion(keyStr, DocumentConstants.REVISION, readRevision, doc)) {
+                            // Another save wrote the document after it was read, so this save has to be repeated ...
+                            SchematicEntry current = documentStore.get(keyStr);
+                            if (current == null) {
+                                throw new DocumentNotFoundException(keyStr);
+                            }
+                            long currentRevision = translator.getRevision(current.getContentAsDocument());
+                            throw new DocumentRevisionConflict(keyStr, readRevision, currentRevision);
+                        }
                     }
                 }
 
@@ -1277,7 +1460,10 @@ public class WritableSessionCache extends AbstractSessionCache {
     private WorkspaceCache lockNodes( Iterable<NodeKey> changedNodesInOrder ) {
         DocumentStore documentStore = workspaceCache().documentStore();
 
-        if (documentStore.updatesRequirePreparing()) {
+        if (optimisticSaves) {
+            // Optimistic saves don't lock the nodes, but write each document only if no other save has written it since ...
+            LOGGER.debug("Saves are optimistic, no nodes will be locked");
+        } else if (documentStore.updatesRequirePreparing()) {
             if (LOGGER.isDebugEnabled()) {
                 if (!this.changedNodes.isEmpty()) {
                     LOGGER.debug("Attempting to lock nodes in Infinispan: {0}", changedNodes.keySet());
@@ -18,6 +18,8 @@ package org.modeshape.jcr.clustering;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
@@ -25,6 +27,7 @@ import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +36,8 @@ import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 import javax.jcr.RepositoryException;
 import org.jgroups.Address;
 import org.jgroups.Channel;
@@ -75,6 +80,32 @@ public abstract class ClusteringService {
      */
     private static final String GLOBAL_LOCK = "modeshape-global-lock";
 
+    /**
+     * The first byte of every message which holds a batch of payloads. Messages which are a single Java-serialized payload start
+     * with the (different) first byte of the serialization stream magic number.
+     */
+    private static final byte BATCH_FORMAT_VERSION = 1;
+
+    /**
+     * The flag set on a batch whose entries are compressed.
+     */
+    private static final byte COMPRESSED_FLAG = 1;
+
+    /**
+     * The minimum size of a batch's entries for them to be compressed.
+     */
+    private static final int COMPRESSION_THRESHOLD_IN_BYTES = 1024;
+
+    /**
+     * The kind of a batch entry whose payload is written by the {@link PayloadCodec} of its type.
+     */
+    private static final byte ENCODED_ENTRY = 1;
+
+    /**
+     * The kind of a batch entry whose payload is written using Java serialization.
+     */
+    private static final byte SERIALIZED_ENTRY = 2;
+
     /**
      * The listener for channel changes.
      */
@@ -261,15 +292,26 @@ public abstract class ClusteringService {
      * @return {@code true} if the send operation was successful, {@code false} otherwise
      */
     public boolean sendMessage( Serializable payload ) {
+        return sendMessages(Collections.singletonList(payload));
+    }
+
+    /**
+     * Sends several messages across a cluster, packed into a single cluster message. The messages are received in the same order
+     * by the consumers of each member.
+     * 
+     * @param payloads the main bodies of the messages; must not be {@code null} or contain {@code null} values
+     * @return {@code true} if the send operation was successful, {@code false} otherwise
+     */
+    public boolean sendMessages( List<? extends Serializable> payloads ) {
         if (!isOpen() || !multipleMembersInCluster()) {
             return false;
         }
 
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Sending payload {0} in cluster {1} ", payload, clusterName());
+            LOGGER.debug("Sending payloads {0} in cluster {1} ", payloads, clusterName());
         }
         try {
-            byte[] messageData = toByteArray(payload);
+            byte[] messageData = toByteArray(payloads);
             Message jgMessage = new Message(null, null, messageData);
             channel.send(jgMessage);
             return true;
@@ -308,14 +350,120 @@ public abstract class ClusteringService {
         return clusteringService;
     }
 
-    private byte[] toByteArray( Object payload ) throws IOException {
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-        try (ObjectOutputStream stream = new ObjectOutputStream(output)) {
-            stream.writeObject(payload);
+    private byte[] toByteArray( List<? extends Serializable> payloads ) throws IOException {
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        DataOutputStream entriesOutput = new DataOutputStream(entries);
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        for (Serializable payload : payloads) {
+            entry.reset();
+            MessageConsumer<Serializable> encodingConsumer = encodingConsumerFor(payload);
+            if (encodingConsumer != null) {
+                DataOutputStream entryOutput = new DataOutputStream(entry);
+                encodingConsumer.getPayloadCodec().write(payload, entryOutput);
+                entryOutput.flush();
+                entriesOutput.writeByte(ENCODED_ENTRY);
+                entriesOutput.writeUTF(encodingConsumer.getPayloadType().getName());
+            } else {
+                try (ObjectOutputStream stream = new ObjectOutputStream(entry)) {
+                    stream.writeObject(payload);
+                }
+                entriesOutput.writeByte(SERIALIZED_ENTRY);
+            }
+            entriesOutput.writeInt(entry.size());
+            entry.writeTo(entriesOutput);
+        }
+        entriesOutput.flush();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(entries.size() + 2);
+        output.write(BATCH_FORMAT_VERSION);
+        if (entries.size() >= COMPRESSION_THRESHOLD_IN_BYTES) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(entries.size() / 2);
+            try (DeflaterOutputStream stream = new DeflaterOutputStream(compressed)) {
+                entries.writeTo(stream);
+            }
+            if (compressed.size() < entries.size()) {
+                output.write(COMPRESSED_FLAG);
+                compressed.writeTo(output);
+                return output.toByteArray();
+            }
         }
+        output.write(0);
+        entries.writeTo(output);
         return output.toByteArray();
     }
 
+    private MessageConsumer<Serializable> encodingConsumerFor( Serializable payload ) {
+        for (MessageConsumer<Serializable> consumer : consumers) {
+            if (consumer.getPayloadCodec() != null && consumer.getPayloadType().isInstance(payload)) {
+                return consumer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read the entries of a batch message and pass each payload to the interested consumers. Encoded payloads are only decoded
+     * when at least one consumer of their type {@link MessageConsumer#isConsuming() needs} them.
+     * 
+     * @param data the message data; never null
+     * @throws IOException if the message cannot be read
+     * @throws ClassNotFoundException if a serialized payload's class cannot be found
+     */
+    protected void consumeBatch( byte[] data ) throws IOException, ClassNotFoundException {
+        if (data[0] != BATCH_FORMAT_VERSION) {
+            throw new IOException("Unknown message format: " + data[0]);
+        }
+        InputStream entries = new ByteArrayInputStream(data, 2, data.length - 2);
+        if ((data[1] & COMPRESSED_FLAG) != 0) {
+            entries = new InflaterInputStream(entries);
+        }
+        try (DataInputStream input = new DataInputStream(entries)) {
+            List<MessageConsumer<Serializable>> interested = new ArrayList<>();
+            int kind;
+            while ((kind = input.read()) != -1) {
+                if (kind == ENCODED_ENTRY) {
+                    String payloadTypeName = input.readUTF();
+                    byte[] entry = new byte[input.readInt()];
+                    input.readFully(entry);
+                    interested.clear();
+                    for (MessageConsumer<Serializable> consumer : consumers) {
+                        if (consumer.getPayloadCodec() != null && consumer.getPayloadType().getName().equals(payloadTypeName)
+                            && consumer.isConsuming()) {
+                            interested.add(consumer);
+                        }
+                    }
+                    if (interested.isEmpty()) {
+                        LOGGER.trace("Cluster {0} skipped a payload of type {1} with no interested consumers", clusterName(),
+                                     payloadTypeName);
+                        continue;
+                    }
+                    PayloadCodec<Serializable> codec = interested.get(0).getPayloadCodec();
+                    Serializable payload = codec.read(new DataInputStream(new ByteArrayInputStream(entry)));
+                    consume(payload, interested);
+                } else if (kind == SERIALIZED_ENTRY) {
+                    byte[] entry = new byte[input.readInt()];
+                    input.readFully(entry);
+                    Serializable payload = fromByteArray(entry, getClass().getClassLoader());
+                    consume(payload, consumers);
+                } else {
+                    throw new IOException("Unknown message entry kind: " + kind);
+                }
+            }
+        }
+    }
+
+    private void consume( Serializable payload,
+                          Iterable<MessageConsumer<Serializable>> candidates ) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Cluster {0} received payload {1}", clusterName(), payload);
+        }
+        for (MessageConsumer<Serializable> consumer : candidates) {
+            if (consumer.getPayloadType().isAssignableFrom(payload.getClass())) {
+                consumer.consume(payload);
+            }
+        }
+    }
+
     protected Serializable fromByteArray( byte[] data,
                                           ClassLoader classLoader ) throws IOException, ClassNotFoundException {
         if (classLoader == null) {
@@ -344,16 +492,12 @@ public abstract class ClusteringService {
         @Override
         public void receive( final org.jgroups.Message message ) {
             try {
-                Serializable payload = fromByteArray(message.getBuffer(), getClass().getClassLoader());
-
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Cluster {0} received payload {1}", clusterName(), payload);
-                }
-
-                for (MessageConsumer<Serializable> consumer : consumers) {
-                    if (consumer.getPayloadType().isAssignableFrom(payload.getClass())) {
-                        consumer.consume(payload);
-                    }
+                byte[] data = message.getBuffer();
+                if (data[0] == BATCH_FORMAT_VERSION) {
+                    consumeBatch(data);
+                } else {
+                    // a single serialized payload ...
+                    consume(fromByteArray(data, getClass().getClassLoader()), consumers);
                 }
             } catch (Exception e) {
                 // Something went wrong here (this should not happen) ...
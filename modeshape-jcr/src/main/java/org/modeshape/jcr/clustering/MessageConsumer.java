@@ -29,9 +29,16 @@ import java.io.Serializable;
 public abstract class MessageConsumer<T extends Serializable> {
 
     private final Class<T> payloadType;
+    private final PayloadCodec<T> payloadCodec;
 
     protected MessageConsumer( Class<T> payloadType ) {
+        this(payloadType, null);
+    }
+
+    protected MessageConsumer( Class<T> payloadType,
+                               PayloadCodec<T> payloadCodec ) {
         this.payloadType = payloadType;
+        this.payloadCodec = payloadCodec;
     }
 
     /**
@@ -43,6 +50,25 @@ public abstract class MessageConsumer<T extends Serializable> {
         return payloadType;
     }
 
+    /**
+     * Returns the codec used to write and read the payloads of this consumer's type, instead of Java serialization.
+     *
+     * @return the codec, or {@code null} if the payloads should be serialized
+     */
+    public PayloadCodec<T> getPayloadCodec() {
+        return payloadCodec;
+    }
+
+    /**
+     * Checks whether this consumer currently needs the payloads it receives. Payloads are not decoded for consumers that do not
+     * need them.
+     *
+     * @return {@code true} if the payloads should be decoded and {@link #consume(Serializable) consumed}, {@code false} otherwise
+     */
+    public boolean isConsuming() {
+        return true;
+    }
+
     /**
      * Consumes a payload of the given type.
      *
@@ -0,0 +1,50 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.clustering;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * A codec which writes payloads of a given type in a compact binary form, as an alternative to Java serialization, when they
+ * are sent across the cluster.
+ * 
+ * @param <T> the payload type
+ * @see MessageConsumer#getPayloadCodec()
+ */
+public interface PayloadCodec<T extends Serializable> {
+
+    /**
+     * Write the supplied payload.
+     * 
+     * @param payload the payload; never null
+     * @param output the output to which the payload is to be written; never null
+     * @throws IOException if there is a problem writing to the output
+     */
+    void write( T payload,
+                DataOutput output ) throws IOException;
+
+    /**
+     * Read a payload which was previously {@link #write(Serializable, DataOutput) written}.
+     * 
+     * @param input the input from which the payload is to be read; never null
+     * @return the payload; never null
+     * @throws IOException if there is a problem reading from the input
+     */
+    T read( DataInput input ) throws IOException;
+}
@@ -18,6 +18,7 @@ package org.modeshape.jcr.federation;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -46,6 +47,7 @@ public class ConnectorChangeSetImpl implements ConnectorChangeSet {
     private final String repositoryKey;
     private final ChangeBus bus;
     private final Map<String, RecordingChanges> changesByWorkspace = new HashMap<String, RecordingChanges>();
+    private final Set<String> changedDocumentIds = new HashSet<String>();
     private final DateTimeFactory timeFactory;
     private final String journalId;
     private final String sessionId;
@@ -97,6 +99,7 @@ public class ConnectorChangeSetImpl implements ConnectorChangeSet {
                              Set<Name> mixinTypes,
                              Map<Name, Property> properties,
                              boolean queryable ) {
+        documentsChanged(docId, parentDocId);
         NodeKey key = nodeKey(docId);
         NodeKey parentKey = nodeKey(parentDocId);
         Path externalPath = pathMappings.getPathFactory().create(path);
@@ -113,6 +116,7 @@ public class ConnectorChangeSetImpl implements ConnectorChangeSet {
                              Name primaryType,
                              Set<Name> mixinTypes,
                              boolean queryable ) {
+        documentsChanged(docId, parentDocId);
         NodeKey key = nodeKey(docId);
         NodeKey parentKey = nodeKey(parentDocId);
         Path externalPath = pathMappings.getPathFactory().create(path);
@@ -134,6 +138,7 @@ public class ConnectorChangeSetImpl implements ConnectorChangeSet {
                            String newPath,
                            String oldPath,
                            boolean queryable ) {
+        documentsChanged(docId, newParentDocId, oldParentDocId);
         NodeKey key = nodeKey(docId);
         NodeKey newParentKey = nodeKey(newParentDocId);
         NodeKey oldParentKey = nodeKey(oldParentDocId);
@@ -251,6 +256,7 @@ public class ConnectorChangeSetImpl implements ConnectorChangeSet {
                                String oldNameSegment,
                                String reorderedBeforeNameSegment,
                                boolean queryable ) {
+        documentsChanged(docId, parentDocId);
         NodeKey key = nodeKey(docId);
         NodeKey parentKey = nodeKey(parentDocId);
         PathFactory pathFactory = pathMappings.getPathFactory();
@@ -273,6 +279,7 @@ public class ConnectorChangeSetImpl implements ConnectorChangeSet {
                                String nodePath,
                                Property property,
                                boolean queryable ) {
+        documentsChanged(docId);
         NodeKey key = nodeKey(docId);
         Path externalPath = pathMappings.getPathFactory().create(nodePath);
         // This external path in the connector may be projected into *multiple* nodes in the same or different workspaces ...
@@ -288,6 +295,7 @@ public class ConnectorChangeSetImpl implements ConnectorChangeSet {
                                  String nodePath,
                                  Property property,
                                  boolean queryable ) {
+        documentsChanged(docId);
         NodeKey key = nodeKey(docId);
         Path externalPath = pathMappings.getPathFactory().create(nodePath);
         // This external path in the connector may be projected into *multiple* nodes in the same or different workspaces ...
@@ -304,6 +312,7 @@ public class ConnectorChangeSetImpl implements ConnectorChangeSet {
                                  Property oldProperty,
                                  Property newProperty,
                                  boolean queryable ) {
+        documentsChanged(docId);
         NodeKey key = nodeKey(docId);
         Path externalPath = pathMappings.getPathFactory().create(nodePath);
         // This external path in the connector may be projected into *multiple* nodes in the same or different workspaces ...
@@ -315,6 +324,10 @@ public class ConnectorChangeSetImpl implements ConnectorChangeSet {
 
     @Override
     public void publish( Map<String, String> data ) {
+        // Make sure the changed documents are no longer served from the connector's document cache ...
+        connectors.externalDocumentsChanged(connectorSourceName, changedDocumentIds);
+        changedDocumentIds.clear();
+
         DateTime now = timeFactory.create();
         if (data == null) data = Collections.emptyMap();
         // Freeze and then notify the bus of each change set of a given workspace ...
@@ -325,6 +338,12 @@ public class ConnectorChangeSetImpl implements ConnectorChangeSet {
         changesByWorkspace.clear();
     }
 
+    private void documentsChanged( String... documentIds ) {
+        for (String documentId : documentIds) {
+            if (documentId != null) changedDocumentIds.add(documentId);
+        }
+    }
+
     private NodeKey nodeKey( String documentId ) {
         return FederatedDocumentStore.documentIdToNodeKey(connectorSourceName, documentId);
     }
@@ -0,0 +1,324 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.federation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.infinispan.schematic.document.Document;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.spi.federation.ConnectorException;
+
+/**
+ * A cache of the documents returned by a single {@link org.modeshape.jcr.spi.federation.Connector}, shared by all sessions and
+ * workspaces of a repository. The cache holds at most a fixed number of documents (evicting the least-recently used ones first),
+ * and each document expires a fixed amount of time after it was loaded.
+ * <p>
+ * Concurrent requests for the same missing document are coalesced, so that only one of them actually calls the connector and the
+ * others wait for and share its result. When a document has expired, the first request reloads it while all concurrent requests
+ * are immediately given the expired document, so that a burst of requests never waits on (or overloads) the external system.
+ * </p>
+ * <p>
+ * The cache stores the documents exactly as they are returned by the connector, so callers must not modify them.
+ * </p>
+ */
+@ThreadSafe
+public class ConnectorDocumentCache {
+
+    /**
+     * The component that loads a document from the connector.
+     */
+    public static interface Loader {
+        /**
+         * Load the document with the given identifier.
+         * 
+         * @param id the identifier of the document; never null
+         * @return the document, or null if there is no such document
+         */
+        Document load( String id );
+
+        /**
+         * Load the documents with the given identifiers.
+         * 
+         * @param ids the identifiers of the documents; never null
+         * @return the documents that exist, keyed by their identifiers; never null
+         */
+        Map<String, Document> loadAll( Collection<String> ids );
+    }
+
+    private final int maxSize;
+    private final long ttlInNanos;
+    private final ConcurrentMap<String, FutureTask<Document>> loading = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    @GuardedBy( "entries" )
+    private final LinkedHashMap<String, CachedDocument> entries;
+
+    /**
+     * Create a new cache.
+     * 
+     * @param maxSize the maximum number of documents in the cache; must be positive
+     * @param ttl the time after which each document expires, or a negative number if documents never expire
+     * @param unit the unit of the time; may not be null
+     */
+    public ConnectorDocumentCache( final int maxSize,
+                                   long ttl,
+                                   TimeUnit unit ) {
+        assert maxSize > 0;
+        this.maxSize = maxSize;
+        this.ttlInNanos = ttl < 0 ? -1L : unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<String, CachedDocument>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, CachedDocument> eldest ) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the maximum number of documents in this cache.
+     * 
+     * @return the maximum size; always positive
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get the document with the given identifier, using the supplied loader if the document is not in the cache or has expired.
+     * 
+     * @param id the identifier of the document; may not be null
+     * @param loader the component that loads the document from the connector; may not be null
+     * @return the document, or null if there is no such document
+     */
+    public Document get( final String id,
+                         final Loader loader ) {
+        CachedDocument cached = lookup(id);
+        if (cached != null && !cached.isExpired(now())) return cached.document;
+
+        FutureTask<Document> task = new FutureTask<>(new Callable<Document>() {
+            @Override
+            public Document call() {
+                return loader.load(id);
+            }
+        });
+        FutureTask<Document> existing = loading.putIfAbsent(id, task);
+        if (existing != null) {
+            // Another thread is already loading the document, so return the expired document or wait for the new one ...
+            return cached != null ? cached.document : await(existing);
+        }
+        try {
+            long invalidationsBeforeLoad = invalidations.get();
+            task.run();
+            Document document = await(task);
+            if (document != null) {
+                put(id, document, invalidationsBeforeLoad);
+            } else if (cached != null) {
+                invalidate(id);
+            }
+            return document;
+        } catch (RuntimeException e) {
+            if (cached != null) invalidate(id);
+            throw e;
+        } finally {
+            loading.remove(id, task);
+        }
+    }
+
+    /**
+     * Get the documents with the given identifiers, using the supplied loader to load (in one call) all of the documents that are
+     * not in the cache or have expired.
+     * 
+     * @param ids the identifiers of the documents; may not be null
+     * @param loader the component that loads the documents from the connector; may not be null
+     * @return the documents that exist, keyed by their identifiers; never null
+     */
+    public Map<String, Document> getAll( Collection<String> ids,
+                                         Loader loader ) {
+        Map<String, Document> result = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        long now = now();
+        synchronized (entries) {
+            for (String id : ids) {
+                CachedDocument cached = entries.get(id);
+                if (cached != null && !cached.isExpired(now)) {
+                    result.put(id, cached.document);
+                } else {
+                    missing.add(id);
+                }
+            }
+        }
+        if (missing.isEmpty()) return result;
+
+        long invalidationsBeforeLoad = invalidations.get();
+        Map<String, Document> loaded = loader.loadAll(missing);
+        CachedDocument[] toCache = new CachedDocument[missing.size()];
+        long expires = expirationTime();
+        int i = 0;
+        for (String id : missing) {
+            Document document = loaded.get(id);
+            if (document != null) {
+                result.put(id, document);
+                toCache[i] = new CachedDocument(document, expires);
+            }
+            ++i;
+        }
+        synchronized (entries) {
+            // Don't cache the documents if any document was invalidated while they were being loaded ...
+            if (invalidations.get() == invalidationsBeforeLoad) {
+                i = 0;
+                for (String id : missing) {
+                    if (toCache[i] != null) entries.put(id, toCache[i]);
+                    ++i;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remove from the cache the document with the given identifier. Any load of the document that is in progress will not be
+     * cached.
+     * 
+     * @param id the identifier of the document; may not be null
+     */
+    public void invalidate( String id ) {
+        invalidations.incrementAndGet();
+        synchronized (entries) {
+            entries.remove(id);
+        }
+    }
+
+    /**
+     * Remove from the cache the documents with the given identifiers. Any load of a document that is in progress will not be
+     * cached.
+     * 
+     * @param ids the identifiers of the documents; may not be null
+     */
+    public void invalidateAll( Collection<String> ids ) {
+        invalidations.incrementAndGet();
+        synchronized (entries) {
+            for (String id : ids) {
+                entries.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Remove all of the documents from the cache.
+     */
+    public void clear() {
+        invalidations.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Remove all of the expired documents from the cache.
+     */
+    public void evictExpired() {
+        long now = now();
+        synchronized (entries) {
+            for (Iterator<CachedDocument> iter = entries.values().iterator(); iter.hasNext();) {
+                if (iter.next().isExpired(now)) iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Get the number of documents in the cache, including those that have expired but have not yet been evicted.
+     * 
+     * @return the number of documents
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    protected long now() {
+        return System.nanoTime();
+    }
+
+    private CachedDocument lookup( String id ) {
+        synchronized (entries) {
+            return entries.get(id);
+        }
+    }
+
+    private void put( String id,
+                      Document document,
+                      long invalidationsBeforeLoad ) {
+        CachedDocument cached = new CachedDocument(document, expirationTime());
+        synchronized (entries) {
+            // Don't cache the document if it (or any other document) was invalidated while it was being loaded ...
+            if (invalidations.get() == invalidationsBeforeLoad) entries.put(id, cached);
+        }
+    }
+
+    private long expirationTime() {
+        return ttlInNanos < 0 ? Long.MAX_VALUE : now() + ttlInNanos;
+    }
+
+    private static Document await( FutureTask<Document> task ) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    // Keep waiting, since the other thread will finish loading the document ...
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if (cause instanceof Error) throw (Error)cause;
+            throw new ConnectorException(cause);
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class CachedDocument {
+        protected final Document document;
+        private final long expires;
+
+        protected CachedDocument( Document document,
+                                  long expires ) {
+            this.document = document;
+            this.expires = expires;
+        }
+
+        protected boolean isExpired( long now ) {
+            return expires != Long.MAX_VALUE && now - expires > 0;
+        }
+    }
+}
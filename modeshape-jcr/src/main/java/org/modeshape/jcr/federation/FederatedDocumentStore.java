@@ -126,6 +126,7 @@ public class FederatedDocumentStore implements DocumentStore {
             checkConnectorIsWritable(connector);
             EditableDocument editableDocument = replaceNodeKeysWithDocumentIds(document);
             connector.storeDocument(editableDocument);
+            invalidateCachedDocument(connector, documentIdFromNodeKey(key));
         }
         return null;
     }
@@ -146,6 +147,7 @@ public class FederatedDocumentStore implements DocumentStore {
                 DocumentChanges documentChanges = createDocumentChanges(nodeChanges, connector.getSourceName(), editableDocument,
                                                                         documentId);
                 connector.updateDocument(documentChanges);
+                invalidateCachedDocument(connector, documentId);
             }
         }
     }
@@ -259,31 +261,105 @@ public class FederatedDocumentStore implements DocumentStore {
             } else {
                 //interpret the key as a regular node id
                 String docId = documentIdFromNodeKey(key);
-                document = connector.getDocumentById(docId);
+                document = documentById(connector, docId);
             }
             if (document != null) {
-                // clone the document, so we don't alter the original
-                EditableDocument editableDocument = replaceConnectorIdsWithNodeKeys(document, connector.getSourceName());
-                editableDocument = updateCachingTtl(connector, editableDocument);
-                editableDocument = updateQueryable(connector, editableDocument);
-
-                // Extract any embedded documents ...
-                Object removedContainer = editableDocument.remove(DocumentTranslator.EMBEDDED_DOCUMENTS);
-                if (removedContainer instanceof EditableDocument) {
-                    EditableDocument embeddedDocs = (EditableDocument)removedContainer;
-                    for (Document.Field field : embeddedDocs.fields()) {
-                        String id = field.getName();
-                        Document doc = field.getValueAsDocument();
-                        // Place the embedded document in the local value store ...
-                        if (doc != null) localStore().put(id, doc);
-                    }
-                }
-                return new FederatedSchematicEntry(editableDocument);
+                return entryFor(connector, document);
             }
         }
         return null;
     }
 
+    @Override
+    public Map<String, SchematicEntry> getAll( Collection<String> keys ) {
+        Map<String, SchematicEntry> result = new HashMap<String, SchematicEntry>();
+        List<String> localKeys = new ArrayList<String>();
+        Map<Connector, Map<String, String>> keysByDocumentIdByConnector = new HashMap<Connector, Map<String, String>>();
+        for (String key : keys) {
+            if (isLocalSource(key)) {
+                localKeys.add(key);
+                continue;
+            }
+            Connector connector = connectors.getConnectorForSourceKey(sourceKey(key));
+            if (connector == null) continue;
+            if (connector instanceof Pageable && PageKey.isValidFormat(key)) {
+                // pages are always read individually ...
+                SchematicEntry entry = get(key);
+                if (entry != null) result.put(key, entry);
+                continue;
+            }
+            Map<String, String> keysByDocumentId = keysByDocumentIdByConnector.get(connector);
+            if (keysByDocumentId == null) {
+                keysByDocumentId = new LinkedHashMap<String, String>();
+                keysByDocumentIdByConnector.put(connector, keysByDocumentId);
+            }
+            keysByDocumentId.put(documentIdFromNodeKey(key), key);
+        }
+        if (!localKeys.isEmpty()) {
+            result.putAll(localStore().getAll(localKeys));
+        }
+        for (Map.Entry<Connector, Map<String, String>> entry : keysByDocumentIdByConnector.entrySet()) {
+            Connector connector = entry.getKey();
+            Map<String, String> keysByDocumentId = entry.getValue();
+            Map<String, Document> documentsById = documentsById(connector, keysByDocumentId.keySet());
+            for (Map.Entry<String, Document> document : documentsById.entrySet()) {
+                String key = keysByDocumentId.get(document.getKey());
+                if (key != null && document.getValue() != null) {
+                    result.put(key, entryFor(connector, document.getValue()));
+                }
+            }
+        }
+        return result;
+    }
+
+    private Document documentById( Connector connector,
+                                   String documentId ) {
+        ConnectorDocumentCache cache = connectors.getDocumentCache(connector);
+        if (cache == null) return connector.getDocumentById(documentId);
+        Document document = cache.get(documentId, new CachedDocumentLoader(connector));
+        // the cached document is shared, so don't let anything alter it
+        return document != null ? document.clone() : null;
+    }
+
+    private Map<String, Document> documentsById( Connector connector,
+                                                 Collection<String> documentIds ) {
+        ConnectorDocumentCache cache = connectors.getDocumentCache(connector);
+        if (cache == null) return connector.getDocumentsById(documentIds);
+        Map<String, Document> documents = cache.getAll(documentIds, new CachedDocumentLoader(connector));
+        for (Map.Entry<String, Document> entry : documents.entrySet()) {
+            // the cached documents are shared, so don't let anything alter them
+            entry.setValue(entry.getValue().clone());
+        }
+        return documents;
+    }
+
+    private void invalidateCachedDocument( Connector connector,
+                                           String documentId ) {
+        ConnectorDocumentCache cache = connectors.getDocumentCache(connector);
+        if (cache != null) cache.invalidate(documentId);
+    }
+
+    private SchematicEntry entryFor( Connector connector,
+                                     Document document ) {
+        // clone the document, so we don't alter the original
+        EditableDocument editableDocument = replaceConnectorIdsWithNodeKeys(document, connector.getSourceName());
+        editableDocument = updateCachingTtl(connector, editableDocument);
+        editableDocument = updateQueryable(connector, editableDocument);
+
+        // Extract any embedded documents ...
+        Object removedContainer = editableDocument.remove(DocumentTranslator.EMBEDDED_DOCUMENTS);
+        if (removedContainer instanceof EditableDocument) {
+            EditableDocument embeddedDocs = (EditableDocument)removedContainer;
+            for (Document.Field field : embeddedDocs.fields()) {
+                String id = field.getName();
+                Document doc = field.getValueAsDocument();
+                // Place the embedded document in the local value store ...
+                if (doc != null) localStore().put(id, doc);
+            }
+        }
+        return new FederatedSchematicEntry(editableDocument);
+    }
+
     private EditableDocument updateCachingTtl( Connector connector,
                                                EditableDocument editableDocument ) {
         DocumentReader reader = new FederatedDocumentReader(translator(), editableDocument);
@@ -324,7 +400,9 @@ public class FederatedDocumentStore implements DocumentStore {
         Connector connector = connectors.getConnectorForSourceKey(sourceKey(key));
         if (connector != null) {
             checkConnectorIsWritable(connector);
-            boolean result = connector.removeDocument(documentIdFromNodeKey(key));
+            String documentId = documentIdFromNodeKey(key);
+            boolean result = connector.removeDocument(documentId);
+            invalidateCachedDocument(connector, documentId);
             connectors.externalNodeRemoved(key);
             return result;
         }
@@ -593,4 +671,24 @@ public class FederatedDocumentStore implements DocumentStore {
         }
     }
 
+    /**
+     * Loads the documents that are not in a {@link ConnectorDocumentCache} directly from the connector.
+     */
+    private static final class CachedDocumentLoader implements ConnectorDocumentCache.Loader {
+        private final Connector connector;
+
+        protected CachedDocumentLoader( Connector connector ) {
+            this.connector = connector;
+        }
+
+        @Override
+        public Document load( String id ) {
+            return connector.getDocumentById(id);
+        }
+
+        @Override
+        public Map<String, Document> loadAll( Collection<String> ids ) {
+            return connector.getDocumentsById(ids);
+        }
+    }
 }
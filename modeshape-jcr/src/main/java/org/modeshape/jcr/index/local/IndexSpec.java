@@ -59,6 +59,20 @@ public abstract class IndexSpec {
 
     public abstract Class<?> getValueClass();
 
+    /**
+     * Get the factory that converts the raw property values into the values stored in the index.
+     * 
+     * @return the value factory; never null
+     */
+    public abstract ValueFactory<?> getValueFactory();
+
+    /**
+     * Get the name of the property whose values are stored in the index.
+     * 
+     * @return the property name; never null
+     */
+    public abstract String getPropertyName();
+
     protected static class SingleColumnSpec extends IndexSpec {
         private final IndexColumnDefinition columnDefn;
         private final PropertyType type;
@@ -97,8 +111,17 @@ public abstract class IndexSpec {
 
         @Override
         public Converter<?> getConverter() {
-            ValueFactory<?> factory = this.context.getValueFactories().getValueFactory(getColumnType());
-            return IndexValues.converter(factory);
+            return IndexValues.converter(getValueFactory());
+        }
+
+        @Override
+        public ValueFactory<?> getValueFactory() {
+            return this.context.getValueFactories().getValueFactory(getColumnType());
+        }
+
+        @Override
+        public String getPropertyName() {
+            return columnDefn.getPropertyName();
         }
     }
 
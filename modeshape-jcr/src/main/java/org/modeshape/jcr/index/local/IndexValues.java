@@ -64,6 +64,14 @@ public class IndexValues {
          * @return the highest/largest possible index key; or null if the operand is null
          */
         T toUpperValue( StaticOperand operand );
+
+        /**
+         * Obtain a converter that resolves {@link BindVariableValue bind variables} using the supplied values.
+         * 
+         * @param variables the values of the bind variables keyed by their names; may not be null
+         * @return the converter; never null
+         */
+        Converter<T> withVariables( Map<String, Object> variables );
     }
 
     private static final Map<String, Object> NO_VARIABLES = Collections.emptyMap();
@@ -99,6 +107,11 @@ public class IndexValues {
             T value = valueConverter.toLowerValue(operand);
             return value != null ? new UniqueKey<T>(value, Long.MAX_VALUE) : null;
         }
+
+        @Override
+        public Converter<UniqueKey<T>> withVariables( Map<String, Object> variables ) {
+            return new UniqueKeyConverter<T>(valueConverter.withVariables(variables));
+        }
     }
 
     protected static class StandardConverter<T> implements Converter<T> {
@@ -137,6 +150,10 @@ public class IndexValues {
             throw new LocalIndexException("Unexpected static operand: " + operand);
         }
 
+        @Override
+        public Converter<T> withVariables( Map<String, Object> variables ) {
+            return variables == null || variables.isEmpty() ? this : new StandardConverter<T>(factory, variables);
+        }
     }
 
     private IndexValues() {
@@ -0,0 +1,850 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.modeshape.jcr.index.local;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import javax.jcr.query.qom.Constraint;
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+import org.mapdb.Fun;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.query.engine.QueryUtil;
+import org.modeshape.jcr.query.model.BindVariableName;
+import org.modeshape.jcr.query.model.FullTextSearch;
+import org.modeshape.jcr.query.model.FullTextSearch.CompoundTerm;
+import org.modeshape.jcr.query.model.FullTextSearch.Conjunction;
+import org.modeshape.jcr.query.model.FullTextSearch.Disjunction;
+import org.modeshape.jcr.query.model.FullTextSearch.NegationTerm;
+import org.modeshape.jcr.query.model.FullTextSearch.SimpleTerm;
+import org.modeshape.jcr.query.model.FullTextSearch.Term;
+import org.modeshape.jcr.spi.index.IndexConstraints;
+import org.modeshape.jcr.spi.index.ResultWriter;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.ValueFactories;
+
+/**
+ * An inverted full-text index that records, for each term, the nodes (and the fields within those nodes) in which the term
+ * appears. The text is split into terms by a simple tokenizer that lower-cases the text and breaks it at every character that is
+ * not a letter or a digit; no stemming or stop words are used, so the terms match what the full-text row filter sees.
+ * <p>
+ * The text of each node is stored in one or more named fields, usually one per property, so that the text of a single property
+ * can be replaced without reindexing the whole node. Search terms are evaluated against the postings and each matching node is
+ * scored with the BM25 ranking function, and those scores become the {@code SCORE()} values of the query results.
+ * </p>
+ * 
+ * @author Randall Hauch (rhauch@redhat.com)
+ */
+@ThreadSafe
+class LocalFullTextIndex implements LocalIndex<String> {
+
+    /**
+     * The name of the field used when text is {@link #add(String, String) added} without a field name.
+     */
+    static final String DEFAULT_FIELD = "";
+
+    private static final String TOTAL_LENGTH = "total-length";
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    /**
+     * Create a new full-text index, or open the existing index with the same name in the same workspace.
+     * 
+     * @param name the name of the index; may not be null or empty
+     * @param workspaceName the name of the workspace; may not be null
+     * @param providerName the name of the provider; may not be null
+     * @param db the database in which the index information is to be stored; may not be null
+     * @param fieldName the name of the only field that can be searched, or null if any field can be searched
+     * @param factories the value factories used to normalize the property names in the searches; may not be null
+     * @return the index; never null
+     */
+    static LocalFullTextIndex create( String name,
+                                      String workspaceName,
+                                      String providerName,
+                                      DB db,
+                                      String fieldName,
+                                      ValueFactories factories ) {
+        return new LocalFullTextIndex(name, workspaceName, providerName, db, fieldName, factories);
+    }
+
+    /**
+     * Determine whether the supplied database already contains the persisted state of a full-text index.
+     * 
+     * @param db the database; may not be null
+     * @param name the name of the index; may not be null
+     * @param workspaceName the name of the workspace; may not be null
+     * @return true if the index already exists, or false otherwise
+     */
+    static boolean exists( DB db,
+                           String name,
+                           String workspaceName ) {
+        return db.exists(mapNameFor(name, workspaceName) + "/postings");
+    }
+
+    private static String mapNameFor( String name,
+                                      String workspaceName ) {
+        return name + "/" + workspaceName + "/fulltext";
+    }
+
+    private final String name;
+    private final String workspace;
+    private final String providerName;
+    private final String fieldName;
+    private final ValueFactories factories;
+    private final DB db;
+    private final String mapName;
+    /** The term frequencies keyed by (term, node key, field) */
+    private final BTreeMap<Fun.Tuple3<String, String, String>, Integer> postings;
+    /** The terms in each field of each node, as (node key, field, term) */
+    private final NavigableSet<Fun.Tuple3<String, String, String>> termsByField;
+    /** The number of nodes that contain each term */
+    private final BTreeMap<String, Long> documentFrequencies;
+    /** The number of terms in each node */
+    private final BTreeMap<String, Integer> documentLengths;
+    private final ConcurrentMap<String, Object> options;
+    private final AtomicLong totalLength;
+
+    protected LocalFullTextIndex( String name,
+                                  String workspaceName,
+                                  String providerName,
+                                  DB db,
+                                  String fieldName,
+                                  ValueFactories factories ) {
+        this.name = name;
+        this.workspace = workspaceName;
+        this.providerName = providerName;
+        this.fieldName = fieldName;
+        this.factories = factories;
+        this.db = db;
+        this.mapName = mapNameFor(name, workspaceName);
+        if (db.exists(mapName + "/postings")) {
+            this.postings = db.getTreeMap(mapName + "/postings");
+            this.termsByField = db.getTreeSet(mapName + "/terms");
+            this.documentFrequencies = db.getTreeMap(mapName + "/frequencies");
+            this.documentLengths = db.getTreeMap(mapName + "/lengths");
+            this.options = db.getHashMap(mapName + "/options");
+        } else {
+            this.postings = db.createTreeMap(mapName + "/postings").make();
+            this.termsByField = db.createTreeSet(mapName + "/terms").make();
+            this.documentFrequencies = db.createTreeMap(mapName + "/frequencies").make();
+            this.documentLengths = db.createTreeMap(mapName + "/lengths").counterEnable().make();
+            this.options = db.createHashMap(mapName + "/options").make();
+        }
+        Long length = (Long)options.get(TOTAL_LENGTH);
+        this.totalLength = new AtomicLong(length != null ? length.longValue() : 0L);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public String getWorkspaceName() {
+        return workspace;
+    }
+
+    @Override
+    public String getProviderName() {
+        return providerName;
+    }
+
+    @Override
+    public boolean supportsFullTextConstraints() {
+        return true;
+    }
+
+    /**
+     * Get the name of the only field that can be searched with this index.
+     * 
+     * @return the field name, or null if all fields can be searched
+     */
+    String getFieldName() {
+        return fieldName;
+    }
+
+    @Override
+    public void add( String nodeKey,
+                     String text ) {
+        add(nodeKey, DEFAULT_FIELD, text);
+    }
+
+    /**
+     * Add to the named field of a node the terms in the supplied text. Text can be added to the same field many times (e.g., for
+     * each value of a multi-valued property).
+     * 
+     * @param nodeKey the node key; may not be null
+     * @param field the name of the field; may not be null
+     * @param text the text to be tokenized and indexed; may be null
+     */
+    synchronized void add( String nodeKey,
+                           String field,
+                           String text ) {
+        List<String> terms = tokenize(text, false);
+        if (terms.isEmpty()) return;
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : terms) {
+            Integer count = frequencies.get(term);
+            frequencies.put(term, count == null ? 1 : count.intValue() + 1);
+        }
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            String term = entry.getKey();
+            if (!containsTerm(term, nodeKey)) increment(documentFrequencies, term, 1L);
+            Fun.Tuple3<String, String, String> posting = Fun.t3(term, nodeKey, field);
+            Integer existing = postings.get(posting);
+            postings.put(posting, existing == null ? entry.getValue() : existing.intValue() + entry.getValue().intValue());
+            termsByField.add(Fun.t3(nodeKey, field, term));
+        }
+        Integer length = documentLengths.get(nodeKey);
+        documentLengths.put(nodeKey, (length == null ? 0 : length.intValue()) + terms.size());
+        options.put(TOTAL_LENGTH, totalLength.addAndGet(terms.size()));
+    }
+
+    @Override
+    public synchronized void remove( String nodeKey ) {
+        // Copy the terms, since the set is changed as we remove them ...
+        removeTerms(nodeKey, new ArrayList<>(termsByField.subSet(Fun.t3(nodeKey, (String)null, (String)null), true,
+                                                                  Fun.t3(nodeKey, Fun.<String>HI(), Fun.<String>HI()), true)));
+        documentLengths.remove(nodeKey);
+    }
+
+    /**
+     * Remove from this index all of the terms in the named field of a node.
+     * 
+     * @param nodeKey the node key; may not be null
+     * @param field the name of the field; may not be null
+     */
+    synchronized void remove( String nodeKey,
+                              String field ) {
+        removeTerms(nodeKey, new ArrayList<>(termsByField.subSet(Fun.t3(nodeKey, field, (String)null), true,
+                                                                  Fun.t3(nodeKey, field, Fun.<String>HI()), true)));
+    }
+
+    private void removeTerms( String nodeKey,
+                              Collection<Fun.Tuple3<String, String, String>> terms ) {
+        long removed = 0L;
+        for (Fun.Tuple3<String, String, String> entry : terms) {
+            String field = entry.b;
+            String term = entry.c;
+            termsByField.remove(entry);
+            Integer frequency = postings.remove(Fun.t3(term, nodeKey, field));
+            if (frequency != null) removed += frequency.intValue();
+            if (!containsTerm(term, nodeKey)) increment(documentFrequencies, term, -1L);
+        }
+        if (removed == 0L) return;
+        Integer length = documentLengths.get(nodeKey);
+        if (length != null) {
+            int remaining = length.intValue() - (int)removed;
+            if (remaining > 0) documentLengths.put(nodeKey, remaining);
+            else documentLengths.remove(nodeKey);
+        }
+        options.put(TOTAL_LENGTH, totalLength.addAndGet(-removed));
+    }
+
+    private boolean containsTerm( String term,
+                                  String nodeKey ) {
+        return !postingsFor(term, nodeKey).isEmpty();
+    }
+
+    /**
+     * Get the postings for the given term, optionally limited to a single node.
+     * 
+     * @param term the term; may not be null
+     * @param nodeKey the node key, or null for the postings in all nodes
+     * @return the postings sorted by node key and field; never null
+     */
+    private Map<Fun.Tuple3<String, String, String>, Integer> postingsFor( String term,
+                                                                         String nodeKey ) {
+        String upperKey = nodeKey != null ? nodeKey : Fun.<String>HI();
+        return postings.subMap(Fun.t3(term, nodeKey, (String)null), true, Fun.t3(term, upperKey, Fun.<String>HI()), true);
+    }
+
+    private static void increment( BTreeMap<String, Long> counts,
+                                   String key,
+                                   long delta ) {
+        Long existing = counts.get(key);
+        long count = (existing == null ? 0L : existing.longValue()) + delta;
+        if (count > 0L) counts.put(key, count);
+        else counts.remove(key);
+    }
+
+    @Override
+    public synchronized void removeAll() {
+        postings.clear();
+        termsByField.clear();
+        documentFrequencies.clear();
+        documentLengths.clear();
+        totalLength.set(0L);
+        options.put(TOTAL_LENGTH, 0L);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * For a full-text index this is the number of nodes that contain at least one term.
+     * </p>
+     */
+    @Override
+    public long estimateTotalCount() {
+        return documentLengths.sizeLong();
+    }
+
+    @Override
+    public void destroy() {
+        close();
+        db.delete(mapName + "/postings");
+        db.delete(mapName + "/terms");
+        db.delete(mapName + "/frequencies");
+        db.delete(mapName + "/lengths");
+        db.delete(mapName + "/options");
+    }
+
+    @Override
+    public void close() {
+        options.put(TOTAL_LENGTH, totalLength.get());
+    }
+
+    @Override
+    public Results filter( IndexConstraints constraints ) {
+        final List<FullTextSearch> searches = new ArrayList<>();
+        for (Constraint constraint : constraints.getConstraints()) {
+            if (constraint instanceof FullTextSearch) {
+                searches.add(resolve((FullTextSearch)constraint, constraints.getVariables()));
+            }
+        }
+        return new Results() {
+            private Matches matches;
+            private boolean hasMatch;
+
+            @Override
+            public boolean getNextBatch( ResultWriter writer,
+                                         int batchSize ) {
+                if (matches == null) {
+                    // The matching nodes are found lazily, so that only the nodes in this batch are evaluated now ...
+                    matches = matches(searches);
+                    hasMatch = matches.next();
+                }
+                int count = 0;
+                while (hasMatch && count < batchSize) {
+                    writer.add(new NodeKey(matches.key()), matches.score());
+                    ++count;
+                    hasMatch = matches.next();
+                }
+                return hasMatch;
+            }
+
+            @Override
+            public void close() {
+                matches = null;
+                hasMatch = false;
+            }
+        };
+    }
+
+    private static FullTextSearch resolve( FullTextSearch search,
+                                           Map<String, Object> variables ) {
+        if (search.getFullTextSearchExpression() instanceof BindVariableName) {
+            BindVariableName variable = (BindVariableName)search.getFullTextSearchExpression();
+            Object value = variables.get(variable.getBindVariableName());
+            if (value != null) return search.withFullTextExpression(value.toString());
+        }
+        return search;
+    }
+
+    /**
+     * Find the nodes that satisfy all of the supplied full-text searches.
+     * 
+     * @param searches the full-text searches; may not be null
+     * @return the score for each matching node, keyed by the node key; never null
+     */
+    Map<String, Float> search( List<FullTextSearch> searches ) {
+        Map<String, Float> results = new HashMap<>();
+        Matches matches = matches(searches);
+        while (matches.next()) {
+            results.put(matches.key(), matches.score());
+        }
+        return results;
+    }
+
+    /**
+     * Obtain the nodes that satisfy all of the supplied full-text searches. The nodes are found lazily and in the order of their
+     * keys, by walking the postings of the terms at the same time, so that no more than one node per term is held in memory.
+     * 
+     * @param searches the full-text searches; may not be null
+     * @return the matching nodes; never null
+     */
+    Matches matches( List<FullTextSearch> searches ) {
+        Statistics stats = new Statistics();
+        List<Matches> matches = new ArrayList<>(searches.size());
+        for (FullTextSearch search : searches) {
+            String field = fieldName;
+            if (search.getPropertyName() != null) {
+                // The fields are named with the normalized form of the property names ...
+                Name propertyName = factories.getNameFactory().create(search.getPropertyName());
+                field = factories.getStringFactory().create(propertyName);
+            }
+            matches.add(matches(search.getTerm(), field, stats));
+        }
+        return intersection(matches);
+    }
+
+    private Matches matches( Term term,
+                             String field,
+                             Statistics stats ) {
+        if (term instanceof SimpleTerm) {
+            // A term with multiple words is a phrase, and every word must appear in the node ...
+            List<Matches> words = new ArrayList<>();
+            for (String word : tokenize(((SimpleTerm)term).getValue(), true)) {
+                words.add(matches(word, field, stats));
+            }
+            return intersection(words);
+        }
+        if (term instanceof NegationTerm) {
+            // Only the nodes with the field can satisfy a negation on that field ...
+            return new Difference(new AllNodes(field), matches(((NegationTerm)term).getNegatedTerm(), field, stats));
+        }
+        if (term instanceof Disjunction) {
+            List<Matches> children = new ArrayList<>();
+            for (Term child : (CompoundTerm)term) {
+                children.add(matches(child, field, stats));
+            }
+            return new Union(children);
+        }
+        if (term instanceof Conjunction) {
+            // Match the positive terms, and then remove the nodes that satisfy the negated terms ...
+            List<Matches> positive = new ArrayList<>();
+            List<Term> negated = new ArrayList<>();
+            for (Term child : (CompoundTerm)term) {
+                if (child instanceof NegationTerm) {
+                    negated.add(((NegationTerm)child).getNegatedTerm());
+                } else {
+                    positive.add(matches(child, field, stats));
+                }
+            }
+            Matches results = positive.isEmpty() ? new AllNodes(field) : intersection(positive);
+            for (Term child : negated) {
+                results = new Difference(results, matches(child, field, stats));
+            }
+            return results;
+        }
+        return Matches.NONE;
+    }
+
+    /**
+     * Match all of the nodes that contain a single word, which may include wildcards.
+     */
+    private Matches matches( String word,
+                             String field,
+                             Statistics stats ) {
+        int wildcard = firstWildcard(word);
+        if (wildcard == -1) {
+            Long documentFrequency = documentFrequencies.get(word);
+            return documentFrequency != null ? new TermMatches(word, documentFrequency, field, stats) : Matches.NONE;
+        }
+        // Otherwise, find all of the terms that start with the same prefix and that match the wildcard expression ...
+        String prefix = word.substring(0, wildcard);
+        Pattern pattern = Pattern.compile(QueryUtil.toRegularExpression(word));
+        List<Matches> terms = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : documentFrequencies.subMap(prefix, true, prefix + Character.MAX_VALUE, true)
+                                                                .entrySet()) {
+            if (pattern.matcher(entry.getKey()).matches()) {
+                terms.add(new TermMatches(entry.getKey(), entry.getValue(), field, stats));
+            }
+        }
+        return new Union(terms);
+    }
+
+    private static Matches intersection( List<Matches> matches ) {
+        if (matches.isEmpty()) return Matches.NONE;
+        return matches.size() == 1 ? matches.get(0) : new Intersection(matches);
+    }
+
+    private int length( String nodeKey ) {
+        Integer length = documentLengths.get(nodeKey);
+        return length != null ? length.intValue() : 0;
+    }
+
+    private boolean hasField( String nodeKey,
+                              String field ) {
+        return !termsByField.subSet(Fun.t3(nodeKey, field, (String)null), true, Fun.t3(nodeKey, field, Fun.<String>HI()), true)
+                            .isEmpty();
+    }
+
+    private static int firstWildcard( String word ) {
+        for (int i = 0; i != word.length(); ++i) {
+            if (isWildcard(word.charAt(i))) return i;
+        }
+        return -1;
+    }
+
+    private static boolean isWildcard( char c ) {
+        return c == '*' || c == '?' || c == '%' || c == '_';
+    }
+
+    /**
+     * Split the supplied text into lower-case terms at every character that is not a letter or digit.
+     * 
+     * @param text the text; may be null
+     * @param allowWildcards true if the wildcard characters ('*', '?', '%' and '_') are to be kept within the terms, as is
+     *        needed for search terms, or false if they separate terms
+     * @return the terms in the order they appear in the text; never null
+     */
+    static List<String> tokenize( String text,
+                                  boolean allowWildcards ) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) return terms;
+        StringBuilder term = new StringBuilder();
+        boolean onlyWildcards = true;
+        for (int i = 0; i != text.length(); ++i) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                term.append(Character.toLowerCase(c));
+                onlyWildcards = false;
+            } else if (allowWildcards && isWildcard(c)) {
+                term.append(c);
+            } else {
+                if (term.length() != 0 && !onlyWildcards) terms.add(term.toString());
+                term.setLength(0);
+                onlyWildcards = true;
+            }
+        }
+        if (term.length() != 0 && !onlyWildcards) terms.add(term.toString());
+        return terms;
+    }
+
+    @Override
+    public String toString() {
+        return "LocalFullTextIndex(" + name + ")";
+    }
+
+    /**
+     * A lazily-evaluated sequence of the nodes that match a search term, in the order of their keys.
+     */
+    abstract static class Matches {
+
+        /**
+         * The sequence that never contains any nodes.
+         */
+        static final Matches NONE = new Matches() {
+            @Override
+            boolean next() {
+                return false;
+            }
+
+            @Override
+            String key() {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            float score() {
+                throw new IllegalStateException();
+            }
+        };
+
+        protected static final Comparator<Matches> BY_KEY = new Comparator<Matches>() {
+            @Override
+            public int compare( Matches first,
+                                Matches second ) {
+                return first.key().compareTo(second.key());
+            }
+        };
+
+        /**
+         * Move to the next matching node.
+         * 
+         * @return true if there is another matching node, or false if there are no more matching nodes
+         */
+        abstract boolean next();
+
+        /**
+         * Get the key of the current node.
+         * 
+         * @return the node key; never null
+         */
+        abstract String key();
+
+        /**
+         * Get the score of the current node.
+         * 
+         * @return the score
+         */
+        abstract float score();
+    }
+
+    /**
+     * The nodes that contain a single term in the applicable fields, found by walking the term's postings (which are sorted by
+     * node key) and scored with BM25.
+     */
+    private final class TermMatches extends Matches {
+        private final Iterator<Map.Entry<Fun.Tuple3<String, String, String>, Integer>> entries;
+        private final String field;
+        private final Statistics stats;
+        private final double idf;
+        private Map.Entry<Fun.Tuple3<String, String, String>, Integer> pending;
+        private String key;
+        private float score;
+
+        protected TermMatches( String term,
+                               long documentFrequency,
+                               String field,
+                               Statistics stats ) {
+            this.entries = postingsFor(term, null).entrySet().iterator();
+            this.field = field;
+            this.stats = stats;
+            this.idf = Math.log(1.0d + (stats.documentCount - documentFrequency + 0.5d) / (documentFrequency + 0.5d));
+            this.pending = nextPosting();
+        }
+
+        private Map.Entry<Fun.Tuple3<String, String, String>, Integer> nextPosting() {
+            while (entries.hasNext()) {
+                Map.Entry<Fun.Tuple3<String, String, String>, Integer> entry = entries.next();
+                if (field == null || field.equals(entry.getKey().c)) return entry;
+            }
+            return null;
+        }
+
+        @Override
+        boolean next() {
+            if (pending == null) return false;
+            // Sum the frequencies of the term in the (applicable) fields of the node ...
+            key = pending.getKey().b;
+            int frequency = 0;
+            while (pending != null && key.equals(pending.getKey().b)) {
+                frequency += pending.getValue().intValue();
+                pending = nextPosting();
+            }
+            score = stats.score(idf, frequency, length(key));
+            return true;
+        }
+
+        @Override
+        String key() {
+            return key;
+        }
+
+        @Override
+        float score() {
+            return score;
+        }
+    }
+
+    /**
+     * All of the nodes in the index that have text in the given field, each with a score of 1.
+     */
+    private final class AllNodes extends Matches {
+        private final Iterator<String> keys = documentLengths.keySet().iterator();
+        private final String field;
+        private String key;
+
+        protected AllNodes( String field ) {
+            // Every node in a single-field index has that field ...
+            this.field = field == null || field.equals(fieldName) ? null : field;
+        }
+
+        @Override
+        boolean next() {
+            while (keys.hasNext()) {
+                key = keys.next();
+                if (field == null || hasField(key, field)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        String key() {
+            return key;
+        }
+
+        @Override
+        float score() {
+            return 1.0f;
+        }
+    }
+
+    /**
+     * The nodes that are in any of several sequences, with the sum of their scores.
+     */
+    private static final class Union extends Matches {
+        private final PriorityQueue<Matches> queue;
+        private String key;
+        private float score;
+
+        protected Union( List<Matches> matches ) {
+            this.queue = new PriorityQueue<>(Math.max(1, matches.size()), BY_KEY);
+            for (Matches match : matches) {
+                if (match.next()) queue.add(match);
+            }
+        }
+
+        @Override
+        boolean next() {
+            Matches first = queue.poll();
+            if (first == null) return false;
+            key = first.key();
+            score = first.score();
+            advance(first);
+            while (!queue.isEmpty() && queue.peek().key().equals(key)) {
+                Matches other = queue.poll();
+                score += other.score();
+                advance(other);
+            }
+            return true;
+        }
+
+        private void advance( Matches match ) {
+            if (match.next()) queue.add(match);
+        }
+
+        @Override
+        String key() {
+            return key;
+        }
+
+        @Override
+        float score() {
+            return score;
+        }
+    }
+
+    /**
+     * The nodes that are in all of several sequences, with the sum of their scores.
+     */
+    private static final class Intersection extends Matches {
+        private final List<Matches> matches;
+        private boolean exhausted;
+        private String key;
+        private float score;
+
+        protected Intersection( List<Matches> matches ) {
+            assert !matches.isEmpty();
+            this.matches = matches;
+        }
+
+        @Override
+        boolean next() {
+            if (exhausted) return false;
+            String max = null;
+            for (Matches match : matches) {
+                if (!match.next()) return exhaust();
+                if (max == null || match.key().compareTo(max) > 0) max = match.key();
+            }
+            // Advance the sequences that are behind until all of them are on the same node ...
+            boolean aligned = false;
+            while (!aligned) {
+                aligned = true;
+                for (Matches match : matches) {
+                    while (match.key().compareTo(max) < 0) {
+                        if (!match.next()) return exhaust();
+                    }
+                    if (match.key().compareTo(max) > 0) {
+                        max = match.key();
+                        aligned = false;
+                    }
+                }
+            }
+            key = max;
+            score = 0.0f;
+            for (Matches match : matches) {
+                score += match.score();
+            }
+            return true;
+        }
+
+        private boolean exhaust() {
+            exhausted = true;
+            return false;
+        }
+
+        @Override
+        String key() {
+            return key;
+        }
+
+        @Override
+        float score() {
+            return score;
+        }
+    }
+
+    /**
+     * The nodes in one sequence that are not in another, with their scores from the first sequence.
+     */
+    private static final class Difference extends Matches {
+        private final Matches included;
+        private final Matches excluded;
+        private boolean started;
+        private String excludedKey;
+
+        protected Difference( Matches included,
+                              Matches excluded ) {
+            this.included = included;
+            this.excluded = excluded;
+        }
+
+        @Override
+        boolean next() {
+            if (!started) {
+                started = true;
+                excludedKey = excluded.next() ? excluded.key() : null;
+            }
+            while (included.next()) {
+                String key = included.key();
+                while (excludedKey != null && excludedKey.compareTo(key) < 0) {
+                    excludedKey = excluded.next() ? excluded.key() : null;
+                }
+                if (!key.equals(excludedKey)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        String key() {
+            return included.key();
+        }
+
+        @Override
+        float score() {
+            return included.score();
+        }
+    }
+
+    /**
+     * The collection statistics used by the BM25 ranking function, captured once for each search.
+     */
+    private final class Statistics {
+        protected final long documentCount = Math.max(1L, documentLengths.sizeLong());
+        protected final double averageLength = Math.max(1.0d, (double)totalLength.get() / documentCount);
+
+        protected float score( double idf,
+                               int frequency,
+                               int length ) {
+            double normalized = K1 * (1.0d - B + B * length / averageLength);
+            return (float)(idf * frequency * (K1 + 1.0d) / (frequency + normalized));
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.modeshape.jcr.index.local;
+
+import java.util.Map;
+import java.util.Set;
+import org.mapdb.DB;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.NodeTypes;
+import org.modeshape.jcr.cache.CachedNode.Properties;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.change.AbstractPropertyChange;
+import org.modeshape.jcr.cache.change.PropertyRemoved;
+import org.modeshape.jcr.query.RowExtractors;
+import org.modeshape.jcr.query.model.TypeSystem.TypeFactory;
+import org.modeshape.jcr.spi.index.provider.IndexChangeAdapter;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.Path.Segment;
+import org.modeshape.jcr.value.Property;
+import org.modeshape.jcr.value.binary.BinaryStore;
+
+/**
+ * An {@link IndexChangeAdapter} that keeps a {@link LocalFullTextIndex} up to date with the changes made to the nodes of the
+ * index's node type (or subtypes) in a single workspace. The text of each property is stored in a separate field named after the
+ * property, and the text of binary values is obtained from the {@link BinaryStore}, which uses the configured text extractors.
+ * <p>
+ * When the index is not limited to a single property, the local name of each node is also indexed (in the
+ * {@link #NODE_NAME_FIELD} field), just like the full-text row filter does.
+ * </p>
+ * 
+ * @author Randall Hauch (rhauch@redhat.com)
+ */
+@ThreadSafe
+class LocalFullTextIndexChangeAdapter extends IndexChangeAdapter {
+
+    /**
+     * The name of the field that contains the local name of each node.
+     */
+    static final String NODE_NAME_FIELD = "jcr:name";
+
+    private final LocalFullTextIndex index;
+    private final DB db;
+    private final NodeTypes.Supplier nodeTypesSupplier;
+    private final Name nodeTypeName;
+    private final Name propertyName;
+    private final TypeFactory<String> strings;
+
+    /**
+     * @param context the execution context; may not be null
+     * @param workspaceName the name of the workspace; may not be null
+     * @param nodeTypesSupplier the supplier of the current node types; may not be null
+     * @param nodeTypeName the name of the node type to which the index applies; may not be null
+     * @param propertyName the name of the only property to be indexed, or null if all properties are to be indexed
+     * @param index the index; may not be null
+     * @param db the database that stores the index; may not be null
+     */
+    LocalFullTextIndexChangeAdapter( ExecutionContext context,
+                                     String workspaceName,
+                                     NodeTypes.Supplier nodeTypesSupplier,
+                                     Name nodeTypeName,
+                                     Name propertyName,
+                                     LocalFullTextIndex index,
+                                     DB db ) {
+        super(context, workspaceName);
+        this.index = index;
+        this.db = db;
+        this.nodeTypesSupplier = nodeTypesSupplier;
+        this.nodeTypeName = nodeTypeName;
+        this.propertyName = propertyName;
+        this.strings = context.getValueFactories().getTypeSystem().getStringFactory();
+    }
+
+    protected final boolean appliesTo( Name primaryType,
+                                       Set<Name> mixinTypes ) {
+        NodeTypes nodeTypes = nodeTypesSupplier.getNodeTypes();
+        if (nodeTypes.isTypeOrSubtype(primaryType, nodeTypeName)) return true;
+        return mixinTypes != null && nodeTypes.isTypeOrSubtype(mixinTypes, nodeTypeName);
+    }
+
+    @Override
+    protected void addNode( String workspaceName,
+                            NodeKey key,
+                            Path path,
+                            Name primaryType,
+                            Set<Name> mixinTypes,
+                            Properties properties,
+                            boolean queryable ) {
+        if (!queryable || !appliesTo(primaryType, mixinTypes)) return;
+        String nodeKey = key.toString();
+        if (propertyName != null) {
+            Property property = properties.getProperty(propertyName);
+            if (property != null) addText(nodeKey, property);
+            return;
+        }
+        addName(nodeKey, path);
+        for (Property property : properties) {
+            addText(nodeKey, property);
+        }
+    }
+
+    @Override
+    protected void removeNode( String workspaceName,
+                               NodeKey key,
+                               NodeKey parentKey,
+                               Path path,
+                               Name primaryType,
+                               Set<Name> mixinTypes,
+                               boolean queryable ) {
+        index.remove(key.toString());
+    }
+
+    @Override
+    protected void moveNode( String workspaceName,
+                             NodeKey key,
+                             Name primaryType,
+                             Set<Name> mixinTypes,
+                             NodeKey oldParent,
+                             NodeKey newParent,
+                             Path newPath,
+                             Path oldPath,
+                             boolean queryable ) {
+        // A node can be renamed when it is moved ...
+        updateName(key, primaryType, mixinTypes, newPath, queryable);
+    }
+
+    @Override
+    protected void renameNode( String workspaceName,
+                               NodeKey key,
+                               Path newPath,
+                               Segment oldSegment,
+                               Name primaryType,
+                               Set<Name> mixinTypes,
+                               boolean queryable ) {
+        updateName(key, primaryType, mixinTypes, newPath, queryable);
+    }
+
+    @Override
+    protected void modifyProperties( NodeKey key,
+                                     Map<Name, AbstractPropertyChange> propChanges ) {
+        String nodeKey = key.toString();
+        NodeTypes nodeTypes = nodeTypesSupplier.getNodeTypes();
+        for (AbstractPropertyChange change : propChanges.values()) {
+            Property property = change.getProperty();
+            if (propertyName != null && !propertyName.equals(property.getName())) continue;
+            if (!change.isQueryable() || !change.isType(nodeTypeName, nodeTypes)) continue;
+            index.remove(nodeKey, fieldFor(property.getName()));
+            if (!(change instanceof PropertyRemoved)) {
+                // Either added or changed, and in both cases the property holds the new values ...
+                addText(nodeKey, property);
+            }
+        }
+    }
+
+    @Override
+    protected void completeWorkspaceChanges() {
+        db.commit();
+    }
+
+    private void updateName( NodeKey key,
+                             Name primaryType,
+                             Set<Name> mixinTypes,
+                             Path newPath,
+                             boolean queryable ) {
+        if (propertyName != null || !queryable || !appliesTo(primaryType, mixinTypes)) return;
+        String nodeKey = key.toString();
+        index.remove(nodeKey, NODE_NAME_FIELD);
+        addName(nodeKey, newPath);
+    }
+
+    private void addName( String nodeKey,
+                          Path path ) {
+        if (path == null || path.isRoot()) return;
+        index.add(nodeKey, NODE_NAME_FIELD, path.getLastSegment().getName().getLocalName());
+    }
+
+    private void addText( String nodeKey,
+                          Property property ) {
+        String field = fieldFor(property.getName());
+        BinaryStore binaries = context.getBinaryStore();
+        for (Object value : property) {
+            // Binary values are converted to the text produced by the text extractors (if any) ...
+            StringBuilder text = new StringBuilder();
+            RowExtractors.extractFullTextFrom(value, strings, binaries, text);
+            index.add(nodeKey, field, text.toString());
+        }
+    }
+
+    private String fieldFor( Name name ) {
+        return strings.create(name);
+    }
+
+    @Override
+    public String toString() {
+        return "LocalFullTextIndexChangeAdapter(" + index.getName() + ")";
+    }
+}
@@ -25,11 +25,39 @@ import org.modeshape.jcr.spi.index.Index;
  */
 public interface LocalIndex<T> extends Index, Closeable {
 
+    /**
+     * Add to this index an entry with the given node key and value.
+     * 
+     * @param nodeKey the node key; may not be null
+     * @param value the value; may not be null
+     */
     void add( String nodeKey,
               T value );
 
+    /**
+     * Remove from this index all of the entries for the given node key.
+     * 
+     * @param nodeKey the node key; may not be null
+     */
     void remove( String nodeKey );
 
+    /**
+     * Remove all of the entries from this index.
+     */
+    void removeAll();
+
+    /**
+     * Get the number of entries in this index. This is used by the planner to estimate the cost of using the index.
+     * 
+     * @return the number of entries; never negative
+     */
+    long estimateTotalCount();
+
+    /**
+     * Permanently remove this index and all of its persisted state.
+     */
+    void destroy();
+
     @Override
     void close();
 }
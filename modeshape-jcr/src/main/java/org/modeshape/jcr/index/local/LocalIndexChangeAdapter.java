@@ -0,0 +1,188 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.modeshape.jcr.index.local;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import org.mapdb.DB;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.JcrLexicon;
+import org.modeshape.jcr.NodeTypes;
+import org.modeshape.jcr.cache.CachedNode.Properties;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.cache.change.AbstractPropertyChange;
+import org.modeshape.jcr.cache.change.PropertyRemoved;
+import org.modeshape.jcr.spi.index.provider.IndexChangeAdapter;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.Property;
+import org.modeshape.jcr.value.ValueFactory;
+import org.modeshape.jcr.value.ValueFormatException;
+
+/**
+ * An {@link IndexChangeAdapter} that keeps a single-column {@link LocalIndex} up to date with the changes made to the nodes of
+ * the index's node type (or subtypes) in a single workspace.
+ * <p>
+ * The indexes that are built on the node type properties ({@code jcr:primaryType} and {@code jcr:mixinTypes}) are fed from the
+ * type information in each change, so they stay current even when mixins are added or removed.
+ * </p>
+ * 
+ * @author Randall Hauch (rhauch@redhat.com)
+ */
+@ThreadSafe
+class LocalIndexChangeAdapter extends IndexChangeAdapter {
+
+    private final LocalIndex<Object> index;
+    private final DB db;
+    private final NodeTypes.Supplier nodeTypesSupplier;
+    private final Name nodeTypeName;
+    private final Name propertyName;
+    private final ValueFactory<?> valueFactory;
+    private final boolean primaryTypeIndex;
+    private final boolean mixinTypesIndex;
+
+    @SuppressWarnings( "unchecked" )
+    LocalIndexChangeAdapter( ExecutionContext context,
+                             String workspaceName,
+                             NodeTypes.Supplier nodeTypesSupplier,
+                             Name nodeTypeName,
+                             Name propertyName,
+                             ValueFactory<?> valueFactory,
+                             LocalIndex<?> index,
+                             DB db ) {
+        super(context, workspaceName);
+        this.index = (LocalIndex<Object>)index;
+        this.db = db;
+        this.nodeTypesSupplier = nodeTypesSupplier;
+        this.nodeTypeName = nodeTypeName;
+        this.propertyName = propertyName;
+        this.valueFactory = valueFactory;
+        this.primaryTypeIndex = JcrLexicon.PRIMARY_TYPE.equals(propertyName);
+        this.mixinTypesIndex = JcrLexicon.MIXIN_TYPES.equals(propertyName);
+    }
+
+    protected final LocalIndex<?> index() {
+        return index;
+    }
+
+    protected final boolean appliesTo( Name primaryType,
+                                       Set<Name> mixinTypes ) {
+        NodeTypes nodeTypes = nodeTypesSupplier.getNodeTypes();
+        if (nodeTypes.isTypeOrSubtype(primaryType, nodeTypeName)) return true;
+        return mixinTypes != null && nodeTypes.isTypeOrSubtype(mixinTypes, nodeTypeName);
+    }
+
+    @Override
+    protected void addNode( String workspaceName,
+                            NodeKey key,
+                            Path path,
+                            Name primaryType,
+                            Set<Name> mixinTypes,
+                            Properties properties,
+                            boolean queryable ) {
+        if (!queryable || !appliesTo(primaryType, mixinTypes)) return;
+        if (primaryTypeIndex || mixinTypesIndex) {
+            addTypes(key, primaryType, mixinTypes);
+            return;
+        }
+        Property property = properties.getProperty(propertyName);
+        if (property != null) addValues(key, property);
+    }
+
+    @Override
+    protected void removeNode( String workspaceName,
+                               NodeKey key,
+                               NodeKey parentKey,
+                               Path path,
+                               Name primaryType,
+                               Set<Name> mixinTypes,
+                               boolean queryable ) {
+        index.remove(key.toString());
+    }
+
+    @Override
+    protected void changeNode( String workspaceName,
+                               NodeKey key,
+                               Path path,
+                               Name primaryType,
+                               Set<Name> mixinTypes,
+                               boolean queryable ) {
+        if (!primaryTypeIndex && !mixinTypesIndex) return;
+        // The types of the node may have changed ...
+        index.remove(key.toString());
+        if (queryable && appliesTo(primaryType, mixinTypes)) addTypes(key, primaryType, mixinTypes);
+    }
+
+    @Override
+    protected void modifyProperties( NodeKey key,
+                                     Map<Name, AbstractPropertyChange> propChanges ) {
+        if (primaryTypeIndex || mixinTypesIndex) return; // handled by changeNode
+        AbstractPropertyChange change = propChanges.get(propertyName);
+        if (change == null) return;
+        if (!change.isQueryable() || !change.isType(nodeTypeName, nodeTypesSupplier.getNodeTypes())) return;
+        String nodeKey = key.toString();
+        index.remove(nodeKey);
+        if (!(change instanceof PropertyRemoved)) {
+            // Either added or changed, and in both cases the property holds the new values ...
+            addValues(key, change.getProperty());
+        }
+    }
+
+    @Override
+    protected void completeWorkspaceChanges() {
+        db.commit();
+    }
+
+    private void addTypes( NodeKey key,
+                           Name primaryType,
+                           Set<Name> mixinTypes ) {
+        String nodeKey = key.toString();
+        if (primaryTypeIndex) {
+            addValue(nodeKey, primaryType);
+        } else if (mixinTypes != null) {
+            for (Name mixinType : mixinTypes) {
+                addValue(nodeKey, mixinType);
+            }
+        }
+    }
+
+    private void addValues( NodeKey key,
+                            Property property ) {
+        String nodeKey = key.toString();
+        Iterator<?> values = property.getValues();
+        while (values.hasNext()) {
+            addValue(nodeKey, values.next());
+        }
+    }
+
+    private void addValue( String nodeKey,
+                           Object rawValue ) {
+        if (rawValue == null) return;
+        try {
+            index.add(nodeKey, valueFactory.create(rawValue));
+        } catch (ValueFormatException e) {
+            // The value can't be converted to the index's type, so it can never match a constraint on this index ...
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LocalIndexChangeAdapter(" + index.getName() + ")";
+    }
+}
@@ -17,29 +17,76 @@
 package org.modeshape.jcr.index.local;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.jcr.RepositoryException;
+import javax.jcr.query.qom.Constraint;
+import org.mapdb.BTreeKeySerializer;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+import org.modeshape.common.util.ObjectUtil;
 import org.modeshape.jcr.NodeTypes.Supplier;
+import org.modeshape.jcr.api.index.IndexColumnDefinition;
 import org.modeshape.jcr.api.index.IndexDefinition;
+import org.modeshape.jcr.api.index.IndexDefinition.IndexKind;
+import org.modeshape.jcr.api.query.qom.Operator;
+import org.modeshape.jcr.index.local.IndexValues.Converter;
+import org.modeshape.jcr.query.QueryContext;
+import org.modeshape.jcr.query.model.Between;
+import org.modeshape.jcr.query.model.Comparison;
+import org.modeshape.jcr.query.model.DynamicOperand;
+import org.modeshape.jcr.query.model.FullTextSearch;
+import org.modeshape.jcr.query.model.PropertyExistence;
+import org.modeshape.jcr.query.model.PropertyValue;
+import org.modeshape.jcr.query.model.SelectorName;
+import org.modeshape.jcr.query.model.SetCriteria;
+import org.modeshape.jcr.spi.index.IndexCollector;
 import org.modeshape.jcr.spi.index.IndexFeedback;
 import org.modeshape.jcr.spi.index.provider.IndexPlanner;
 import org.modeshape.jcr.spi.index.provider.IndexProvider;
 import org.modeshape.jcr.spi.index.provider.ManagedIndex;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.ValueFormatException;
 
 /**
  * An {@link IndexProvider} implementation that maintains indexes on the local file system using MapDB.
  * <p>
- * This provider maintains a separate
+ * This provider maintains a separate MapDB collection for each index in each workspace, all stored in a single file within the
+ * provider's directory. Indexes of kind {@link IndexKind#UNIQUE UNIQUE} hold one node key per value, while those of kind
+ * {@link IndexKind#DUPLICATES DUPLICATES}, {@link IndexKind#ENUMERATED ENUMERATED} and {@link IndexKind#NODETYPE NODETYPE} allow
+ * any number of nodes per value. Indexes of kind {@link IndexKind#FULLTEXTSEARCH FULLTEXTSEARCH} are inverted indexes of the text
+ * of a single property or, when the column's property name is {@value #ALL_PROPERTIES}, of the name and all properties of each
+ * node; they are used for {@code CONTAINS} constraints and produce the full-text search scores. Only single-column indexes are
+ * supported.
+ * </p>
  * 
  * @author Randall Hauch (rhauch@redhat.com)
  */
 public class LocalIndexProvider extends IndexProvider {
 
+    /**
+     * The property name used in the column of a {@link IndexKind#FULLTEXTSEARCH full-text} index to signal that the index
+     * should contain the text of all properties.
+     */
+    public static final String ALL_PROPERTIES = "*";
+
     private static final String DB_FILENAME = "indexes.db";
 
+    /**
+     * The cost of using a local index, which is far cheaper than scanning the nodes but more expensive than the built-in indexes
+     * that find nodes by path or identifier.
+     */
+    private static final int COST_ESTIMATE = 5;
+
     private String directory;
     private DB db;
+    private final ConcurrentMap<String, ManagedLocalIndex> indexes = new ConcurrentHashMap<>();
+    private final IndexPlanner planner = new LocalIndexPlanner();
 
     public LocalIndexProvider() {
     }
@@ -83,16 +130,19 @@ public class LocalIndexProvider extends IndexProvider {
     protected void postShutdown() {
         if (db != null) {
             try {
+                // Each of the indexes has already been closed, so persist their final state ...
+                db.commit();
                 db.close();
             } finally {
                 db = null;
+                indexes.clear();
             }
         }
     }
 
     @Override
     public IndexPlanner getIndexPlanner() {
-        return null;
+        return planner;
     }
 
     @Override
@@ -100,28 +150,14 @@ public class LocalIndexProvider extends IndexProvider {
                                         String workspaceName,
                                         Supplier nodeTypesSupplier,
                                         IndexFeedback feedback ) {
-        // Filter filter = null;
-        // ChangeSetListener listener = createListener(defn, nodeTypesSupplier);
-        // LocalIndex<?> index = null;
-        // IndexSpec spec = IndexSpec.create(context(), defn);
-        // switch (defn.getKind()) {
-        // case DUPLICATES:
-        // // index = LocalDuplicateIndex.create(defn.getName(), workspaceName, getName(), db, spec);
-        // index = LocalDuplicateIndex.create(defn.getName(), workspaceName, getName(), db, spec.getConverter(),
-        // spec.getSerializer(), spec.getComparator());
-        // break;
-        // case UNIQUE:
-        // index = LocalUniqueIndex.create(defn.getName(), workspaceName, getName(), db, converter, treeSerializer);
-        // break;
-        // case ENUMERATED:
-        // case NODETYPE:
-        // case FULLTEXTSEARCH:
-        // break;
-        // }
-        //
-        // LocalIndexInfo info = new LocalIndexInfo(index);
-        // return operations(filter, listener, info);
-        return null;
+        boolean existed = exists(defn, workspaceName);
+        ManagedLocalIndex index = newIndex(defn, workspaceName, nodeTypesSupplier);
+        indexes.put(keyFor(defn.getName(), workspaceName), index);
+        if (!existed) {
+            // This is a brand new index, so it has to be populated from the existing content ...
+            feedback.scan(workspaceName);
+        }
+        return index;
     }
 
     @Override
@@ -131,12 +167,195 @@ public class LocalIndexProvider extends IndexProvider {
                                         String workspaceName,
                                         Supplier nodeTypesSupplier,
                                         IndexFeedback feedback ) {
-        return null;
+        if (sameContent(oldDefn, updatedDefn)) {
+            // Only the description, properties or workspace rule changed, so the existing index is still valid ...
+            return existingIndex;
+        }
+        // Otherwise the index content is different, so throw away the old index and build a new one ...
+        removeIndex(oldDefn, existingIndex, workspaceName);
+        return createIndex(updatedDefn, workspaceName, nodeTypesSupplier, feedback);
     }
 
     @Override
     protected void removeIndex( IndexDefinition oldDefn,
                                 ManagedIndex existingIndex,
                                 String workspaceName ) {
+        indexes.remove(keyFor(oldDefn.getName(), workspaceName));
+        existingIndex.shutdown(true);
+        db.commit();
+    }
+
+    @SuppressWarnings( {"unchecked", "rawtypes"} )
+    protected ManagedLocalIndex newIndex( IndexDefinition defn,
+                                          String workspaceName,
+                                          Supplier nodeTypesSupplier ) {
+        IndexSpec spec = IndexSpec.create(context(), defn);
+        if (spec == null) {
+            throw new LocalIndexException("The local index provider '" + getName()
+                                          + "' does not support indexes with multiple columns, such as '" + defn.getName()
+                                          + "'");
+        }
+        String indexName = defn.getName();
+        Name nodeTypeName = names().create(defn.getNodeTypeName());
+        if (defn.getKind() == IndexKind.FULLTEXTSEARCH) {
+            String propertyName = spec.getPropertyName();
+            boolean allProperties = ALL_PROPERTIES.equals(propertyName);
+            // Store the fields under the same (normalized) property names that are used when the fields are searched ...
+            Name property = allProperties ? null : names().create(propertyName);
+            String fieldName = allProperties ? null : valueFactories().getStringFactory().create(property);
+            LocalFullTextIndex index = LocalFullTextIndex.create(indexName, workspaceName, getName(), db, fieldName,
+                                                                 valueFactories());
+            LocalFullTextIndexChangeAdapter adapter = new LocalFullTextIndexChangeAdapter(context(), workspaceName,
+                                                                                          nodeTypesSupplier, nodeTypeName,
+                                                                                          property, index, db);
+            return new ManagedLocalIndex(defn, index, adapter);
+        }
+        LocalIndex<?> index = null;
+        switch (defn.getKind()) {
+            case UNIQUE:
+                index = LocalUniqueIndex.create(indexName, workspaceName, getName(), db, (Converter)spec.getConverter(),
+                                                (BTreeKeySerializer)spec.getBTreeKeySerializer());
+                break;
+            case DUPLICATES:
+            case ENUMERATED:
+            case NODETYPE:
+                // Enumerated and node type indexes have few distinct values, so they're simply indexes with duplicates ...
+                index = LocalDuplicateIndex.create(indexName, workspaceName, getName(), db, (Converter)spec.getConverter(),
+                                                   (Serializer)spec.getSerializer(), (Comparator)spec.getComparator());
+                break;
+            case FULLTEXTSEARCH:
+                assert false : "Should have been handled above";
+        }
+        assert index != null;
+        Name propertyName = names().create(spec.getPropertyName());
+        LocalIndexChangeAdapter adapter = new LocalIndexChangeAdapter(context(), workspaceName, nodeTypesSupplier,
+                                                                      nodeTypeName, propertyName, spec.getValueFactory(),
+                                                                      index, db);
+        return new ManagedLocalIndex(defn, index, adapter);
+    }
+
+    private boolean exists( IndexDefinition defn,
+                            String workspaceName ) {
+        if (defn.getKind() == IndexKind.FULLTEXTSEARCH) return LocalFullTextIndex.exists(db, defn.getName(), workspaceName);
+        return LocalMapIndex.exists(db, defn.getName(), workspaceName);
+    }
+
+    private static boolean sameContent( IndexDefinition oldDefn,
+                                        IndexDefinition newDefn ) {
+        if (oldDefn.getKind() != newDefn.getKind()) return false;
+        if (!ObjectUtil.isEqualWithNulls(oldDefn.getNodeTypeName(), newDefn.getNodeTypeName())) return false;
+        if (oldDefn.size() != newDefn.size()) return false;
+        for (int i = 0; i != oldDefn.size(); ++i) {
+            IndexColumnDefinition oldColumn = oldDefn.getColumnDefinition(i);
+            IndexColumnDefinition newColumn = newDefn.getColumnDefinition(i);
+            if (oldColumn.getColumnType() != newColumn.getColumnType()) return false;
+            if (!ObjectUtil.isEqualWithNulls(oldColumn.getPropertyName(), newColumn.getPropertyName())) return false;
+        }
+        return true;
+    }
+
+    private static String keyFor( String indexName,
+                                  String workspaceName ) {
+        return indexName + "/" + workspaceName;
+    }
+
+    /**
+     * The {@link IndexPlanner} for the local indexes, which adds an index when at least one of the AND-ed constraints is on the
+     * index's property.
+     */
+    protected class LocalIndexPlanner extends IndexPlanner {
+
+        @Override
+        public void applyIndexes( QueryContext context,
+                                  SelectorName selector,
+                                  List<Constraint> andedConstraints,
+                                  Iterable<IndexDefinition> indexesOnSelector,
+                                  IndexCollector indexes ) {
+            if (indexesOnSelector == null || andedConstraints.isEmpty()) return;
+            // Each local index applies to a single workspace, so we can only use them when querying exactly one workspace ...
+            Set<String> workspaceNames = context.getWorkspaceNames();
+            if (workspaceNames.size() != 1) return;
+            String workspaceName = workspaceNames.iterator().next();
+            for (IndexDefinition defn : indexesOnSelector) {
+                if (!defn.isEnabled() || !defn.hasSingleColumn()) continue;
+                ManagedLocalIndex index = LocalIndexProvider.this.indexes.get(keyFor(defn.getName(), workspaceName));
+                if (index == null) continue;
+                if (defn.getKind() == IndexKind.FULLTEXTSEARCH) {
+                    applyFullTextIndex(context, selector, andedConstraints, defn, index, workspaceName, indexes);
+                    continue;
+                }
+                Name propertyName = nameFrom(defn.getColumnDefinition(0).getPropertyName());
+                List<Constraint> applicable = new ArrayList<>();
+                boolean equality = false;
+                for (Constraint constraint : andedConstraints) {
+                    if (constraint instanceof Comparison) {
+                        Comparison comparison = (Comparison)constraint;
+                        if (comparison.operator() == Operator.LIKE) continue;
+                        if (!isPropertyOn(comparison.getOperand1(), selector, propertyName)) continue;
+                        if (comparison.operator() == Operator.EQUAL_TO) equality = true;
+                        applicable.add(constraint);
+                    } else if (constraint instanceof Between) {
+                        Between between = (Between)constraint;
+                        if (isPropertyOn(between.getOperand(), selector, propertyName)) applicable.add(constraint);
+                    } else if (constraint instanceof SetCriteria) {
+                        SetCriteria criteria = (SetCriteria)constraint;
+                        if (isPropertyOn(criteria.leftOperand(), selector, propertyName)) applicable.add(constraint);
+                    } else if (constraint instanceof PropertyExistence) {
+                        PropertyExistence existence = (PropertyExistence)constraint;
+                        if (selector.equals(existence.selectorName())
+                            && propertyName.equals(nameFrom(existence.getPropertyName()))) applicable.add(constraint);
+                    }
+                }
+                if (applicable.isEmpty()) continue;
+                // A unique index returns at most one node for an equality constraint; otherwise the index size is the bound ...
+                long cardinality = equality && defn.getKind() == IndexKind.UNIQUE ? 1L : Math.max(1L, index.estimateTotalCount());
+                indexes.addIndex(defn.getName(), workspaceName, getName(), applicable, COST_ESTIMATE, cardinality);
+            }
+        }
+
+        private void applyFullTextIndex( QueryContext context,
+                                         SelectorName selector,
+                                         List<Constraint> andedConstraints,
+                                         IndexDefinition defn,
+                                         ManagedLocalIndex index,
+                                         String workspaceName,
+                                         IndexCollector indexes ) {
+            String columnPropertyName = defn.getColumnDefinition(0).getPropertyName();
+            boolean allProperties = ALL_PROPERTIES.equals(columnPropertyName);
+            Name propertyName = allProperties ? null : nameFrom(columnPropertyName);
+            List<Constraint> applicable = new ArrayList<>();
+            for (Constraint constraint : andedConstraints) {
+                if (!(constraint instanceof FullTextSearch)) continue;
+                FullTextSearch search = (FullTextSearch)constraint;
+                if (!selector.equals(search.selectorName())) continue;
+                if (search.getPropertyName() == null) {
+                    // Searching all of the properties requires an index of all the properties ...
+                    if (!allProperties) continue;
+                } else if (!allProperties && !propertyName.equals(nameFrom(search.getPropertyName()))) {
+                    continue;
+                }
+                applicable.add(constraint);
+            }
+            if (applicable.isEmpty()) return;
+            long cardinality = Math.max(1L, index.estimateTotalCount());
+            indexes.addIndex(defn.getName(), workspaceName, getName(), applicable, COST_ESTIMATE, cardinality);
+        }
+
+        private boolean isPropertyOn( DynamicOperand operand,
+                                      SelectorName selector,
+                                      Name propertyName ) {
+            if (!(operand instanceof PropertyValue)) return false;
+            PropertyValue value = (PropertyValue)operand;
+            return selector.equals(value.selectorName()) && propertyName.equals(nameFrom(value.getPropertyName()));
+        }
+
+        private Name nameFrom( String name ) {
+            try {
+                return names().create(name);
+            } catch (ValueFormatException e) {
+                // Not a valid name (e.g., unknown prefix), so it can't match any of our properties ...
+                return null;
+            }
+        }
     }
 }
@@ -37,6 +37,8 @@ abstract class LocalMapIndex<T, V> implements LocalIndex<V> {
     private final String name;
     private final String workspace;
     private final String providerName;
+    private final DB db;
+    private final String mapName;
     protected final BTreeMap<T, String> keysByValue;
     protected final NavigableSet<Fun.Tuple2<String, T>> valuesByKey;
     protected final ConcurrentMap<String, Object> options;
@@ -52,16 +54,19 @@ abstract class LocalMapIndex<T, V> implements LocalIndex<V> {
         this.workspace = workspaceName;
         this.providerName = providerName;
         this.converter = converter;
-        if (db.exists(name)) {
-            this.keysByValue = db.getTreeMap(name);
-            this.valuesByKey = db.getTreeSet(name + "/inverse");
-            this.options = db.getHashMap(name + "/options");
+        this.db = db;
+        // The same index definition can apply to multiple workspaces, so each workspace gets its own collections ...
+        this.mapName = mapNameFor(name, workspaceName);
+        if (db.exists(mapName)) {
+            this.keysByValue = db.getTreeMap(mapName);
+            this.valuesByKey = db.getTreeSet(mapName + "/inverse");
+            this.options = db.getHashMap(mapName + "/options");
         } else {
-            BTreeMapMaker maker = db.createTreeMap(name).counterEnable();
+            BTreeMapMaker maker = db.createTreeMap(mapName).counterEnable();
             if (valueSerializer != null) maker.keySerializer(valueSerializer);
             this.keysByValue = maker.make();
-            this.valuesByKey = db.createTreeSet(name + "/inverse").make();
-            this.options = db.createHashMap(name + "/options").make();
+            this.valuesByKey = db.createTreeSet(mapName + "/inverse").make();
+            this.options = db.createHashMap(mapName + "/options").make();
         }
 
         // Bind the map and the set together so the set is auto-updated as the map is changed ...
@@ -91,11 +96,49 @@ abstract class LocalMapIndex<T, V> implements LocalIndex<V> {
         return converter;
     }
 
+    /**
+     * Determine whether the supplied database already contains the persisted state of an index.
+     * 
+     * @param db the database; may not be null
+     * @param name the name of the index; may not be null
+     * @param workspaceName the name of the workspace; may not be null
+     * @return true if the index already exists, or false otherwise
+     */
+    static boolean exists( DB db,
+                           String name,
+                           String workspaceName ) {
+        return db.exists(mapNameFor(name, workspaceName));
+    }
+
+    private static String mapNameFor( String name,
+                                      String workspaceName ) {
+        return name + "/" + workspaceName;
+    }
+
     @Override
     public Results filter( IndexConstraints filter ) {
+        Converter<T> converter = this.converter.withVariables(filter.getVariables());
         return Operations.createOperation(keysByValue, converter, filter.getConstraints());
     }
 
+    @Override
+    public void removeAll() {
+        keysByValue.clear();
+    }
+
+    @Override
+    public long estimateTotalCount() {
+        return keysByValue.sizeLong();
+    }
+
+    @Override
+    public void destroy() {
+        close();
+        db.delete(mapName);
+        db.delete(mapName + "/inverse");
+        db.delete(mapName + "/options");
+    }
+
     @Override
     public void remove( String nodeKey ) {
         // Final all of the T values (entry keys) for the given node key (entry values) ...
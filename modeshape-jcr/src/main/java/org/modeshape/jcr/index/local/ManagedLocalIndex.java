@@ -0,0 +1,92 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.modeshape.jcr.index.local;
+
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.api.index.IndexDefinition;
+import org.modeshape.jcr.spi.index.IndexConstraints;
+import org.modeshape.jcr.spi.index.provider.IndexChangeAdapter;
+import org.modeshape.jcr.spi.index.provider.ManagedIndex;
+
+/**
+ * The {@link ManagedIndex} implementation used by the {@link LocalIndexProvider}, which pairs a {@link LocalIndex} with the
+ * {@link IndexChangeAdapter} that keeps it up to date.
+ * 
+ * @author Randall Hauch (rhauch@redhat.com)
+ */
+@ThreadSafe
+class ManagedLocalIndex implements ManagedIndex {
+
+    private final IndexDefinition defn;
+    private final LocalIndex<?> index;
+    private final IndexChangeAdapter adapter;
+
+    ManagedLocalIndex( IndexDefinition defn,
+                       LocalIndex<?> index,
+                       IndexChangeAdapter adapter ) {
+        this.defn = defn;
+        this.index = index;
+        this.adapter = adapter;
+    }
+
+    /**
+     * Get the definition from which this index was created.
+     * 
+     * @return the index definition; never null
+     */
+    IndexDefinition definition() {
+        return defn;
+    }
+
+    /**
+     * Get the approximate number of entries in this index.
+     * 
+     * @return the number of entries; never negative
+     */
+    long estimateTotalCount() {
+        return index.estimateTotalCount();
+    }
+
+    @Override
+    public Results filter( IndexConstraints constraints ) {
+        return index.filter(constraints);
+    }
+
+    @Override
+    public IndexChangeAdapter getIndexChangeAdapter() {
+        return adapter;
+    }
+
+    @Override
+    public void removeAll() {
+        index.removeAll();
+    }
+
+    @Override
+    public void shutdown( boolean destroyed ) {
+        if (destroyed) {
+            index.destroy();
+        } else {
+            index.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ManagedLocalIndex(" + index.getName() + ")";
+    }
+}
@@ -57,7 +57,7 @@ public class ClusteredJournal extends MessageConsumer<DeltaMessage> implements C
      */
     public ClusteredJournal( LocalJournal localJournal,
                              ClusteringService clusteringService ) {
-        super(DeltaMessage.class);
+        super(DeltaMessage.class, DeltaMessageCodec.INSTANCE);
 
         CheckArg.isNotNull(localJournal, "localJournal");
         CheckArg.isNotNull(clusteringService, "clusteringService");
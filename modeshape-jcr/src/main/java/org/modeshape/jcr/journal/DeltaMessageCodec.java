@@ -0,0 +1,104 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.journal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.modeshape.common.annotation.Immutable;
+import org.modeshape.jcr.cache.change.ChangeSetCodec;
+import org.modeshape.jcr.clustering.PayloadCodec;
+
+/**
+ * A {@link PayloadCodec} for {@link DeltaMessage}s, which writes the change sets of the journal records using a
+ * {@link ChangeSetCodec} whose dictionaries are shared by all the records of a message.
+ */
+@Immutable
+final class DeltaMessageCodec implements PayloadCodec<DeltaMessage> {
+
+    static final DeltaMessageCodec INSTANCE = new DeltaMessageCodec();
+
+    private static final byte REQUEST = 1;
+    private static final byte RESPONSE = 2;
+    private static final byte STILL_RECONCILING = 3;
+
+    private DeltaMessageCodec() {
+    }
+
+    @Override
+    public void write( DeltaMessage message,
+                       DataOutput output ) throws IOException {
+        if (message instanceof DeltaMessage.DeltaRequest) {
+            output.writeByte(REQUEST);
+            output.writeUTF(message.getJournalId());
+            DateTime lastChangeSetTime = ((DeltaMessage.DeltaRequest)message).getLastChangeSetTime();
+            output.writeBoolean(lastChangeSetTime != null);
+            if (lastChangeSetTime != null) {
+                output.writeLong(lastChangeSetTime.getMillis());
+                output.writeUTF(lastChangeSetTime.getZone().getID());
+            }
+        } else if (message instanceof DeltaMessage.DeltaResponse) {
+            output.writeByte(RESPONSE);
+            output.writeUTF(message.getJournalId());
+            List<JournalRecord> records = ((DeltaMessage.DeltaResponse)message).getRecords();
+            output.writeInt(records.size());
+            ChangeSetCodec.Encoder encoder = ChangeSetCodec.encoder(output);
+            for (JournalRecord record : records) {
+                output.writeLong(record.getTimeBasedKey());
+                encoder.write(record.getChangeSet());
+            }
+        } else if (message instanceof DeltaMessage.DeltaStillReconciling) {
+            output.writeByte(STILL_RECONCILING);
+            output.writeUTF(message.getJournalId());
+        } else {
+            throw new IOException("Unknown delta message: " + message);
+        }
+    }
+
+    @Override
+    public DeltaMessage read( DataInput input ) throws IOException {
+        byte type = input.readByte();
+        String journalId = input.readUTF();
+        switch (type) {
+            case REQUEST: {
+                DateTime lastChangeSetTime = null;
+                if (input.readBoolean()) {
+                    long millis = input.readLong();
+                    lastChangeSetTime = new DateTime(millis, DateTimeZone.forID(input.readUTF()));
+                }
+                return DeltaMessage.request(journalId, lastChangeSetTime);
+            }
+            case RESPONSE: {
+                int count = input.readInt();
+                List<JournalRecord> records = new ArrayList<>(count);
+                ChangeSetCodec.Decoder decoder = ChangeSetCodec.decoder(input);
+                for (int i = 0; i != count; ++i) {
+                    long timeBasedKey = input.readLong();
+                    records.add(new JournalRecord(decoder.read()).withTimeBasedKey(timeBasedKey));
+                }
+                return DeltaMessage.response(journalId, records);
+            }
+            case STILL_RECONCILING:
+                return DeltaMessage.stillReconciling(journalId);
+            default:
+                throw new IOException("Unknown delta message type: " + type);
+        }
+    }
+}
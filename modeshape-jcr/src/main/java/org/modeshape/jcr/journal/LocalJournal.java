@@ -17,7 +17,11 @@
 package org.modeshape.jcr.journal;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.NavigableMap;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
@@ -40,6 +44,12 @@ import org.modeshape.jcr.cache.change.ChangeSet;
 
 /**
  * An append only journal implementation which stores each {@link ChangeSet} (either local or remove) on the local FS.
+ * <p>
+ * By default each call to {@link #addRecords(JournalRecord...)} commits its records to disk on its own. When the journal is
+ * created with a maximum commit batch size larger than 1, concurrent callers are grouped together: the first caller becomes the
+ * leader which commits the records of all the callers that queued up in the meantime, while the others wait until their batch has
+ * been committed. Each caller still returns only after its records have been committed.
+ * </p>
  *
  * @author Horia Chiorean (hchiorea@redhat.com)
  */
@@ -63,6 +73,19 @@ public class LocalJournal implements ChangeJournal {
     private final String journalLocation;
     private final boolean asyncWritesEnabled;
     private final long maxTimeToKeepEntriesMillis;
+    private final int maxCommitBatchSize;
+    private final long maxCommitLatencyNanos;
+
+    /**
+     * The monitor guarding the group commit state: {@link #pendingBatches} and {@link #leaderActive}.
+     */
+    private final Object commitMonitor = new Object();
+    /**
+     * The batches which are waiting to be committed, in the order in which they were opened. Only the last one accepts new records.
+     */
+    private final LinkedList<CommitBatch> pendingBatches = new LinkedList<CommitBatch>();
+    private boolean leaderActive = false;
+    private volatile CommitStatistics commitStatistics = CommitStatistics.NONE;
 
     private String journalId;
     private DB journalDB;
@@ -83,11 +106,34 @@ public class LocalJournal implements ChangeJournal {
     public LocalJournal( String journalLocation,
                          boolean asyncWritesEnabled,
                          int maxDaysToKeepEntries ) {
+        this(journalLocation, asyncWritesEnabled, maxDaysToKeepEntries, 1, 0L);
+    }
+
+    /**
+     * Creates a new journal instance, in stopped state.
+     *
+     * @param journalLocation the folder location on the FS where the entries should be saved. Must not be {@code null}
+     * @param asyncWritesEnabled flag which indicates if disk write should be asynchronous or not.
+     * @param maxDaysToKeepEntries the maximum number of days this journal should store entries on disk. A negative value or 0
+     * @param maxCommitBatchSize the maximum number of records which are committed together; a value larger than 1 enables group
+     * commits. Must be positive.
+     * @param maxCommitLatencyMillis the maximum number of milliseconds a group commit waits for a batch to fill up before committing
+     * it. Must not be negative.
+     */
+    public LocalJournal( String journalLocation,
+                         boolean asyncWritesEnabled,
+                         int maxDaysToKeepEntries,
+                         int maxCommitBatchSize,
+                         long maxCommitLatencyMillis ) {
         CheckArg.isNotNull(journalLocation, "journalLocation");
+        CheckArg.isPositive(maxCommitBatchSize, "maxCommitBatchSize");
+        CheckArg.isNonNegative(maxCommitLatencyMillis, "maxCommitLatencyMillis");
 
         this.journalLocation = journalLocation;
         this.asyncWritesEnabled = asyncWritesEnabled;
         this.maxTimeToKeepEntriesMillis = TimeUnit.DAYS.toMillis(maxDaysToKeepEntries);
+        this.maxCommitBatchSize = maxCommitBatchSize;
+        this.maxCommitLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxCommitLatencyMillis);
         this.stopped = true;
         this.searchTimeDelta = DEFAULT_LOCAL_SEARCH_DELTA;
     }
@@ -174,9 +220,135 @@ public class LocalJournal implements ChangeJournal {
         if (stopped) {
             return;
         }
+        if (maxCommitBatchSize > 1) {
+            addRecordsInGroup(records);
+            return;
+        }
+        writeAndCommit(Arrays.asList(records));
+    }
+
+    /**
+     * Adds the given records to the currently open batch and waits until that batch has been committed. If there isn't any
+     * other thread committing batches, the calling thread becomes the leader and commits all the pending batches up to and
+     * including its own.
+     *
+     * @param records the records to add; may not be null
+     */
+    private void addRecordsInGroup( JournalRecord... records ) {
+        CommitBatch batch = null;
+        boolean interrupted = false;
+        try {
+            synchronized (commitMonitor) {
+                CommitBatch openBatch = pendingBatches.peekLast();
+                if (openBatch == null || openBatch.size() >= maxCommitBatchSize) {
+                    openBatch = new CommitBatch();
+                    pendingBatches.add(openBatch);
+                }
+                batch = openBatch;
+                batch.add(records);
+                if (batch.size() >= maxCommitBatchSize) {
+                    // wake up a leader which may be waiting for this batch to fill up
+                    commitMonitor.notifyAll();
+                }
+                boolean leader = false;
+                while (!batch.isDone()) {
+                    if (!leaderActive) {
+                        leaderActive = true;
+                        leader = true;
+                        break;
+                    }
+                    // the records are already in a batch that will be committed, so keep waiting for the outcome ...
+                    interrupted |= waitForCommit(0L);
+                }
+                if (!leader) {
+                    batch.checkFailure();
+                    return;
+                }
+            }
+            try {
+                interrupted |= commitPendingBatchesUpTo(batch);
+            } finally {
+                synchronized (commitMonitor) {
+                    leaderActive = false;
+                    // let one of the waiting threads take over the remaining batches
+                    commitMonitor.notifyAll();
+                }
+            }
+            batch.checkFailure();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean commitPendingBatchesUpTo( CommitBatch lastBatch ) {
+        boolean interrupted = false;
+        while (true) {
+            CommitBatch next = null;
+            synchronized (commitMonitor) {
+                if (lastBatch.isDone()) {
+                    return interrupted;
+                }
+                next = pendingBatches.peekFirst();
+                assert next != null;
+                if (next == pendingBatches.peekLast() && maxCommitLatencyNanos > 0 && !interrupted) {
+                    // this is the open batch, so give other writers a chance to join it ...
+                    long deadline = System.nanoTime() + maxCommitLatencyNanos;
+                    long remaining = maxCommitLatencyNanos;
+                    while (next.size() < maxCommitBatchSize && remaining > 0) {
+                        if (waitForCommit(remaining)) {
+                            // stop waiting for other writers and commit what's there ...
+                            interrupted = true;
+                            break;
+                        }
+                        remaining = deadline - System.nanoTime();
+                    }
+                }
+                // no other records can be added to this batch once it's out of the pending list
+                pendingBatches.removeFirst();
+            }
+            try {
+                writeAndCommit(next.records());
+                next.done(null);
+            } catch (RuntimeException e) {
+                next.done(e);
+            } finally {
+                synchronized (commitMonitor) {
+                    commitMonitor.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits on the commit monitor. An interrupt does not abort the wait for a commit, since the records of the calling thread
+     * may already be committed by another thread; the caller must instead restore the interrupt status once it is done.
+     * 
+     * @param timeoutNanos the maximum time to wait, or 0 to wait until notified
+     * @return true if the thread was interrupted while waiting, or false otherwise
+     */
+    private boolean waitForCommit( long timeoutNanos ) {
+        assert Thread.holdsLock(commitMonitor);
+        try {
+            if (timeoutNanos > 0) {
+                TimeUnit.NANOSECONDS.timedWait(commitMonitor, timeoutNanos);
+            } else {
+                commitMonitor.wait();
+            }
+            return false;
+        } catch (InterruptedException e) {
+            return true;
+        }
+    }
+
+    private void writeAndCommit( List<JournalRecord> records ) {
         RW_LOCK.writeLock().lock();
         try {
-            LOGGER.debug("Adding {0} records", records.length);
+            if (stopped) {
+                return;
+            }
+            LOGGER.debug("Adding {0} records", records.size());
             for (JournalRecord record : records) {
                 if (record.getTimeBasedKey() < 0) {
                     //generate a unique timestamp only if there isn't one. In some scenarios (i.e. running in a cluster) we
@@ -187,7 +359,9 @@ public class LocalJournal implements ChangeJournal {
                 }
                 this.records.put(record.getTimeBasedKey(), record);
             }
+            long start = System.nanoTime();
             this.journalDB.commit();
+            commitStatistics.recordCommit(records.size(), System.nanoTime() - start);
         } finally {
             RW_LOCK.writeLock().unlock();
         }
@@ -269,6 +443,17 @@ public class LocalJournal implements ChangeJournal {
         return journalId;
     }
 
+    /**
+     * Sets the component which should be notified each time this journal commits records to disk.
+     *
+     * @param commitStatistics the statistics component; may be null if commits should not be recorded
+     * @return this instance
+     */
+    public LocalJournal withCommitStatistics( CommitStatistics commitStatistics ) {
+        this.commitStatistics = commitStatistics != null ? commitStatistics : CommitStatistics.NONE;
+        return this;
+    }
+
     protected LocalJournal withSearchTimeDelta( final long searchTimeDelta ) {
         this.searchTimeDelta = searchTimeDelta;
         return this;
@@ -308,4 +493,66 @@ public class LocalJournal implements ChangeJournal {
             }
         };
     }
+
+    /**
+     * A component which records the activity of the journal's disk commits.
+     */
+    public interface CommitStatistics {
+        /**
+         * An implementation which ignores all commits.
+         */
+        CommitStatistics NONE = new CommitStatistics() {
+            @Override
+            public void recordCommit( int batchSize,
+                                      long durationInNanos ) {
+                // do nothing
+            }
+        };
+
+        /**
+         * Record that a batch of records has been committed to disk.
+         *
+         * @param batchSize the number of records which were committed together
+         * @param durationInNanos the time it took to commit the batch, in nanoseconds
+         */
+        void recordCommit( int batchSize,
+                           long durationInNanos );
+    }
+
+    /**
+     * A group of records which are committed to disk together. Instances are guarded by the journal's commit monitor, except
+     * for the records themselves which are only read by the leader after the batch has been removed from the pending list.
+     */
+    private static final class CommitBatch {
+        private final List<JournalRecord> records = new ArrayList<JournalRecord>();
+        private volatile boolean done = false;
+        private volatile RuntimeException failure;
+
+        protected void add( JournalRecord... records ) {
+            this.records.addAll(Arrays.asList(records));
+        }
+
+        protected int size() {
+            return records.size();
+        }
+
+        protected List<JournalRecord> records() {
+            return records;
+        }
+
+        protected boolean isDone() {
+            return done;
+        }
+
+        protected void done( RuntimeException failure ) {
+            this.failure = failure;
+            this.done = true;
+        }
+
+        protected void checkFailure() {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.ThreadSafe;
+import org.modeshape.jcr.RepositoryStatistics;
+import org.modeshape.jcr.api.monitor.ValueMetric;
+
+/**
+ * A bounded cache of parsed queries or query plans that evicts the least-recently used entry when it is full. Each lookup is
+ * recorded as a {@link ValueMetric#QUERY_CACHE_HIT_COUNT hit} or {@link ValueMetric#QUERY_CACHE_MISS_COUNT miss}.
+ * 
+ * @param <K> the type of key
+ * @param <V> the type of cached value
+ */
+@ThreadSafe
+public final class QueryCache<K, V> {
+
+    @GuardedBy( "entries" )
+    private final Map<K, V> entries;
+    private final RepositoryStatistics statistics;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a new cache.
+     * 
+     * @param maxSize the maximum number of entries in the cache; must be positive
+     * @param statistics the statistics to which the hits and misses are reported; may be null if they are not to be reported
+     */
+    public QueryCache( final int maxSize,
+                       RepositoryStatistics statistics ) {
+        assert maxSize > 0;
+        this.statistics = statistics;
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<K, V> eldest ) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the cached value for the supplied key.
+     * 
+     * @param key the key; may not be null
+     * @return the cached value, or null if there is no such value in the cache
+     */
+    public V get( K key ) {
+        V value = null;
+        synchronized (entries) {
+            value = entries.get(key);
+        }
+        if (value != null) {
+            hits.incrementAndGet();
+            if (statistics != null) statistics.increment(ValueMetric.QUERY_CACHE_HIT_COUNT);
+        } else {
+            misses.incrementAndGet();
+            if (statistics != null) statistics.increment(ValueMetric.QUERY_CACHE_MISS_COUNT);
+        }
+        return value;
+    }
+
+    /**
+     * Place the supplied value into the cache, possibly evicting the least-recently used value.
+     * 
+     * @param key the key; may not be null
+     * @param value the value; may not be null
+     */
+    public void put( K key,
+                     V value ) {
+        assert value != null;
+        synchronized (entries) {
+            entries.put(key, value);
+        }
+    }
+
+    /**
+     * Remove all of the entries from this cache.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Get the number of entries in this cache.
+     * 
+     * @return the number of entries
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Get the number of lookups that found a value since this cache was created.
+     * 
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of lookups that did not find a value since this cache was created.
+     * 
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+}
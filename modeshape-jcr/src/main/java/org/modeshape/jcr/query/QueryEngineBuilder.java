@@ -18,6 +18,7 @@ package org.modeshape.jcr.query;
 
 import org.modeshape.jcr.ExecutionContext;
 import org.modeshape.jcr.RepositoryConfiguration;
+import org.modeshape.jcr.RepositoryStatistics;
 import org.modeshape.jcr.query.optimize.Optimizer;
 import org.modeshape.jcr.query.optimize.RuleBasedOptimizer;
 import org.modeshape.jcr.query.plan.CanonicalPlanner;
@@ -34,6 +35,7 @@ public abstract class QueryEngineBuilder {
     private ExecutionContext context;
     private Planner planner;
     private Optimizer optimizer;
+    private RepositoryStatistics statistics;
 
     public QueryEngineBuilder() {
     }
@@ -47,6 +49,11 @@ public abstract class QueryEngineBuilder {
         return this;
     }
 
+    public QueryEngineBuilder using( RepositoryStatistics statistics ) {
+        this.statistics = statistics;
+        return this;
+    }
+
     public QueryEngineBuilder with( Planner planner ) {
         this.planner = planner;
         return this;
@@ -71,6 +78,10 @@ public abstract class QueryEngineBuilder {
         return indexManager;
     }
 
+    protected final RepositoryStatistics statistics() {
+        return statistics;
+    }
+
     protected String repositoryName() {
         return config().getName();
     }
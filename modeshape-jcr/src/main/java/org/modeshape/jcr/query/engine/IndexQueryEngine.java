@@ -26,6 +26,7 @@ import javax.jcr.query.qom.Constraint;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.jcr.ExecutionContext;
 import org.modeshape.jcr.JcrI18n;
+import org.modeshape.jcr.RepositoryStatistics;
 import org.modeshape.jcr.api.index.IndexDefinition;
 import org.modeshape.jcr.query.NodeSequence;
 import org.modeshape.jcr.query.QueryContext;
@@ -112,7 +113,7 @@ public class IndexQueryEngine extends ScanningQueryEngine {
                 };
             }
             // Finally create the query engine ...
-            return new IndexQueryEngine(context(), repositoryName(), planner(), optimizer, indexManager());
+            return new IndexQueryEngine(context(), repositoryName(), planner(), optimizer, indexManager(), statistics());
         }
 
         @Override
@@ -203,8 +204,9 @@ public class IndexQueryEngine extends ScanningQueryEngine {
                                 String repositoryName,
                                 Planner planner,
                                 Optimizer optimizer,
-                                IndexManager indexManager ) {
-        super(context, repositoryName, planner, optimizer);
+                                IndexManager indexManager,
+                                RepositoryStatistics statistics ) {
+        super(context, repositoryName, planner, optimizer, statistics);
         this.indexManager = indexManager;
     }
 
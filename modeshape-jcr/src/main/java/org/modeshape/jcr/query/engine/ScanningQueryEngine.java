@@ -40,12 +40,14 @@ import org.modeshape.common.collection.Multimap;
 import org.modeshape.common.collection.Problems;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.CheckArg;
+import org.modeshape.common.util.HashCode;
 import org.modeshape.jcr.ExecutionContext;
 import org.modeshape.jcr.GraphI18n;
 import org.modeshape.jcr.JcrLexicon;
 import org.modeshape.jcr.ModeShapeLexicon;
 import org.modeshape.jcr.NodeTypes;
 import org.modeshape.jcr.RepositoryIndexes;
+import org.modeshape.jcr.RepositoryStatistics;
 import org.modeshape.jcr.api.query.QueryCancelledException;
 import org.modeshape.jcr.api.query.qom.Operator;
 import org.modeshape.jcr.cache.CachedNode;
@@ -59,6 +61,7 @@ import org.modeshape.jcr.query.NodeSequence;
 import org.modeshape.jcr.query.NodeSequence.Batch;
 import org.modeshape.jcr.query.NodeSequence.RowAccessor;
 import org.modeshape.jcr.query.NodeSequence.RowFilter;
+import org.modeshape.jcr.query.QueryCache;
 import org.modeshape.jcr.query.QueryContext;
 import org.modeshape.jcr.query.QueryEngine;
 import org.modeshape.jcr.query.QueryEngineBuilder;
@@ -175,7 +178,7 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
 
         @Override
         public QueryEngine build() {
-            return new ScanningQueryEngine(context(), repositoryName(), planner(), optimizer());
+            return new ScanningQueryEngine(context(), repositoryName(), planner(), optimizer(), statistics());
         }
 
         @Override
@@ -188,19 +191,34 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
         return new Builder();
     }
 
+    /**
+     * The maximum number of optimized query plans that are kept for reuse.
+     */
+    public static final int PLAN_CACHE_SIZE = 1000;
+
     protected final String repositoryName;
     protected final Planner planner;
     protected final Optimizer optimizer;
+    private final QueryCache<PlanKey, CachedPlan> plans;
 
     public ScanningQueryEngine( ExecutionContext context,
                                 String repositoryName,
                                 Planner planner,
                                 Optimizer optimizer ) {
+        this(context, repositoryName, planner, optimizer, null);
+    }
+
+    public ScanningQueryEngine( ExecutionContext context,
+                                String repositoryName,
+                                Planner planner,
+                                Optimizer optimizer,
+                                RepositoryStatistics statistics ) {
         assert planner != null;
         assert optimizer != null;
         this.repositoryName = repositoryName;
         this.planner = planner;
         this.optimizer = optimizer;
+        this.plans = new QueryCache<>(PLAN_CACHE_SIZE, statistics);
     }
 
     /**
@@ -239,14 +257,16 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
                          context.getWorkspaceNames(), repositoryName, query, context.id());
         }
 
-        // Create the canonical plan ...
+        // Look for an optimized plan of the same query in the same context, or create the canonical plan ...
         long start = System.nanoTime();
-        PlanNode plan = planner.createPlan(context, query);
+        PlanKey planKey = new PlanKey(query, context);
+        CachedPlan cachedPlan = plans.get(planKey);
+        PlanNode plan = cachedPlan == null ? planner.createPlan(context, query) : null;
         long duration = Math.abs(System.nanoTime() - start);
         Statistics stats = new Statistics(duration);
         final String workspaceName = context.getWorkspaceNames().iterator().next();
 
-        if (trace) {
+        if (trace && plan != null) {
             LOGGER.trace("Computed canonical query plan for query {0}: {1}", context.id(), plan);
         }
 
@@ -255,12 +275,21 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
         if (!context.getProblems().hasErrors()) {
             // Optimize the plan ...
             start = System.nanoTime();
-            PlanNode optimizedPlan = optimizer.optimize(context, plan);
+            PlanNode optimizedPlan = null;
+            if (cachedPlan != null) {
+                optimizedPlan = cachedPlan.restoreInto(context);
+            } else {
+                optimizedPlan = optimizer.optimize(context, plan);
+                if (!context.getProblems().hasProblems()) {
+                    plans.put(planKey, new CachedPlan(optimizedPlan, planKey, context));
+                }
+            }
             duration = Math.abs(System.nanoTime() - start);
             stats = stats.withOptimizationTime(duration);
 
             if (trace) {
-                LOGGER.trace("Computed optimized query plan for query {0}:\n{1}", context.id(), optimizedPlan);
+                LOGGER.trace("{2} optimized query plan for query {0}:\n{1}", context.id(), optimizedPlan,
+                             cachedPlan != null ? "Reused" : "Computed");
             }
 
             // Find the query result columns ...
@@ -2825,6 +2854,87 @@ public class ScanningQueryEngine implements org.modeshape.jcr.query.QueryEngine
         }
     }
 
+    /**
+     * The key for an optimized plan. The optimizer uses the hints, the schemata, the node types, the index definitions and the
+     * values of the bind variables, so a plan can only be reused when all of them are the same. The schemata, node types and
+     * index definitions are immutable snapshots that are replaced upon any change, so they are compared by identity.
+     */
+    @Immutable
+    protected static final class PlanKey {
+        private final QueryCommand query;
+        private final Set<String> workspaceNames;
+        private final PlanHints hints;
+        private final Map<String, Object> variables;
+        private final Schemata schemata;
+        private final NodeTypes nodeTypes;
+        private final RepositoryIndexes indexDefns;
+        private final int hc;
+
+        protected PlanKey( QueryCommand query,
+                           QueryContext context ) {
+            this.query = query;
+            this.workspaceNames = new HashSet<>(context.getWorkspaceNames());
+            this.hints = context.getHints().clone();
+            this.variables = new HashMap<>(context.getVariables());
+            this.schemata = context.getSchemata();
+            this.nodeTypes = context.getNodeTypes();
+            this.indexDefns = context.getIndexDefinitions();
+            this.hc = HashCode.compute(query, workspaceNames, hints, variables);
+        }
+
+        @Override
+        public int hashCode() {
+            return hc;
+        }
+
+        @Override
+        public boolean equals( Object obj ) {
+            if (obj == this) return true;
+            if (obj instanceof PlanKey) {
+                PlanKey that = (PlanKey)obj;
+                return this.hc == that.hc && this.schemata == that.schemata && this.nodeTypes == that.nodeTypes
+                       && this.indexDefns == that.indexDefns && this.query.equals(that.query)
+                       && this.workspaceNames.equals(that.workspaceNames) && this.hints.equals(that.hints)
+                       && this.variables.equals(that.variables);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * An optimized plan together with the changes that planning made to the context's hints and variables.
+     */
+    @Immutable
+    protected static final class CachedPlan {
+        private final PlanNode plan;
+        private final PlanHints hints;
+        private final Set<String> addedVariables;
+
+        protected CachedPlan( PlanNode plan,
+                              PlanKey key,
+                              QueryContext context ) {
+            this.plan = plan.clone();
+            this.hints = context.getHints().clone();
+            this.addedVariables = new HashSet<>(context.getVariables().keySet());
+            this.addedVariables.removeAll(key.variables.keySet());
+        }
+
+        /**
+         * Apply to the supplied context the changes that planning would have made, and return a copy of the optimized plan.
+         * 
+         * @param context the context for the query execution; may not be null
+         * @return the optimized plan; never null
+         */
+        protected PlanNode restoreInto( QueryContext context ) {
+            context.getHints().setAll(hints);
+            for (String variableName : addedVariables) {
+                // Placeholders for the subquery results ...
+                context.getVariables().put(variableName, null);
+            }
+            return plan.clone();
+        }
+    }
+
     @ThreadSafe
     static class ScanQueryContext extends QueryContext {
 
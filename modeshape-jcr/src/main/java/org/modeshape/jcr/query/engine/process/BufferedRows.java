@@ -320,13 +320,16 @@ public class BufferedRows {
         return new MultiNodeRowSerializer(nodeCache, width);
     }
 
-    protected static String serializeNodeKey( CachedNode node ) {
-        return node != null ? node.getKey().toString() : "";
+    protected static void serializeNodeKey( DataOutput out,
+                                            CachedNode node ) throws IOException {
+        // The buffers are temporary, so use the compact binary form of the key ...
+        out.writeBoolean(node != null);
+        if (node != null) node.getKey().write(out);
     }
 
-    protected static CachedNode deserializeNodeKey( String keyStr,
-                                                    CachedNodeSupplier cache ) {
-        return keyStr.length() == 0 ? null : cache.getNode(new NodeKey(keyStr));
+    protected static CachedNode deserializeNodeKey( DataInput in,
+                                                    CachedNodeSupplier cache ) throws IOException {
+        return in.readBoolean() ? cache.getNode(NodeKey.read(in)) : null;
     }
 
     protected static final class SingleNodeRowSerializer implements BufferedRowFactory<SingleNodeRow>, Serializable {
@@ -340,16 +343,15 @@ public class BufferedRows {
         @Override
         public void serialize( DataOutput out,
                                SingleNodeRow value ) throws IOException {
-            out.writeUTF(serializeNodeKey(value.getNode()));
+            serializeNodeKey(out, value.getNode());
             out.writeFloat(value.getScore());
         }
 
         @Override
         public SingleNodeRow deserialize( DataInput in,
                                           int available ) throws IOException {
-            String keyStr = in.readUTF();
+            CachedNode node = deserializeNodeKey(in, cache);
             float score = in.readFloat();
-            CachedNode node = deserializeNodeKey(keyStr, cache);
             return new SingleNodeRow(node, score);
         }
 
@@ -380,8 +382,8 @@ public class BufferedRows {
         @Override
         public void serialize( DataOutput out,
                                DoubleNodeRow value ) throws IOException {
-            out.writeUTF(serializeNodeKey(value.getNode()));
-            out.writeUTF(serializeNodeKey(value.getNode(1)));
+            serializeNodeKey(out, value.getNode());
+            serializeNodeKey(out, value.getNode(1));
             out.writeFloat(value.getScore());
             out.writeFloat(value.getScore(1));
         }
@@ -389,8 +391,8 @@ public class BufferedRows {
         @Override
         public DoubleNodeRow deserialize( DataInput in,
                                           int available ) throws IOException {
-            CachedNode node1 = deserializeNodeKey(in.readUTF(), cache);
-            CachedNode node2 = deserializeNodeKey(in.readUTF(), cache);
+            CachedNode node1 = deserializeNodeKey(in, cache);
+            CachedNode node2 = deserializeNodeKey(in, cache);
             return new DoubleNodeRow(node1, node2, in.readFloat(), in.readFloat());
         }
 
@@ -421,9 +423,9 @@ public class BufferedRows {
         @Override
         public void serialize( DataOutput out,
                                TripleNodeRow value ) throws IOException {
-            out.writeUTF(serializeNodeKey(value.getNode()));
-            out.writeUTF(serializeNodeKey(value.getNode(1)));
-            out.writeUTF(serializeNodeKey(value.getNode(2)));
+            serializeNodeKey(out, value.getNode());
+            serializeNodeKey(out, value.getNode(1));
+            serializeNodeKey(out, value.getNode(2));
             out.writeFloat(value.getScore());
             out.writeFloat(value.getScore(1));
             out.writeFloat(value.getScore(2));
@@ -432,9 +434,9 @@ public class BufferedRows {
         @Override
         public TripleNodeRow deserialize( DataInput in,
                                           int available ) throws IOException {
-            CachedNode node1 = deserializeNodeKey(in.readUTF(), cache);
-            CachedNode node2 = deserializeNodeKey(in.readUTF(), cache);
-            CachedNode node3 = deserializeNodeKey(in.readUTF(), cache);
+            CachedNode node1 = deserializeNodeKey(in, cache);
+            CachedNode node2 = deserializeNodeKey(in, cache);
+            CachedNode node3 = deserializeNodeKey(in, cache);
             return new TripleNodeRow(node1, node2, node3, in.readFloat(), in.readFloat(), in.readFloat());
         }
 
@@ -466,10 +468,10 @@ public class BufferedRows {
         @Override
         public void serialize( DataOutput out,
                                QuadNodeRow value ) throws IOException {
-            out.writeUTF(serializeNodeKey(value.getNode()));
-            out.writeUTF(serializeNodeKey(value.getNode(1)));
-            out.writeUTF(serializeNodeKey(value.getNode(2)));
-            out.writeUTF(serializeNodeKey(value.getNode(3)));
+            serializeNodeKey(out, value.getNode());
+            serializeNodeKey(out, value.getNode(1));
+            serializeNodeKey(out, value.getNode(2));
+            serializeNodeKey(out, value.getNode(3));
             out.writeFloat(value.getScore());
             out.writeFloat(value.getScore(1));
             out.writeFloat(value.getScore(2));
@@ -479,10 +481,10 @@ public class BufferedRows {
         @Override
         public QuadNodeRow deserialize( DataInput in,
                                         int available ) throws IOException {
-            CachedNode node1 = deserializeNodeKey(in.readUTF(), cache);
-            CachedNode node2 = deserializeNodeKey(in.readUTF(), cache);
-            CachedNode node3 = deserializeNodeKey(in.readUTF(), cache);
-            CachedNode node4 = deserializeNodeKey(in.readUTF(), cache);
+            CachedNode node1 = deserializeNodeKey(in, cache);
+            CachedNode node2 = deserializeNodeKey(in, cache);
+            CachedNode node3 = deserializeNodeKey(in, cache);
+            CachedNode node4 = deserializeNodeKey(in, cache);
             return new QuadNodeRow(node1, node2, node3, node4, in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat());
         }
 
@@ -518,7 +520,7 @@ public class BufferedRows {
         public void serialize( DataOutput out,
                                MultiNodeRow value ) throws IOException {
             for (int i = 0; i != width; ++i) {
-                out.writeUTF(serializeNodeKey(value.getNode(i)));
+                serializeNodeKey(out, value.getNode(i));
                 out.writeFloat(value.getScore(i));
             }
         }
@@ -529,7 +531,7 @@ public class BufferedRows {
             CachedNode[] nodes = new CachedNode[width];
             float[] scores = new float[width];
             for (int i = 0; i != width; ++i) {
-                nodes[i] = deserializeNodeKey(in.readUTF(), cache);
+                nodes[i] = deserializeNodeKey(in, cache);
                 scores[i] = in.readFloat();
             }
             return new MultiNodeRow(nodes, scores);
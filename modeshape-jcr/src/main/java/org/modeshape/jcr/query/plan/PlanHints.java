@@ -18,6 +18,7 @@ package org.modeshape.jcr.query.plan;
 import java.io.Serializable;
 import javax.jcr.query.QueryResult;
 import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.common.util.HashCode;
 import org.modeshape.jcr.query.QueryResults;
 
 @NotThreadSafe
@@ -136,24 +137,56 @@ public final class PlanHints implements Serializable, Cloneable {
     @Override
     public PlanHints clone() {
         PlanHints clone = new PlanHints();
-        clone.hasCriteria = this.hasCriteria;
-        clone.hasView = this.hasView;
-        clone.hasJoin = this.hasJoin;
-        clone.hasSort = this.hasSort;
-        clone.hasSetQuery = this.hasSetQuery;
-        clone.hasLimit = this.hasLimit;
-        clone.hasOptionalJoin = this.hasOptionalJoin;
-        clone.hasFullTextSearch = this.hasFullTextSearch;
-        clone.hasSubqueries = this.hasSubqueries;
-        clone.isExistsQuery = this.isExistsQuery;
-        clone.showPlan = this.showPlan;
-        clone.planOnly = this.planOnly;
-        clone.validateColumnExistance = this.validateColumnExistance;
-        clone.includeSystemContent = this.includeSystemContent;
-        clone.useSessionContent = this.useSessionContent;
-        clone.qualifyExpandedColumnNames = this.qualifyExpandedColumnNames;
-        clone.restartable = this.restartable;
-        clone.rowsKeptInMemory = this.rowsKeptInMemory;
+        clone.setAll(this);
         return clone;
     }
+
+    /**
+     * Set each of these hints to the value in the supplied hints.
+     * 
+     * @param other the hints whose values are to be copied; may not be null
+     */
+    public void setAll( PlanHints other ) {
+        this.hasCriteria = other.hasCriteria;
+        this.hasView = other.hasView;
+        this.hasJoin = other.hasJoin;
+        this.hasSort = other.hasSort;
+        this.hasSetQuery = other.hasSetQuery;
+        this.hasLimit = other.hasLimit;
+        this.hasOptionalJoin = other.hasOptionalJoin;
+        this.hasFullTextSearch = other.hasFullTextSearch;
+        this.hasSubqueries = other.hasSubqueries;
+        this.isExistsQuery = other.isExistsQuery;
+        this.showPlan = other.showPlan;
+        this.planOnly = other.planOnly;
+        this.validateColumnExistance = other.validateColumnExistance;
+        this.includeSystemContent = other.includeSystemContent;
+        this.useSessionContent = other.useSessionContent;
+        this.qualifyExpandedColumnNames = other.qualifyExpandedColumnNames;
+        this.restartable = other.restartable;
+        this.rowsKeptInMemory = other.rowsKeptInMemory;
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCode.compute(hasCriteria, hasJoin, hasSort, hasSubqueries, isExistsQuery, rowsKeptInMemory);
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+        if (obj == this) return true;
+        if (obj instanceof PlanHints) {
+            PlanHints that = (PlanHints)obj;
+            return this.hasCriteria == that.hasCriteria && this.hasView == that.hasView && this.hasJoin == that.hasJoin
+                   && this.hasSort == that.hasSort && this.hasSetQuery == that.hasSetQuery && this.hasLimit == that.hasLimit
+                   && this.hasOptionalJoin == that.hasOptionalJoin && this.hasFullTextSearch == that.hasFullTextSearch
+                   && this.hasSubqueries == that.hasSubqueries && this.isExistsQuery == that.isExistsQuery
+                   && this.showPlan == that.showPlan && this.planOnly == that.planOnly
+                   && this.validateColumnExistance == that.validateColumnExistance
+                   && this.includeSystemContent == that.includeSystemContent && this.useSessionContent == that.useSessionContent
+                   && this.qualifyExpandedColumnNames == that.qualifyExpandedColumnNames && this.restartable == that.restartable
+                   && this.rowsKeptInMemory == that.rowsKeptInMemory;
+        }
+        return false;
+    }
 }
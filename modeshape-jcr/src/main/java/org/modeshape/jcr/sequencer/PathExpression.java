@@ -16,6 +16,9 @@
 package org.modeshape.jcr.sequencer;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import org.modeshape.common.annotation.Immutable;
@@ -183,6 +186,15 @@ public class PathExpression implements Serializable {
     private static final String WORKSPACE_AND_PATH_PATTERN_STRING = "(([^:/]*):)?(.*)";
     private static final Pattern WORKSPACE_AND_PATH_PATTERN = Pattern.compile(WORKSPACE_AND_PATH_PATTERN_STRING);
 
+    /**
+     * The characters which match themselves in a path expression. Any other character is (or may be part of) a wildcard, a
+     * predicate, an alternation or a regular expression construct.
+     */
+    private static final String LITERAL_NAME_PATTERN_STRING = "[^\\[\\]\\\\/*()|.$^+?{}@=!<>'\"\\s]+";
+    private static final Pattern LITERAL_NAME_PATTERN = Pattern.compile(LITERAL_NAME_PATTERN_STRING);
+    private static final Pattern LITERAL_PROPERTY_PATTERN = Pattern.compile("(?:/@|\\[@)(" + LITERAL_NAME_PATTERN_STRING
+                                                                            + ")(\\])?$");
+
     private final String expression;
 
     /**
@@ -392,6 +404,63 @@ public class PathExpression implements Serializable {
         return this.expression;
     }
 
+    /**
+     * Get the names of the leading segments that every path matched by this expression starts with. These are the segments up to
+     * (but excluding) the first segment that contains a wildcard, a predicate, an alternation, a "<code>//</code>", or any other
+     * pattern. The names are to be compared case-insensitively, since the expression matches paths case-insensitively.
+     * 
+     * @return the names of the literal leading segments; never null but empty if the expression does not start with a literal
+     *         segment
+     */
+    public List<String> getLiteralPrefixSegments() {
+        WorkspacePath workspacePath = parsePathInWorkspace(this.expression);
+        String path = workspacePath != null ? workspacePath.path : null;
+        if (path == null || !path.startsWith("/") || hasTopLevelAlternation(path)) return Collections.emptyList();
+        List<String> segments = new ArrayList<String>();
+        for (String segment : path.substring(1).split("/", -1)) {
+            if (!LITERAL_NAME_PATTERN.matcher(segment).matches()) break;
+            segments.add(segment);
+        }
+        return segments;
+    }
+
+    /**
+     * Get the name of the property that every path matched by this expression ends with, when the expression ends with a literal
+     * property name (e.g., "<code>/a/b/@c</code>" or "<code>//a/b[@c]</code>"). The name is to be compared
+     * case-insensitively, since the expression matches paths case-insensitively.
+     * 
+     * @return the name of the property, or null if the expression can match paths that end with different properties
+     */
+    public String getLiteralPropertyName() {
+        WorkspacePath workspacePath = parsePathInWorkspace(this.expression);
+        String path = workspacePath != null ? workspacePath.path : null;
+        if (path == null || hasTopLevelAlternation(path)) return null;
+        java.util.regex.Matcher matcher = LITERAL_PROPERTY_PATTERN.matcher(path);
+        if (!matcher.find()) return null;
+        boolean predicate = path.charAt(matcher.start()) == '[';
+        if (predicate != (matcher.group(2) != null)) return null;
+        // Predicates containing a '-' are not used for matching ...
+        if (predicate && matcher.group(1).indexOf('-') != -1) return null;
+        return matcher.group(1);
+    }
+
+    private static boolean hasTopLevelAlternation( String path ) {
+        int depth = 0;
+        for (int i = 0; i != path.length(); ++i) {
+            char c = path.charAt(i);
+            if (c == '\\') {
+                ++i;
+            } else if (c == '(' || c == '[') {
+                ++depth;
+            } else if (c == ')' || c == ']') {
+                --depth;
+            } else if (c == '|' && depth <= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,189 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.sequencer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.modeshape.common.annotation.NotThreadSafe;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.ValueFactory;
+
+/**
+ * An index of {@link SequencerPathExpression}s, which finds the expressions that may match a changed property in a single pass
+ * over the segments of the {@link Path} of its node, without converting the path to a string.
+ * <p>
+ * The index is a trie of the {@link SequencerPathExpression#getLiteralPrefixSegments() literal leading segments} of the
+ * expressions, where each trie node holds the expressions whose literal segments end at that node, grouped by their
+ * {@link SequencerPathExpression#getLiteralPropertyName() literal property name}. The index only rules out the expressions which
+ * cannot match a property, so the candidates it returns must still be {@link SequencerPathExpression#matcher(String) matched}.
+ * Since path expressions match paths case-insensitively, all names are compared case-insensitively.
+ * </p>
+ * <p>
+ * An index is populated by a single thread, after which it can be safely {@link #candidatesFor(Path, Name) used} by multiple
+ * threads as long as it is no longer modified.
+ * </p>
+ * 
+ * @param <T> the type of values associated with the expressions
+ */
+@NotThreadSafe
+public class PathExpressionIndex<T> {
+
+    private static final Comparator<Entry<?>> ORDER = new Comparator<Entry<?>>() {
+        @Override
+        public int compare( Entry<?> first,
+                            Entry<?> second ) {
+            return first.order < second.order ? -1 : (first.order == second.order ? 0 : 1);
+        }
+    };
+
+    private final ValueFactory<String> stringFactory;
+    private final TrieNode<T> root = new TrieNode<T>();
+    private int size;
+
+    /**
+     * Create an empty index.
+     * 
+     * @param stringFactory the factory used to convert names into strings; may not be null
+     */
+    public PathExpressionIndex( ValueFactory<String> stringFactory ) {
+        this.stringFactory = stringFactory;
+    }
+
+    /**
+     * Add a path expression and its value to this index.
+     * 
+     * @param expression the path expression; may not be null
+     * @param value the value associated with the expression; may not be null
+     */
+    public void add( SequencerPathExpression expression,
+                     T value ) {
+        TrieNode<T> node = root;
+        for (String segment : expression.getLiteralPrefixSegments()) {
+            node = node.childFor(segment);
+        }
+        node.add(expression.getLiteralPropertyName(), new Entry<T>(value, size++));
+    }
+
+    /**
+     * Get the number of expressions in this index.
+     * 
+     * @return the number of expressions; never negative
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Determine if this index contains no expressions.
+     * 
+     * @return true if there are no expressions, or false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Find the values of the expressions which may match the supplied property of the node at the supplied path.
+     * 
+     * @param nodePath the path of the node; may not be null
+     * @param propertyName the name of the property; may not be null
+     * @return the values in the order their expressions were added; never null but possibly empty
+     */
+    public List<T> candidatesFor( Path nodePath,
+                                  Name propertyName ) {
+        List<Entry<T>> entries = null;
+        String propertyString = null;
+        TrieNode<T> node = root;
+        int depth = 0;
+        int segmentCount = nodePath.size();
+        while (node != null) {
+            if (!node.entriesByPropertyName.isEmpty()) {
+                if (propertyString == null) propertyString = stringFactory.create(propertyName);
+                entries = addAll(entries, node.entriesByPropertyName.get(propertyString));
+            }
+            entries = addAll(entries, node.entriesForAnyProperty);
+            if (depth == segmentCount || node.children.isEmpty()) break;
+            Name name = nodePath.getSegment(depth++).getName();
+            // Look at the local name first, since it's cheap ...
+            node = node.childLocalNames.contains(name.getLocalName()) ? node.children.get(stringFactory.create(name)) : null;
+        }
+        if (entries == null) return Collections.emptyList();
+        if (entries.size() > 1) Collections.sort(entries, ORDER);
+        List<T> values = new ArrayList<T>(entries.size());
+        for (Entry<T> entry : entries) {
+            values.add(entry.value);
+        }
+        return values;
+    }
+
+    private static <T> List<Entry<T>> addAll( List<Entry<T>> entries,
+                                              List<Entry<T>> more ) {
+        if (more == null || more.isEmpty()) return entries;
+        if (entries == null) entries = new ArrayList<Entry<T>>(more.size());
+        entries.addAll(more);
+        return entries;
+    }
+
+    private static final class Entry<T> {
+        protected final T value;
+        protected final int order;
+
+        protected Entry( T value,
+                         int order ) {
+            this.value = value;
+            this.order = order;
+        }
+    }
+
+    private static final class TrieNode<T> {
+        protected final Map<String, TrieNode<T>> children = new TreeMap<String, TrieNode<T>>(String.CASE_INSENSITIVE_ORDER);
+        protected final Set<String> childLocalNames = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+        protected final Map<String, List<Entry<T>>> entriesByPropertyName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        protected final List<Entry<T>> entriesForAnyProperty = new ArrayList<Entry<T>>();
+
+        protected TrieNode<T> childFor( String segment ) {
+            TrieNode<T> child = children.get(segment);
+            if (child == null) {
+                child = new TrieNode<T>();
+                children.put(segment, child);
+                int colon = segment.indexOf(':');
+                childLocalNames.add(colon == -1 ? segment : segment.substring(colon + 1));
+            }
+            return child;
+        }
+
+        protected void add( String propertyName,
+                            Entry<T> entry ) {
+            if (propertyName == null) {
+                entriesForAnyProperty.add(entry);
+                return;
+            }
+            List<Entry<T>> entries = entriesByPropertyName.get(propertyName);
+            if (entries == null) {
+                entries = new ArrayList<Entry<T>>();
+                entriesByPropertyName.put(propertyName, entries);
+            }
+            entries.add(entry);
+        }
+    }
+}
@@ -17,6 +17,7 @@ package org.modeshape.jcr.sequencer;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 import org.modeshape.common.annotation.Immutable;
@@ -112,6 +113,27 @@ public class SequencerPathExpression implements Serializable {
         return this.outputExpression;
     }
 
+    /**
+     * Get the names of the leading segments that every path matched by this expression starts with.
+     * 
+     * @return the names of the literal leading segments, which are to be compared case-insensitively; never null
+     * @see PathExpression#getLiteralPrefixSegments()
+     */
+    public List<String> getLiteralPrefixSegments() {
+        return this.selectExpression.getLiteralPrefixSegments();
+    }
+
+    /**
+     * Get the name of the property that every path matched by this expression ends with.
+     * 
+     * @return the name of the property, which is to be compared case-insensitively; or null if the expression can match paths
+     *         that end with different properties
+     * @see PathExpression#getLiteralPropertyName()
+     */
+    public String getLiteralPropertyName() {
+        return this.selectExpression.getLiteralPropertyName();
+    }
+
     @Override
     public int hashCode() {
         return this.hc;
@@ -19,6 +19,7 @@ package org.modeshape.jcr.spi.federation;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import javax.jcr.NamespaceRegistry;
 import javax.jcr.RepositoryException;
@@ -114,6 +115,26 @@ public abstract class Connector {
      */
     private boolean queryable = true;
 
+    /**
+     * The maximum number of documents returned by this connector that the repository should keep in a cache shared by all
+     * sessions and workspaces. By default, this is 0 and no such cache is used.
+     * <p>
+     * The field is assigned via reflection based upon the configuration of the external source represented by this connector
+     * before ModeShape calls {@link #initialize(NamespaceRegistry, NodeTypeManager)}.
+     * </p>
+     */
+    private int documentCacheSize = 0;
+
+    /**
+     * The maximum number of seconds that a document returned by this connector should be kept in the shared document cache. If
+     * not set, the {@link #cacheTtlSeconds} is used.
+     * <p>
+     * The field is assigned via reflection based upon the configuration of the external source represented by this connector
+     * before ModeShape calls {@link #initialize(NamespaceRegistry, NodeTypeManager)}.
+     * </p>
+     */
+    private Integer documentCacheTtlSeconds;
+
     private boolean initialized = false;
 
     /**
@@ -253,6 +274,27 @@ public abstract class Connector {
         return cacheTtlSeconds;
     }
 
+    /**
+     * Returns the maximum number of documents returned by this connector that the repository should keep in a document cache
+     * shared by all sessions and workspaces.
+     * 
+     * @return the maximum number of cached documents, or 0 if the documents should not be cached
+     */
+    public int getDocumentCacheSize() {
+        return documentCacheSize;
+    }
+
+    /**
+     * Returns the maximum number of seconds an external document should be stored in the document cache shared by all sessions
+     * and workspaces.
+     * 
+     * @return an {@link Integer} value. If {@code null}, it means that the {@link #getCacheTtlSeconds() workspace cache TTL} of
+     *         this connector should be used. If negative, it means an entry will be cached until it is changed or evicted.
+     */
+    public Integer getDocumentCacheTtlSeconds() {
+        return documentCacheTtlSeconds != null ? documentCacheTtlSeconds : cacheTtlSeconds;
+    }
+
     /**
      * Indicates if content exposed by this connector should be indexed by the repository or not.
      * 
@@ -382,6 +424,27 @@ public abstract class Connector {
      */
     public abstract Document getDocumentById( String id );
 
+    /**
+     * Returns the documents with the given ids. ModeShape calls this method when it knows which documents it will need next, such
+     * as when scanning a workspace or iterating over the children of a node.
+     * <p>
+     * By default this method simply calls {@link #getDocumentById(String)} for each id. Connectors whose external system can
+     * return several documents in one request (e.g., with a single query) should override this method.
+     * </p>
+     * 
+     * @param ids the {@code non-null} ids of the documents
+     * @return the documents keyed by their id; never null but without an entry for any id that has no document
+     * @see #getDocumentById(String)
+     */
+    public Map<String, Document> getDocumentsById( Collection<String> ids ) {
+        Map<String, Document> result = new LinkedHashMap<String, Document>();
+        for (String id : ids) {
+            Document document = getDocumentById(id);
+            if (document != null) result.put(id, document);
+        }
+        return result;
+    }
+
     /**
      * Returns the id of an external node located at the given external path within the connector's exposed tree of content.
      * 
@@ -24,6 +24,11 @@ import org.modeshape.jcr.value.Path;
 
 /**
  * Interface used to record in the indexes the changes to content.
+ * <p>
+ * Implementations must be thread-safe. When existing content is reindexed, the content is split into subtrees that are crawled
+ * by several threads, so {@link #add} is called concurrently for different nodes (possibly while changes to the content are being
+ * recorded as well).
+ * </p>
  * 
  * @see IndexProvider#getIndexWriter()
  * @author Randall Hauch (rhauch@redhat.com)
@@ -44,7 +44,8 @@ public class IndexChangeAdapter extends ChangeSetAdapter {
     }
 
     /**
-     * Index the specific node. This is called only by the reindexing operations.
+     * Index the specific node. This is called only by the reindexing operations, which crawl separate subtrees of the content
+     * concurrently, so this method may be called by several threads at once and must be thread-safe.
      * 
      * @param workspaceName the workspace in which the node information should be available; may not be null
      * @param key the unique key for the node; may not be null
@@ -61,7 +62,7 @@ public class IndexChangeAdapter extends ChangeSetAdapter {
                           Set<Name> mixinTypes,
                           Properties properties,
                           boolean queryable ) {
-        super.addNode(workspaceName, key, path, primaryType, mixinTypes, properties, queryable);
+        addNode(workspaceName, key, path, primaryType, mixinTypes, properties, queryable);
     }
 
 }
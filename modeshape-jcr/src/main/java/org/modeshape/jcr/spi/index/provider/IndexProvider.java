@@ -630,7 +630,7 @@ public abstract class IndexProvider {
         protected final void update( ManagedIndex managedIndex,
                                      IndexDefinition newDefinition ) {
             this.managedIndex = managedIndex;
-            this.defn = defn;
+            this.defn = newDefinition;
         }
     }
 }
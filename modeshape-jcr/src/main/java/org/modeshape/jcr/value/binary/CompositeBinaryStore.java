@@ -19,12 +19,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.jcr.RepositoryException;
+import org.modeshape.common.annotation.GuardedBy;
+import org.modeshape.common.annotation.Immutable;
 import org.modeshape.common.collection.Collections;
 import org.modeshape.common.logging.Logger;
 import org.modeshape.common.util.CheckArg;
+import org.modeshape.common.util.NamedThreadFactory;
 import org.modeshape.jcr.JcrI18n;
 import org.modeshape.jcr.TextExtractors;
 import org.modeshape.jcr.mimetype.MimeTypeDetector;
@@ -38,17 +47,57 @@ import org.modeshape.jcr.value.BinaryValue;
  * BinaryStores. On retrieval, the CompositeBinaryStore will look in all the other BinaryStores for the value. When storing a
  * value, the CompositeBinaryStore may receive a StorageHint that MAY be used when determining which named BinaryStore to write
  * to. If a storage hint is not provided (or doesn't match a store), the value will be stored in the default store.
+ * <p>
+ * The store remembers in which named store each binary value was last found (or stored), so that retrieving a known value
+ * requires a single probe of one named store rather than a probe of each store in turn. The remembered locations are only hints:
+ * a value that is no longer in its remembered store is looked up in all the stores again. At most
+ * {@link #MAX_REMEMBERED_LOCATIONS} locations are remembered, and the locations of the values that were accessed least recently
+ * are forgotten first. The locations of the values that are marked as unused are forgotten right away, so that removing the
+ * unused values never needs to probe the named stores.
+ * </p>
+ * <p>
+ * A {@link TieringPolicy} can optionally be {@link #setTieringPolicy(TieringPolicy) set} to periodically move the values that
+ * have not been read for some time from a "hot" named store to a "cold" named store, and to move the values in the cold store
+ * that are read frequently back to the hot store.
+ * </p>
  */
 public class CompositeBinaryStore implements BinaryStore {
 
     private static final String DEFAULT_STRATEGY_HINT = "default";
+
+    /**
+     * The maximum number of binary values whose locations are remembered.
+     */
+    public static final int MAX_REMEMBERED_LOCATIONS = 100000;
     private volatile TextExtractors extractors;
     private volatile MimeTypeDetector detector = NullMimeTypeDetector.INSTANCE;
 
     protected Logger logger = Logger.getLogger(getClass());
 
     private Map<String, BinaryStore> namedStores;
-    private BinaryStore defaultBinaryStore;
+    private String defaultBinaryStoreName;
+
+    /**
+     * The name of the store in which each binary value was last found, along with the statistics used for tiering. The map is
+     * ordered by access, so that the least recently used locations are evicted once there are too many.
+     */
+    @GuardedBy( "locations" )
+    private final Map<BinaryKey, BinaryLocation> locations = new LinkedHashMap<BinaryKey, BinaryLocation>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<BinaryKey, BinaryLocation> eldest ) {
+            return size() > MAX_REMEMBERED_LOCATIONS;
+        }
+    };
+    /**
+     * The keys of the values that were read from the cold store since the tiering policy was last applied, and that are
+     * therefore the only candidates for promotion.
+     */
+    private final ConcurrentMap<BinaryKey, Boolean> readFromColdStore = new ConcurrentHashMap<>();
+    private volatile TieringPolicy tieringPolicy;
+    private volatile long startTime = System.currentTimeMillis();
+    private ScheduledExecutorService tieringService;
 
     /**
      * Initialize a new CompositeBinaryStore using a Map of other BinaryKeys that are keyed by an implementer-provided key. The
@@ -58,7 +107,34 @@ public class CompositeBinaryStore implements BinaryStore {
      */
     public CompositeBinaryStore( Map<String, BinaryStore> namedStores ) {
         this.namedStores = namedStores;
-        this.defaultBinaryStore = null;
+        this.defaultBinaryStoreName = null;
+    }
+
+    /**
+     * Set the policy that should be used to periodically move binary values between a hot and a cold named store. This must be
+     * called before the store is {@link #start() started}.
+     * 
+     * @param tieringPolicy the tiering policy, or null if the values should not be moved automatically
+     * @throws IllegalArgumentException if the policy refers to a store that is not one of the named stores
+     */
+    public void setTieringPolicy( TieringPolicy tieringPolicy ) {
+        if (tieringPolicy != null) {
+            for (String storeName : new String[] {tieringPolicy.getHotStoreName(), tieringPolicy.getColdStoreName()}) {
+                if (!namedStores.containsKey(storeName)) {
+                    throw new IllegalArgumentException(JcrI18n.unknownNamedBinaryStore.text(storeName, namedStores.keySet()));
+                }
+            }
+        }
+        this.tieringPolicy = tieringPolicy;
+    }
+
+    /**
+     * Get the policy that is used to periodically move binary values between a hot and a cold named store.
+     * 
+     * @return the tiering policy, or null if there is none
+     */
+    public TieringPolicy getTieringPolicy() {
+        return tieringPolicy;
     }
 
     /**
@@ -73,6 +149,18 @@ public class CompositeBinaryStore implements BinaryStore {
             bs.start();
         }
 
+        startTime = System.currentTimeMillis();
+        final TieringPolicy policy = this.tieringPolicy;
+        if (policy != null) {
+            tieringService = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("modeshape-binary-tiering"));
+            long interval = policy.getIntervalInMillis();
+            tieringService.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    applyTieringPolicy();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
@@ -80,6 +168,10 @@ public class CompositeBinaryStore implements BinaryStore {
      */
     @Override
     public void shutdown() {
+        if (tieringService != null) {
+            tieringService.shutdownNow();
+            tieringService = null;
+        }
         Iterator<Map.Entry<String, BinaryStore>> it = getNamedStoreIterator();
 
         while (it.hasNext()) {
@@ -147,9 +239,12 @@ public class CompositeBinaryStore implements BinaryStore {
     @Override
     public BinaryValue storeValue( InputStream stream,
                                    String hint ) throws BinaryStoreException {
-        BinaryStore binaryStore = selectBinaryStore(hint);
+        String storeName = selectBinaryStoreName(hint);
+        BinaryStore binaryStore = namedStores.get(storeName);
         BinaryValue bv = binaryStore.storeValue(stream);
         logger.debug("Stored binary " + bv.getKey() + " into binary store " + binaryStore);
+        // a value that was just written is considered to be recently accessed ...
+        recordLocation(bv.getKey(), storeName).accessed();
         return bv;
     }
 
@@ -165,30 +260,40 @@ public class CompositeBinaryStore implements BinaryStore {
     public BinaryKey moveValue( BinaryKey key,
                                 String source,
                                 String destination ) throws BinaryStoreException {
-        final BinaryStore sourceStore;
-
-        if (source == null) {
-            sourceStore = findBinaryStoreContainingKey(key);
-        } else {
-            sourceStore = selectBinaryStore(source);
-        }
+        final String sourceName = source == null ? findNameOfBinaryStoreContainingKey(key) : selectBinaryStoreName(source);
+        final BinaryStore sourceStore = sourceName != null ? namedStores.get(sourceName) : null;
 
         // could not find source store, or
         if (sourceStore == null || !sourceStore.hasBinary(key)) {
             throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(key, sourceStore));
         }
 
-        BinaryStore destinationStore = selectBinaryStore(destination);
+        String destinationName = selectBinaryStoreName(destination);
+        BinaryStore destinationStore = namedStores.get(destinationName);
 
         // key is already in the destination store
         if (sourceStore.equals(destinationStore)) {
             return key;
         }
 
-        final BinaryValue binaryValue = storeValue(sourceStore.getInputStream(key), destination);
+        BinaryKey movedKey = key;
+        if (!destinationStore.hasBinary(key)) {
+            // copy the content directly from one store to the other, making sure the source stream is always closed ...
+            InputStream stream = sourceStore.getInputStream(key);
+            try {
+                movedKey = destinationStore.storeValue(stream).getKey();
+            } finally {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    logger.debug(e, "Unable to close the stream of binary " + key + " from the store " + sourceName);
+                }
+            }
+        }
+        recordLocation(movedKey, destinationName);
         sourceStore.markAsUnused(java.util.Collections.singleton(key));
-
-        return binaryValue.getKey();
+        logger.debug("Moved binary " + key + " from binary store " + sourceName + " to binary store " + destinationName);
+        return movedKey;
     }
 
     /**
@@ -205,17 +310,35 @@ public class CompositeBinaryStore implements BinaryStore {
 
     @Override
     public InputStream getInputStream( BinaryKey key ) throws BinaryStoreException {
+        // first look in the store where the value was last seen ...
+        BinaryLocation location = getLocation(key);
+        String knownStoreName = location != null ? location.getStoreName() : null;
+        if (knownStoreName != null) {
+            try {
+                InputStream stream = namedStores.get(knownStoreName).getInputStream(key);
+                recordRead(key, location);
+                return stream;
+            } catch (BinaryStoreException e) {
+                // the value is no longer there, so look everywhere else ...
+                logger.trace(e, "The named store " + knownStoreName + " no longer contains key " + key);
+                removeLocation(key, location);
+            }
+        }
+
         Iterator<Map.Entry<String, BinaryStore>> it = getNamedStoreIterator();
 
         while (it.hasNext()) {
             final Map.Entry<String, BinaryStore> entry = it.next();
 
             final String binaryStoreKey = entry.getKey();
+            if (binaryStoreKey.equals(knownStoreName)) continue;
 
             BinaryStore binaryStore = entry.getValue();
             logger.trace("Checking binary store " + binaryStoreKey + " for key " + key);
             try {
-                return binaryStore.getInputStream(key);
+                InputStream stream = binaryStore.getInputStream(key);
+                recordRead(key, recordLocation(key, binaryStoreKey));
+                return stream;
             } catch (BinaryStoreException e) {
                 // this exception is "normal", and is thrown
                 logger.trace(e, "The named store " + binaryStoreKey + " raised exception");
@@ -227,21 +350,21 @@ public class CompositeBinaryStore implements BinaryStore {
 
     @Override
     public boolean hasBinary( BinaryKey key ) {
-        Iterator<Map.Entry<String, BinaryStore>> it = getNamedStoreIterator();
-
-        while (it.hasNext()) {
-            BinaryStore bs = it.next().getValue();
-            if (bs.hasBinary(key)) {
-                return true;
-            }
-        }
-
-        return false;
+        return findNameOfBinaryStoreContainingKey(key) != null;
     }
 
     @SuppressWarnings( "unused" )
     @Override
     public void markAsUnused( Iterable<BinaryKey> keys ) throws BinaryStoreException {
+        // unused values are neither read nor moved, so there is no need to remember where they are ...
+        synchronized (locations) {
+            for (BinaryKey key : keys) {
+                locations.remove(key);
+            }
+        }
+        for (BinaryKey key : keys) {
+            readFromColdStore.remove(key);
+        }
         Iterator<Map.Entry<String, BinaryStore>> it = getNamedStoreIterator();
 
         while (it.hasNext()) {
@@ -276,6 +399,8 @@ public class CompositeBinaryStore implements BinaryStore {
                 logger.debug(e, "The named store " + binaryStoreKey + " raised exception");
             }
         }
+        // the locations of the removed values were already forgotten when they were marked as unused, and any location that
+        // was remembered again since then is corrected the next time the value is looked up ...
     }
 
     @Override
@@ -290,26 +415,11 @@ public class CompositeBinaryStore implements BinaryStore {
             return extractors.extract((InMemoryBinaryValue)binary, new TextExtractorContext(detector));
         }
 
-        Iterator<Map.Entry<String, BinaryStore>> it = getNamedStoreIterator();
-
-        while (it.hasNext()) {
-            Map.Entry<String, BinaryStore> entry = it.next();
-
-            final String binaryStoreKey = entry.getKey();
-            BinaryStore bs = entry.getValue();
-            try {
-                if (bs.hasBinary(binary.getKey())) {
-                    return bs.getText(binary);
-                }
-            } catch (BinaryStoreException e) {
-                logger.debug(e, "The named store " + binaryStoreKey + " raised exception");
-                if (!it.hasNext()) {
-                    throw e;
-                }
-            }
+        BinaryStore bs = findBinaryStoreContainingKey(binary.getKey());
+        if (bs == null) {
+            throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(binary.getKey(), this));
         }
-
-        throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(binary.getKey(), this));
+        return bs.getText(binary);
     }
 
     @Override
@@ -324,27 +434,11 @@ public class CompositeBinaryStore implements BinaryStore {
             return detectedMimeType;
         }
 
-        Iterator<Map.Entry<String, BinaryStore>> it = getNamedStoreIterator();
-
-        while (it.hasNext()) {
-            Map.Entry<String, BinaryStore> entry = it.next();
-
-            final String binaryStoreKey = entry.getKey();
-            BinaryStore bs = entry.getValue();
-
-            try {
-                if (bs.hasBinary(binary.getKey())) {
-                    return bs.getMimeType(binary, name);
-                }
-            } catch (BinaryStoreException e) {
-                logger.debug(e, "The named store " + binaryStoreKey + " raised exception");
-                if (!it.hasNext()) {
-                    throw e;
-                }
-            }
+        BinaryStore bs = findBinaryStoreContainingKey(binary.getKey());
+        if (bs == null) {
+            throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(binary.getKey(), this));
         }
-
-        throw new BinaryStoreException(JcrI18n.unableToFindBinaryValue.text(binary.getKey(), this));
+        return bs.getMimeType(binary, name);
     }
 
     @Override
@@ -378,12 +472,34 @@ public class CompositeBinaryStore implements BinaryStore {
      * @return the BinaryStore that contains the given key
      */
     public BinaryStore findBinaryStoreContainingKey( BinaryKey key ) {
+        String storeName = findNameOfBinaryStoreContainingKey(key);
+        return storeName != null ? namedStores.get(storeName) : null;
+    }
+
+    /**
+     * Get the name of the named binary store that contains the key, probing first the store in which the key was last seen.
+     * 
+     * @param key the key to the binary content; never null
+     * @return the name of the BinaryStore that contains the given key, or null if no store contains it
+     */
+    protected String findNameOfBinaryStoreContainingKey( BinaryKey key ) {
+        BinaryLocation location = getLocation(key);
+        String knownStoreName = location != null ? location.getStoreName() : null;
+        if (knownStoreName != null) {
+            if (namedStores.get(knownStoreName).hasBinary(key)) {
+                return knownStoreName;
+            }
+            removeLocation(key, location);
+        }
+
         Iterator<Map.Entry<String, BinaryStore>> binaryStoreIterator = getNamedStoreIterator();
 
         while (binaryStoreIterator.hasNext()) {
-            BinaryStore bs = binaryStoreIterator.next().getValue();
-            if (bs.hasBinary(key)) {
-                return bs;
+            Map.Entry<String, BinaryStore> entry = binaryStoreIterator.next();
+            if (entry.getKey().equals(knownStoreName)) continue;
+            if (entry.getValue().hasBinary(key)) {
+                recordLocation(key, entry.getKey());
+                return entry.getKey();
             }
         }
 
@@ -391,44 +507,260 @@ public class CompositeBinaryStore implements BinaryStore {
     }
 
     /**
-     * Select a named binary store for the given hint
+     * Move the binary values that have not been read recently from the hot store to the cold store, and the values that have been
+     * read frequently from the cold store to the hot store, as dictated by the {@link #getTieringPolicy() tiering policy}. This
+     * is called periodically once the store is started, but may also be called explicitly. This method does nothing if there is
+     * no tiering policy.
      * 
-     * @param hint a hint to a binary store; possibly null
-     * @return a named BinaryStore from the hint, or the default store
+     * @return the number of values that were moved
      */
-    private BinaryStore selectBinaryStore( String hint ) {
+    public int applyTieringPolicy() {
+        TieringPolicy policy = this.tieringPolicy;
+        if (policy == null) return 0;
+        String hotName = policy.getHotStoreName();
+        String coldName = policy.getColdStoreName();
+        int promoted = 0;
+        int demoted = 0;
+
+        // promote the cold values that were read often enough since the previous run ...
+        for (Iterator<BinaryKey> iter = readFromColdStore.keySet().iterator(); iter.hasNext();) {
+            BinaryKey key = iter.next();
+            iter.remove();
+            BinaryLocation location = getLocation(key);
+            if (location == null) continue;
+            int reads = location.resetReads();
+            if (coldName.equals(location.getStoreName()) && reads >= policy.getPromoteAfterReads()) {
+                if (moveForTiering(key, coldName, hotName)) ++promoted;
+            }
+        }
+
+        // demote the hot values that have not been read for long enough ...
+        long now = System.currentTimeMillis();
+        try {
+            for (BinaryKey key : namedStores.get(hotName).getAllBinaryKeys()) {
+                BinaryLocation location = getLocation(key);
+                long lastAccessed = location != null ? location.getLastAccessed() : startTime;
+                if (now - lastAccessed >= policy.getDemoteAfterIdleMillis()) {
+                    if (moveForTiering(key, hotName, coldName)) ++demoted;
+                }
+            }
+        } catch (BinaryStoreException e) {
+            logger.error(e, JcrI18n.errorMovingBinaryValue, "*", hotName, coldName, e.getMessage());
+        }
+        if (promoted + demoted > 0) {
+            logger.debug("Moved " + promoted + " binary values to binary store " + hotName + " and " + demoted
+                         + " binary values to binary store " + coldName);
+        }
+        return promoted + demoted;
+    }
+
+    private boolean moveForTiering( BinaryKey key,
+                                    String source,
+                                    String destination ) {
+        try {
+            moveValue(key, source, destination);
+            return true;
+        } catch (BinaryStoreException e) {
+            logger.error(e, JcrI18n.errorMovingBinaryValue, key, source, destination, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Get the number of binary values whose locations are currently remembered.
+     * 
+     * @return the number of remembered locations
+     */
+    int getRememberedLocationCount() {
+        synchronized (locations) {
+            return locations.size();
+        }
+    }
+
+    private BinaryLocation getLocation( BinaryKey key ) {
+        synchronized (locations) {
+            return locations.get(key);
+        }
+    }
+
+    private void removeLocation( BinaryKey key,
+                                 BinaryLocation location ) {
+        synchronized (locations) {
+            if (locations.get(key) == location) locations.remove(key);
+        }
+        readFromColdStore.remove(key);
+    }
+
+    private BinaryLocation recordLocation( BinaryKey key,
+                                           String storeName ) {
+        synchronized (locations) {
+            BinaryLocation location = locations.get(key);
+            if (location == null) {
+                location = new BinaryLocation(storeName, startTime);
+                locations.put(key, location);
+            } else {
+                location.setStoreName(storeName);
+            }
+            return location;
+        }
+    }
+
+    private void recordRead( BinaryKey key,
+                             BinaryLocation location ) {
+        location.read();
+        TieringPolicy policy = this.tieringPolicy;
+        if (policy != null && policy.getColdStoreName().equals(location.getStoreName())) {
+            readFromColdStore.put(key, Boolean.TRUE);
+        }
+    }
 
-        BinaryStore namedBinaryStore = null;
+    /**
+     * Select the name of a named binary store for the given hint
+     * 
+     * @param hint a hint to a binary store; possibly null
+     * @return the name of the named BinaryStore from the hint, or of the default store
+     */
+    private String selectBinaryStoreName( String hint ) {
+        String storeName = null;
 
         if (hint != null) {
             logger.trace("Selecting named binary store for hint: " + hint);
-            namedBinaryStore = namedStores.get(hint);
+            if (namedStores.containsKey(hint)) storeName = hint;
         }
 
-        if (namedBinaryStore == null) {
-            namedBinaryStore = getDefaultBinaryStore();
+        if (storeName == null) {
+            storeName = getDefaultBinaryStoreName();
         }
 
-        logger.trace("Selected binary store: " + namedBinaryStore.toString());
+        logger.trace("Selected binary store: " + storeName);
 
-        return namedBinaryStore;
+        return storeName;
     }
 
-    private BinaryStore getDefaultBinaryStore() {
-        if (defaultBinaryStore == null) {
+    private String getDefaultBinaryStoreName() {
+        if (defaultBinaryStoreName == null) {
             if (namedStores.containsKey(DEFAULT_STRATEGY_HINT)) {
-                defaultBinaryStore = namedStores.get(DEFAULT_STRATEGY_HINT);
+                defaultBinaryStoreName = DEFAULT_STRATEGY_HINT;
             } else {
                 logger.trace("Did not find a named binary store with the key 'default', picking the first binary store in the list");
-                final Iterator<BinaryStore> iterator = namedStores.values().iterator();
+                final Iterator<String> iterator = namedStores.keySet().iterator();
 
                 if (iterator.hasNext()) {
-                    defaultBinaryStore = iterator.next();
+                    defaultBinaryStoreName = iterator.next();
                 }
             }
         }
 
-        return defaultBinaryStore;
+        return defaultBinaryStoreName;
     }
 
+    /**
+     * The named store in which a binary value was last seen, and how often and recently the value was read.
+     */
+    protected static final class BinaryLocation {
+        private volatile String storeName;
+        private volatile long lastAccessed;
+        private final AtomicInteger reads = new AtomicInteger();
+
+        protected BinaryLocation( String storeName,
+                                  long lastAccessed ) {
+            this.storeName = storeName;
+            this.lastAccessed = lastAccessed;
+        }
+
+        protected String getStoreName() {
+            return storeName;
+        }
+
+        protected void setStoreName( String storeName ) {
+            this.storeName = storeName;
+        }
+
+        protected long getLastAccessed() {
+            return lastAccessed;
+        }
+
+        protected BinaryLocation accessed() {
+            this.lastAccessed = System.currentTimeMillis();
+            return this;
+        }
+
+        protected void read() {
+            accessed();
+            reads.incrementAndGet();
+        }
+
+        protected int resetReads() {
+            return reads.getAndSet(0);
+        }
+    }
+
+    /**
+     * The policy that dictates how binary values are moved between a fast, "hot" named store and a cheaper, "cold" named store.
+     */
+    @Immutable
+    public static final class TieringPolicy {
+        private final String hotStoreName;
+        private final String coldStoreName;
+        private final long demoteAfterIdleMillis;
+        private final int promoteAfterReads;
+        private final long intervalInMillis;
+
+        /**
+         * Create a new tiering policy.
+         * 
+         * @param hotStoreName the name of the store that holds the frequently-read values; may not be null
+         * @param coldStoreName the name of the store that holds the values that are rarely read; may not be null
+         * @param demoteAfterIdle the time after which a value in the hot store that has not been read is moved to the cold store;
+         *        must be positive
+         * @param promoteAfterReads the number of times a value in the cold store must be read between two runs of the policy to
+         *        be moved to the hot store; must be positive
+         * @param interval the time between two runs of the policy; must be positive
+         * @param unit the unit of <code>demoteAfterIdle</code> and <code>interval</code>; may not be null
+         */
+        public TieringPolicy( String hotStoreName,
+                              String coldStoreName,
+                              long demoteAfterIdle,
+                              int promoteAfterReads,
+                              long interval,
+                              TimeUnit unit ) {
+            CheckArg.isNotNull(hotStoreName, "hotStoreName");
+            CheckArg.isNotNull(coldStoreName, "coldStoreName");
+            CheckArg.isPositive(demoteAfterIdle, "demoteAfterIdle");
+            CheckArg.isPositive(promoteAfterReads, "promoteAfterReads");
+            CheckArg.isPositive(interval, "interval");
+            CheckArg.isNotNull(unit, "unit");
+            this.hotStoreName = hotStoreName;
+            this.coldStoreName = coldStoreName;
+            this.demoteAfterIdleMillis = unit.toMillis(demoteAfterIdle);
+            this.promoteAfterReads = promoteAfterReads;
+            this.intervalInMillis = unit.toMillis(interval);
+        }
+
+        public String getHotStoreName() {
+            return hotStoreName;
+        }
+
+        public String getColdStoreName() {
+            return coldStoreName;
+        }
+
+        public long getDemoteAfterIdleMillis() {
+            return demoteAfterIdleMillis;
+        }
+
+        public int getPromoteAfterReads() {
+            return promoteAfterReads;
+        }
+
+        public long getIntervalInMillis() {
+            return intervalInMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "TieringPolicy(hot=" + hotStoreName + ", cold=" + coldStoreName + ", demoteAfterIdleMillis="
+                   + demoteAfterIdleMillis + ", promoteAfterReads=" + promoteAfterReads + ")";
+        }
+    }
 }
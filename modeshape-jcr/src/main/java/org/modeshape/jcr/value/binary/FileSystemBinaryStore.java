@@ -15,17 +15,18 @@
  */
 package org.modeshape.jcr.value.binary;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -80,15 +81,23 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
     private static final String TEMP_FILE_PREFIX = "ms-fs-binstore";
     private static final String TEMP_FILE_SUFFIX = "hashing";
     protected static final String TRASH_DIRECTORY_NAME = "trash";
+    protected static final String STAGING_DIRECTORY_NAME = "staging";
+
+    /**
+     * The maximum number of bytes moved in a single call to {@link FileChannel#transferFrom} or {@link FileChannel#transferTo}.
+     */
+    private static final long TRANSFER_SIZE = 1L << 23; // 8MB
 
     private final File directory;
     private final File trash;
+    private final File staging;
     private final NamedLocks locks = new NamedLocks();
     private volatile boolean initialized = false;
 
     protected FileSystemBinaryStore( File directory ) {
         this.directory = directory;
         this.trash = new File(this.directory, TRASH_DIRECTORY_NAME);
+        this.staging = new File(this.directory, STAGING_DIRECTORY_NAME);
     }
 
     public File getDirectory() {
@@ -100,22 +109,48 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         File tmpFile = null;
         BinaryValue value = null;
         try {
-            // Write the contents to a temporary file, and while we do grab the SHA-1 hash and the length ...
+            // Read the beginning of the content into memory, and while we do grab the SHA-1 hash ...
             HashingInputStream hashingStream = SecureHash.createHashingStream(Algorithm.SHA_1, stream);
-            tmpFile = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
-            IoUtil.write(hashingStream, new BufferedOutputStream(new FileOutputStream(tmpFile)),
-                         AbstractBinaryStore.MEDIUM_BUFFER_SIZE);
-            hashingStream.close();
-            byte[] sha1 = hashingStream.getHash();
-            BinaryKey key = new BinaryKey(sha1);
-
-            final long numberOfBytes = tmpFile.length();
-            if (numberOfBytes < getMinimumBinarySizeInBytes()) {
-                // The content is small enough to just store in-memory ...
-                byte[] content = IoUtil.readBytes(tmpFile);
-                tmpFile.delete();
-                value = new InMemoryBinaryValue(this, key, content);
+            long minimumSize = getMinimumBinarySizeInBytes();
+            byte[] buffer = new byte[(int)Math.min(minimumSize, AbstractBinaryStore.MEDIUM_BUFFER_SIZE)];
+            int numberInBuffer = 0;
+            while (numberInBuffer < minimumSize) {
+                if (numberInBuffer == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, (int)Math.min(minimumSize, buffer.length * 2L));
+                }
+                int numRead = hashingStream.read(buffer, numberInBuffer, buffer.length - numberInBuffer);
+                if (numRead == -1) break;
+                numberInBuffer += numRead;
+            }
+
+            if (numberInBuffer < minimumSize) {
+                // We've read all of the content, and it is small enough to just store in-memory ...
+                hashingStream.close();
+                BinaryKey key = new BinaryKey(hashingStream.getHash());
+                value = new InMemoryBinaryValue(this, key, Arrays.copyOf(buffer, numberInBuffer));
             } else {
+                // Otherwise write what we've read and the rest of the content to a file in the staging area (which is on the
+                // same file system as the store, so the file can later be atomically renamed into place) ...
+                tmpFile = createStagingFile(TEMP_FILE_SUFFIX);
+                long numberOfBytes = 0L;
+                FileOutputStream output = new FileOutputStream(tmpFile);
+                try {
+                    FileChannel channel = output.getChannel();
+                    ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, numberInBuffer);
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                    numberOfBytes = numberInBuffer;
+                    ReadableByteChannel remaining = Channels.newChannel(hashingStream);
+                    long numTransferred = 0L;
+                    while ((numTransferred = channel.transferFrom(remaining, numberOfBytes, TRANSFER_SIZE)) > 0L) {
+                        numberOfBytes += numTransferred;
+                    }
+                } finally {
+                    output.close();
+                }
+                hashingStream.close();
+                BinaryKey key = new BinaryKey(hashingStream.getHash());
                 value = saveTempFileToStore(tmpFile, key, numberOfBytes);
             }
 
@@ -140,6 +175,20 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         }
     }
 
+    /**
+     * Create a new, empty file in the staging area of this store. Content is written to a staging file until its SHA-1 hash is
+     * known, and since the staging area is inside the store's directory the file can then be moved into the store with a
+     * rename rather than a copy.
+     *
+     * @param suffix the suffix for the file name; may not be null
+     * @return the new file; never null
+     * @throws IOException if the file could not be created
+     */
+    protected File createStagingFile( String suffix ) throws IOException {
+        if (!staging.exists()) staging.mkdirs();
+        return File.createTempFile(TEMP_FILE_PREFIX, suffix, staging);
+    }
+
     private BinaryValue saveTempFileToStore( File tmpFile,
                                              BinaryKey key,
                                              long numberOfBytes ) throws BinaryStoreException {
@@ -202,27 +251,23 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
             // The move/rename didn't work, so we have to copy from the original ...
 
             // Create the new file and obtain an exclusive lock on it ...
-            final int bufferSize = AbstractBinaryStore.bestBufferSize(original.length());
             fileLock = FileLocks.get().writeLock(destination);
             try {
-                // Create a buffered output stream to the destination file ...
-                // (Note that the Channels.newOutputStream does not create a buffered stream)
+                // Copy the content directly between the channels, which lets the OS avoid copying it through our buffers ...
                 FileChannel destinationChannel = fileLock.lockedFileChannel();
-                OutputStream output = Channels.newOutputStream(destinationChannel);
-                output = new BufferedOutputStream(output, bufferSize);
-
-                // Create an input stream to the original file ...
-                // (Note that the Channels.newInputStream does not create a buffered stream)
                 RandomAccessFile originalRaf = new RandomAccessFile(original, "r");
-                FileChannel originalChannel = originalRaf.getChannel();
-                InputStream input = Channels.newInputStream(originalChannel);
-                input = new BufferedInputStream(input, bufferSize);
-
-                // Copy the content ...
-                IoUtil.write(input, output, bufferSize);
-
-                // Close the file ...
-                originalRaf.close();
+                try {
+                    FileChannel originalChannel = originalRaf.getChannel();
+                    long size = originalChannel.size();
+                    long position = 0L;
+                    while (position < size) {
+                        position += originalChannel.transferTo(position, Math.min(TRANSFER_SIZE, size - position),
+                                                                destinationChannel);
+                    }
+                } finally {
+                    // Close the file ...
+                    originalRaf.close();
+                }
             } finally {
                 try {
                     fileLock.unlock();
@@ -377,11 +422,22 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
         long oldestTimestamp = System.currentTimeMillis() - TimeUnit.MILLISECONDS.convert(minimumAge, unit);
         try {
             removeFilesOlderThan(oldestTimestamp, trash);
+            removeStagingFilesOlderThan(oldestTimestamp);
         } catch (IOException e) {
             throw new BinaryStoreException(e);
         }
     }
 
+    private void removeStagingFilesOlderThan( long oldestTimestamp ) {
+        // Staging files are normally moved or removed as soon as they're written, so any old ones were left by a failed process
+        if (!isReadableDir(staging)) return;
+        for (File file : staging.listFiles()) {
+            if (file.isFile() && file.lastModified() < oldestTimestamp) {
+                file.delete();
+            }
+        }
+    }
+
     private void removeFilesOlderThan( long oldestTimestamp,
                                        File parentDirectory ) throws IOException {
         if (parentDirectory == null || !parentDirectory.exists() || parentDirectory.isFile()) {
@@ -460,7 +516,7 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
                                    BinaryKey key ) throws BinaryStoreException {
         File tmpFile = null;
         try {
-            tmpFile = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX + EXTRACTED_TEXT_SUFFIX);
+            tmpFile = createStagingFile(TEMP_FILE_SUFFIX + EXTRACTED_TEXT_SUFFIX);
             IoUtil.write(string, new BufferedOutputStream(new FileOutputStream(tmpFile)));
             saveTempFileToStore(tmpFile, key, tmpFile.length());
         } catch (IOException e) {
@@ -541,6 +597,6 @@ public class FileSystemBinaryStore extends AbstractBinaryStore {
     }
 
     private boolean isReadableDir( File file ) {
-        return directory != null && directory.isDirectory() && directory.canRead();
+        return file != null && file.isDirectory() && file.canRead();
     }
 }
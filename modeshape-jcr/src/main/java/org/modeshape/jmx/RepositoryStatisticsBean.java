@@ -152,7 +152,9 @@ public class RepositoryStatisticsBean implements RepositoryStatisticsMXBean {
         for (Statistics statistics : history.getStats()) {
             if (statistics != null) {
                 statisticalData.add(new StatisticalData(statistics.getCount(), statistics.getMaximum(), statistics.getMinimum(),
-                                                        statistics.getMean(), statistics.getVariance()));
+                                                        statistics.getMean(), statistics.getVariance(),
+                                                        statistics.getPercentile(50.0d), statistics.getPercentile(90.0d),
+                                                        statistics.getPercentile(99.0d), statistics.getPercentile(99.9d)));
             }
         }
         return new HistoricalData(history.getWindow().getLiteral(), history.getStartTime().getString(),
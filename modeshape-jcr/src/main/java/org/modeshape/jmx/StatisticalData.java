@@ -29,6 +29,10 @@ public class StatisticalData implements Statistics {
     private final long minimum;
     private final double mean;
     private final double variance;
+    private final long percentile50;
+    private final long percentile90;
+    private final long percentile99;
+    private final long percentile999;
 
     /**
      * @param count number of elements in the sample
@@ -36,18 +40,31 @@ public class StatisticalData implements Statistics {
      * @param minimum min value from the sample
      * @param mean sample mean
      * @param variance sample variance
+     * @param percentile50 the median of the sample
+     * @param percentile90 the 90th percentile of the sample
+     * @param percentile99 the 99th percentile of the sample
+     * @param percentile999 the 99.9th percentile of the sample
      */
-    @ConstructorProperties( {"count", "maximum", "minimum", "mean", "variance"} )
+    @ConstructorProperties( {"count", "maximum", "minimum", "mean", "variance", "percentile50", "percentile90", "percentile99",
+        "percentile999"} )
     public StatisticalData( int count,
                             long maximum,
                             long minimum,
                             double mean,
-                            double variance ) {
+                            double variance,
+                            long percentile50,
+                            long percentile90,
+                            long percentile99,
+                            long percentile999 ) {
         this.count = count;
         this.maximum = maximum;
         this.minimum = minimum;
         this.mean = mean;
         this.variance = variance;
+        this.percentile50 = percentile50;
+        this.percentile90 = percentile90;
+        this.percentile99 = percentile99;
+        this.percentile999 = percentile999;
     }
 
     @Override
@@ -79,4 +96,53 @@ public class StatisticalData implements Statistics {
     public double getStandardDeviation() {
         return variance <= 0.0d ? 0.0d : Math.sqrt(variance);
     }
+
+    /**
+     * @return the median of the sample
+     */
+    public long getPercentile50() {
+        return percentile50;
+    }
+
+    /**
+     * @return the 90th percentile of the sample
+     */
+    public long getPercentile90() {
+        return percentile90;
+    }
+
+    /**
+     * @return the 99th percentile of the sample
+     */
+    public long getPercentile99() {
+        return percentile99;
+    }
+
+    /**
+     * @return the 99.9th percentile of the sample
+     */
+    public long getPercentile999() {
+        return percentile999;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only a few of the percentiles are exposed via JMX, so any other percentile is interpolated between the nearest of them.
+     * </p>
+     */
+    @Override
+    public long getPercentile( double percentile ) {
+        if (count == 0) return 0L;
+        double[] percentiles = {0.0d, 50.0d, 90.0d, 99.0d, 99.9d, 100.0d};
+        long[] values = {minimum, percentile50, percentile90, percentile99, percentile999, maximum};
+        if (percentile <= 0.0d) return minimum;
+        for (int i = 1; i != percentiles.length; ++i) {
+            if (percentile <= percentiles[i]) {
+                double fraction = (percentile - percentiles[i - 1]) / (percentiles[i] - percentiles[i - 1]);
+                return values[i - 1] + Math.round(fraction * (values[i] - values[i - 1]));
+            }
+        }
+        return maximum;
+    }
 }
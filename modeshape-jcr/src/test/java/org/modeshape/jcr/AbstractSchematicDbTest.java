@@ -57,6 +57,7 @@ public abstract class AbstractSchematicDbTest {
                             .enable()
                             .transaction()
                             .transactionManagerLookup(new DummyTransactionManagerLookup());
+        configureCache(configurationBuilder);
 
         cm = TestCacheManagerFactory.createCacheManager(configurationBuilder);
         // Now create the SchematicDb ...
@@ -74,6 +75,14 @@ public abstract class AbstractSchematicDbTest {
         }
     }
 
+    /**
+     * Adjust the configuration of the cache that backs the SchematicDb. By default this method does nothing.
+     * 
+     * @param configurationBuilder the builder of the cache configuration; never null
+     */
+    protected void configureCache( ConfigurationBuilder configurationBuilder ) {
+    }
+
     protected TransactionManager txnManager() {
         return tm;
     }
@@ -20,17 +20,21 @@ import static org.hamcrest.core.IsInstanceOf.instanceOf;
 import static org.hamcrest.core.IsNull.notNullValue;
 import static org.junit.Assert.assertThat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import javax.jcr.Node;
 import javax.jcr.Session;
+import org.infinispan.schematic.SchematicEntry;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.modeshape.common.util.FileUtil;
 import org.modeshape.jcr.bus.ChangeBus;
+import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.change.Change;
 import org.modeshape.jcr.cache.change.ChangeSet;
 import org.modeshape.jcr.cache.change.ChangeSetListener;
@@ -141,6 +145,27 @@ public class ConnectorChangesTest extends SingleUseAbstractTest {
         changeBus.unregister(listener);
     }
 
+    @Test
+    public void shouldReadExternalAndInternalDocumentsInBulk() throws Exception {
+        NodeKey rootKey = ((AbstractJcrNode)session().getRootNode()).key();
+        NodeKey projectionKey = ((AbstractJcrNode)session().getNode("/projection1")).key();
+        NodeKey externalChildKey = ((AbstractJcrNode)session().getNode("/projection1/generate")).key();
+        NodeKey missingExternalKey = projectionKey.withId("non-existent");
+        assertThat(projectionKey.getSourceKey().equals(rootKey.getSourceKey()), is(false));
+
+        // The local and external keys are read together, and the external ones are grouped by connector ...
+        List<String> keys = Arrays.asList(rootKey.toString(), projectionKey.toString(), missingExternalKey.toString(),
+                                          externalChildKey.toString());
+        Map<String, SchematicEntry> entries = repository().runningState().documentStore().getAll(keys);
+        assertThat(entries.size(), is(3));
+        for (NodeKey key : new NodeKey[] {rootKey, projectionKey, externalChildKey}) {
+            SchematicEntry entry = entries.get(key.toString());
+            assertThat(entry, is(notNullValue()));
+            assertThat(entry.hasDocumentContent(), is(true));
+        }
+        assertThat(entries.containsKey(missingExternalKey.toString()), is(false));
+    }
+
     protected void assertNodeAdded( Change change,
                                     String path ) {
         assertThat(change, is(instanceOf(NodeAdded.class)));
@@ -0,0 +1,107 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.NameFactory;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.PathFactory;
+
+public class EventListenerIndexTest {
+
+    private PathFactory paths;
+    private NameFactory names;
+
+    @Before
+    public void beforeEach() {
+        ExecutionContext context = new ExecutionContext();
+        paths = context.getValueFactories().getPathFactory();
+        names = context.getValueFactories().getNameFactory();
+    }
+
+    @Test
+    public void shouldBeEmptyWithoutListeners() {
+        assertThat(EventListenerIndex.<String>empty().isEmpty(), is(true));
+        assertThat(EventListenerIndex.<String>builder().build().isEmpty(), is(true));
+        assertThat(collect(EventListenerIndex.<String>empty(), "/a/b", null), is(set()));
+    }
+
+    @Test
+    public void shouldReturnUnindexedListenersForEveryChange() {
+        EventListenerIndex<String> index = EventListenerIndex.<String>builder().add("any").build();
+        assertThat(index.isEmpty(), is(false));
+        assertThat(collect(index, "/", null), is(set("any")));
+        assertThat(collect(index, "/a/b/c", "id1"), is(set("any")));
+    }
+
+    @Test
+    public void shouldReturnDeepPathListenersForChangesAtOrBelowPath() {
+        EventListenerIndex<String> index = EventListenerIndex.<String>builder().addByPath("deep", path("/a/b"), true).build();
+        assertThat(collect(index, "/a/b", null), is(set("deep")));
+        assertThat(collect(index, "/a/b/c/d", null), is(set("deep")));
+        assertThat(collect(index, "/a", null), is(set()));
+        assertThat(collect(index, "/a/c", null), is(set()));
+    }
+
+    @Test
+    public void shouldReturnShallowPathListenersOnlyForChangesAtPath() {
+        EventListenerIndex<String> index = EventListenerIndex.<String>builder().addByPath("exact", path("/a/b"), false)
+                                                             .addByPath("root", path("/"), true).build();
+        assertThat(collect(index, "/a/b", null), is(set("root", "exact")));
+        assertThat(collect(index, "/a/b/c", null), is(set("root")));
+        assertThat(collect(index, "/a", null), is(set("root")));
+    }
+
+    @Test
+    public void shouldReturnListenersByIdentifierAndNodeType() {
+        Name folder = names.create("nt:folder");
+        EventListenerIndex<String> index = EventListenerIndex.<String>builder()
+                                                             .addByIdentifiers("ids", Arrays.asList("id1", "id2"))
+                                                             .addByNodeTypes("folders", Collections.singleton(folder))
+                                                             .build();
+        assertThat(index.hasNodeTypeListeners(), is(true));
+        assertThat(collect(index, "/a", "id2"), is(set("ids")));
+        assertThat(collect(index, "/a", "id3"), is(set()));
+
+        Set<String> result = new LinkedHashSet<>();
+        index.collect(path("/a"), "id3", Collections.singleton(folder), result);
+        assertThat(result, is(set("folders")));
+    }
+
+    private Path path( String path ) {
+        return paths.create(path);
+    }
+
+    private Set<String> set( String... values ) {
+        return new LinkedHashSet<>(Arrays.asList(values));
+    }
+
+    private Set<String> collect( EventListenerIndex<String> index,
+                                        String path,
+                                        String identifier ) {
+        Set<String> result = new LinkedHashSet<>();
+        index.collect(path(path), identifier, null, result);
+        return result;
+    }
+}
@@ -32,16 +32,28 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.jcr.ImportUUIDBehavior;
 import javax.jcr.ItemExistsException;
 import javax.jcr.Node;
 import javax.jcr.PathNotFoundException;
 import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.ReferentialIntegrityException;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.UnsupportedRepositoryOperationException;
 import javax.jcr.Value;
+import javax.jcr.lock.LockException;
 import javax.jcr.nodetype.ConstraintViolationException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
 import javax.jcr.security.AccessControlList;
 import javax.jcr.security.AccessControlManager;
 import javax.jcr.security.Privilege;
@@ -1246,6 +1258,229 @@ public class ImportExportTest extends SingleUseAbstractTest {
         assertNoNode("/a/b/Cars/Sports[2]");
     }
 
+    // ----------------------------------------------------------------------------------------------------------------
+    // Bulk import
+    // ----------------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void shouldBulkImportCarsSystemView() throws Exception {
+        // Register the Cars node types ...
+        tools.registerNodeTypes(session, "cars.cnd");
+        session.getRootNode().addNode("a", "nt:unstructured").addNode("b", "nt:unstructured");
+        session.save();
+
+        session.getWorkspace().importXMLInBulk("/a/b", resourceStream("io/cars-system-view.xml"),
+                                               ImportUUIDBehavior.IMPORT_UUID_CREATE_NEW, 3);
+        assertCarsImported();
+
+        // The content should be visible to other sessions ...
+        Session session2 = repository.login();
+        try {
+            assertThat(session2.getNode("/a/b/Cars/Utility/Land Rover LR3"), is(notNullValue()));
+        } finally {
+            session2.logout();
+        }
+    }
+
+    @Test
+    public void shouldPublishEventsForAllBulkImportedNodes() throws Exception {
+        int numChildren = 25;
+        StringBuilder xml = new StringBuilder();
+        xml.append("<parent xmlns:jcr=\"http://www.jcp.org/jcr/1.0\" jcr:primaryType=\"nt:unstructured\">");
+        for (int i = 0; i != numChildren; ++i) {
+            xml.append("<child jcr:primaryType=\"nt:unstructured\" index=\"").append(i).append("\"/>");
+        }
+        xml.append("</parent>");
+        session.getRootNode().addNode("a", "nt:unstructured");
+        session.save();
+
+        // The other processes in a cluster rely on the events to index the new content, so every new node needs one ...
+        final int expectedEvents = numChildren + 1;
+        final CountDownLatch latch = new CountDownLatch(expectedEvents);
+        final AtomicInteger nodesAdded = new AtomicInteger();
+        EventListener listener = new EventListener() {
+            @Override
+            public void onEvent( EventIterator events ) {
+                while (events.hasNext()) {
+                    events.nextEvent();
+                    nodesAdded.incrementAndGet();
+                    latch.countDown();
+                }
+            }
+        };
+        session.getWorkspace().getObservationManager().addEventListener(listener, Event.NODE_ADDED, "/a", true, null, null,
+                                                                         false);
+        InputStream stream = new ByteArrayInputStream(xml.toString().getBytes("UTF-8"));
+        session.getWorkspace().importXMLInBulk("/a", stream, ImportUUIDBehavior.IMPORT_UUID_CREATE_NEW, 10);
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertThat(nodesAdded.get(), is(expectedEvents));
+        session.getWorkspace().getObservationManager().removeEventListener(listener);
+    }
+
+    @Test
+    public void shouldBulkImportDocumentViewWithMoreChildrenThanFitInOneBlock() throws Exception {
+        int numChildren = JcrWorkspace.DEFAULT_BULK_CHILDREN_PER_BLOCK * 2 + 10;
+        StringBuilder xml = new StringBuilder();
+        xml.append("<parent xmlns:jcr=\"http://www.jcp.org/jcr/1.0\" jcr:primaryType=\"nt:unstructured\">");
+        for (int i = 0; i != numChildren; ++i) {
+            xml.append("<child jcr:primaryType=\"nt:unstructured\" index=\"").append(i).append("\"/>");
+        }
+        xml.append("</parent>");
+        session.getRootNode().addNode("a", "nt:unstructured");
+        session.save();
+
+        InputStream stream = new ByteArrayInputStream(xml.toString().getBytes("UTF-8"));
+        session.getWorkspace().importXMLInBulk("/a", stream, ImportUUIDBehavior.IMPORT_UUID_CREATE_NEW, 100);
+
+        Node parent = assertNode("/a/parent");
+        assertThat(parent.getNodes().getSize(), is((long)numChildren));
+        assertThat(session.getNode("/a/parent/child[1]").getProperty("index").getString(), is("0"));
+        assertThat(session.getNode("/a/parent/child[" + numChildren + "]").getProperty("index").getString(),
+                   is(Integer.toString(numChildren - 1)));
+    }
+
+    @Test(expected = UnsupportedRepositoryOperationException.class)
+    public void shouldNotBulkImportWithReplaceExistingBehavior() throws Exception {
+        session.getWorkspace().importXMLInBulk("/", resourceStream("io/cars-system-view.xml"),
+                                               ImportUUIDBehavior.IMPORT_UUID_COLLISION_REPLACE_EXISTING, 10);
+    }
+
+    @Test(expected = ItemExistsException.class)
+    public void shouldFailToBulkImportCarsSystemViewWithThrowBehaviorWhenImportedContentContainsAlreadyUsedUuids()
+            throws Exception {
+        // Register the Cars node types ...
+        tools.registerNodeTypes(session, "cars.cnd");
+
+        // Set up the repository with existing content ...
+        assertImport("io/cars-system-view-with-uuids.xml", "/a/b", ImportBehavior.CREATE_NEW);
+        assertCarsImported();
+        session.getRootNode().getNode("a").addNode("c", "nt:unstructured");
+        session.save();
+
+        session.getWorkspace().importXMLInBulk("/a/c", resourceStream("io/cars-system-view-with-uuids.xml"),
+                                               ImportUUIDBehavior.IMPORT_UUID_COLLISION_THROW, 10);
+    }
+
+    @Test
+    public void shouldRecordReferrersOfReferencesInBulkImportedContent() throws Exception {
+        Node existing = session.getRootNode().addNode("existing", "nt:unstructured");
+        existing.addMixin("mix:referenceable");
+        session.getRootNode().addNode("a", "nt:unstructured");
+        session.save();
+        String existingId = existing.getIdentifier();
+        String targetId = "a1b2c3d4-0000-4000-8000-000000000001";
+
+        // The source refers to the target before the target is imported, and each node is written in a batch of its own ...
+        StringBuilder xml = new StringBuilder();
+        xml.append("<sv:node xmlns:sv=\"http://www.jcp.org/jcr/sv/1.0\" xmlns:jcr=\"http://www.jcp.org/jcr/1.0\" ");
+        xml.append("xmlns:nt=\"http://www.jcp.org/jcr/nt/1.0\" xmlns:mix=\"http://www.jcp.org/jcr/mix/1.0\" sv:name=\"top\">");
+        xml.append(svProperty("jcr:primaryType", "Name", "nt:unstructured"));
+        xml.append("<sv:node sv:name=\"source\">");
+        xml.append(svProperty("jcr:primaryType", "Name", "nt:unstructured"));
+        xml.append(svProperty("internal", "Reference", targetId));
+        xml.append(svProperty("external", "Reference", existingId));
+        xml.append(svProperty("weakExternal", "WeakReference", existingId));
+        xml.append("</sv:node>");
+        xml.append("<sv:node sv:name=\"target\">");
+        xml.append(svProperty("jcr:primaryType", "Name", "nt:unstructured"));
+        xml.append(svProperty("jcr:mixinTypes", "Name", "mix:referenceable"));
+        xml.append(svProperty("jcr:uuid", "String", targetId));
+        xml.append("</sv:node>");
+        xml.append("</sv:node>");
+
+        InputStream stream = new ByteArrayInputStream(xml.toString().getBytes("UTF-8"));
+        session.getWorkspace().importXMLInBulk("/a", stream, ImportUUIDBehavior.IMPORT_UUID_COLLISION_THROW, 1);
+        session.refresh(false);
+
+        Node source = assertNode("/a/top/source");
+        Node target = assertNode("/a/top/target");
+        assertThat(target.getIdentifier(), is(targetId));
+        assertThat(source.getProperty("internal").getNode().getPath(), is(target.getPath()));
+
+        // The referrers are recorded on the imported node and on the existing node ...
+        assertThat(referrerPaths(target.getReferences()), is(Collections.singleton("/a/top/source/internal")));
+        assertThat(referrerPaths(existing.getReferences()), is(Collections.singleton("/a/top/source/external")));
+        assertThat(referrerPaths(existing.getWeakReferences()),
+                   is(Collections.singleton("/a/top/source/weakExternal")));
+
+        // so the referenced nodes cannot be removed while they are still referenced ...
+        existing.remove();
+        try {
+            session.save();
+            fail("Should not be able to remove a node that is referenced by bulk imported content");
+        } catch (ReferentialIntegrityException e) {
+            // expected ...
+            session.refresh(false);
+        }
+    }
+
+    @Test( expected = ItemExistsException.class )
+    public void shouldFailToBulkImportContentWithTheSameUuidTwiceInOneBatch() throws Exception {
+        session.getRootNode().addNode("a", "nt:unstructured");
+        session.save();
+        String uuid = "a1b2c3d4-0000-4000-8000-000000000002";
+        StringBuilder xml = new StringBuilder();
+        xml.append("<sv:node xmlns:sv=\"http://www.jcp.org/jcr/sv/1.0\" xmlns:jcr=\"http://www.jcp.org/jcr/1.0\" ");
+        xml.append("xmlns:nt=\"http://www.jcp.org/jcr/nt/1.0\" xmlns:mix=\"http://www.jcp.org/jcr/mix/1.0\" sv:name=\"top\">");
+        xml.append(svProperty("jcr:primaryType", "Name", "nt:unstructured"));
+        for (String name : new String[] {"first", "second"}) {
+            xml.append("<sv:node sv:name=\"").append(name).append("\">");
+            xml.append(svProperty("jcr:primaryType", "Name", "nt:unstructured"));
+            xml.append(svProperty("jcr:mixinTypes", "Name", "mix:referenceable"));
+            xml.append(svProperty("jcr:uuid", "String", uuid));
+            xml.append("</sv:node>");
+        }
+        xml.append("</sv:node>");
+
+        InputStream stream = new ByteArrayInputStream(xml.toString().getBytes("UTF-8"));
+        session.getWorkspace().importXMLInBulk("/a", stream, ImportUUIDBehavior.IMPORT_UUID_COLLISION_THROW, 100);
+    }
+
+    @Test( expected = LockException.class )
+    public void shouldNotBulkImportUnderNodeLockedByAnotherSession() throws Exception {
+        Node parent = session.getRootNode().addNode("a", "nt:unstructured");
+        parent.addMixin("mix:lockable");
+        session.save();
+        Session other = repository.login();
+        try {
+            other.getWorkspace().getLockManager().lock("/a", true, false, Long.MAX_VALUE, "other");
+            session.getWorkspace().importXMLInBulk("/a", resourceStream("io/cars-system-view.xml"),
+                                                   ImportUUIDBehavior.IMPORT_UUID_CREATE_NEW, 10);
+        } finally {
+            other.logout();
+        }
+    }
+
+    @Test
+    public void shouldBulkImportUnderNodeLockedByThisSession() throws Exception {
+        tools.registerNodeTypes(session, "cars.cnd");
+        Node parent = session.getRootNode().addNode("a", "nt:unstructured");
+        parent.addMixin("mix:lockable");
+        parent.addNode("b", "nt:unstructured");
+        session.save();
+        session.getWorkspace().getLockManager().lock("/a", true, true, Long.MAX_VALUE, "owner");
+
+        session.getWorkspace().importXMLInBulk("/a/b", resourceStream("io/cars-system-view.xml"),
+                                               ImportUUIDBehavior.IMPORT_UUID_CREATE_NEW, 10);
+        assertCarsImported();
+    }
+
+    private String svProperty( String name,
+                               String type,
+                               String value ) {
+        return "<sv:property sv:name=\"" + name + "\" sv:type=\"" + type + "\"><sv:value>" + value
+               + "</sv:value></sv:property>";
+    }
+
+    private Set<String> referrerPaths( PropertyIterator properties ) throws RepositoryException {
+        Set<String> paths = new HashSet<String>();
+        while (properties.hasNext()) {
+            paths.add(properties.nextProperty().getPath());
+        }
+        return paths;
+    }
+
     // ----------------------------------------------------------------------------------------------------------------
     // Utilities
     // ----------------------------------------------------------------------------------------------------------------
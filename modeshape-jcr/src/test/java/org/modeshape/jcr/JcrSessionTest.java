@@ -1277,6 +1277,35 @@ public class JcrSessionTest extends SingleUseAbstractTest {
         queryAndExpectResults("SELECT * FROM [nt:unstructured] as node WHERE ISCHILDNODE (node, '/a/b')", 0);
     }
 
+    @Test
+    public void shouldNotShareParsedQueriesBetweenSessionsThatMapThePrefixToDifferentNamespaces() throws Exception {
+        javax.jcr.NamespaceRegistry registry = session.getWorkspace().getNamespaceRegistry();
+        registry.registerNamespace("first", "http://www.modeshape.org/test/first");
+        registry.registerNamespace("second", "http://www.modeshape.org/test/second");
+        Node root = session.getRootNode();
+        root.addNode("firstNode").setProperty("first:marker", "1");
+        root.addNode("secondNode").setProperty("second:marker", "2");
+        session.save();
+
+        String sql = "SELECT [jcr:path] FROM [nt:unstructured] WHERE [p:marker] IS NOT NULL";
+        Session session1 = repository.login();
+        Session session2 = repository.login();
+        try {
+            session1.setNamespacePrefix("p", "http://www.modeshape.org/test/first");
+            session2.setNamespacePrefix("p", "http://www.modeshape.org/test/second");
+            // Both sessions use the same statement, but it must be resolved against each session's own mappings ...
+            NodeIterator nodes = session1.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2).execute().getNodes();
+            assertThat(nodes.getSize(), is(1L));
+            assertThat(nodes.nextNode().getPath(), is("/firstNode"));
+            nodes = session2.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2).execute().getNodes();
+            assertThat(nodes.getSize(), is(1L));
+            assertThat(nodes.nextNode().getPath(), is("/secondNode"));
+        } finally {
+            session1.logout();
+            session2.logout();
+        }
+    }
+
     private List<Node> queryAndExpectResults( String queryString,
                                               int howMany ) throws RepositoryException {
         QueryManager queryManager = session.getWorkspace().getQueryManager();
@@ -38,6 +38,8 @@ import javax.jcr.NodeIterator;
 import javax.jcr.PathNotFoundException;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.UnsupportedRepositoryOperationException;
+import javax.jcr.nodetype.ConstraintViolationException;
 import javax.jcr.query.Query;
 import javax.jcr.query.QueryManager;
 import org.junit.Before;
@@ -147,6 +149,129 @@ public class JcrWorkspaceTest extends SingleUseAbstractTest {
         otherWorkspace.copy(workspaceName, "/a/b", "/");
     }
 
+    @Test
+    public void shouldCopyInBulkFromPathToAnotherPathInSameWorkspace() throws Exception {
+        workspace.copyInBulk(workspaceName, "/a/b", "/b/b-copy", 2);
+
+        Node copy = session.getNode("/b/b-copy");
+        assertThat(copy.getIdentifier(), is(not(session.getNode("/a/b").getIdentifier())));
+        assertThat(session.getNode("/b/b-copy/c").getProperty("stringProperty").getString(), is("value"));
+        assertNotNull(session.getNode("/a/b/c"));
+    }
+
+    @Test
+    public void shouldCloneInBulkFromOtherWorkspace() throws Exception {
+        otherWorkspace.cloneInBulk(workspaceName, "/a", "/a", 2);
+
+        assertEquals(session.getNode("/a").getIdentifier(), otherSession.getNode("/a").getIdentifier());
+        assertEquals(session.getNode("/a/b").getIdentifier(), otherSession.getNode("/a/b").getIdentifier());
+        assertEquals(session.getNode("/a/b/c").getIdentifier(), otherSession.getNode("/a/b/c").getIdentifier());
+        assertThat(otherSession.getNode("/a/b/c").getProperty("stringProperty").getString(), is("value"));
+    }
+
+    @Test( expected = UnsupportedRepositoryOperationException.class )
+    public void shouldNotAllowCloneInBulkWithinSameWorkspace() throws Exception {
+        workspace.cloneInBulk(workspaceName, "/a/b", "/b/b-clone", 2);
+    }
+
+    @Test( expected = RepositoryException.class )
+    public void shouldNotCopyInBulkIntoWorkspaceRoot() throws Exception {
+        otherWorkspace.copyInBulk(workspaceName, "/a/b", "/", 2);
+    }
+
+    @Test
+    public void shouldRewriteReferencesWithinSubgraphWhenCopyingInBulk() throws Exception {
+        Node c = session.getNode("/a/b/c");
+        c.addMixin("mix:referenceable");
+        Node referrer = session.getNode("/a/b").addNode("referrer");
+        referrer.setProperty("strong", c);
+        referrer.setProperty("weak", session.getValueFactory().createValue(c, true));
+        session.save();
+
+        workspace.copyInBulk(workspaceName, "/a/b", "/b/b-copy", 2);
+
+        Node cCopy = session.getNode("/b/b-copy/c");
+        assertThat(cCopy.getIdentifier(), is(not(c.getIdentifier())));
+        Node referrerCopy = session.getNode("/b/b-copy/referrer");
+        assertThat(referrerCopy.getProperty("strong").getNode().getPath(), is("/b/b-copy/c"));
+        assertThat(referrerCopy.getProperty("weak").getNode().getPath(), is("/b/b-copy/c"));
+        // The original still refers to the original ...
+        assertThat(session.getNode("/a/b/referrer").getProperty("strong").getNode().getPath(), is("/a/b/c"));
+        assertThat(cCopy.getReferences().getSize(), is(1L));
+        assertThat(c.getReferences().getSize(), is(1L));
+    }
+
+    @Test
+    public void shouldKeepReferencesOutsideSubgraphWhenCopyingInBulk() throws Exception {
+        Node b = session.getNode("/b");
+        b.addMixin("mix:referenceable");
+        session.getNode("/a/b/c").setProperty("outside", b);
+        session.save();
+
+        workspace.copyInBulk(workspaceName, "/a/b", "/b/b-copy", 2);
+
+        assertThat(session.getNode("/b/b-copy/c").getProperty("outside").getNode().getIdentifier(), is(b.getIdentifier()));
+        assertThat(b.getReferences().getSize(), is(2L));
+    }
+
+    @Test( expected = RepositoryException.class )
+    public void shouldNotCopyInBulkReferenceOutsideSubgraphThatIsNotInTargetWorkspace() throws Exception {
+        Node b = session.getNode("/b");
+        b.addMixin("mix:referenceable");
+        session.getNode("/a/b/c").setProperty("outside", b);
+        session.save();
+
+        otherSession.getRootNode().addNode("target");
+        otherSession.save();
+        otherWorkspace.copyInBulk(workspaceName, "/a/b", "/target/b", 2);
+    }
+
+    @Test
+    public void shouldCopyInBulkChildrenSpreadAcrossSeveralBlocks() throws Exception {
+        int count = JcrWorkspace.DEFAULT_BULK_CHILDREN_PER_BLOCK * 2 + 10;
+        Node parent = session.getRootNode().addNode("parent");
+        for (int i = 0; i != count; ++i) {
+            parent.addNode("child" + i);
+        }
+        session.save();
+
+        workspace.copyInBulk(workspaceName, "/parent", "/b/parent-copy", 100);
+
+        NodeIterator children = session.getNode("/b/parent-copy").getNodes();
+        int i = 0;
+        while (children.hasNext()) {
+            assertThat(children.nextNode().getName(), is("child" + i++));
+        }
+        assertThat(i, is(count));
+        assertThat(session.getNode("/b/parent-copy/child" + (count - 1)).getParent().getPath(), is("/b/parent-copy"));
+    }
+
+    @Test( expected = ConstraintViolationException.class )
+    public void shouldNotCopyInBulkSubgraphContainingVersionableNode() throws Exception {
+        session.getNode("/a/b/c").addMixin("mix:versionable");
+        session.save();
+
+        workspace.copyInBulk(workspaceName, "/a/b", "/b/b-copy", 2);
+    }
+
+    @Test( expected = ConstraintViolationException.class )
+    public void shouldNotCopyInBulkSubgraphContainingShareableNode() throws Exception {
+        session.getNode("/a/b/c").addMixin("mix:shareable");
+        session.save();
+
+        workspace.copyInBulk(workspaceName, "/a/b", "/b/b-copy", 2);
+    }
+
+    @Test( expected = ConstraintViolationException.class )
+    public void shouldNotCopyInBulkSubgraphContainingShareOfNodeElsewhere() throws Exception {
+        session.getNode("/a/b/c").addMixin("mix:shareable");
+        session.getRootNode().addNode("shares");
+        session.save();
+        workspace.clone(workspaceName, "/a/b/c", "/shares/c", false);
+
+        workspace.copyInBulk(workspaceName, "/shares", "/b/shares-copy", 2);
+    }
+
     @Test( expected = IllegalArgumentException.class )
     public void shouldNotAllowCopyFromOtherWorkspaceWithNullWorkspace() throws Exception {
         workspace.copy(null, null, null);
@@ -0,0 +1,297 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.jcr.Node;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.document.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.common.util.FileUtil;
+import org.modeshape.jcr.RepositoryConfiguration.FieldName;
+import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.CachedNode.Properties;
+import org.modeshape.jcr.cache.ChildReference;
+import org.modeshape.jcr.cache.NodeCache;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.spi.index.IndexWriter;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+
+public class ReindexerTest extends SingleUseAbstractTest {
+
+    private static final String LOCATION = "target/reindexer-test";
+
+    private NodeCache cache;
+    private NodeKey parentKey;
+    private Path parentPath;
+    private int nodeCount;
+
+    @Override
+    @Before
+    public void beforeEach() throws Exception {
+        FileUtil.delete(LOCATION);
+        super.beforeEach();
+        Node parent = session.getRootNode().addNode("parent");
+        nodeCount = 0;
+        for (int i = 0; i != 5; ++i) {
+            Node child = parent.addNode("child" + i);
+            ++nodeCount;
+            for (int j = 0; j != 10; ++j) {
+                child.addNode("grandchild" + j);
+                ++nodeCount;
+            }
+        }
+        session.save();
+        cache = session.cache();
+        parentKey = ((AbstractJcrNode)parent).key();
+        parentPath = session.context().getValueFactories().getPathFactory().create("/parent");
+    }
+
+    @Override
+    @After
+    public void afterEach() throws Exception {
+        try {
+            super.afterEach();
+        } finally {
+            FileUtil.delete(LOCATION);
+        }
+    }
+
+    @Test
+    public void shouldReindexEverySubtreeUsingSeveralThreads() throws Exception {
+        RecordingIndexWriter writer = new RecordingIndexWriter(-1, true);
+        reindex(reindexer("repo", 4, 100), writer);
+        assertThat(writer.paths.size(), is(nodeCount));
+        assertThat(writer.adds.get(), is(nodeCount));
+        for (int i = 0; i != 5; ++i) {
+            for (int j = 0; j != 10; ++j) {
+                String path = "/parent/child" + i + "/grandchild" + j;
+                NodeKey key = ((AbstractJcrNode)session.getNode(path)).key();
+                assertThat(writer.paths.get(key), is(path));
+            }
+        }
+        assertThat(writer.threads.size() > 1, is(true));
+    }
+
+    @Test
+    public void shouldSpillPendingNodesToDiskAndReadThemBack() throws Exception {
+        File directory = new File(LOCATION, "repo");
+        RecordingIndexWriter writer = new RecordingIndexWriter(-1, false);
+        writer.watchForQueueFiles(directory);
+        // A single thread crawls each child's subtree, keeping at most 2 of its 10 children in memory ...
+        reindex(reindexer("repo", 1, 2), writer);
+        assertThat(writer.paths.size(), is(nodeCount));
+        assertThat(writer.adds.get(), is(nodeCount));
+        assertThat(writer.sawQueueFiles.get(), is(true));
+        assertThat(queueFilesIn(directory), is(0));
+    }
+
+    @Test
+    public void shouldResumeInterruptedReindexingWithTheSubtreesThatWereNotCompleted() throws Exception {
+        // A single thread crawls the 5 subtrees of 11 nodes in turn, and fails in the third subtree ...
+        RecordingIndexWriter failing = new RecordingIndexWriter(25, false);
+        try {
+            reindex(reindexer("repo", 1, 100), failing);
+        } catch (IllegalStateException e) {
+            // expected ...
+        }
+        assertThat(failing.adds.get(), is(25));
+
+        RecordingIndexWriter resumed = new RecordingIndexWriter(-1, false);
+        reindex(reindexer("repo", 1, 100), resumed);
+        assertThat(resumed.adds.get(), is(3 * 11));
+
+        // The checkpoint is removed once the reindexing completes ...
+        RecordingIndexWriter again = new RecordingIndexWriter(-1, false);
+        reindex(reindexer("repo", 1, 100), again);
+        assertThat(again.adds.get(), is(nodeCount));
+    }
+
+    @Test
+    public void shouldNotResumeInterruptedReindexingForOtherIndexProviders() throws Exception {
+        try {
+            reindex(reindexer("repo", 1, 100), new RecordingIndexWriter(25, false), Collections.singleton("first"));
+        } catch (IllegalStateException e) {
+            // expected ...
+        }
+
+        // Reindexing for all of the providers has to crawl all of the content ...
+        RecordingIndexWriter all = new RecordingIndexWriter(-1, false);
+        reindex(reindexer("repo", 1, 100), all, new HashSet<String>(Arrays.asList("first", "second")));
+        assertThat(all.adds.get(), is(nodeCount));
+
+        // ... while reindexing for the first provider resumes where it was interrupted ...
+        RecordingIndexWriter resumed = new RecordingIndexWriter(-1, false);
+        reindex(reindexer("repo", 1, 100), resumed, Collections.singleton("first"));
+        assertThat(resumed.adds.get(), is(3 * 11));
+    }
+
+    @Test
+    public void shouldDiscardInterruptedReindexingOnceAllContentIsReindexed() throws Exception {
+        File directory = new File(LOCATION, "repo");
+        try {
+            reindex(reindexer("repo", 1, 100), new RecordingIndexWriter(25, false));
+        } catch (IllegalStateException e) {
+            // expected ...
+        }
+        assertThat(checkpointFilesIn(directory), is(1));
+
+        Reindexer reindexer = reindexer("repo", 1, 100);
+        reindexer.cleanReindexingCompleted();
+        assertThat(checkpointFilesIn(directory), is(0));
+        RecordingIndexWriter again = new RecordingIndexWriter(-1, false);
+        reindex(reindexer, again);
+        assertThat(again.adds.get(), is(nodeCount));
+        assertThat(checkpointFilesIn(directory), is(0));
+    }
+
+    @Test
+    public void shouldKeepTheProgressOfEachRepositorySeparate() throws Exception {
+        Reindexer first = reindexer("first", 1, 100);
+        Reindexer second = reindexer("second", 1, 100);
+        first.cleanReindexingStarted();
+        assertThat(first.isCleanReindexingInterrupted(), is(true));
+        assertThat(second.isCleanReindexingInterrupted(), is(false));
+
+        // Interrupt a reindexing of the first repository, and make sure the second repository does not discard its progress ...
+        try {
+            reindex(first, new RecordingIndexWriter(25, false));
+        } catch (IllegalStateException e) {
+            // expected ...
+        }
+        second.cleanReindexingStarted();
+        RecordingIndexWriter resumed = new RecordingIndexWriter(-1, false);
+        reindex(reindexer("first", 1, 100), resumed);
+        assertThat(resumed.adds.get(), is(3 * 11));
+        assertThat(reindexer("first", 1, 100).isCleanReindexingInterrupted(), is(true));
+    }
+
+    private Reindexer reindexer( String repositoryName,
+                                 int threadCount,
+                                 int maxQueuedNodes ) {
+        Document reindexing = Schematic.newDocument(FieldName.REINDEXING_LOCATION, LOCATION, FieldName.REINDEXING_THREAD_COUNT,
+                                                    threadCount, FieldName.REINDEXING_MAX_QUEUED_NODES, maxQueuedNodes);
+        Document document = Schematic.newDocument(FieldName.REINDEXING, reindexing);
+        RepositoryConfiguration config = new RepositoryConfiguration(document, repositoryName);
+        return new Reindexer(repositoryName, session.context(), repository.statistics(), config.getReindexing());
+    }
+
+    private void reindex( Reindexer reindexer,
+                          IndexWriter writer ) {
+        reindex(reindexer, writer, Collections.singleton("local"));
+    }
+
+    private void reindex( Reindexer reindexer,
+                          IndexWriter writer,
+                          Set<String> providerNames ) {
+        CachedNode parent = cache.getNode(parentKey);
+        List<ChildReference> children = new ArrayList<ChildReference>();
+        for (ChildReference child : parent.getChildReferences(cache)) {
+            children.add(child);
+        }
+        reindexer.reindex(session.workspaceName(), cache, parentKey, parentPath, children, Integer.MAX_VALUE, writer,
+                          providerNames);
+    }
+
+    private static int checkpointFilesIn( File directory ) {
+        File[] files = directory.listFiles();
+        int count = 0;
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith("checkpoint-")) ++count;
+            }
+        }
+        return count;
+    }
+
+    private static int queueFilesIn( File directory ) {
+        File[] files = directory.listFiles();
+        int count = 0;
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith("queue-")) ++count;
+            }
+        }
+        return count;
+    }
+
+    protected static class RecordingIndexWriter implements IndexWriter {
+        protected final Map<NodeKey, String> paths = new ConcurrentHashMap<NodeKey, String>();
+        protected final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        protected final AtomicInteger adds = new AtomicInteger();
+        protected final AtomicBoolean sawQueueFiles = new AtomicBoolean();
+        private final int failAfter;
+        private final boolean slow;
+        private volatile File queueDirectory;
+
+        protected RecordingIndexWriter( int failAfter,
+                                        boolean slow ) {
+            this.failAfter = failAfter;
+            this.slow = slow;
+        }
+
+        protected void watchForQueueFiles( File directory ) {
+            this.queueDirectory = directory;
+        }
+
+        @Override
+        public boolean canBeSkipped() {
+            return false;
+        }
+
+        @Override
+        public void clearAllIndexes() {
+        }
+
+        @Override
+        public void add( String workspace,
+                         NodeKey key,
+                         Path path,
+                         Name primaryType,
+                         Set<Name> mixinTypes,
+                         Properties properties ) {
+            if (failAfter >= 0 && adds.get() >= failAfter) {
+                throw new IllegalStateException("Failing after " + failAfter + " nodes");
+            }
+            adds.incrementAndGet();
+            paths.put(key, path.getString());
+            threads.add(Thread.currentThread().getName());
+            if (queueDirectory != null && queueFilesIn(queueDirectory) > 0) sawQueueFiles.set(true);
+            if (slow) {
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -366,6 +366,23 @@ public class RepositoryConfigurationTest {
         assertValid("config/repo-config-journaling.json");
     }
 
+    @Test
+    public void shouldReadReindexingConfiguration() {
+        RepositoryConfiguration config = assertValid("config/repo-config-reindexing.json");
+        RepositoryConfiguration.Reindexing reindexing = config.getReindexing();
+        assertThat(reindexing.location(), is("target/reindexing"));
+        assertThat(reindexing.threadCount(), is(3));
+        assertThat(reindexing.maxQueuedNodes(), is(500));
+    }
+
+    @Test
+    public void shouldUseDefaultReindexingConfigurationWhenNoneIsSpecified() {
+        RepositoryConfiguration.Reindexing reindexing = new RepositoryConfiguration("repoName").getReindexing();
+        assertThat(reindexing.location(), is(RepositoryConfiguration.Default.REINDEXING_LOCATION));
+        assertThat(reindexing.threadCount(), is(RepositoryConfiguration.Default.REINDEXING_THREAD_COUNT));
+        assertThat(reindexing.maxQueuedNodes(), is(RepositoryConfiguration.Default.REINDEXING_MAX_QUEUED_NODES));
+    }
+
     protected RepositoryConfiguration assertValid( RepositoryConfiguration config ) {
         Problems results = config.validate();
         assertThat(results.toString(), results.hasProblems(), is(false));
@@ -18,13 +18,18 @@ package org.modeshape.jcr;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import javax.jcr.Binary;
 import javax.jcr.ImportUUIDBehavior;
+import javax.jcr.Node;
 import javax.jcr.NoSuchWorkspaceException;
 import javax.jcr.PathNotFoundException;
 import javax.jcr.RepositoryException;
@@ -43,6 +48,7 @@ import org.junit.Test;
 import org.modeshape.common.FixFor;
 import org.modeshape.common.statistic.Stopwatch;
 import org.modeshape.common.util.FileUtil;
+import org.modeshape.common.util.IoUtil;
 import org.modeshape.jcr.api.Problems;
 
 /**
@@ -196,6 +202,101 @@ public class RepositoryRestoreTest extends SingleUseAbstractTest {
         assertContentInWorkspace(repository(), "ws3");
     }
 
+    @Test
+    public void shouldBackupAndRestoreRepositoryUsingMultiplePartitions() throws Exception {
+        loadContent();
+        BackupService backupService = repository().runningState().backupService();
+        Problems problems = backupService.backupRepository(backupDirectory, 5L, true, 3);
+        assertNoProblems(problems);
+        for (int i = 0; i != 3; ++i) {
+            String filename = BackupService.partitionFilenamePrefix(i) + "_000001" + BackupDocumentWriter.DOCUMENTS_EXTENSION
+                              + BackupDocumentWriter.GZIP_EXTENSION;
+            assertThat(new File(backupDirectory, filename).exists(), is(true));
+        }
+
+        session().getRootNode().addNode("node-not-in-backup");
+        session().save();
+
+        JcrSession newSession = repository().login();
+        try {
+            Problems restoreProblems = newSession.getWorkspace().getRepositoryManager().restoreRepository(backupDirectory);
+            assertNoProblems(restoreProblems);
+        } finally {
+            newSession.logout();
+        }
+
+        assertContentInWorkspace(repository(), "default");
+        assertContentInWorkspace(repository(), "ws2");
+        assertContentInWorkspace(repository(), "ws3");
+        assertContentNotInWorkspace(repository(), "default", "/node-not-in-backup");
+        queryContentInWorkspace(repository(), null);
+    }
+
+    @Test
+    public void shouldBackupIncrementallyAndRestoreChainOfBackups() throws Exception {
+        startRepositoryWithConfiguration(RepositoryConfiguration.read("config/backup-repo-journaling-config.json")
+                                                                .with(environment));
+        session().getRootNode().addNode("node-in-full-backup");
+        session().getRootNode().addNode("node-removed-after-full-backup");
+        session().save();
+
+        Problems problems = session().getWorkspace().getRepositoryManager().backupRepository(backupDirectory);
+        assertNoProblems(problems);
+
+        // Make some changes that will be in the incremental backup ...
+        session().getNode("/node-removed-after-full-backup").remove();
+        Node node = session().getRootNode().addNode("node-in-incremental-backup");
+        byte[] content = new byte[1024];
+        new Random().nextBytes(content);
+        node.setProperty("binary", session().getValueFactory().createBinary(new ByteArrayInputStream(content)));
+        session().save();
+
+        problems = session().getWorkspace().getRepositoryManager().backupRepository(backupDirectory2, backupDirectory);
+        assertNoProblems(problems);
+        // The changed documents are partitioned like those of the full backup, so that they are restored concurrently ...
+        List<?> partitions = BackupService.readBackupInfo(backupDirectory2).getArray(BackupService.FieldName.PARTITIONS);
+        assertThat(partitions.size(), is(BackupService.DEFAULT_NUMBER_OF_PARTITIONS));
+
+        // Make some changes that will not be in either backup ...
+        session().getRootNode().addNode("node-not-in-backup");
+        session().save();
+
+        JcrSession newSession = repository().login();
+        try {
+            Problems restoreProblems = newSession.getWorkspace().getRepositoryManager().restoreRepository(backupDirectory,
+                                                                                                          backupDirectory2);
+            assertNoProblems(restoreProblems);
+        } finally {
+            newSession.logout();
+        }
+
+        newSession = repository().login();
+        try {
+            newSession.getNode("/node-in-full-backup");
+            Binary binary = newSession.getNode("/node-in-incremental-backup").getProperty("binary").getBinary();
+            assertThat(IoUtil.readBytes(binary.getStream()), is(content));
+        } finally {
+            newSession.logout();
+        }
+        assertContentNotInWorkspace(repository(), null, "/node-removed-after-full-backup", "/node-not-in-backup");
+    }
+
+    @Test
+    public void shouldNotBackupIncrementallyWithoutJournal() throws Exception {
+        Problems problems = session().getWorkspace().getRepositoryManager().backupRepository(backupDirectory);
+        assertNoProblems(problems);
+        problems = session().getWorkspace().getRepositoryManager().backupRepository(backupDirectory2, backupDirectory);
+        assertThat(problems.hasProblems(), is(true));
+    }
+
+    @Test
+    public void shouldNotRestoreIncrementalBackupThatDoesNotFollowFullBackup() throws Exception {
+        Problems problems = session().getWorkspace().getRepositoryManager().backupRepository(backupDirectory);
+        assertNoProblems(problems);
+        problems = session().getWorkspace().getRepositoryManager().restoreRepository(backupDirectory, backupDirectory2);
+        assertThat(problems.hasProblems(), is(true));
+    }
+
     private void startTransaction() throws NotSupportedException, SystemException {
         TransactionManager txnMgr = session.repository.transactionManager();
         txnMgr.begin();
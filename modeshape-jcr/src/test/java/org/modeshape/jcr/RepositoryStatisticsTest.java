@@ -0,0 +1,122 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+import org.modeshape.jcr.RepositoryStatistics.StripedHistogram;
+import org.modeshape.jcr.api.monitor.Statistics;
+
+public class RepositoryStatisticsTest {
+
+    @Test
+    public void shouldPlaceEachValueInBucketThatIsNoWiderThanOneSixteenthOfTheValue() {
+        for (long value = 0L; value < 1L << 20; ++value) {
+            assertBucketContains(value);
+        }
+        for (int exponent = 20; exponent < StripedHistogram.MAX_EXPONENT; ++exponent) {
+            assertBucketContains(1L << exponent);
+            assertBucketContains((1L << exponent) - 1L);
+            assertBucketContains((1L << exponent) + 12345L);
+        }
+        assertThat(StripedHistogram.bucketFor(-1L), is(0));
+        assertThat(StripedHistogram.bucketFor(Long.MAX_VALUE), is(StripedHistogram.BUCKET_COUNT - 1));
+    }
+
+    @Test
+    public void shouldComputePercentilesOfValues() {
+        long[] values = new long[1000];
+        for (int i = 0; i != values.length; ++i) {
+            values[i] = i + 1;
+        }
+        Statistics stats = RepositoryStatistics.statisticsFor(values);
+        assertThat(stats.getCount(), is(1000));
+        assertWithinBucketOf(stats.getPercentile(50.0d), 500L);
+        assertWithinBucketOf(stats.getPercentile(90.0d), 900L);
+        assertWithinBucketOf(stats.getPercentile(99.0d), 990L);
+        assertThat(stats.getPercentile(100.0d), is(1000L));
+        assertThat(stats.getPercentile(0.0d), is(1L));
+    }
+
+    @Test
+    public void shouldComputePercentilesOfSingleValue() {
+        Statistics stats = RepositoryStatistics.statisticsFor(12345L);
+        assertThat(stats.getPercentile(50.0d), is(12345L));
+        assertThat(stats.getPercentile(99.9d), is(12345L));
+    }
+
+    @Test
+    public void shouldRollUpPercentiles() {
+        long[] smaller = new long[900];
+        for (int i = 0; i != smaller.length; ++i) {
+            smaller[i] = i + 1;
+        }
+        long[] larger = new long[100];
+        for (int i = 0; i != larger.length; ++i) {
+            larger[i] = 100000L + i;
+        }
+        Statistics stats = RepositoryStatistics.statisticsFor(new Statistics[] {RepositoryStatistics.statisticsFor(smaller), null,
+            RepositoryStatistics.statisticsFor(larger)});
+        assertThat(stats.getCount(), is(1000));
+        assertWithinBucketOf(stats.getPercentile(50.0d), 500L);
+        assertWithinBucketOf(stats.getPercentile(95.0d), 100049L);
+        assertThat(stats.getPercentile(100.0d), is(100099L));
+    }
+
+    @Test
+    public void shouldDrainValuesRecordedByConcurrentThreads() throws Exception {
+        final StripedHistogram histogram = new StripedHistogram();
+        final int threadCount = 8;
+        final int valuesPerThread = 10000;
+        final CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int i = 0; i != threadCount; ++i) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int value = 1; value <= valuesPerThread; ++value) {
+                        histogram.record(value);
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+
+        Statistics stats = histogram.drain();
+        assertThat(stats.getCount(), is(threadCount * valuesPerThread));
+        assertThat(stats.getMinimum(), is(1L));
+        assertThat(stats.getMaximum(), is((long)valuesPerThread));
+        assertThat(stats.getMean(), is((valuesPerThread + 1) / 2.0d));
+        assertWithinBucketOf(stats.getPercentile(50.0d), valuesPerThread / 2);
+
+        // The histogram should have been reset ...
+        assertThat(histogram.drain().getCount(), is(0));
+        assertThat(histogram.drain().getPercentile(50.0d), is(0L));
+    }
+
+    private static void assertBucketContains( long value ) {
+        long highest = StripedHistogram.highestValueIn(StripedHistogram.bucketFor(value));
+        assertThat("bucket for " + value + " ends at " + highest, highest >= value, is(true));
+        assertThat("bucket for " + value + " ends at " + highest, highest - value <= value / 16L, is(true));
+    }
+
+    private static void assertWithinBucketOf( long actual,
+                                              long expected ) {
+        assertThat("expected " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 16L, is(true));
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.jcr.Node;
+import javax.jcr.Property;
+import org.infinispan.commons.util.ReflectionUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.common.util.FileUtil;
+import org.modeshape.jcr.Sequencers.SequencingWorkItem;
+import org.modeshape.jcr.api.sequencer.Sequencer;
+
+public class SequencingQueueTest {
+
+    private static final String QUEUE_LOCATION = "target/sequencing-queue-test";
+
+    private Sequencers sequencers;
+    private Sequencer lowPriority;
+    private Sequencer highPriority;
+    private ExecutorService executor;
+
+    @Before
+    public void beforeEach() {
+        FileUtil.delete(QUEUE_LOCATION);
+        sequencers = mock(Sequencers.class);
+        lowPriority = sequencer("low", 0);
+        highPriority = sequencer("high", 5);
+        executor = mock(ExecutorService.class);
+    }
+
+    @After
+    public void afterEach() {
+        FileUtil.delete(QUEUE_LOCATION);
+    }
+
+    @Test
+    public void shouldCoalescePendingWorkForTheSameInput() throws Exception {
+        SequencingQueue queue = newQueue(10);
+        queue.submit(work(lowPriority, "/a", "jcr:data"));
+        queue.submit(work(lowPriority, "/a", "jcr:data"));
+        queue.submit(work(lowPriority, "/a", "jcr:mimeType"));
+        assertThat(queue.size(), is(2));
+    }
+
+    @Test
+    public void shouldProcessWorkOfSequencersWithHigherPriorityFirst() throws Exception {
+        SequencingQueue queue = newQueue(10);
+        queue.submit(work(lowPriority, "/a", "jcr:data"));
+        queue.submit(work(highPriority, "/b", "jcr:data"));
+        queue.submit(work(lowPriority, "/c", "jcr:data"));
+        assertTakes(queue, "/b", "/a", "/c");
+    }
+
+    @Test
+    public void shouldDeferWorkForAnInputThatIsBeingSequenced() throws Exception {
+        SequencingQueue queue = newQueue(10);
+        queue.submit(work(lowPriority, "/a", "jcr:data"));
+        SequencingQueue.Pending running = queue.take();
+        queue.submit(work(lowPriority, "/a", "jcr:data"));
+        queue.submit(work(lowPriority, "/b", "jcr:data"));
+        assertThat(queue.size(), is(3));
+        assertTakes(queue, "/b");
+        queue.completed(running);
+        assertTakes(queue, "/a");
+    }
+
+    @Test
+    public void shouldKeepWorkBeyondTheMaximumQueueSizeOnDisk() throws Exception {
+        SequencingQueue queue = newQueue(2);
+        for (int i = 0; i != 5; ++i) {
+            queue.submit(work(lowPriority, "/node" + i, "jcr:data"));
+        }
+        queue.submit(work(lowPriority, "/node4", "jcr:data"));
+        assertThat(queue.size(), is(5));
+        assertTakes(queue, "/node0", "/node1");
+        assertThat(queue.take().work.getSelectedPath().startsWith("/node"), is(true));
+    }
+
+    @Test
+    public void shouldReadWorkKeptOnDiskBackInTheOrderItWasSubmitted() throws Exception {
+        SequencingQueue queue = newQueue(2);
+        for (int i = 0; i != 6; ++i) {
+            queue.submit(work(lowPriority, "/node" + i, "jcr:data"));
+        }
+        assertThat(queue.size(), is(6));
+        for (int i = 0; i != 6; ++i) {
+            SequencingQueue.Pending pending = queue.take();
+            assertThat(pending.work.getSelectedPath(), is("/node" + i));
+            queue.completed(pending);
+        }
+        assertThat(queue.size(), is(0));
+    }
+
+    @Test
+    public void shouldMakeSubmittersWaitForRoomWhenNoQueueLocationIsConfigured() throws Exception {
+        String json = "{ \"name\" : \"repo\", \"sequencing\" : { \"maxQueueSize\" : 2, \"threadCount\" : 1 } }";
+        RepositoryConfiguration config = RepositoryConfiguration.read(json);
+        final SequencingQueue queue = new SequencingQueue("repo", sequencers, new RepositoryStatistics(new ExecutionContext()),
+                                                          executor, config.getSequencing());
+        queue.start();
+        queue.submit(work(lowPriority, "/node0", "jcr:data"));
+        queue.submit(work(lowPriority, "/node1", "jcr:data"));
+        // Work for an input that is already pending is coalesced without waiting ...
+        queue.submit(work(lowPriority, "/node1", "jcr:data"));
+        assertThat(queue.size(), is(2));
+
+        final CountDownLatch submitted = new CountDownLatch(1);
+        Thread submitter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                queue.submit(work(lowPriority, "/node2", "jcr:data"));
+                submitted.countDown();
+            }
+        });
+        submitter.start();
+        assertThat(submitted.await(200, TimeUnit.MILLISECONDS), is(false));
+        assertThat(queue.size(), is(2));
+
+        SequencingQueue.Pending pending = queue.take();
+        assertThat(pending.work.getSelectedPath(), is("/node0"));
+        assertThat(submitted.await(10, TimeUnit.SECONDS), is(true));
+        queue.completed(pending);
+        assertTakes(queue, "/node1", "/node2");
+        assertThat(new File(QUEUE_LOCATION).exists(), is(false));
+    }
+
+    @Test
+    public void shouldReadBackWorkKeptOnDiskForSequencerRemovedWhileItWasRead() throws Exception {
+        Sequencer removed = sequencer("removed", 5);
+        // The sequencer still exists when the work is submitted and read, but not when it is queued again ...
+        when(sequencers.getSequencer(removed.getUniqueId())).thenReturn(removed, removed, null);
+        SequencingQueue queue = newQueue(1);
+        queue.submit(work(lowPriority, "/a", "jcr:data"));
+        queue.submit(work(removed, "/b", "jcr:data"));
+        assertTakes(queue, "/a");
+        SequencingQueue.Pending pending = queue.take();
+        assertThat(pending.work.getSelectedPath(), is("/b"));
+        assertThat(pending.priority, is(0));
+    }
+
+    @Test
+    public void shouldProcessPendingWorkAfterRestart() throws Exception {
+        SequencingQueue queue = newQueue(10);
+        queue.submit(work(lowPriority, "/a", "jcr:data"));
+        queue.submit(work(lowPriority, "/b", "jcr:data"));
+        queue.submit(work(lowPriority, "/c", "jcr:data"));
+        queue.completed(queue.take());
+        // The work for '/b' is interrupted by the shutdown ...
+        queue.take();
+        queue.shutdown();
+        assertThat(queue.take(), is(nullValue()));
+
+        SequencingQueue restarted = newQueue(10);
+        restarted.start();
+        assertThat(restarted.size(), is(2));
+        SequencingQueue.Pending first = restarted.take();
+        SequencingQueue.Pending second = restarted.take();
+        assertThat(first.work.getSelectedPath().equals("/b") || second.work.getSelectedPath().equals("/b"), is(true));
+        assertThat(first.work.getSelectedPath().equals("/c") || second.work.getSelectedPath().equals("/c"), is(true));
+        assertThat(first.work.getSequencerId(), is(lowPriority.getUniqueId()));
+        assertThat(first.work.getOutputPath(), is("/output"));
+        restarted.completed(first);
+        restarted.completed(second);
+        assertThat(restarted.size(), is(0));
+        assertThat(new File(QUEUE_LOCATION, "repo").list().length, is(0));
+    }
+
+    private SequencingQueue newQueue( int maxQueueSize ) {
+        String json = "{ \"name\" : \"repo\", \"sequencing\" : { \"queueLocation\" : \"" + QUEUE_LOCATION
+                      + "\", \"maxQueueSize\" : " + maxQueueSize + ", \"threadCount\" : 1 } }";
+        RepositoryConfiguration config = RepositoryConfiguration.read(json);
+        return new SequencingQueue("repo", sequencers, new RepositoryStatistics(new ExecutionContext()), executor,
+                                   config.getSequencing());
+    }
+
+    private Sequencer sequencer( String name,
+                                 int priority ) {
+        Sequencer sequencer = new NoOpSequencer();
+        ReflectionUtil.setValue(sequencer, "name", name);
+        ReflectionUtil.setValue(sequencer, "priority", priority);
+        when(sequencers.getSequencer(sequencer.getUniqueId())).thenReturn(sequencer);
+        when(sequencers.getSequencer(name)).thenReturn(sequencer);
+        return sequencer;
+    }
+
+    private SequencingWorkItem work( Sequencer sequencer,
+                                     String inputPath,
+                                     String propertyName ) {
+        return new SequencingWorkItem(sequencer.getUniqueId(), "admin", "default", inputPath, inputPath + "/" + propertyName,
+                                      "/output", null, propertyName);
+    }
+
+    private void assertTakes( SequencingQueue queue,
+                              String... inputPaths ) throws InterruptedException {
+        for (String inputPath : inputPaths) {
+            assertThat(queue.take().work.getSelectedPath(), is(inputPath));
+        }
+    }
+
+    protected static class NoOpSequencer extends Sequencer {
+        @Override
+        public boolean execute( Property inputProperty,
+                                Node outputNode,
+                                Context context ) {
+            return false;
+        }
+    }
+}
@@ -109,6 +109,36 @@ public abstract class AbstractChangeBusTest {
         assertChangesDispatched(listener2);
     }
 
+    @Test
+    public void shouldNotDelayOtherListenersWithSlowIsolatedListener() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        TestListener slow = new TestListener(2, 1000) {
+            @Override
+            public void notify( ChangeSet changeSet ) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.notify(changeSet);
+            }
+        };
+        assertTrue(getChangeBus().registerIsolated(slow));
+        assertFalse(getChangeBus().registerIsolated(slow));
+
+        TestListener listener = new TestListener(2);
+        assertTrue(getChangeBus().register(listener));
+
+        getChangeBus().notify(new TestChangeSet(WORKSPACE1));
+        getChangeBus().notify(new TestChangeSet(WORKSPACE1));
+
+        // The listener in the shared threads sees the changes while the isolated listener is still blocked ...
+        assertChangesDispatched(listener);
+        release.countDown();
+        assertChangesDispatched(slow);
+        assertTrue(getChangeBus().unregister(slow));
+    }
+
     @Test
     public void shouldOnlyDispatchEventsAfterListenerRegistration() throws Exception {
         getChangeBus().notify(new TestChangeSet(WORKSPACE1));
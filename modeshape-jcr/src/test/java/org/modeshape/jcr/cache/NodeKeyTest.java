@@ -0,0 +1,147 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.Test;
+
+public class NodeKeyTest {
+
+    private static final String SOURCE = "abcdef1";
+    private static final String WORKSPACE = "0123456";
+
+    @Test
+    public void shouldHaveSameStringFormAsSuppliedString() {
+        for (String key : keys()) {
+            assertThat(new NodeKey(key).toString(), is(key));
+            assertThat(new NodeKey(key).getSourceKey(), is(key.substring(0, 7)));
+            assertThat(new NodeKey(key).getWorkspaceKey(), is(key.substring(7, 14)));
+            assertThat(new NodeKey(key).getIdentifier(), is(key.substring(14)));
+        }
+    }
+
+    @Test
+    public void shouldBeEqualToKeyWithSameStringForm() {
+        for (String key : keys()) {
+            NodeKey nodeKey = new NodeKey(key);
+            NodeKey fromParts = new NodeKey(key.substring(0, 7), key.substring(7, 14), key.substring(14));
+            assertThat(nodeKey.equals(fromParts), is(true));
+            assertThat(nodeKey.hashCode(), is(fromParts.hashCode()));
+            assertThat(nodeKey.compareTo(fromParts), is(0));
+        }
+    }
+
+    @Test
+    public void shouldNotBeEqualToKeysWithDifferentStringForm() {
+        String uuid = UUID.randomUUID().toString();
+        NodeKey key = new NodeKey(SOURCE + WORKSPACE + uuid);
+        assertThat(key.equals(new NodeKey(SOURCE + WORKSPACE + uuid.toUpperCase())), is(false));
+        assertThat(key.equals(new NodeKey(SOURCE + "6543210" + uuid)), is(false));
+        assertThat(key.equals(new NodeKey("1fedcba" + WORKSPACE + uuid)), is(false));
+        assertThat(key.equals(key.withRandomId()), is(false));
+    }
+
+    @Test
+    public void shouldOrderKeysLikeTheirStringForms() {
+        List<String> keys = keys();
+        for (String key1 : keys) {
+            for (String key2 : keys) {
+                int expected = Integer.signum(key1.compareTo(key2));
+                assertThat(key1 + " vs " + key2, Integer.signum(new NodeKey(key1).compareTo(new NodeKey(key2))), is(expected));
+            }
+        }
+    }
+
+    @Test
+    public void shouldCreateKeysWithOtherParts() {
+        String uuid = UUID.randomUUID().toString();
+        NodeKey key = new NodeKey(SOURCE + WORKSPACE + uuid);
+        assertThat(key.withWorkspaceKey("6543210").toString(), is(SOURCE + "6543210" + uuid));
+        assertThat(key.withId("other").toString(), is(SOURCE + WORKSPACE + "other"));
+        NodeKey random = key.withRandomIdAndWorkspace("6543210");
+        assertThat(random.getWorkspaceKey(), is("6543210"));
+        assertThat(new NodeKey(random.toString()), is(random));
+        assertThat(NodeKey.isValidRandomIdentifier(random.getIdentifier()), is(true));
+    }
+
+    @Test
+    public void shouldReuseStringFormsOnceCreated() {
+        for (String key : keys()) {
+            NodeKey nodeKey = new NodeKey(key);
+            String identifier = nodeKey.getIdentifier();
+            String string = nodeKey.toString();
+            assertThat(string, is(key));
+            assertThat(nodeKey.getIdentifier() == identifier, is(true));
+            assertThat(nodeKey.toString() == string, is(true));
+        }
+    }
+
+    @Test
+    public void shouldSerializeAndDeserialize() throws Exception {
+        for (String key : keys()) {
+            NodeKey nodeKey = new NodeKey(key);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream output = new ObjectOutputStream(bytes);
+            output.writeObject(nodeKey);
+            output.close();
+            ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            NodeKey deserialized = (NodeKey)input.readObject();
+            assertThat(deserialized, is(nodeKey));
+            assertThat(deserialized.toString(), is(key));
+        }
+    }
+
+    @Test
+    public void shouldWriteAndReadCompactForm() throws Exception {
+        for (String key : keys()) {
+            NodeKey nodeKey = new NodeKey(key);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            nodeKey.write(output);
+            output.close();
+            NodeKey read = NodeKey.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            assertThat(read, is(nodeKey));
+            assertThat(read.toString(), is(key));
+        }
+    }
+
+    private List<String> keys() {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i != 20; ++i) {
+            keys.add(SOURCE + WORKSPACE + UUID.randomUUID().toString());
+            keys.add("1fedcba" + WORKSPACE + UUID.randomUUID().toString());
+            keys.add(SOURCE + "6543210" + UUID.randomUUID().toString());
+        }
+        keys.add(SOURCE + WORKSPACE + UUID.randomUUID().toString().toUpperCase());
+        keys.add(SOURCE + WORKSPACE + "jcr:system");
+        keys.add(SOURCE + WORKSPACE + "/external/path");
+        keys.add(SOURCE + WORKSPACE + "0");
+        keys.add(SOURCE + WORKSPACE + "00000000-0000-0000-0000-000000000000");
+        keys.add(SOURCE + WORKSPACE + "ffffffff-ffff-ffff-ffff-ffffffffffff");
+        keys.add(SOURCE + WORKSPACE + "ffffffff-ffff-ffff-ffff-fffffffffffg");
+        return keys;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.change;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.cache.CachedNode.Properties;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.Property;
+
+public class ChangeSetAdapterTest {
+
+    private ExecutionContext context;
+    private NodeKey key1;
+    private NodeKey key2;
+    private Name primaryType;
+    private Set<Name> mixins;
+    private RecordingAdapter adapter;
+
+    @Before
+    public void beforeEach() {
+        context = new ExecutionContext();
+        key1 = new NodeKey("source1", "worksp1", "node1");
+        key2 = new NodeKey("source1", "worksp1", "node2");
+        primaryType = name("nt:unstructured");
+        mixins = Collections.emptySet();
+        adapter = new RecordingAdapter(context);
+    }
+
+    @Test
+    public void shouldReportPropertyChangesOfEachNodeTogether() {
+        RecordingChanges changes = new RecordingChanges("session1", "process1", "repo1", "default", "journal1");
+        changes.propertyAdded(key1, primaryType, mixins, path("/a"), property("title", "A"), true);
+        changes.propertyChanged(key1, primaryType, mixins, path("/a"), property("count", 2L), property("count", 1L), true);
+        changes.propertyRemoved(key2, primaryType, mixins, path("/b"), property("title", "B"), true);
+        changes.freeze("admin", null, context.getValueFactories().getDateFactory().create());
+
+        adapter.notify(changes);
+
+        assertThat(adapter.modifiedKeys.size(), is(2));
+        assertThat(adapter.modifiedKeys.get(0), is(key1));
+        assertThat(adapter.modifiedProperties.get(0).keySet(), is(names("title", "count")));
+        assertThat(adapter.modifiedProperties.get(0).get(name("count")) instanceof PropertyChanged, is(true));
+        assertThat(adapter.modifiedKeys.get(1), is(key2));
+        assertThat(adapter.modifiedProperties.get(1).keySet(), is(names("title")));
+        assertThat(adapter.modifiedProperties.get(1).get(name("title")) instanceof PropertyRemoved, is(true));
+    }
+
+    @Test
+    public void shouldReportPropertyChangesBeforeTheNextNodeChange() {
+        RecordingChanges changes = new RecordingChanges("session1", "process1", "repo1", "default", "journal1");
+        changes.propertyAdded(key1, primaryType, mixins, path("/a"), property("title", "A"), true);
+        changes.nodeCreated(key2, key1, path("/a/b"), primaryType, mixins, new HashMap<Name, Property>(), true);
+        changes.propertyAdded(key1, primaryType, mixins, path("/a"), property("count", 1L), true);
+        changes.freeze("admin", null, context.getValueFactories().getDateFactory().create());
+
+        adapter.notify(changes);
+
+        assertThat(adapter.modifiedKeys.size(), is(2));
+        assertThat(adapter.modifiedKeys.get(0), is(key1));
+        assertThat(adapter.modifiedProperties.get(0).keySet(), is(names("title")));
+        assertThat(adapter.modifiedKeys.get(1), is(key1));
+        assertThat(adapter.modifiedProperties.get(1).keySet(), is(names("count")));
+        assertThat(adapter.addedKeys, is(Collections.singletonList(key2)));
+    }
+
+    @Test
+    public void shouldNotReportPropertyChangesWhenThereAreNone() {
+        RecordingChanges changes = new RecordingChanges("session1", "process1", "repo1", "default", "journal1");
+        changes.nodeCreated(key2, key1, path("/a/b"), primaryType, mixins, new HashMap<Name, Property>(), true);
+        changes.freeze("admin", null, context.getValueFactories().getDateFactory().create());
+
+        adapter.notify(changes);
+
+        assertThat(adapter.modifiedKeys.isEmpty(), is(true));
+        assertThat(adapter.addedKeys, is(Collections.singletonList(key2)));
+    }
+
+    private Name name( String name ) {
+        return context.getValueFactories().getNameFactory().create(name);
+    }
+
+    private Set<Name> names( String... names ) {
+        Set<Name> result = new HashSet<Name>();
+        for (String name : names) {
+            result.add(name(name));
+        }
+        return result;
+    }
+
+    private Path path( String path ) {
+        return context.getValueFactories().getPathFactory().create(path);
+    }
+
+    private Property property( String name,
+                               Object... values ) {
+        return context.getPropertyFactory().create(name(name), values);
+    }
+
+    protected static class RecordingAdapter extends ChangeSetAdapter {
+        protected final List<NodeKey> modifiedKeys = new ArrayList<NodeKey>();
+        protected final List<Map<Name, AbstractPropertyChange>> modifiedProperties = new ArrayList<>();
+        protected final List<NodeKey> addedKeys = new ArrayList<NodeKey>();
+
+        protected RecordingAdapter( ExecutionContext context ) {
+            super(context);
+        }
+
+        @Override
+        protected void addNode( String workspaceName,
+                                NodeKey key,
+                                Path path,
+                                Name primaryType,
+                                Set<Name> mixinTypes,
+                                Properties properties,
+                                boolean queryable ) {
+            addedKeys.add(key);
+        }
+
+        @Override
+        protected void modifyProperties( NodeKey key,
+                                         Map<Name, AbstractPropertyChange> propChanges ) {
+            modifiedKeys.add(key);
+            // the adapter reuses the map, so keep a copy ...
+            modifiedProperties.add(new HashMap<Name, AbstractPropertyChange>(propChanges));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.change;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.cache.NodeKey;
+import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.Name;
+import org.modeshape.jcr.value.Path;
+import org.modeshape.jcr.value.Property;
+
+public class ChangeSetCodecTest {
+
+    private ExecutionContext context;
+    private NodeKey parentKey;
+    private NodeKey childKey;
+
+    @Before
+    public void beforeEach() {
+        context = new ExecutionContext();
+        parentKey = new NodeKey("source1", "worksp1", "parent");
+        childKey = new NodeKey("source1", "worksp1", "child");
+    }
+
+    @Test
+    public void shouldRoundTripRecordedChanges() throws Exception {
+        RecordingChanges changes = new RecordingChanges("session1", "process1", "repo1", "default", "journal1");
+        Name primaryType = name("nt:unstructured");
+        Set<Name> mixins = new HashSet<Name>();
+        mixins.add(name("mix:title"));
+        Map<Name, Property> properties = new HashMap<Name, Property>();
+        properties.put(name("jcr:title"), property("jcr:title", "Title"));
+        properties.put(name("counts"), property("counts", 1L, 2L, 3L));
+        properties.put(name("created"), property("created", context.getValueFactories().getDateFactory().create()));
+        changes.workspaceAdded("other");
+        changes.nodeCreated(childKey, parentKey, path("/a/b"), primaryType, mixins, properties, true);
+        changes.propertyChanged(childKey, primaryType, mixins, path("/a/b"), property("jcr:title", "New"),
+                                property("jcr:title", "Title"), true);
+        changes.nodeMoved(childKey, primaryType, mixins, childKey, parentKey, path("/c/b"), path("/a/b"), false);
+        changes.binaryValueNoLongerUsed(new BinaryKey("0123456789abcdef0123456789abcdef01234567"));
+        Set<NodeKey> changedNodes = new HashSet<NodeKey>();
+        changedNodes.add(parentKey);
+        changedNodes.add(childKey);
+        changes.setChangedNodes(changedNodes);
+        changes.freeze("admin", Collections.singletonMap("key", "value"), context.getValueFactories().getDateFactory().create());
+
+        ChangeSet copy = roundTrip(changes);
+        assertThat(copy instanceof RecordingChanges, is(true));
+        assertThat(copy.getUUID(), is(changes.getUUID()));
+        assertThat(copy.getSessionId(), is(changes.getSessionId()));
+        assertThat(copy.getProcessKey(), is(changes.getProcessKey()));
+        assertThat(copy.getRepositoryKey(), is(changes.getRepositoryKey()));
+        assertThat(copy.getWorkspaceName(), is(changes.getWorkspaceName()));
+        assertThat(copy.getJournalId(), is(changes.getJournalId()));
+        assertThat(copy.getUserId(), is(changes.getUserId()));
+        assertThat(copy.getUserData(), is(changes.getUserData()));
+        assertThat(copy.getTimestamp(), is(changes.getTimestamp()));
+        assertThat(copy.changedNodes(), is(changes.changedNodes()));
+        assertThat(copy.size(), is(changes.size()));
+        Iterator<Change> expected = changes.iterator();
+        for (Change change : copy) {
+            Change original = expected.next();
+            assertThat(change.getClass().equals(original.getClass()), is(true));
+            assertThat(change.toString(), is(original.toString()));
+        }
+    }
+
+    @Test
+    public void shouldShareDictionaryAcrossChangeSetsWrittenWithOneEncoder() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        ChangeSetCodec.Encoder encoder = ChangeSetCodec.encoder(output);
+        RecordingChanges first = new RecordingChanges("session1", "process1", "repo1", "default", "journal1");
+        first.nodeChanged(childKey, path("/a/b"), name("nt:unstructured"), Collections.<Name>emptySet(), true);
+        first.freeze("admin", null, context.getValueFactories().getDateFactory().create());
+        RecordingChanges second = new RecordingChanges("session1", "process1", "repo1", "default", "journal1");
+        second.nodeChanged(childKey, path("/a/b"), name("nt:unstructured"), Collections.<Name>emptySet(), true);
+        second.freeze("admin", null, context.getValueFactories().getDateFactory().create());
+        encoder.write(first);
+        int sizeOfFirst = bytes.size();
+        encoder.write(second);
+        output.flush();
+        assertThat(bytes.size() - sizeOfFirst < sizeOfFirst, is(true));
+
+        ChangeSetCodec.Decoder decoder = ChangeSetCodec.decoder(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertThat(decoder.read().getUUID(), is(first.getUUID()));
+        assertThat(decoder.read().getUUID(), is(second.getUUID()));
+    }
+
+    private ChangeSet roundTrip( ChangeSet changeSet ) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        ChangeSetCodec.INSTANCE.write(changeSet, output);
+        output.flush();
+        return ChangeSetCodec.INSTANCE.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    private Name name( String name ) {
+        return context.getValueFactories().getNameFactory().create(name);
+    }
+
+    private Path path( String path ) {
+        return context.getValueFactories().getPathFactory().create(path);
+    }
+
+    private Property property( String name,
+                               Object... values ) {
+        return context.getPropertyFactory().create(name(name), values);
+    }
+}
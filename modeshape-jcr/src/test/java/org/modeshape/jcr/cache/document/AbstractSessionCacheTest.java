@@ -51,7 +51,7 @@ public abstract class AbstractSessionCacheTest extends AbstractNodeCacheTest {
         listener = new PrintingChangeSetListener();
         changeBus.register(listener);
         ConcurrentMap<NodeKey, CachedNode> nodeCache = new ConcurrentHashMap<NodeKey, CachedNode>();
-        DocumentStore documentStore = new LocalDocumentStore(schematicDb);
+        DocumentStore documentStore = createDocumentStore();
         DocumentTranslator translator = new DocumentTranslator(context, documentStore, 100L);
         workspaceCache = new WorkspaceCache(context, "repo", "ws", null, documentStore, translator, ROOT_KEY_WS1, nodeCache,
                                             changeBus);
@@ -68,6 +68,10 @@ public abstract class AbstractSessionCacheTest extends AbstractNodeCacheTest {
         executor.shutdown();
     }
 
+    protected DocumentStore createDocumentStore() {
+        return new LocalDocumentStore(schematicDb);
+    }
+
     protected abstract SessionCache createSessionCache( ExecutionContext context,
                                                         WorkspaceCache cache,
                                                         SessionEnvironment sessionEnv );
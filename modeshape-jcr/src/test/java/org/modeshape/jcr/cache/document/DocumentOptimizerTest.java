@@ -21,6 +21,7 @@ import static org.junit.Assert.fail;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import org.infinispan.schematic.Schematic;
 import org.infinispan.schematic.SchematicEntry;
 import org.infinispan.schematic.document.Document;
 import org.infinispan.schematic.document.EditableArray;
@@ -29,6 +30,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.modeshape.jcr.ExecutionContext;
 import org.modeshape.jcr.cache.ChildReference;
+import org.modeshape.jcr.cache.ChildReferences;
 import org.modeshape.jcr.cache.MutableCachedNode;
 import org.modeshape.jcr.cache.NodeKey;
 import org.modeshape.jcr.cache.SessionCache;
@@ -167,6 +169,53 @@ public class DocumentOptimizerTest extends AbstractSessionCacheTest {
         print(document(key), true);
     }
 
+    @Test
+    public void shouldMaintainBlockDirectoryWhenSplittingChildReferences() throws Exception {
+        MutableCachedNode nodeB = check(session1).mutableNode("/childB");
+        NodeKey key = nodeB.getKey();
+        for (int i = 0; i != 20; ++i) {
+            nodeB.createChild(session(), key.withId("child" + (i + 1)), name("newChild" + i), property("p1a", 344));
+        }
+        session1.save();
+
+        assertThat(optimizer.optimizeChildrenBlocks(key, null, 5, 2), is(true));
+        session1.save();
+
+        Document doc = document(key);
+        DocumentTranslator.ChildReferencesInfo info = workspaceCache.translator().getChildReferencesInfo(doc);
+        assertThat(info.directoryKey != null, is(true));
+        ChildBlockDirectory directory = ChildBlockDirectory.read(document(new NodeKey(info.directoryKey)));
+        assertThat(directory.isConsistentWith(info), is(true));
+
+        // Every child in a block after the first must be found by the directory ...
+        ChildReferences references = workspaceCache.translator().getChildReferences(workspaceCache, doc);
+        for (int i = 0; i != 20; ++i) {
+            NodeKey childKey = key.withId("child" + (i + 1));
+            assertThat(references.hasChild(childKey), is(true));
+            ChildReference ref = references.getChild(name("newChild" + i));
+            assertThat(ref.getKey(), is(childKey));
+            assertThat(references.getChild(childKey).getKey(), is(childKey));
+        }
+        assertThat(references.hasChild(key.withId("nonExistantChild")), is(false));
+        assertThat(references.getChild(name("nonExistantChild")) == null, is(true));
+    }
+
+    @Test
+    public void shouldNotProduceFalseNegativesFromChildBlockFilter() throws Exception {
+        EditableArray children = Schematic.newArray();
+        for (int i = 0; i != 1000; ++i) {
+            children.add(Schematic.newDocument(DocumentTranslator.KEY, "key" + i, DocumentTranslator.NAME, "{uri}name" + i));
+        }
+        ChildBlockFilter filter = ChildBlockFilter.fromBytes(ChildBlockFilter.forChildren(children).toBytes());
+        int falsePositives = 0;
+        for (int i = 0; i != 1000; ++i) {
+            assertThat(filter.mightContain("key" + i), is(true));
+            assertThat(filter.mightContain("name" + i), is(true));
+            if (filter.mightContain("otherKey" + i)) ++falsePositives;
+        }
+        assertThat(falsePositives < 10, is(true));
+    }
+
     protected Document document( NodeKey key ) {
         SchematicEntry entry = workspaceCache.documentStore().get(key.toString());
         return entry.getContentAsDocument();
@@ -0,0 +1,211 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.cache.document;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.transaction.LockingMode;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.cache.DocumentVersionConflictException;
+import org.modeshape.jcr.cache.MutableCachedNode;
+import org.modeshape.jcr.cache.SessionCache;
+import org.modeshape.jcr.cache.SessionEnvironment;
+
+/**
+ * Tests that operate against a {@link WritableSessionCache} that uses optimistic saves. Each test method starts with a clean slate
+ * of content
+ */
+public class OptimisticWritableSessionCacheTest extends WritableSessionCacheTest {
+
+    private final AtomicInteger preparedUpdates = new AtomicInteger();
+
+    @Override
+    protected void configureCache( ConfigurationBuilder configurationBuilder ) {
+        // Optimistic saves require a cache with pessimistic locking or with a write skew check ...
+        configurationBuilder.transaction().lockingMode(LockingMode.OPTIMISTIC);
+        configurationBuilder.locking().isolationLevel(IsolationLevel.REPEATABLE_READ).writeSkewCheck(true);
+    }
+
+    @Override
+    protected DocumentStore createDocumentStore() {
+        return new LocalDocumentStore(schematicDb) {
+            @Override
+            public boolean updatesRequirePreparing() {
+                return true;
+            }
+
+            @Override
+            public boolean prepareDocumentsForUpdate( Collection<String> keys ) {
+                preparedUpdates.incrementAndGet();
+                return super.prepareDocumentsForUpdate(keys);
+            }
+        };
+    }
+
+    @Override
+    protected SessionCache createSessionCache( ExecutionContext context,
+                                               WorkspaceCache cache,
+                                               SessionEnvironment sessionEnv ) {
+        return new WritableSessionCache(context, workspaceCache, sessionEnv, true);
+    }
+
+    @Test
+    public void shouldMergeChildrenAppendedToSameParentBySessionsSavingConcurrently() {
+        MutableCachedNode nodeB1 = check(session1).mutableNode("/childB");
+        MutableCachedNode nodeB2 = check(session2).mutableNode("/childB");
+        nodeB1.createChild(session1, session1.createNodeKey(), name("fromSession1"), property("p1", "value1"));
+        nodeB2.createChild(session2, session2.createNodeKey(), name("fromSession2"), property("p1", "value2"));
+
+        session1.save();
+        session2.save();
+
+        check(session1).node("/childB/fromSession1");
+        check(session1).node("/childB/fromSession2");
+        check(session2).node("/childB/fromSession1");
+        check(session2).node("/childB/fromSession2");
+    }
+
+    @Test
+    public void shouldFailToSavePropertyThatWasChangedByAnotherSessionAfterItWasRead() {
+        MutableCachedNode nodeB1 = check(session1).mutableNode("/childB");
+        MutableCachedNode nodeB2 = check(session2).mutableNode("/childB");
+        nodeB1.setProperty(session1, property("p1", "value1"));
+        nodeB2.setProperty(session2, property("p1", "value2"));
+
+        session1.save();
+        try {
+            session2.save();
+            fail("Expected the second session to fail to save the conflicting property change");
+        } catch (DocumentVersionConflictException e) {
+            // expected ...
+            assertThat(e.getKey(), is(nodeB2.getKey().toString()));
+        }
+        check(session1).property("/childB", property("p1", "value1"));
+    }
+
+    @Test
+    public void shouldAllowChangingPropertiesAfterAnotherSessionAddedChildren() {
+        MutableCachedNode nodeB1 = check(session1).mutableNode("/childB");
+        MutableCachedNode nodeB2 = check(session2).mutableNode("/childB");
+        nodeB1.createChild(session1, session1.createNodeKey(), name("fromSession1"), property("p1", "value1"));
+        nodeB2.setProperty(session2, property("p1", "value2"));
+
+        session1.save();
+        session2.save();
+
+        check(session1).node("/childB/fromSession1");
+        check(session1).property("/childB", property("p1", "value2"));
+    }
+
+    @Test
+    public void shouldNeverLoseEitherOfTwoConflictingPropertyChangesSavedConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i != 20; ++i) {
+                SessionEnvironment sessionEnv = createSessionContext();
+                final SessionCache first = createSessionCache(context, workspaceCache, sessionEnv);
+                final SessionCache second = createSessionCache(context, workspaceCache, sessionEnv);
+                check(first).mutableNode("/childB").setProperty(first, property("p1", "first" + i));
+                check(second).mutableNode("/childB").setProperty(second, property("p1", "second" + i));
+
+                final CountDownLatch startLatch = new CountDownLatch(2);
+                List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+                for (final SessionCache session : new SessionCache[] {first, second}) {
+                    results.add(executor.submit(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() throws Exception {
+                            startLatch.countDown();
+                            startLatch.await();
+                            try {
+                                session.save();
+                                return true;
+                            } catch (DocumentVersionConflictException e) {
+                                return false;
+                            }
+                        }
+                    }));
+                }
+                boolean firstSaved = results.get(0).get(10, TimeUnit.SECONDS);
+                boolean secondSaved = results.get(1).get(10, TimeUnit.SECONDS);
+
+                // Exactly one of the saves must win, and the persisted value must be the winner's ...
+                assertThat(firstSaved != secondSaved, is(true));
+                String expected = firstSaved ? "first" + i : "second" + i;
+                check(workspaceCache).property("/childB", property("p1", expected));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldAppendChildrenToSameParentFromManyThreadsWithoutLockingTheParent() throws Exception {
+        final int threads = 4;
+        final int childrenPerThread = 5;
+        preparedUpdates.set(0);
+
+        // make sure all the threads start at the same time, so that they contend for the parent
+        final CountDownLatch startLatch = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int i = 0; i != threads; ++i) {
+                final String prefix = "thread" + i + "-";
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        SessionCache session = createSessionCache(context, workspaceCache, createSessionContext());
+                        startLatch.countDown();
+                        startLatch.await();
+                        for (int j = 0; j != childrenPerThread; ++j) {
+                            MutableCachedNode parent = check(session).mutableNode("/childB");
+                            parent.createChild(session, session.createNodeKey(), name(prefix + j), property("p1", "value" + j));
+                            session.save();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // None of the saves locked the parent in the storage, and none of the appended children was lost ...
+        assertThat(preparedUpdates.get(), is(0));
+        for (int i = 0; i != threads; ++i) {
+            for (int j = 0; j != childrenPerThread; ++j) {
+                check(workspaceCache).node("/childB/thread" + i + "-" + j);
+            }
+        }
+    }
+}
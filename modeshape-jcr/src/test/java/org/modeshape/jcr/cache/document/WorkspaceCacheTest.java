@@ -15,12 +15,28 @@
  */
 package org.modeshape.jcr.cache.document;
 
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.SchematicEntry;
+import org.infinispan.schematic.document.EditableArray;
+import org.infinispan.schematic.document.EditableDocument;
+import org.junit.Test;
+import org.modeshape.jcr.DurationRecorder;
+import org.modeshape.jcr.api.monitor.DurationMetric;
 import org.modeshape.jcr.bus.RepositoryChangeBus;
 import org.modeshape.jcr.cache.CachedNode;
+import org.modeshape.jcr.cache.ChildReference;
 import org.modeshape.jcr.cache.NodeCache;
 import org.modeshape.jcr.cache.NodeKey;
 
@@ -28,12 +44,13 @@ public class WorkspaceCacheTest extends AbstractNodeCacheTest {
 
     private ExecutorService executor;
     private RepositoryChangeBus changeBus;
+    private ConcurrentMap<NodeKey, CachedNode> nodeCache;
 
     @Override
     protected NodeCache createCache() {
         executor = Executors.newCachedThreadPool();
         changeBus = new RepositoryChangeBus("repo", executor);
-        ConcurrentMap<NodeKey, CachedNode> nodeCache = new ConcurrentHashMap<NodeKey, CachedNode>();
+        nodeCache = new ConcurrentHashMap<NodeKey, CachedNode>();
         DocumentStore documentStore = new LocalDocumentStore(schematicDb);
         DocumentTranslator translator = new DocumentTranslator(context, documentStore, 100L);
         WorkspaceCache workspaceCache = new WorkspaceCache(context, "repo", "ws", null, documentStore, translator, ROOT_KEY_WS1,
@@ -47,4 +64,104 @@ public class WorkspaceCacheTest extends AbstractNodeCacheTest {
         super.shutdownCache(cache);
         executor.shutdown();
     }
+
+    @Test
+    public void shouldReadMultipleDocumentsFromStore() {
+        Map<String, SchematicEntry> entries = new LocalDocumentStore(schematicDb).getAll(Arrays.asList("source1works1-childA",
+                                                                                                      "source1works1-missing",
+                                                                                                      "source1works1-childB"));
+        assertThat(entries.size(), is(2));
+        assertThat(entries.get("source1works1-childA").hasDocumentContent(), is(true));
+        assertThat(entries.get("source1works1-childB").hasDocumentContent(), is(true));
+        assertThat(entries.containsKey("source1works1-missing"), is(false));
+    }
+
+    @Test
+    public void shouldLoadMultipleNodesIntoCache() {
+        NodeKey childA = new NodeKey("source1works1-childA");
+        NodeKey childB = new NodeKey("source1works1-childB");
+        NodeKey missing = new NodeKey("source1works1-missing");
+        ((WorkspaceCache)cache).loadNodes(Arrays.asList(childA, childB, missing));
+        assertThat(nodeCache.containsKey(childA), is(true));
+        assertThat(nodeCache.containsKey(childB), is(true));
+        assertThat(nodeCache.containsKey(missing), is(false));
+        assertThat(cache.getNode(childA), is(sameInstance(nodeCache.get(childA))));
+        assertThat(cache.getNode(childB).getName(cache), is(name("childB")));
+    }
+
+    @Test
+    public void shouldRecordOneReadTimeSamplePerDocumentReadInBulk() {
+        final AtomicInteger samples = new AtomicInteger();
+        LocalDocumentStore store = new LocalDocumentStore(schematicDb);
+        store.setDurationRecorder(new DurationRecorder() {
+            @Override
+            public void recordDuration( DurationMetric metric,
+                                        long duration,
+                                        TimeUnit timeUnit ) {
+                if (metric == DurationMetric.DOCUMENT_STORE_READ_TIME) samples.incrementAndGet();
+            }
+        });
+        store.getAll(Arrays.asList("source1works1-childA", "source1works1-childB", "source1works1-childC"));
+        assertThat(samples.get(), is(3));
+    }
+
+    @Test
+    public void shouldPrefetchChildrenOfEachSegmentEveryTimeTheChildrenAreIterated() {
+        // Create a parent whose 4 children are split into two blocks of 2 ...
+        LocalDocumentStore store = new LocalDocumentStore(schematicDb);
+        NodeKey parentKey = new NodeKey("source1works1-segmented");
+        String blockKey = "source1works1-segmented-block";
+        NodeKey[] childKeys = new NodeKey[4];
+        for (int i = 0; i != childKeys.length; ++i) {
+            childKeys[i] = new NodeKey("source1works1-segmentedChild" + i);
+            EditableDocument child = Schematic.newDocument();
+            child.setString(DocumentTranslator.PARENT, parentKey.toString());
+            store.put(childKeys[i].toString(), child);
+        }
+        EditableDocument parent = Schematic.newDocument();
+        parent.setString(DocumentTranslator.PARENT, ROOT_KEY_WS1.toString());
+        parent.setArray(DocumentTranslator.CHILDREN, childReferences(childKeys[0], childKeys[1]));
+        EditableDocument info = parent.setDocument(DocumentTranslator.CHILDREN_INFO);
+        info.setNumber(DocumentTranslator.COUNT, childKeys.length);
+        info.setString(DocumentTranslator.NEXT_BLOCK, blockKey);
+        info.setString(DocumentTranslator.LAST_BLOCK, blockKey);
+        store.put(parentKey.toString(), parent);
+        EditableDocument block = Schematic.newDocument();
+        block.setArray(DocumentTranslator.CHILDREN, childReferences(childKeys[2], childKeys[3]));
+        store.put(blockKey, block);
+
+        // Iterating over the children (without getting any of them) should load all of them ...
+        CachedNode parentNode = cache.getNode(parentKey);
+        assertThat(countChildren(parentNode), is(childKeys.length));
+        for (NodeKey childKey : childKeys) {
+            assertThat(nodeCache.containsKey(childKey), is(true));
+        }
+
+        // The parent's segments are reused, so evict the children and make sure that they are loaded again ...
+        for (NodeKey childKey : childKeys) {
+            nodeCache.remove(childKey);
+        }
+        assertThat(cache.getNode(parentKey), is(sameInstance(parentNode)));
+        assertThat(countChildren(parentNode), is(childKeys.length));
+        for (NodeKey childKey : childKeys) {
+            assertThat(nodeCache.containsKey(childKey), is(true));
+        }
+    }
+
+    private EditableArray childReferences( NodeKey... keys ) {
+        EditableArray refs = Schematic.newArray();
+        for (NodeKey key : keys) {
+            refs.add(Schematic.newDocument(DocumentTranslator.KEY, key.toString(), DocumentTranslator.NAME, key.getIdentifier()));
+        }
+        return refs;
+    }
+
+    private int countChildren( CachedNode node ) {
+        int count = 0;
+        for (Iterator<ChildReference> iter = node.getChildReferences(cache).iterator(); iter.hasNext();) {
+            iter.next();
+            ++count;
+        }
+        return count;
+    }
 }
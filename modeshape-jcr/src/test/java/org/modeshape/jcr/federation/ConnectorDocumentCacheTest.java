@@ -0,0 +1,266 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.federation;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.infinispan.schematic.Schematic;
+import org.infinispan.schematic.document.Document;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectorDocumentCacheTest {
+
+    private TestCache cache;
+    private CountingLoader loader;
+
+    @Before
+    public void beforeEach() {
+        cache = new TestCache(3, 10, TimeUnit.SECONDS);
+        loader = new CountingLoader();
+    }
+
+    @Test
+    public void shouldLoadDocumentOnlyOnce() {
+        Document doc = cache.get("a", loader);
+        assertThat(doc.getString("id"), is("a"));
+        assertThat(cache.get("a", loader), is(sameInstance(doc)));
+        assertThat(loader.loads.get(), is(1));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void shouldNotCacheMissingDocuments() {
+        loader.missing = true;
+        assertThat(cache.get("a", loader), is(nullValue()));
+        assertThat(cache.get("a", loader), is(nullValue()));
+        assertThat(loader.loads.get(), is(2));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void shouldReloadDocumentAfterItExpires() {
+        Document first = cache.get("a", loader);
+        cache.advance(11, TimeUnit.SECONDS);
+        Document second = cache.get("a", loader);
+        assertThat(second == first, is(false));
+        assertThat(loader.loads.get(), is(2));
+        assertThat(cache.get("a", loader), is(sameInstance(second)));
+    }
+
+    @Test
+    public void shouldNeverExpireDocumentsWithNegativeTtl() {
+        cache = new TestCache(3, -1, TimeUnit.SECONDS);
+        Document doc = cache.get("a", loader);
+        cache.advance(365, TimeUnit.DAYS);
+        assertThat(cache.get("a", loader), is(sameInstance(doc)));
+        assertThat(loader.loads.get(), is(1));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedDocuments() {
+        cache.get("a", loader);
+        cache.get("b", loader);
+        cache.get("c", loader);
+        cache.get("a", loader);
+        cache.get("d", loader); // evicts "b"
+        assertThat(cache.size(), is(3));
+        assertThat(loader.loads.get(), is(4));
+        cache.get("a", loader);
+        cache.get("c", loader);
+        assertThat(loader.loads.get(), is(4));
+        cache.get("b", loader);
+        assertThat(loader.loads.get(), is(5));
+    }
+
+    @Test
+    public void shouldReloadInvalidatedDocuments() {
+        cache.get("a", loader);
+        cache.get("b", loader);
+        cache.invalidate("a");
+        cache.invalidateAll(Arrays.asList("b", "c"));
+        assertThat(cache.size(), is(0));
+        cache.get("a", loader);
+        cache.get("b", loader);
+        assertThat(loader.loads.get(), is(4));
+    }
+
+    @Test
+    public void shouldLoadConcurrentlyRequestedDocumentOnlyOnce() throws Exception {
+        loader.block();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Document>> results = new ArrayList<>();
+            for (int i = 0; i != 8; ++i) {
+                results.add(executor.submit(new Callable<Document>() {
+                    @Override
+                    public Document call() {
+                        return cache.get("a", loader);
+                    }
+                }));
+            }
+            loader.awaitLoading();
+            Thread.sleep(100L);
+            loader.unblock();
+            Document doc = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Document> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS), is(sameInstance(doc)));
+            }
+            assertThat(loader.loads.get(), is(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldReturnExpiredDocumentWhileAnotherThreadReloadsIt() throws Exception {
+        final Document expired = cache.get("a", loader);
+        cache.advance(11, TimeUnit.SECONDS);
+        loader.block();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Document> refreshed = executor.submit(new Callable<Document>() {
+                @Override
+                public Document call() {
+                    return cache.get("a", loader);
+                }
+            });
+            loader.awaitLoading();
+            // The document is being reloaded, so concurrent requests get the expired document without waiting ...
+            assertThat(cache.get("a", loader), is(sameInstance(expired)));
+            loader.unblock();
+            Document doc = refreshed.get(10, TimeUnit.SECONDS);
+            assertThat(doc == expired, is(false));
+            assertThat(cache.get("a", loader), is(sameInstance(doc)));
+            assertThat(loader.loads.get(), is(2));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldNotCacheDocumentInvalidatedWhileLoading() throws Exception {
+        loader.block();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Document> result = executor.submit(new Callable<Document>() {
+                @Override
+                public Document call() {
+                    return cache.get("a", loader);
+                }
+            });
+            loader.awaitLoading();
+            cache.invalidate("a");
+            loader.unblock();
+            assertThat(result.get(10, TimeUnit.SECONDS).getString("id"), is("a"));
+            assertThat(cache.size(), is(0));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldLoadOnlyMissingDocumentsInBulk() {
+        cache.get("a", loader);
+        Map<String, Document> docs = cache.getAll(Arrays.asList("a", "b", "c"), loader);
+        assertThat(docs.size(), is(3));
+        assertThat(docs.get("c").getString("id"), is("c"));
+        assertThat(loader.bulkLoads, is(Arrays.asList((Collection<String>)Arrays.asList("b", "c"))));
+        assertThat(cache.size(), is(3));
+        cache.getAll(Arrays.asList("a", "b", "c"), loader);
+        assertThat(loader.bulkLoads.size(), is(1));
+    }
+
+    protected static class TestCache extends ConnectorDocumentCache {
+        private volatile long now = 0L;
+
+        protected TestCache( int maxSize,
+                             long ttl,
+                             TimeUnit unit ) {
+            super(maxSize, ttl, unit);
+        }
+
+        @Override
+        protected long now() {
+            return now;
+        }
+
+        protected void advance( long time,
+                                TimeUnit unit ) {
+            now += unit.toNanos(time);
+        }
+    }
+
+    protected static class CountingLoader implements ConnectorDocumentCache.Loader {
+        protected final AtomicInteger loads = new AtomicInteger();
+        protected final List<Collection<String>> bulkLoads = new ArrayList<>();
+        protected volatile boolean missing = false;
+        private volatile CountDownLatch loading;
+        private volatile CountDownLatch unblock;
+
+        protected void block() {
+            loading = new CountDownLatch(1);
+            unblock = new CountDownLatch(1);
+        }
+
+        protected void awaitLoading() throws InterruptedException {
+            loading.await(10, TimeUnit.SECONDS);
+        }
+
+        protected void unblock() {
+            unblock.countDown();
+        }
+
+        @Override
+        public Document load( String id ) {
+            loads.incrementAndGet();
+            if (loading != null) {
+                loading.countDown();
+                try {
+                    unblock.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.interrupted();
+                }
+            }
+            return missing ? null : Schematic.newDocument("id", id);
+        }
+
+        @Override
+        public Map<String, Document> loadAll( Collection<String> ids ) {
+            bulkLoads.add(new ArrayList<>(ids));
+            Map<String, Document> result = new LinkedHashMap<>();
+            for (String id : ids) {
+                result.put(id, Schematic.newDocument("id", id));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.modeshape.jcr.index.local;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.value.ValueComparators;
+
+public class LocalDuplicateIndexTest {
+
+    private ExecutionContext context;
+    private DB db;
+
+    @Before
+    public void beforeEach() {
+        context = new ExecutionContext();
+        db = DBMaker.newMemoryDB().make();
+    }
+
+    @After
+    public void afterEach() {
+        db.close();
+    }
+
+    protected LocalDuplicateIndex<String> newIndex( String name,
+                                                    String workspaceName ) {
+        return LocalDuplicateIndex.create(name, workspaceName, "local", db,
+                                          IndexValues.converter(context.getValueFactories().getStringFactory()),
+                                          Serializer.STRING, ValueComparators.STRING_COMPARATOR);
+    }
+
+    @Test
+    public void shouldAddAndRemoveEntriesForNodes() {
+        LocalDuplicateIndex<String> index = newIndex("titles", "default");
+        assertThat(LocalMapIndex.exists(db, "titles", "default"), is(true));
+        index.add("node1", "value1");
+        index.add("node2", "value1");
+        index.add("node2", "value2");
+        assertThat(index.estimateTotalCount(), is(3L));
+        index.remove("node2");
+        assertThat(index.estimateTotalCount(), is(1L));
+        index.removeAll();
+        assertThat(index.estimateTotalCount(), is(0L));
+    }
+
+    @Test
+    public void shouldKeepSeparateEntriesForEachWorkspace() {
+        LocalDuplicateIndex<String> index1 = newIndex("titles", "ws1");
+        LocalDuplicateIndex<String> index2 = newIndex("titles", "ws2");
+        index1.add("node1", "value1");
+        index2.add("node1", "value1");
+        index2.add("node2", "value2");
+        assertThat(index1.estimateTotalCount(), is(1L));
+        assertThat(index2.estimateTotalCount(), is(2L));
+    }
+
+    @Test
+    public void shouldRemovePersistedStateWhenDestroyed() {
+        LocalDuplicateIndex<String> index = newIndex("titles", "default");
+        index.add("node1", "value1");
+        index.destroy();
+        assertThat(LocalMapIndex.exists(db, "titles", "default"), is(false));
+        assertThat(newIndex("titles", "default").estimateTotalCount(), is(0L));
+    }
+}
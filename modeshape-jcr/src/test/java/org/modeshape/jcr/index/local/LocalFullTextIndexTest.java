@@ -0,0 +1,142 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.modeshape.jcr.index.local;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.query.model.FullTextSearch;
+import org.modeshape.jcr.query.model.SelectorName;
+
+public class LocalFullTextIndexTest {
+
+    private static final SelectorName SELECTOR = new SelectorName("s");
+
+    private ExecutionContext context;
+    private DB db;
+    private LocalFullTextIndex index;
+
+    @Before
+    public void beforeEach() {
+        context = new ExecutionContext();
+        db = DBMaker.newMemoryDB().make();
+        index = LocalFullTextIndex.create("text", "default", "local", db, null, context.getValueFactories());
+        index.add("node1", "jcr:title", "The quick brown fox");
+        index.add("node1", "jcr:description", "jumps over the lazy dog");
+        index.add("node2", "jcr:title", "The lazy, lazy cat");
+        index.add("node3", "jcr:title", "Foxes and dogs");
+    }
+
+    @After
+    public void afterEach() {
+        db.close();
+    }
+
+    protected Map<String, Float> search( String expression ) {
+        return index.search(Collections.singletonList(new FullTextSearch(SELECTOR, expression)));
+    }
+
+    protected Map<String, Float> search( String propertyName,
+                                         String expression ) {
+        return index.search(Collections.singletonList(new FullTextSearch(SELECTOR, propertyName, expression)));
+    }
+
+    @Test
+    public void shouldTokenizeTextIntoLowerCaseTerms() {
+        assertThat(LocalFullTextIndex.tokenize("The quick-brown FOX, 2 times!", false),
+                   is(Arrays.asList("the", "quick", "brown", "fox", "2", "times")));
+        assertThat(LocalFullTextIndex.tokenize("fo* b?r * ", true), is(Arrays.asList("fo*", "b?r")));
+    }
+
+    @Test
+    public void shouldFindNodesContainingTerm() {
+        assertThat(search("lazy").keySet(), is(set("node1", "node2")));
+        assertThat(search("fox").keySet(), is(set("node1")));
+        assertThat(search("elephant").isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldScoreNodesWithMoreOccurrencesHigher() {
+        Map<String, Float> scores = search("lazy");
+        assertTrue(scores.get("node2") > scores.get("node1"));
+    }
+
+    @Test
+    public void shouldEvaluateConjunctionsDisjunctionsAndNegations() {
+        assertThat(search("lazy dog").keySet(), is(set("node1")));
+        assertThat(search("cat OR fox").keySet(), is(set("node1", "node2")));
+        assertThat(search("lazy -cat").keySet(), is(set("node1")));
+    }
+
+    @Test
+    public void shouldEvaluateWildcards() {
+        assertThat(search("fox*").keySet(), is(set("node1", "node3")));
+        assertThat(search("d?g").keySet(), is(set("node1")));
+    }
+
+    @Test
+    public void shouldLimitSearchToProperty() {
+        assertThat(search("jcr:title", "lazy").keySet(), is(set("node2")));
+        assertThat(search("jcr:description", "lazy").keySet(), is(set("node1")));
+    }
+
+    @Test
+    public void shouldLimitNegationToNodesWithProperty() {
+        assertThat(search("jcr:description", "-cat").keySet(), is(set("node1")));
+        assertThat(search("jcr:title", "-lazy").keySet(), is(set("node1", "node3")));
+        assertThat(search("jcr:description", "-dog").isEmpty(), is(true));
+        assertThat(search("-cat").keySet(), is(set("node1", "node3")));
+    }
+
+    @Test
+    public void shouldFindMatchingNodesLazilyInKeyOrder() {
+        index.add("node0", "jcr:title", "A lazy afternoon");
+        FullTextSearch search = new FullTextSearch(SELECTOR, "lazy OR fox*");
+        LocalFullTextIndex.Matches matches = index.matches(Collections.singletonList(search));
+        List<String> keys = new ArrayList<>();
+        while (matches.next()) {
+            keys.add(matches.key());
+        }
+        assertThat(keys, is(Arrays.asList("node0", "node1", "node2", "node3")));
+    }
+
+    @Test
+    public void shouldRemoveTermsOfFieldOrNode() {
+        index.remove("node2", "jcr:title");
+        assertThat(search("lazy").keySet(), is(set("node1")));
+        index.remove("node1");
+        assertThat(search("lazy").isEmpty(), is(true));
+        assertThat(index.estimateTotalCount(), is(1L));
+    }
+
+    protected static Set<String> set( String... values ) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.index.local;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import java.util.Collections;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.query.QueryResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.common.util.FileUtil;
+import org.modeshape.jcr.SingleUseAbstractTest;
+import org.modeshape.jcr.api.index.IndexColumnDefinitionTemplate;
+import org.modeshape.jcr.api.index.IndexDefinition.IndexKind;
+import org.modeshape.jcr.api.index.IndexDefinitionTemplate;
+import org.modeshape.jcr.api.index.IndexManager;
+import org.modeshape.jcr.api.query.Query;
+
+/**
+ * Tests that the {@link LocalIndexProvider} creates, updates and uses its indexes within a running repository.
+ * <p>
+ * The indexes are created and kept up to date asynchronously, so each test waits until the expected state is reached.
+ * </p>
+ */
+public class LocalIndexProviderTest extends SingleUseAbstractTest {
+
+    private static final String PROVIDER_NAME = "local";
+    private static final String INDEX_DIRECTORY = "target/local_index_provider_test";
+    private static final long MAX_WAIT_MILLIS = 10000L;
+
+    @Override
+    @Before
+    public void beforeEach() throws Exception {
+        FileUtil.delete(INDEX_DIRECTORY);
+        super.beforeEach();
+        startRepositoryWithConfiguration(resourceStream("config/repo-config-local-index-provider.json"));
+    }
+
+    @Test
+    public void shouldUseIndexForConstraintsOnIndexedProperty() throws Exception {
+        registerIndex("titles", IndexKind.DUPLICATES, "nt:unstructured", "title", false);
+        waitUntilIndexIsUsed("SELECT * FROM [nt:unstructured] WHERE [title] = 'alpha'", "titles");
+
+        assertIndexIsUsed("SELECT * FROM [nt:unstructured] WHERE [title] > 'alpha'", "titles", true);
+        assertIndexIsUsed("SELECT * FROM [nt:unstructured] WHERE [title] BETWEEN 'alpha' AND 'beta'", "titles", true);
+        assertIndexIsUsed("SELECT * FROM [nt:unstructured] WHERE [title] IN ('alpha', 'beta')", "titles", true);
+        assertIndexIsUsed("SELECT * FROM [nt:unstructured] WHERE [title] IS NOT NULL", "titles", true);
+        assertIndexIsUsed("SELECT * FROM [nt:unstructured] WHERE [title] LIKE 'al%'", "titles", false);
+        assertIndexIsUsed("SELECT * FROM [nt:unstructured] WHERE [other] = 'alpha'", "titles", false);
+    }
+
+    @Test
+    public void shouldEstimateOneNodeForEqualityConstraintOnUniqueIndex() throws Exception {
+        registerIndex("codes", IndexKind.UNIQUE, "nt:unstructured", "code", false);
+        String plan = waitUntilIndexIsUsed("SELECT * FROM [nt:unstructured] WHERE [code] = 'x'", "codes");
+        assertThat(plan.contains("provider=" + PROVIDER_NAME + ", cost=5, cardinality=1,"), is(true));
+    }
+
+    @Test
+    public void shouldKeepIndexCurrentAsNodesAndPropertiesChange() throws Exception {
+        registerIndex("titles", IndexKind.DUPLICATES, "nt:unstructured", "title", false);
+        String alpha = "SELECT * FROM [nt:unstructured] WHERE [title] = 'alpha'";
+        String beta = "SELECT * FROM [nt:unstructured] WHERE [title] = 'beta'";
+        waitUntilIndexIsUsed(alpha, "titles");
+
+        Node node = session.getRootNode().addNode("node1", "nt:unstructured");
+        node.setProperty("title", "alpha");
+        session.save();
+        waitForResults(alpha, 1);
+
+        // The node can only be found by its new value once the index has been given the property change ...
+        node.setProperty("title", "beta");
+        session.save();
+        waitForResults(beta, 1);
+        waitForResults(alpha, 0);
+
+        node.remove();
+        session.save();
+        waitForResults(beta, 0);
+    }
+
+    @Test
+    public void shouldPopulateNewIndexFromExistingContent() throws Exception {
+        Node node = session.getRootNode().addNode("node1", "nt:unstructured");
+        node.setProperty("title", "alpha");
+        session.save();
+
+        registerIndex("titles", IndexKind.DUPLICATES, "nt:unstructured", "title", false);
+        String alpha = "SELECT * FROM [nt:unstructured] WHERE [title] = 'alpha'";
+        waitUntilIndexIsUsed(alpha, "titles");
+        waitForResults(alpha, 1);
+    }
+
+    @Test
+    public void shouldRebuildIndexWhenItsDefinitionChanges() throws Exception {
+        Node node = session.getRootNode().addNode("node1", "nt:unstructured");
+        node.setProperty("title", "alpha");
+        node.setProperty("code", "x");
+        session.save();
+
+        registerIndex("values", IndexKind.DUPLICATES, "nt:unstructured", "title", false);
+        waitUntilIndexIsUsed("SELECT * FROM [nt:unstructured] WHERE [title] = 'alpha'", "values");
+
+        registerIndex("values", IndexKind.DUPLICATES, "nt:unstructured", "code", true);
+        String code = "SELECT * FROM [nt:unstructured] WHERE [code] = 'x'";
+        waitUntilIndexIsUsed(code, "values");
+        assertIndexIsUsed("SELECT * FROM [nt:unstructured] WHERE [title] = 'alpha'", "values", false);
+        waitForResults(code, 1);
+    }
+
+    protected void registerIndex( String indexName,
+                                  IndexKind kind,
+                                  String nodeTypeName,
+                                  String propertyName,
+                                  boolean allowUpdate ) throws RepositoryException {
+        IndexManager indexManager = repository.getIndexManager();
+        IndexColumnDefinitionTemplate column = indexManager.createIndexColumnDefinitionTemplate();
+        column.setPropertyTypeName(propertyName).getColumnType(PropertyType.STRING);
+        IndexDefinitionTemplate defn = indexManager.createIndexDefinitionTemplate();
+        defn.setName(indexName).setProviderName(PROVIDER_NAME).setKind(kind).setNodeTypeName(nodeTypeName);
+        defn.setColumnDefinitions(Collections.singletonList(column)).setAllWorkspaces();
+        indexManager.registerIndex(defn, allowUpdate);
+    }
+
+    protected String explain( String sql ) throws RepositoryException {
+        Query query = (Query)session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2);
+        return query.explain().getPlan();
+    }
+
+    protected boolean usesIndex( String plan,
+                                 String indexName ) {
+        return plan.contains("INDEX_SPECIFICATION=" + indexName + ",") && plan.contains("provider=" + PROVIDER_NAME);
+    }
+
+    protected void assertIndexIsUsed( String sql,
+                                      String indexName,
+                                      boolean used ) throws RepositoryException {
+        String plan = explain(sql);
+        assertThat("Unexpected plan for '" + sql + "':\n" + plan, usesIndex(plan, indexName), is(used));
+    }
+
+    protected String waitUntilIndexIsUsed( String sql,
+                                           String indexName ) throws Exception {
+        long deadline = System.currentTimeMillis() + MAX_WAIT_MILLIS;
+        String plan = explain(sql);
+        while (!usesIndex(plan, indexName)) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("The index '" + indexName + "' was never used for '" + sql + "':\n" + plan);
+            }
+            Thread.sleep(50L);
+            plan = explain(sql);
+        }
+        return plan;
+    }
+
+    protected void waitForResults( String sql,
+                                   long expectedCount ) throws Exception {
+        long deadline = System.currentTimeMillis() + MAX_WAIT_MILLIS;
+        long count = countResults(sql);
+        while (count != expectedCount) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Expected " + expectedCount + " results for '" + sql + "' but found " + count);
+            }
+            Thread.sleep(50L);
+            count = countResults(sql);
+        }
+    }
+
+    protected long countResults( String sql ) throws RepositoryException {
+        QueryResult result = session.getWorkspace().getQueryManager().createQuery(sql, Query.JCR_SQL2).execute();
+        long count = 0L;
+        for (NodeIterator iter = result.getNodes(); iter.hasNext(); iter.nextNode()) {
+            ++count;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link LocalJournal} with group commits enabled.
+ */
+public class GroupCommitLocalJournalTest extends LocalJournalTest {
+
+    private final AtomicInteger commitCount = new AtomicInteger();
+    private final AtomicInteger committedRecords = new AtomicInteger();
+    private final AtomicInteger largestCommit = new AtomicInteger();
+
+    @Override
+    protected LocalJournal newJournal( String location ) {
+        return new LocalJournal(location, false, -1, 16, 5).withCommitStatistics(new LocalJournal.CommitStatistics() {
+            @Override
+            public void recordCommit( int batchSize,
+                                      long durationInNanos ) {
+                commitCount.incrementAndGet();
+                committedRecords.addAndGet(batchSize);
+                int largest = largestCommit.get();
+                while (batchSize > largest && !largestCommit.compareAndSet(largest, batchSize)) {
+                    largest = largestCommit.get();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void shouldCommitRecordsOfConcurrentWritersBeforeReturning() throws Exception {
+        final int initialRecordCount = journal().allRecords(false).size();
+        final int writers = 8;
+        final int recordsPerWriter = 20;
+        commitCount.set(0);
+        committedRecords.set(0);
+        largestCommit.set(0);
+
+        // make sure all the writers start at the same time, so that they contend for the commits
+        final CountDownLatch startLatch = new CountDownLatch(writers);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int i = 0; i != writers; ++i) {
+                final String journalId = "w" + i;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        startLatch.countDown();
+                        startLatch.await();
+                        for (int j = 0; j != recordsPerWriter; ++j) {
+                            int countBefore = journal().allRecords(false).size();
+                            journal().notify(TestChangeSet.create(journalId, 1));
+                            // the record must be visible as soon as the call returns ...
+                            assertTrue(journal().allRecords(false).size() > countBefore);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int expectedRecords = writers * recordsPerWriter;
+        assertEquals(initialRecordCount + expectedRecords, journal().allRecords(false).size());
+        assertEquals(expectedRecords, committedRecords.get());
+        // the concurrent writers must have been grouped into fewer commits than records ...
+        assertTrue(commitCount.get() < expectedRecords);
+        assertTrue(largestCommit.get() > 1);
+    }
+
+    @Test
+    public void shouldCommitRecordsOfInterruptedWritersAndPreserveTheirInterruptStatus() throws Exception {
+        final int initialRecordCount = journal().allRecords(false).size();
+        final int writers = 4;
+        final CountDownLatch startLatch = new CountDownLatch(writers);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i != writers; ++i) {
+                final String journalId = "i" + i;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        startLatch.countDown();
+                        startLatch.await();
+                        // whether this thread leads the commit or waits for another, the wait is interrupted ...
+                        Thread.currentThread().interrupt();
+                        journal().notify(TestChangeSet.create(journalId, 1));
+                        return Thread.interrupted();
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue("The interrupt status was not preserved", result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(initialRecordCount + writers, journal().allRecords(false).size());
+    }
+}
@@ -51,7 +51,7 @@ public class LocalJournalTest {
     @Before
     public void before() throws Exception {
         FileUtil.delete("target/journal");
-        this.journal = new LocalJournal("target/journal");
+        this.journal = newJournal("target/journal");
         journal.start();
         insertTestRecords();
     }
@@ -180,6 +180,10 @@ public class LocalJournalTest {
         assertEquals(journalId, journal.journalId());
     }
 
+    protected LocalJournal newJournal( String location ) {
+        return new LocalJournal(location);
+    }
+
     protected ChangeJournal journal() {
         return journal;
     }
@@ -0,0 +1,76 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.query;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryCacheTest {
+
+    private QueryCache<String, String> cache;
+
+    @Before
+    public void beforeEach() {
+        cache = new QueryCache<>(3, null);
+    }
+
+    @Test
+    public void shouldReturnCachedValues() {
+        cache.put("a", "A");
+        cache.put("b", "B");
+        assertThat(cache.get("a"), is("A"));
+        assertThat(cache.get("b"), is("B"));
+        assertThat(cache.get("c"), is(nullValue()));
+        assertThat(cache.size(), is(2));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedValue() {
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+        // Use 'a' so that 'b' is the least-recently used ...
+        assertThat(cache.get("a"), is("A"));
+        cache.put("d", "D");
+        assertThat(cache.size(), is(3));
+        assertThat(cache.get("b"), is(nullValue()));
+        assertThat(cache.get("a"), is("A"));
+        assertThat(cache.get("c"), is("C"));
+        assertThat(cache.get("d"), is("D"));
+    }
+
+    @Test
+    public void shouldCountHitsAndMisses() {
+        cache.put("a", "A");
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+        assertThat(cache.getHitCount(), is(2L));
+        assertThat(cache.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void shouldRemoveAllValuesWhenCleared() {
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.clear();
+        assertThat(cache.size(), is(0));
+        assertThat(cache.get("a"), is(nullValue()));
+    }
+}
@@ -339,6 +339,36 @@ public class AccessControlManagerTest extends MultiUseAbstractTest {
         aircraft = root.getNode("aircraft");
     }
 
+    @Test
+    public void shouldSeeSavedAclChangesAfterCheckingPermissions() throws Exception {
+        Node root = session.getRootNode();
+        Node boats = root.addNode("boats");
+        Node sailboats = boats.addNode("sailboats");
+        session.save();
+
+        // Check the permissions so that they're cached ...
+        assertThat(session.hasPermission(sailboats.getPath(), "read"), is(true));
+        assertThat(session.hasPermission(sailboats.getPath(), "add_node"), is(true));
+
+        AccessControlList acl = acl("/boats");
+        acl.addAccessControlEntry(SimplePrincipal.newInstance("anonymous"),
+                                  new Privilege[] {acm.privilegeFromName(Privilege.JCR_READ)});
+        acm.setPolicy("/boats", acl);
+        session.save();
+
+        assertThat(session.hasPermission("/boats/sailboats", "read"), is(true));
+        assertThat(session.hasPermission("/boats/sailboats", "add_node"), is(false));
+
+        // Another session should see the same ...
+        Session session2 = session.getRepository().login();
+        try {
+            assertThat(session2.hasPermission("/boats/sailboats", "read"), is(true));
+            assertThat(session2.hasPermission("/boats/sailboats", "add_node"), is(false));
+        } finally {
+            session2.logout();
+        }
+    }
+
     // -------------------------------
 
     @Test
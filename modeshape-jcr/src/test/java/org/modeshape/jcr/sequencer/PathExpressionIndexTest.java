@@ -0,0 +1,110 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.modeshape.jcr.sequencer;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.modeshape.jcr.ExecutionContext;
+import org.modeshape.jcr.value.NameFactory;
+import org.modeshape.jcr.value.PathFactory;
+
+public class PathExpressionIndexTest {
+
+    private static final String[] EXPRESSIONS = {"/files/docs/(*.xml|*.xsd)[*]/jcr:content[@jcr:data] => /output",
+        "/files/docs//*.txt[*]/jcr:content[@jcr:data] => /output", "/files//*.cnd[*]/jcr:content[@jcr:data] => /output",
+        "//*.jpg[*]/jcr:content[@jcr:data] => /output", "/files/images/*[@*] => /output",
+        "/files/Docs/readme.txt/jcr:content/@jcr:mimeType => /output"};
+
+    private ExecutionContext context;
+    private PathFactory paths;
+    private NameFactory names;
+    private PathExpressionIndex<SequencerPathExpression> index;
+
+    @Before
+    public void beforeEach() {
+        context = new ExecutionContext();
+        paths = context.getValueFactories().getPathFactory();
+        names = context.getValueFactories().getNameFactory();
+        index = new PathExpressionIndex<SequencerPathExpression>(context.getValueFactories().getStringFactory());
+        for (String expression : EXPRESSIONS) {
+            SequencerPathExpression expr = SequencerPathExpression.compile(expression);
+            index.add(expr, expr);
+        }
+    }
+
+    @Test
+    public void shouldContainAllExpressions() {
+        assertThat(index.size(), is(EXPRESSIONS.length));
+        assertThat(index.isEmpty(), is(false));
+    }
+
+    @Test
+    public void shouldFindCandidatesByLiteralSegmentsAndPropertyName() {
+        assertCandidates("/files/docs/a.xml/jcr:content", "jcr:data", 0, 1, 2, 3);
+        assertCandidates("/files/other/a.cnd/jcr:content", "jcr:data", 2, 3);
+        assertCandidates("/other/a.jpg/jcr:content", "jcr:data", 3);
+        assertCandidates("/files/docs/a.xml/jcr:content", "jcr:mimeType", 5);
+        assertCandidates("/files/images/a", "jcr:title", 4);
+        assertCandidates("/files", "jcr:mimeType");
+    }
+
+    @Test
+    public void shouldCompareNamesCaseInsensitively() {
+        assertCandidates("/FILES/Docs/a.xml/jcr:Content", "jcr:DATA", 0, 1, 2, 3);
+        assertCandidates("/files/docs/readme.txt/jcr:content", "jcr:mimetype", 5);
+    }
+
+    @Test
+    public void shouldFindAllExpressionsThatMatchProperty() {
+        String[][] properties = { {"/files/docs/a.xml/jcr:content", "jcr:data"},
+            {"/files/docs/a/b/c.txt/jcr:content", "jcr:data"}, {"/files/x/y.cnd/jcr:content", "jcr:data"},
+            {"/a/b.jpg/jcr:content", "jcr:data"}, {"/files/images/b", "jcr:title"},
+            {"/files/docs/readme.txt/jcr:content", "jcr:mimeType"}, {"/other/a.xml/jcr:content", "jcr:data"}};
+        for (String[] property : properties) {
+            String absolutePath = property[0] + "/@" + property[1];
+            List<SequencerPathExpression> candidates = index.candidatesFor(paths.create(property[0]), names.create(property[1]));
+            for (String expression : EXPRESSIONS) {
+                SequencerPathExpression expr = SequencerPathExpression.compile(expression);
+                if (expr.matcher(absolutePath).matches()) {
+                    assertThat(expression + " should be a candidate for " + absolutePath, candidates.contains(expr), is(true));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldFindNoCandidatesInEmptyIndex() {
+        index = new PathExpressionIndex<SequencerPathExpression>(context.getValueFactories().getStringFactory());
+        assertThat(index.isEmpty(), is(true));
+        assertThat(index.candidatesFor(paths.create("/files/a.xml"), names.create("jcr:data")).isEmpty(), is(true));
+    }
+
+    private void assertCandidates( String nodePath,
+                                   String propertyName,
+                                   int... expressionIndexes ) {
+        List<SequencerPathExpression> expected = new ArrayList<SequencerPathExpression>();
+        for (int i : expressionIndexes) {
+            expected.add(SequencerPathExpression.compile(EXPRESSIONS[i]));
+        }
+        List<SequencerPathExpression> candidates = index.candidatesFor(paths.create(nodePath), names.create(propertyName));
+        assertThat(candidates, is(expected.isEmpty() ? Collections.<SequencerPathExpression>emptyList() : expected));
+    }
+}
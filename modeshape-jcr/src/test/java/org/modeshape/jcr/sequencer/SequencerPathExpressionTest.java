@@ -19,6 +19,7 @@ import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsNull.notNullValue;
 import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertThat;
+import java.util.Arrays;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -333,4 +334,30 @@ public class SequencerPathExpressionTest {
                       "/x/xsd/e.xsd");
     }
 
+    @Test
+    public void shouldDetermineLiteralPrefixSegmentsAndPropertyName() throws Exception {
+        expr = SequencerPathExpression.compile("/files/docs/(*.xml|*.xsd)[*]/jcr:content[@jcr:data] => /output");
+        assertThat(expr.getLiteralPrefixSegments(), is(Arrays.asList("files", "docs")));
+        assertThat(expr.getLiteralPropertyName(), is("jcr:data"));
+
+        expr = SequencerPathExpression.compile("/a/jcr:content/@my-prop => /output");
+        assertThat(expr.getLiteralPrefixSegments(), is(Arrays.asList("a", "jcr:content")));
+        assertThat(expr.getLiteralPropertyName(), is("my-prop"));
+
+        expr = SequencerPathExpression.compile("default://*.cnd[*]/jcr:content[@jcr:data] => /output");
+        assertThat(expr.getLiteralPrefixSegments().isEmpty(), is(true));
+        assertThat(expr.getLiteralPropertyName(), is("jcr:data"));
+
+        expr = SequencerPathExpression.compile("/a/b[c/d]/e[@x] => /output");
+        assertThat(expr.getLiteralPrefixSegments(), is(Arrays.asList("a")));
+        assertThat(expr.getLiteralPropertyName(), is("x"));
+
+        expr = SequencerPathExpression.compile("/a/b/(c|d)//* => /output");
+        assertThat(expr.getLiteralPrefixSegments(), is(Arrays.asList("a", "b")));
+        assertThat(expr.getLiteralPropertyName(), is(nullValue()));
+
+        expr = SequencerPathExpression.compile("/a/b/@c|/d/@e => /output");
+        assertThat(expr.getLiteralPrefixSegments().isEmpty(), is(true));
+        assertThat(expr.getLiteralPropertyName(), is(nullValue()));
+    }
 }
@@ -32,6 +32,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -213,6 +214,109 @@ public class CompositeBinaryStoreTest extends AbstractBinaryStoreTest {
         assertTrue(alternativeStore.hasBinary(v.getKey()));
     }
 
+    @Test
+    public void shouldFindKeyInTheStoreItWasLastSeenIn() throws BinaryStoreException, IOException {
+        BinaryValue v = store.storeValue(new ByteArrayInputStream(randomContent()), alternativeHint);
+        assertEquals(alternativeStore, store.findBinaryStoreContainingKey(v.getKey()));
+
+        // move the value behind the back of the composite store ...
+        InputStream is = alternativeStore.getInputStream(v.getKey());
+        try {
+            defaultStore.storeValue(is);
+        } finally {
+            is.close();
+        }
+        alternativeStore.markAsUnused(java.util.Collections.singleton(v.getKey()));
+
+        assertTrue(store.hasBinary(v.getKey()));
+        assertEquals(defaultStore, store.findBinaryStoreContainingKey(v.getKey()));
+    }
+
+    @Test
+    public void shouldForgetLocationsOfValuesThatAreUnusedOrRemoved() throws Exception {
+        File directory = new File("target/unusedfsbs/");
+        FileUtil.delete(directory);
+        BinaryStore fileStore = new FileSystemBinaryStore(directory);
+        Map<String, BinaryStore> stores = new LinkedHashMap<String, BinaryStore>();
+        stores.put("default", fileStore);
+        CompositeBinaryStore composite = new CompositeBinaryStore(stores);
+        composite.setMinimumBinarySizeInBytes(MIN_BINARY_SIZE);
+        composite.start();
+        try {
+            BinaryValue v1 = composite.storeValue(new ByteArrayInputStream(randomContent()));
+            BinaryValue v2 = composite.storeValue(new ByteArrayInputStream(randomContent()));
+            BinaryValue v3 = composite.storeValue(new ByteArrayInputStream(randomContent()));
+            assertThat(composite.getRememberedLocationCount(), is(3));
+
+            composite.markAsUnused(java.util.Collections.singleton(v1.getKey()));
+            assertThat(composite.getRememberedLocationCount(), is(2));
+
+            // remove a value behind the back of the composite store, and then collect the garbage ...
+            fileStore.markAsUnused(java.util.Collections.singleton(v2.getKey()));
+            Thread.sleep(5);
+            composite.removeValuesUnusedLongerThan(1, TimeUnit.MILLISECONDS);
+            // the stale location is only a hint, and is forgotten once the value is looked up ...
+            assertThat(composite.getRememberedLocationCount(), is(2));
+            assertFalse(composite.hasBinary(v2.getKey()));
+            assertThat(composite.getRememberedLocationCount(), is(1));
+            assertTrue(composite.hasBinary(v3.getKey()));
+        } finally {
+            composite.shutdown();
+            FileUtil.delete(directory);
+        }
+    }
+
+    @Test
+    public void shouldMoveIdleValuesToTheColdStoreAndFrequentlyReadValuesToTheHotStore() throws Exception {
+        File hotDirectory = new File("target/hotfsbs/");
+        File coldDirectory = new File("target/coldfsbs/");
+        FileUtil.delete(hotDirectory);
+        FileUtil.delete(coldDirectory);
+        BinaryStore hotStore = new FileSystemBinaryStore(hotDirectory);
+        BinaryStore coldStore = new FileSystemBinaryStore(coldDirectory);
+        Map<String, BinaryStore> stores = new LinkedHashMap<String, BinaryStore>();
+        stores.put("hot", hotStore);
+        stores.put("cold", coldStore);
+        CompositeBinaryStore tieredStore = new CompositeBinaryStore(stores);
+        tieredStore.setMinimumBinarySizeInBytes(MIN_BINARY_SIZE);
+        tieredStore.setTieringPolicy(new CompositeBinaryStore.TieringPolicy("hot", "cold", 1, 2, 1, TimeUnit.HOURS));
+        tieredStore.start();
+        try {
+            BinaryValue v = tieredStore.storeValue(new ByteArrayInputStream(randomContent()));
+            assertTrue(hotStore.hasBinary(v.getKey()));
+
+            // the value was just written, so it should stay in the hot store ...
+            assertThat(tieredStore.applyTieringPolicy(), is(0));
+            assertTrue(hotStore.hasBinary(v.getKey()));
+
+            // values that are idle for a millisecond are moved to the cold store ...
+            tieredStore.setTieringPolicy(new CompositeBinaryStore.TieringPolicy("hot", "cold", 1, 2, 1, TimeUnit.MILLISECONDS));
+            Thread.sleep(10);
+            assertThat(tieredStore.applyTieringPolicy(), is(1));
+            assertTrue(coldStore.hasBinary(v.getKey()));
+            assertFalse(hotStore.hasBinary(v.getKey()));
+            assertEquals(coldStore, tieredStore.findBinaryStoreContainingKey(v.getKey()));
+
+            // reading the value often enough moves it back to the hot store ...
+            tieredStore.setTieringPolicy(new CompositeBinaryStore.TieringPolicy("hot", "cold", 1, 2, 1, TimeUnit.HOURS));
+            for (int i = 0; i != 2; ++i) {
+                IoUtil.readBytes(tieredStore.getInputStream(v.getKey()));
+            }
+            assertThat(tieredStore.applyTieringPolicy(), is(1));
+            assertTrue(hotStore.hasBinary(v.getKey()));
+            assertEquals(hotStore, tieredStore.findBinaryStoreContainingKey(v.getKey()));
+        } finally {
+            tieredStore.shutdown();
+            FileUtil.delete(hotDirectory);
+            FileUtil.delete(coldDirectory);
+        }
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void shouldNotAllowTieringPolicyWithUnknownStore() {
+        store.setTieringPolicy(new CompositeBinaryStore.TieringPolicy(defaultHint, "no-such-store", 1, 1, 1, TimeUnit.HOURS));
+    }
+
     @Override
     @SkipOnOS(value = SkipOnOS.WINDOWS, description = "Sometimes file locks prevent the cleanup thread from removing values")
     @Test
@@ -57,6 +57,7 @@ import org.modeshape.common.util.SecureHash;
 import org.modeshape.common.util.SecureHash.Algorithm;
 import org.modeshape.jcr.api.Binary;
 import org.modeshape.jcr.value.BinaryKey;
+import org.modeshape.jcr.value.BinaryValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -336,6 +337,42 @@ public class FileSystemBinaryStoreTest extends AbstractBinaryStoreTest {
         }
     }
 
+    @Test
+    public void shouldStageLargeValuesInsideStoreDirectory() throws Exception {
+        storeAndCheck(5, StoredBinaryValue.class);
+        File staging = new File(directory, FileSystemBinaryStore.STAGING_DIRECTORY_NAME);
+        assertThat(staging.isDirectory(), is(true));
+        assertThat(staging.listFiles().length, is(0));
+    }
+
+    @Test
+    public void shouldKeepOnlyValuesSmallerThanMinimumSizeInMemory() throws Exception {
+        byte[] smaller = new byte[MIN_BINARY_SIZE - 1];
+        byte[] exact = new byte[MIN_BINARY_SIZE];
+        Arrays.fill(smaller, (byte)'a');
+        Arrays.fill(exact, (byte)'b');
+        Binary inMemory = store.storeValue(new ByteArrayInputStream(smaller));
+        Binary stored = store.storeValue(new ByteArrayInputStream(exact));
+        assertThat(inMemory, is(instanceOf(InMemoryBinaryValue.class)));
+        assertThat(stored, is(instanceOf(StoredBinaryValue.class)));
+        assertThat(IoUtil.readBytes(inMemory.getStream()), is(smaller));
+        assertThat(IoUtil.readBytes(stored.getStream()), is(exact));
+        assertThat(((BinaryValue)stored).getKey(), is(BinaryKey.keyFor(exact)));
+    }
+
+    @Test
+    public void shouldIgnoreStagingFilesWhenListingKeys() throws Exception {
+        Binary binary = storeAndCheck(5, StoredBinaryValue.class);
+        File leftover = store.createStagingFile("leftover");
+        assertThat(leftover.exists(), is(true));
+
+        Set<BinaryKey> keys = new HashSet<BinaryKey>();
+        for (BinaryKey key : store.getAllBinaryKeys()) {
+            keys.add(key);
+        }
+        assertThat(keys, is(Collections.singleton(((BinaryValue)binary).getKey())));
+    }
+
     protected Binary storeAndCheck( int contentIndex ) throws Exception {
         return storeAndCheck(contentIndex, null);
     }
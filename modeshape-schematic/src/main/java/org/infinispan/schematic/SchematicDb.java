@@ -98,6 +98,16 @@ public interface SchematicDb extends Lifecycle {
      */
     SchematicEntry get( String key );
 
+    /**
+     * Get the entries with the supplied keys. All of the entries are requested before any of them is awaited, so that a cache
+     * store with a high per-key latency can service the reads concurrently rather than one after the other.
+     * 
+     * @param keys the keys or identifiers for the documents; may not be null
+     * @return the entries keyed by their key, in the order of the supplied keys; never null but without an entry for any key
+     *         that has no document
+     */
+    Map<String, SchematicEntry> getAll( Collection<String> keys );
+
     /**
      * Determine whether the database contains an entry with the supplied key.
      * 
@@ -144,6 +154,16 @@ public interface SchematicDb extends Lifecycle {
      */
     SchematicEntry put( Document entryDocument );
 
+    /**
+     * Store all of the supplied documents, each of which contains the metadata document, content document, and key. This is
+     * equivalent to calling {@link #put(Document)} with each document, except that the previously-stored entries are not returned
+     * and the documents can be stored in fewer round trips to the underlying store.
+     * 
+     * @param entryDocuments the documents that each contain the metadata document, content document, and key
+     * @see #put(Document)
+     */
+    void putAll( Iterable<Document> entryDocuments );
+
     /**
      * Store the supplied document and metadata at the given key.
      * 
@@ -207,6 +227,27 @@ public interface SchematicDb extends Lifecycle {
                             Binary binaryContent,
                             Document metadata );
 
+    /**
+     * Replace the existing document and metadata at the given key with the document that is supplied, but only if the existing
+     * document still has the expected version. The version is compared and the document replaced atomically, so a document that
+     * was read and changed without being locked can be written without overwriting the changes of another writer. This method
+     * does nothing if there is not an existing document at the given key.
+     * 
+     * @param key the key or identifier for the document
+     * @param versionField the name of the field in the existing document that holds its version; may not be null
+     * @param expectedVersion the version that the existing document is expected to have; a document without the version field
+     *        has version 0
+     * @param document the new document that is to replace the existing document
+     * @param metadata the metadata that is to be stored with the replacement document; may be null if there is no metadata for
+     *        the replacement
+     * @return true if the document was replaced, or false if there is no document at the key or it has a different version
+     */
+    boolean replaceIfVersion( String key,
+                              String versionField,
+                              long expectedVersion,
+                              Document document,
+                              Document metadata );
+
     /**
      * Remove the existing document at the given key.
      * 
@@ -17,6 +17,7 @@ package org.infinispan.schematic.internal;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -227,6 +228,37 @@ public class CacheSchematicDb implements SchematicDb {
         return proxy(key, store.get(key));
     }
 
+    @Override
+    public Map<String, SchematicEntry> getAll( Collection<String> keys ) {
+        Map<String, SchematicEntry> results = new LinkedHashMap<String, SchematicEntry>();
+        if (keys.size() == 1) {
+            String key = keys.iterator().next();
+            SchematicEntry entry = get(key);
+            if (entry != null) results.put(key, entry);
+            return results;
+        }
+        // Start all of the reads before waiting on any of them ...
+        Map<String, NotifyingFuture<SchematicEntry>> futures = new LinkedHashMap<String, NotifyingFuture<SchematicEntry>>();
+        for (String key : keys) {
+            if (!futures.containsKey(key)) futures.put(key, store.getAsync(key));
+        }
+        try {
+            for (Map.Entry<String, NotifyingFuture<SchematicEntry>> future : futures.entrySet()) {
+                String key = future.getKey();
+                SchematicEntry entry = proxy(key, future.getValue().get());
+                if (entry != null) results.put(key, entry);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            throw new IllegalStateException(cause);
+        }
+        return results;
+    }
+
     @Override
     public boolean containsKey( String key ) {
         return store.containsKey(key);
@@ -254,6 +286,23 @@ public class CacheSchematicDb implements SchematicDb {
 
     @Override
     public SchematicEntry put( Document entryDocument ) {
+        SchematicEntry newEntry = entryFor(entryDocument);
+        String key = newEntry.getMetadata().getString(FieldName.ID);
+        SchematicEntry oldValue = store.put(key, newEntry);
+        return oldValue != null ? removedResult(key, oldValue) : null;
+    }
+
+    @Override
+    public void putAll( Iterable<Document> entryDocuments ) {
+        Map<String, SchematicEntry> entries = new HashMap<String, SchematicEntry>();
+        for (Document entryDocument : entryDocuments) {
+            SchematicEntry newEntry = entryFor(entryDocument);
+            entries.put(newEntry.getMetadata().getString(FieldName.ID), newEntry);
+        }
+        if (!entries.isEmpty()) store.putAll(entries);
+    }
+
+    private SchematicEntry entryFor( Document entryDocument ) {
         Document metadata = entryDocument.getDocument(FieldName.METADATA);
         Object content = entryDocument.get(FieldName.CONTENT);
         if (metadata == null || content == null) {
@@ -263,14 +312,10 @@ public class CacheSchematicDb implements SchematicDb {
         if (key == null) {
             throw new IllegalArgumentException("The supplied document is not of the required format");
         }
-        SchematicEntry newEntry = null;
         if (content instanceof Document) {
-            newEntry = new SchematicEntryLiteral(key, (Document)content, metadata, defaultContentTypeForDocument);
-        } else {
-            newEntry = new SchematicEntryLiteral(key, (Binary)content, metadata, defaultContentTypeForBinary);
+            return new SchematicEntryLiteral(key, (Document)content, metadata, defaultContentTypeForDocument);
         }
-        SchematicEntry oldValue = store.put(key, newEntry);
-        return oldValue != null ? removedResult(key, oldValue) : null;
+        return new SchematicEntryLiteral(key, (Binary)content, metadata, defaultContentTypeForBinary);
     }
 
     @Override
@@ -335,6 +380,21 @@ public class CacheSchematicDb implements SchematicDb {
         return removedResult(key, store.replace(key, newEntry));
     }
 
+    @Override
+    public boolean replaceIfVersion( String key,
+                                     String versionField,
+                                     long expectedVersion,
+                                     Document document,
+                                     Document metadata ) {
+        SchematicEntry existing = store.get(key);
+        if (existing == null || !existing.hasDocumentContent()) return false;
+        if (existing.getContentAsDocument().getLong(versionField, 0L) != expectedVersion) return false;
+        if (metadata == null) metadata = Schematic.newDocument(FieldName.ID, key);
+        SchematicEntryLiteral newEntry = new SchematicEntryLiteral(key, document, metadata, defaultContentTypeForDocument);
+        // The conditional replace fails if another writer has replaced the entry since it was read above ...
+        return store.replace(key, existing, newEntry);
+    }
+
     @Override
     public SchematicEntry remove( String key ) {
         SchematicEntry existing = store.remove(key);
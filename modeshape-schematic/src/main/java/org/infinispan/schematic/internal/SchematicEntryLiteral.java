@@ -35,6 +35,7 @@ import org.infinispan.schematic.internal.delta.Operation;
 import org.infinispan.schematic.internal.delta.PutOperation;
 import org.infinispan.schematic.internal.delta.RemoveOperation;
 import org.infinispan.schematic.internal.document.BasicDocument;
+import org.infinispan.schematic.internal.document.LazyDocument;
 import org.infinispan.schematic.internal.document.MutableDocument;
 import org.infinispan.schematic.internal.document.Paths;
 import org.infinispan.schematic.internal.marshall.Ids;
@@ -325,6 +326,10 @@ public class SchematicEntryLiteral implements SchematicEntry, DeltaAware {
     }
 
     boolean apply( Iterable<Operation> changes ) {
+        if (value instanceof LazyDocument && !((LazyDocument)value).isModified()) {
+            // The operations modify the nested documents and arrays in place, so decode the whole document first ...
+            value = (MutableDocument)value.clone();
+        }
         try {
             for (Operation o : changes) {
                 o.replay(value);
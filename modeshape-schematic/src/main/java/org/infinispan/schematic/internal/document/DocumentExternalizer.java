@@ -35,7 +35,8 @@ public class DocumentExternalizer extends SchematicExternalizer<Document> {
         // Write the type byte ...
         output.writeByte(1);
 
-        // Write the BSON ...
+        // Write the BSON, copying the original bytes of a document that was read lazily and has not been changed ...
+        if (doc instanceof LazyDocument && ((LazyDocument)doc).writeTo(output)) return;
         Bson.write(doc, output);
     }
 
@@ -45,8 +46,8 @@ public class DocumentExternalizer extends SchematicExternalizer<Document> {
         int type = input.readByte();
         assert type == 1;
 
-        // Read the BSON ...
-        return Bson.read(input);
+        // Read the BSON, but decode the fields only when they're used ...
+        return LazyDocument.read(input);
     }
 
     @Override
@@ -57,6 +58,6 @@ public class DocumentExternalizer extends SchematicExternalizer<Document> {
     @SuppressWarnings( "unchecked" )
     @Override
     public Set<Class<? extends Document>> getTypeClasses() {
-        return Util.<Class<? extends Document>>asSet(BasicDocument.class);
+        return Util.<Class<? extends Document>>asSet(BasicDocument.class, LazyDocument.class);
     }
 }
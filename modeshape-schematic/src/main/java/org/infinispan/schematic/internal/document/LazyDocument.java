@@ -0,0 +1,457 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infinispan.schematic.internal.document;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.infinispan.commons.marshall.SerializeWith;
+import org.infinispan.schematic.document.Bson;
+import org.infinispan.schematic.document.Document;
+import org.infinispan.schematic.internal.io.BsonDataInput;
+import org.infinispan.schematic.internal.io.Utf8Util;
+
+/**
+ * A {@link BasicDocument} that keeps the BSON representation it was read from and decodes each field only when that field is
+ * first accessed. A single pass over the BSON bytes when the document is created records the name, type and offset of each
+ * top-level field, so that reading a few fields of a large document costs little more than reading those fields' values.
+ * Nested documents are themselves lazy and share the same bytes.
+ * <p>
+ * The document is materialized into the underlying map only when it is modified or when one of the {@link Map} views is
+ * requested. As long as no document in the tree read from the same bytes has been modified, the document can be
+ * {@link #clone() cloned} with a single, eager decode and {@link #writeTo(DataOutput) written} by copying the original bytes.
+ * </p>
+ * <p>
+ * Like {@link BasicDocument}, this class is safe for concurrent reads, but not for concurrent reads and writes. Arrays obtained
+ * from a lazy document must not be modified in place; documents read from a store are expected to be {@link #clone() copied}
+ * before being edited.
+ * </p>
+ */
+@SerializeWith( DocumentExternalizer.class )
+public class LazyDocument extends BasicDocument {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of fields above which lookups by name use a hash index rather than a linear scan of the field names.
+     */
+    private static final int MAX_FIELDS_WITHOUT_INDEX = 8;
+
+    /**
+     * Read from the supplied input the BSON representation of a document, without decoding any of its fields.
+     *
+     * @param input the input; may not be null
+     * @return the lazy document; never null
+     * @throws IOException if there was a problem reading from the input or if the BSON representation is not valid
+     */
+    public static LazyDocument read( DataInput input ) throws IOException {
+        byte[] header = new byte[4];
+        input.readFully(header);
+        int length = readInt(header, 0);
+        if (length < 5) throw new IOException("Invalid BSON document length: " + length);
+        byte[] bytes = new byte[length];
+        System.arraycopy(header, 0, bytes, 0, 4);
+        input.readFully(bytes, 4, length - 4);
+        try {
+            return new LazyDocument(bytes, 0, null);
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid BSON document", e);
+        }
+    }
+
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+    private final int count;
+    private final String[] names;
+    private final byte[] types;
+    private final int[] offsets;
+    private final int[] index;
+    private final AtomicReferenceArray<Object> values;
+    private final LazyDocument root;
+    private volatile boolean materialized;
+    private volatile boolean modified;
+
+    protected LazyDocument( byte[] bytes,
+                            int offset,
+                            LazyDocument root ) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = readInt(bytes, offset);
+        this.root = root != null ? root : this;
+
+        // Make a single pass over the elements, recording the name, type and value offset of each ...
+        int end = offset + length;
+        int pos = offset + 4;
+        int count = 0;
+        String[] names = new String[MAX_FIELDS_WITHOUT_INDEX];
+        byte[] types = new byte[MAX_FIELDS_WITHOUT_INDEX];
+        int[] offsets = new int[MAX_FIELDS_WITHOUT_INDEX];
+        while (pos < end) {
+            byte type = bytes[pos++];
+            if (type == Bson.END_OF_DOCUMENT) break;
+            int nameEnd = endOfCString(bytes, pos);
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+                types = Arrays.copyOf(types, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            names[count] = new String(bytes, pos, nameEnd - pos, Utf8Util.CHARSET);
+            types[count] = type;
+            offsets[count] = nameEnd + 1;
+            pos = nameEnd + 1 + valueLength(type, bytes, nameEnd + 1);
+            ++count;
+        }
+        if (pos > end) throw new IllegalArgumentException("The BSON elements extend beyond the end of the document");
+        this.count = count;
+        this.names = names;
+        this.types = types;
+        this.offsets = offsets;
+        this.index = count > MAX_FIELDS_WITHOUT_INDEX ? buildIndex(names, count) : null;
+        this.values = new AtomicReferenceArray<>(count);
+    }
+
+    /**
+     * Write the BSON representation of this document to the supplied output by copying the bytes from which this document was
+     * read, as long as neither this document nor any other document read from the same bytes has been modified.
+     *
+     * @param output the output; may not be null
+     * @return true if the bytes were written, or false if the document has been modified and must be written field by field
+     * @throws IOException if there was a problem writing to the output
+     */
+    public boolean writeTo( DataOutput output ) throws IOException {
+        if (root.modified) return false;
+        output.write(bytes, offset, length);
+        return true;
+    }
+
+    /**
+     * Determine whether this document has been modified since it was read.
+     *
+     * @return true if this document has been modified, or false if it still reflects the bytes from which it was read
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    @Override
+    public Object get( String name ) {
+        if (materialized) return super.get(name);
+        int i = indexOf(name);
+        return i < 0 ? null : valueAt(i);
+    }
+
+    @Override
+    public Object get( Object key ) {
+        return key instanceof String ? get((String)key) : null;
+    }
+
+    @Override
+    public boolean containsField( String name ) {
+        return materialized ? super.containsField(name) : indexOf(name) >= 0;
+    }
+
+    @Override
+    public boolean containsKey( Object key ) {
+        if (materialized) return super.containsKey(key);
+        return key instanceof String && indexOf((String)key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return materialized ? super.size() : count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Iterable<Field> fields() {
+        if (materialized) return super.fields();
+        return new Iterable<Field>() {
+            @Override
+            public Iterator<Field> iterator() {
+                return new Iterator<Field>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < count;
+                    }
+
+                    @Override
+                    public Field next() {
+                        if (next >= count) throw new NoSuchElementException();
+                        int i = next++;
+                        return new ImmutableField(names[i], valueAt(i));
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public boolean containsValue( Object value ) {
+        materialize();
+        return super.containsValue(value);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        materialize();
+        return modified ? super.keySet() : Collections.unmodifiableSet(super.keySet());
+    }
+
+    @Override
+    public Collection<Object> values() {
+        materialize();
+        return modified ? super.values() : Collections.unmodifiableCollection(super.values());
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        materialize();
+        return modified ? super.entrySet() : Collections.unmodifiableSet(super.entrySet());
+    }
+
+    @Override
+    public Object put( String name,
+                       Object value ) {
+        prepareForChange();
+        return super.put(name, value);
+    }
+
+    @Override
+    public void putAll( Map<? extends String, ? extends Object> map ) {
+        prepareForChange();
+        super.putAll(map);
+    }
+
+    @Override
+    public void putAll( Document object ) {
+        prepareForChange();
+        super.putAll(object);
+    }
+
+    @Override
+    public Object remove( Object key ) {
+        prepareForChange();
+        return super.remove(key);
+    }
+
+    @Override
+    public Object remove( String name ) {
+        prepareForChange();
+        return super.remove(name);
+    }
+
+    @Override
+    public void clear() {
+        prepareForChange();
+        super.clear();
+    }
+
+    @Override
+    public void removeAll() {
+        prepareForChange();
+        super.removeAll();
+    }
+
+    @Override
+    public Document clone() {
+        if (root.modified) return super.clone();
+        // Nothing has changed, so decode all of the fields (and nested documents) in one pass ...
+        try {
+            return Bson.read(new ByteArrayInputStream(bytes, offset, length));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Object writeReplace() {
+        // Java serialization of a HashMap does not go through the overridden methods ...
+        return clone();
+    }
+
+    private void materialize() {
+        if (materialized) return;
+        synchronized (this) {
+            if (materialized) return;
+            for (int i = 0; i != count; ++i) {
+                super.put(names[i], valueAt(i));
+            }
+            materialized = true;
+        }
+    }
+
+    private void prepareForChange() {
+        materialize();
+        modified = true;
+        root.modified = true;
+    }
+
+    private int indexOf( String name ) {
+        if (name == null) return -1;
+        if (index == null) {
+            // Search from the end, so that the last of any duplicate fields wins (as it does when the fields are put into a map)
+            for (int i = count - 1; i >= 0; --i) {
+                if (names[i].equals(name)) return i;
+            }
+            return -1;
+        }
+        int mask = index.length - 1;
+        for (int slot = spread(name.hashCode()) & mask;; slot = (slot + 1) & mask) {
+            int entry = index[slot];
+            if (entry == 0) return -1;
+            if (names[entry - 1].equals(name)) return entry - 1;
+        }
+    }
+
+    private Object valueAt( int i ) {
+        Object value = values.get(i);
+        if (value == null) {
+            value = decode(i);
+            if (value != null && !values.compareAndSet(i, null, value)) value = values.get(i);
+        }
+        return value;
+    }
+
+    private Object decode( int i ) {
+        int pos = offsets[i];
+        DocumentValueFactory factory = BsonReader.VALUE_FACTORY;
+        switch (types[i]) {
+            case Bson.Type.DOCUMENT:
+                return new LazyDocument(bytes, pos, root);
+            case Bson.Type.STRING:
+                return factory.createString(new String(bytes, pos + 4, readInt(bytes, pos) - 1, Utf8Util.CHARSET));
+            case Bson.Type.INT32:
+                return factory.createInt(readInt(bytes, pos));
+            case Bson.Type.INT64:
+                return factory.createLong(readLong(bytes, pos));
+            case Bson.Type.DOUBLE:
+                return factory.createDouble(Double.longBitsToDouble(readLong(bytes, pos)));
+            case Bson.Type.BOOLEAN:
+                return factory.createBoolean(bytes[pos] != 0);
+            case Bson.Type.DATETIME:
+                return factory.createDate(readLong(bytes, pos));
+            case Bson.Type.NULL:
+                return factory.createNull();
+            default:
+                // Use the standard reader for everything else ...
+                int end = offset + length;
+                BsonDataInput data = new BsonDataInput(new DataInputStream(new ByteArrayInputStream(bytes, pos, end - pos)));
+                try {
+                    return new BsonReader.Reader(data, factory).readValue(types[i]);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+        }
+    }
+
+    private static int valueLength( byte type,
+                                    byte[] bytes,
+                                    int pos ) {
+        switch (type) {
+            case Bson.Type.DOUBLE:
+            case Bson.Type.DATETIME:
+            case Bson.Type.INT64:
+            case Bson.Type.TIMESTAMP:
+                return 8;
+            case Bson.Type.INT32:
+                return 4;
+            case Bson.Type.BOOLEAN:
+                return 1;
+            case Bson.Type.OBJECTID:
+                return 12;
+            case Bson.Type.STRING:
+            case Bson.Type.JAVASCRIPT:
+            case Bson.Type.SYMBOL:
+                return 4 + readInt(bytes, pos);
+            case Bson.Type.DOCUMENT:
+            case Bson.Type.ARRAY:
+            case Bson.Type.JAVASCRIPT_WITH_SCOPE:
+                return readInt(bytes, pos);
+            case Bson.Type.BINARY:
+                return 5 + readInt(bytes, pos);
+            case Bson.Type.REGEX:
+                int patternEnd = endOfCString(bytes, pos);
+                return endOfCString(bytes, patternEnd + 1) + 1 - pos;
+            case Bson.Type.DBPOINTER:
+                return 4 + readInt(bytes, pos) + 12;
+            case Bson.Type.UNDEFINED:
+            case Bson.Type.NULL:
+            case Bson.Type.MINKEY:
+            case Bson.Type.MAXKEY:
+                return 0;
+            default:
+                throw new IllegalArgumentException("Unknown BSON type: " + type);
+        }
+    }
+
+    private static int[] buildIndex( String[] names,
+                                     int count ) {
+        // An open-addressing table of (field index + 1), at most half full ...
+        int[] index = new int[Integer.highestOneBit(count) << 2];
+        int mask = index.length - 1;
+        for (int i = 0; i != count; ++i) {
+            int slot = spread(names[i].hashCode()) & mask;
+            while (index[slot] != 0 && !names[index[slot] - 1].equals(names[i])) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = i + 1;
+        }
+        return index;
+    }
+
+    private static int spread( int hash ) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int endOfCString( byte[] bytes,
+                                     int pos ) {
+        while (bytes[pos] != 0) {
+            ++pos;
+        }
+        return pos;
+    }
+
+    private static int readInt( byte[] bytes,
+                                int pos ) {
+        return (bytes[pos] & 0xFF) | (bytes[pos + 1] & 0xFF) << 8 | (bytes[pos + 2] & 0xFF) << 16 | (bytes[pos + 3] & 0xFF) << 24;
+    }
+
+    private static long readLong( byte[] bytes,
+                                  int pos ) {
+        return (readInt(bytes, pos) & 0xFFFFFFFFL) | ((long)readInt(bytes, pos + 4) << 32);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * ModeShape (http://www.modeshape.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infinispan.schematic.internal.document;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Date;
+import org.infinispan.schematic.document.Bson;
+import org.infinispan.schematic.document.Document;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LazyDocumentTest {
+
+    private BasicDocument doc;
+    private byte[] bytes;
+    private LazyDocument lazy;
+
+    @Before
+    public void beforeTest() throws Exception {
+        doc = new BasicDocument();
+        for (int i = 0; i != 40; ++i) {
+            doc.put("prop" + i, "value" + i);
+        }
+        doc.put("int", 5);
+        doc.put("long", 6L);
+        doc.put("double", 1.5d);
+        doc.put("boolean", true);
+        doc.put("date", new Date(1000L));
+        doc.put("baz", new BasicDocument("key1", "value1", "key2", new BasicDocument("key3", 3)));
+        doc.put("bom", new BasicArray("v1", "v2", "v3", new BasicDocument("v4-Key", "v4-value")));
+        bytes = Bson.write(doc);
+        lazy = LazyDocument.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void shouldReadFieldsWithoutMaterializing() {
+        assertThat(lazy.size(), is(doc.size()));
+        assertThat(lazy.getString("prop7"), is("value7"));
+        assertThat(lazy.getInteger("int"), is(5));
+        assertThat(lazy.getLong("long"), is(6L));
+        assertThat(lazy.getDouble("double"), is(1.5d));
+        assertThat(lazy.getBoolean("boolean"), is(true));
+        assertThat(lazy.getDocument("baz").getDocument("key2").getInteger("key3"), is(3));
+        assertThat(lazy.getArray("bom").size(), is(4));
+        assertThat(lazy.get("missing"), is(nullValue()));
+        assertThat(lazy.containsField("missing"), is(false));
+        assertThat(lazy.isModified(), is(false));
+    }
+
+    @Test
+    public void shouldBeEqualToDocumentItWasWrittenFrom() {
+        assertThat(lazy.equals(doc), is(true));
+        assertThat(doc.equals(lazy), is(true));
+        assertThat(lazy.hashCode(), is(doc.hashCode()));
+        assertThat(lazy.toString(), is(doc.toString()));
+    }
+
+    @Test
+    public void shouldCloneIntoFullyDecodedDocument() {
+        Document clone = lazy.clone();
+        assertThat(clone, is(instanceOf(BasicDocument.class)));
+        assertThat(clone instanceof LazyDocument, is(false));
+        assertThat(clone.equals(doc), is(true));
+    }
+
+    @Test
+    public void shouldWriteOriginalBytesUntilModified() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        assertThat(lazy.writeTo(new DataOutputStream(stream)), is(true));
+        assertThat(stream.toByteArray(), is(bytes));
+
+        // Changing a nested document means the original bytes are no longer correct ...
+        ((MutableDocument)lazy.getDocument("baz")).put("key1", "changed");
+        assertThat(lazy.writeTo(new DataOutputStream(new ByteArrayOutputStream())), is(false));
+        assertThat(lazy.getDocument("baz").getString("key1"), is("changed"));
+        assertThat(lazy.clone().getDocument("baz").getString("key1"), is("changed"));
+    }
+
+    @Test
+    public void shouldMaterializeWhenModified() {
+        lazy.put("prop1", "new value");
+        lazy.remove("prop2");
+        assertThat(lazy.isModified(), is(true));
+        assertThat(lazy.getString("prop1"), is("new value"));
+        assertThat(lazy.get("prop2"), is(nullValue()));
+        assertThat(lazy.size(), is(doc.size() - 1));
+        assertThat(lazy.getString("prop3"), is("value3"));
+    }
+
+    @Test
+    public void shouldReadSmallDocumentWithoutIndex() throws Exception {
+        byte[] small = Bson.write(new BasicDocument("a", 1, "b", "x"));
+        LazyDocument smallDoc = LazyDocument.read(new DataInputStream(new ByteArrayInputStream(small)));
+        assertThat(smallDoc.getString("b"), is("x"));
+        assertThat(smallDoc.getInteger("a"), is(1));
+        assertThat(smallDoc.get("c"), is(nullValue()));
+    }
+}